@@ -16,7 +16,9 @@
 
 package org.jetbrains.kotlin.backend.common.output
 
+import java.io.ByteArrayOutputStream
 import java.io.File
+import java.io.OutputStream
 
 public interface OutputFileCollection {
     public fun get(relativePath: String): OutputFile?
@@ -44,4 +46,23 @@ public class SimpleOutputFile(
 ) : OutputFile {
     override fun asByteArray(): ByteArray = content.toByteArray()
     override fun asText(): String = content
-}
\ No newline at end of file
+}
+
+/**
+ * An output file whose content is generated while it's being written, so that it doesn't have to be kept in memory as a whole.
+ * Each call of [writeTo], [asByteArray] or [asText] generates the content anew.
+ */
+public abstract class StreamingOutputFile(
+        override val sourceFiles: List<File>,
+        override val relativePath: String
+) : OutputFile {
+    public abstract fun writeTo(stream: OutputStream)
+
+    override fun asByteArray(): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        writeTo(bytes)
+        return bytes.toByteArray()
+    }
+
+    override fun asText(): String = String(asByteArray(), Charsets.UTF_8)
+}
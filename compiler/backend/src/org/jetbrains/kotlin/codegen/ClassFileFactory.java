@@ -52,6 +52,9 @@ public class ClassFileFactory implements OutputFileCollection {
     private final Map<FqName, PackageCodegen> package2codegen = new HashMap<FqName, PackageCodegen>();
     private final Map<FqName, MultifileClassCodegen> multifileClass2codegen = new HashMap<FqName, MultifileClassCodegen>();
     private final Map<String, OutAndSourceFileList> generators = new LinkedHashMap<String, OutAndSourceFileList>();
+    private final ThreadLocal<DeferredOutput> deferredOutput = new ThreadLocal<DeferredOutput>();
+    // output path -> the latest unit which removed it, see removeInlinedClasses
+    private final Map<String, Integer> removedDeferredOutputs = new HashMap<String, Integer>();
 
     private boolean isDone = false;
 
@@ -75,13 +78,70 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull Collection<? extends PsiFile> sourceFiles) {
         String outputFilePath = asmType.getInternalName() + ".class";
         List<File> ioSourceFiles = toIoFilesIgnoringNonPhysical(sourceFiles);
-        state.getProgress().reportOutput(ioSourceFiles, new File(outputFilePath));
-        ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+        ClassBuilder answer;
+        synchronized (builderFactory) {
+            answer = builderFactory.newClassBuilder(origin);
+        }
+        ClassBuilderAndSourceFileList generator = new ClassBuilderAndSourceFileList(answer, ioSourceFiles);
+
+        DeferredOutput deferred = deferredOutput.get();
+        if (deferred != null) {
+            deferred.generators.put(outputFilePath, generator);
+        }
+        else {
+            registerGenerator(outputFilePath, generator);
+        }
         return answer;
     }
 
-    void done() {
+    private synchronized void registerGenerator(@NotNull String outputFilePath, @NotNull OutAndSourceFileList generator) {
+        state.getProgress().reportOutput(generator.sourceFiles, new File(outputFilePath));
+        generators.put(outputFilePath, generator);
+    }
+
+    /**
+     * Runs the given generator so that class files created by it on the current thread are not registered right away,
+     * but are kept aside until {@link DeferredOutput#commit()} is called. This allows to generate independent units
+     * concurrently and still register their output in the same order as the sequential generation does.
+     * Units must be committed in the order of their indices after all of them have been generated.
+     */
+    @NotNull
+    public DeferredOutput generateDeferred(int unitIndex, @NotNull Runnable generator) {
+        assert deferredOutput.get() == null : "Deferred generation can't be nested";
+        DeferredOutput result = new DeferredOutput(unitIndex);
+        deferredOutput.set(result);
+        try {
+            generator.run();
+        }
+        finally {
+            deferredOutput.remove();
+        }
+        return result;
+    }
+
+    public final class DeferredOutput {
+        private final int unitIndex;
+        private final Map<String, OutAndSourceFileList> generators = new LinkedHashMap<String, OutAndSourceFileList>();
+
+        private DeferredOutput(int unitIndex) {
+            this.unitIndex = unitIndex;
+        }
+
+        public void commit() {
+            synchronized (ClassFileFactory.this) {
+                for (Map.Entry<String, OutAndSourceFileList> entry : generators.entrySet()) {
+                    // Sequentially, a class is only removed if it had been generated before the removing unit
+                    Integer removingUnit = removedDeferredOutputs.get(entry.getKey());
+                    if (removingUnit == null || removingUnit <= unitIndex) {
+                        registerGenerator(entry.getKey(), entry.getValue());
+                    }
+                }
+                generators.clear();
+            }
+        }
+    }
+
+    synchronized void done() {
         if (!isDone) {
             isDone = true;
             Collection<PackageCodegen> packageCodegens = package2codegen.values();
@@ -226,7 +286,7 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     @NotNull
-    public PackageCodegen forPackage(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
+    public synchronized PackageCodegen forPackage(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
         assert !isDone : "Already done!";
         PackageCodegen codegen = package2codegen.get(fqName);
         if (codegen == null) {
@@ -238,7 +298,7 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     @NotNull
-    public MultifileClassCodegen forMultifileClass(@NotNull FqName facadeFqName, @NotNull Collection<JetFile> files) {
+    public synchronized MultifileClassCodegen forMultifileClass(@NotNull FqName facadeFqName, @NotNull Collection<JetFile> files) {
         assert !isDone : "Already done!";
         MultifileClassCodegen codegen = multifileClass2codegen.get(facadeFqName);
         if (codegen == null) {
@@ -337,9 +397,20 @@ public class ClassFileFactory implements OutputFileCollection {
         public abstract String asText(ClassBuilderFactory factory);
     }
 
-    public void removeInlinedClasses(Set<String> classNamesToRemove) {
+    public synchronized void removeInlinedClasses(Set<String> classNamesToRemove) {
         for (String classInternalName : classNamesToRemove) {
-            generators.remove(classInternalName + ".class");
+            String outputFilePath = classInternalName + ".class";
+            generators.remove(outputFilePath);
+
+            DeferredOutput deferred = deferredOutput.get();
+            if (deferred != null) {
+                deferred.generators.remove(outputFilePath);
+                // the class may belong to a preceding unit which is being generated concurrently and is not committed yet
+                Integer previous = removedDeferredOutputs.get(outputFilePath);
+                if (previous == null || previous < deferred.unitIndex) {
+                    removedDeferredOutputs.put(outputFilePath, deferred.unitIndex);
+                }
+            }
         }
     }
 
@@ -22,10 +22,17 @@ import org.jetbrains.kotlin.descriptors.CallableDescriptor
 import org.jetbrains.kotlin.diagnostics.DiagnosticSink
 import org.jetbrains.kotlin.diagnostics.Errors
 import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall
+import java.util.LinkedHashMap
 
 public class InlineCycleReporter(val diagnostics: DiagnosticSink) {
 
-    val processingFunctions = linkedMapOf<PsiElement, CallableDescriptor>()
+    // Parts of a module may be generated in parallel, each thread inlines its own chain of calls
+    private val processingFunctionsByThread = object : ThreadLocal<LinkedHashMap<PsiElement, CallableDescriptor>>() {
+        override fun initialValue() = linkedMapOf<PsiElement, CallableDescriptor>()
+    }
+
+    val processingFunctions: LinkedHashMap<PsiElement, CallableDescriptor>
+        get() = processingFunctionsByThread.get()
 
     public fun enterIntoInlining(call: ResolvedCall<*>?): Boolean {
         //null call for default method inlining
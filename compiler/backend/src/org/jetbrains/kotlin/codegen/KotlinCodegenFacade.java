@@ -30,6 +30,7 @@ import org.jetbrains.kotlin.resolve.ScriptNameUtil;
 import org.jetbrains.org.objectweb.asm.Type;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.jetbrains.kotlin.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -53,7 +54,7 @@ public class KotlinCodegenFacade {
 
     public static void compileCorrectFiles(
             @NotNull GenerationState state,
-            @NotNull CompilationErrorHandler errorHandler
+            @NotNull final CompilationErrorHandler errorHandler
     ) {
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
 
@@ -84,21 +85,97 @@ public class KotlinCodegenFacade {
         }
 
         Set<FqName> obsoleteMultifileClasses = new HashSet<FqName>(state.getObsoleteMultifileClasses());
-        for (FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
-            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
-            generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler);
+        Set<FqName> packagesWithObsoleteParts = new HashSet<FqName>(state.getPackagesWithObsoleteParts());
+
+        if (state.isParallelCodegen()) {
+            List<Runnable> units = new ArrayList<Runnable>();
+            for (FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
+                final MultifileClassCodegen codegen =
+                        state.getFactory().forMultifileClass(multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName));
+                units.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        codegen.generate(errorHandler);
+                    }
+                });
+            }
+            for (FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackageClasses.keySet())) {
+                final PackageCodegen codegen = state.getFactory().forPackage(packageFqName, filesInPackageClasses.get(packageFqName));
+                units.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        codegen.generate(errorHandler);
+                    }
+                });
+            }
+            generateInParallel(state, units);
         }
+        else {
+            for (FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
+                ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+                generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler);
+            }
 
-        Set<FqName> packagesWithObsoleteParts = new HashSet<FqName>(state.getPackagesWithObsoleteParts());
-        for (FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackageClasses.keySet())) {
-            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
-            generatePackage(state, packageFqName, filesInPackageClasses.get(packageFqName), errorHandler);
+            for (FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackageClasses.keySet())) {
+                ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+                generatePackage(state, packageFqName, filesInPackageClasses.get(packageFqName), errorHandler);
+            }
         }
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
         state.getFactory().done();
     }
 
+    // Units are generated concurrently, but their output is registered in the factory in the sequential order,
+    // so that the resulting set of class files and their order don't depend on the number of threads
+    private static void generateInParallel(@NotNull GenerationState state, @NotNull List<Runnable> units) {
+        final ClassFileFactory factory = state.getFactory();
+        int threads = Math.max(1, Math.min(units.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ClassFileFactory.DeferredOutput>> results = new ArrayList<Future<ClassFileFactory.DeferredOutput>>(units.size());
+            for (int i = 0; i < units.size(); i++) {
+                final int unitIndex = i;
+                final Runnable unit = units.get(i);
+                results.add(executor.submit(new Callable<ClassFileFactory.DeferredOutput>() {
+                    @Override
+                    public ClassFileFactory.DeferredOutput call() {
+                        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+                        return factory.generateDeferred(unitIndex, unit);
+                    }
+                }));
+            }
+
+            List<ClassFileFactory.DeferredOutput> outputs = new ArrayList<ClassFileFactory.DeferredOutput>(units.size());
+            for (Future<ClassFileFactory.DeferredOutput> result : results) {
+                outputs.add(getResult(result));
+            }
+            for (ClassFileFactory.DeferredOutput output : outputs) {
+                output.commit();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
     public static void generatePackage(
             @NotNull GenerationState state,
             @NotNull FqName packageFqName,
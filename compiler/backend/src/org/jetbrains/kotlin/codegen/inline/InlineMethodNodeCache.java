@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.inline;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.name.ClassId;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.Label;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.jetbrains.kotlin.codegen.inline.InlineCodegenUtil.API;
+import static org.jetbrains.kotlin.codegen.inline.InlineCodegenUtil.GENERATE_SMAP;
+
+/**
+ * Bodies of compiled inline functions, parsed once per compilation.
+ *
+ * The same inline function from a library (e.g. collection utilities from the standard library) is usually inlined at many
+ * call sites, and without the cache the whole owning class file would be read and parsed for each of them.
+ *
+ * The inliner modifies the method node it gets, so every call returns a new copy of the cached node. The SMAP is parsed
+ * again for every copy as well, because file mappings are modified when the resulting SMAP is built.
+ *
+ * The cache is bounded by an estimated size of the cached nodes, the oldest entries are evicted first.
+ */
+public class InlineMethodNodeCache {
+    private static final long DEFAULT_BUDGET_BYTES =
+            Long.getLong("kotlin.inline.method.cache.size.mb", 32L) * 1024 * 1024;
+
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int INSTRUCTION_SIZE = 64;
+
+    private final long budget;
+    private final ConcurrentMap<String, ParsedMethod> cache = new ConcurrentHashMap<String, ParsedMethod>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<String>();
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public InlineMethodNodeCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public InlineMethodNodeCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return a copy of the method from the given class file which can be modified by the caller, or null if there's no such method
+     */
+    @Nullable
+    public SMAPAndMethodNode getMethodNode(
+            @NotNull VirtualFile file,
+            @NotNull String methodName,
+            @NotNull String methodDescriptor,
+            @NotNull ClassId classId
+    ) throws IOException {
+        String key = file.getPath() + "#" + methodName + methodDescriptor;
+
+        ParsedMethod parsed = cache.get(key);
+        if (parsed != null) {
+            hits.incrementAndGet();
+            return parsed.copy(classId);
+        }
+
+        misses.incrementAndGet();
+        parsed = ParsedMethod.read(file.contentsToByteArray(), methodName, methodDescriptor);
+        if (parsed == null) return null;
+
+        // Several threads may parse the same method concurrently, the first parsed node is used by all of them afterwards
+        ParsedMethod existing = cache.putIfAbsent(key, parsed);
+        if (existing != null) {
+            return existing.copy(classId);
+        }
+
+        insertionOrder.add(key);
+        size.addAndGet(parsed.estimatedSize);
+        evictIfNeeded();
+
+        return parsed.copy(classId);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getEstimatedSize() {
+        return size.get();
+    }
+
+    private void evictIfNeeded() {
+        while (size.get() > budget) {
+            String eldest = insertionOrder.poll();
+            if (eldest == null) return;
+
+            ParsedMethod removed = cache.remove(eldest);
+            if (removed != null) {
+                size.addAndGet(-removed.estimatedSize);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    static class ParsedMethod {
+        private final MethodNode node;
+        private final String source;
+        private final String debug;
+        private final int minLine;
+        private final int maxLine;
+        private final long estimatedSize;
+
+        private ParsedMethod(@NotNull MethodNode node, @Nullable String source, @Nullable String debug, int minLine, int maxLine) {
+            this.node = node;
+            this.source = source;
+            this.debug = debug;
+            this.minLine = minLine;
+            this.maxLine = maxLine;
+            this.estimatedSize = ENTRY_OVERHEAD +
+                                 (long) INSTRUCTION_SIZE * (node.instructions.size() + sizeOf(node.tryCatchBlocks) + sizeOf(node.localVariables));
+        }
+
+        @Nullable
+        static ParsedMethod read(@NotNull byte[] classData, @NotNull final String methodName, @NotNull final String methodDescriptor) {
+            ClassReader cr = new ClassReader(classData);
+            final MethodNode[] node = new MethodNode[1];
+            final String[] debugInfo = new String[2];
+            final int[] lines = new int[2];
+            lines[0] = Integer.MAX_VALUE;
+            lines[1] = Integer.MIN_VALUE;
+            cr.accept(new ClassVisitor(API) {
+
+                @Override
+                public void visitSource(String source, String debug) {
+                    super.visitSource(source, debug);
+                    debugInfo[0] = source;
+                    debugInfo[1] = debug;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(
+                        int access,
+                        @NotNull String name,
+                        @NotNull String desc,
+                        String signature,
+                        String[] exceptions
+                ) {
+                    if (methodName.equals(name) && methodDescriptor.equals(desc)) {
+                        node[0] = new MethodNode(API, access, name, desc, signature, exceptions) {
+                            @Override
+                            public void visitLineNumber(int line, @NotNull Label start) {
+                                super.visitLineNumber(line, start);
+                                lines[0] = Math.min(lines[0], line);
+                                lines[1] = Math.max(lines[1], line);
+                            }
+                        };
+                        return node[0];
+                    }
+                    return null;
+                }
+            }, ClassReader.SKIP_FRAMES | (GENERATE_SMAP ? 0 : ClassReader.SKIP_DEBUG));
+
+            if (node[0] == null) return null;
+
+            return new ParsedMethod(node[0], debugInfo[0], debugInfo[1], lines[0], lines[1]);
+        }
+
+        @NotNull
+        SMAPAndMethodNode copy(@NotNull ClassId classId) {
+            MethodNode copy = new MethodNode(
+                    API, node.access, node.name, node.desc, node.signature,
+                    node.exceptions.toArray(new String[node.exceptions.size()])
+            );
+            // MethodNode.accept() resets the labels of the visited instructions, so the node can't be copied concurrently
+            synchronized (node) {
+                node.accept(copy);
+            }
+
+            SMAP smap = SMAPParser.parseOrCreateDefault(debug, source, classId.toString(), minLine, maxLine);
+            return new SMAPAndMethodNode(copy, smap);
+        }
+
+        private static int sizeOf(@Nullable List<?> list) {
+            return list != null ? list.size() : 0;
+        }
+    }
+}
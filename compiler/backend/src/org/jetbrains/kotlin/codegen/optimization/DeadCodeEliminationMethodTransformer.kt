@@ -17,21 +17,28 @@
 package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodAnalysisCache
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
-import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
 import org.jetbrains.kotlin.codegen.optimization.common.isMeaningful
 
 public class DeadCodeEliminationMethodTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        val frames = MethodTransformer.analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
+        transform(internalClassName, methodNode, MethodAnalysisCache(methodNode))
+    }
+
+    // Only reachability of instructions is needed, it's computed on the control flow graph without frames
+    override fun transform(internalClassName: String, methodNode: MethodNode, analyses: MethodAnalysisCache): Boolean {
+        val reachable = analyses.getReachableInstructions()
         val insnList = methodNode.instructions
         val insnsArray = insnList.toArray()
 
         // Do not remove not meaningful nodes (labels/linenumbers) because they can be referred
         // by try/catch blocks or local variables table
         // We remove unneeded ones further after all optimizations by calling CommonPackage.prepareForEmitting(methodNode)
-        insnsArray.zip(frames).filter {
-            it.second == null && it.first.isMeaningful
-        }.forEach { insnList.remove(it.first) }
+        val insnsToRemove = insnsArray.indices.filter { !reachable[it] && insnsArray[it].isMeaningful }
+        insnsToRemove.forEach { insnList.remove(insnsArray[it]) }
+        return insnsToRemove.isNotEmpty()
     }
+
+    override fun requiresFramesForAllInstructions() = false
 }
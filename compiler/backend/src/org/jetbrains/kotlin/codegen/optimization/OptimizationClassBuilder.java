@@ -51,6 +51,7 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
                 disableOptimization,
+                getThisName(),
                 access, name, desc, signature, exceptions
         );
     }
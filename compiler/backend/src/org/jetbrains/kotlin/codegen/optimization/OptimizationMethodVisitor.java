@@ -16,14 +16,18 @@
 
 package org.jetbrains.kotlin.codegen.optimization;
 
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.codegen.inline.InlineCodegenUtil;
+import org.jetbrains.kotlin.codegen.optimization.boxing.CapturedVarsOptimizationMethodTransformer;
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer;
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantNullCheckMethodTransformer;
 import org.jetbrains.kotlin.codegen.optimization.common.CommonPackage;
-import org.jetbrains.kotlin.codegen.optimization.fixStack.FixStackMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodPassManager;
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
+import org.jetbrains.kotlin.util.PerformanceCounter;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 import org.jetbrains.org.objectweb.asm.Opcodes;
 import org.jetbrains.org.objectweb.asm.tree.LocalVariableNode;
@@ -39,20 +43,26 @@ public class OptimizationMethodVisitor extends MethodVisitor {
 
     private static final MethodTransformer MANDATORY_METHOD_TRANSFORMER = new MandatoryMethodTransformer();
 
-    private static final MethodTransformer[] OPTIMIZATION_TRANSFORMERS = new MethodTransformer[] {
+    private static final MethodPassManager OPTIMIZATION_PASSES = new MethodPassManager(
+            MEMORY_LIMIT_BY_METHOD_MB,
             new RedundantNullCheckMethodTransformer(),
+            new CapturedVarsOptimizationMethodTransformer(),
             new RedundantBoxingMethodTransformer(),
             new DeadCodeEliminationMethodTransformer(),
             new RedundantGotoMethodTransformer()
-    };
+    );
+
+    private static final PerformanceCounter METHOD_TRANSFORMATION_COUNTER = PerformanceCounter.Companion.create("Method transformation");
 
     private final MethodNode methodNode;
     private final MethodVisitor delegate;
     private final boolean disableOptimization;
+    private final String ownerInternalName;
 
     public OptimizationMethodVisitor(
             @NotNull MethodVisitor delegate,
             boolean disableOptimization,
+            @NotNull String ownerInternalName,
             int access,
             @NotNull String name,
             @NotNull String desc,
@@ -65,6 +75,7 @@ public class OptimizationMethodVisitor extends MethodVisitor {
         this.methodNode.localVariables = new ArrayList<LocalVariableNode>(5);
         this.mv = InlineCodegenUtil.wrapWithMaxLocalCalc(methodNode);
         this.disableOptimization = disableOptimization;
+        this.ownerInternalName = ownerInternalName;
     }
 
     @Override
@@ -77,13 +88,15 @@ public class OptimizationMethodVisitor extends MethodVisitor {
         super.visitEnd();
 
         if (shouldBeTransformed(methodNode)) {
-            MANDATORY_METHOD_TRANSFORMER.transform("fake", methodNode);
-            if (canBeOptimized(methodNode) && !disableOptimization) {
-                for (MethodTransformer transformer : OPTIMIZATION_TRANSFORMERS) {
-                    transformer.transform("fake", methodNode);
+            METHOD_TRANSFORMATION_COUNTER.time(new Function0<Unit>() {
+                @Override
+                public Unit invoke() {
+                    long start = System.nanoTime();
+                    transform();
+                    MethodPassManager.recordMethodTime(ownerInternalName, methodNode, System.nanoTime() - start);
+                    return Unit.INSTANCE$;
                 }
-            }
-            CommonPackage.prepareForEmitting(methodNode);
+            });
         }
 
         methodNode.accept(new EndIgnoringMethodVisitorDecorator(Opcodes.ASM5, delegate));
@@ -103,6 +116,14 @@ public class OptimizationMethodVisitor extends MethodVisitor {
         delegate.visitEnd();
     }
 
+    private void transform() {
+        MANDATORY_METHOD_TRANSFORMER.transform("fake", methodNode);
+        if (!disableOptimization) {
+            OPTIMIZATION_PASSES.transform("fake", methodNode);
+        }
+        CommonPackage.prepareForEmitting(methodNode);
+    }
+
     /**
      * You can use it when you need to ignore visit end
      */
@@ -133,9 +154,4 @@ public class OptimizationMethodVisitor extends MethodVisitor {
     private static boolean shouldBeTransformed(@NotNull MethodNode node) {
         return node.instructions.size() > 0;
     }
-
-    private static boolean canBeOptimized(@NotNull MethodNode node) {
-        int totalFramesSizeMb = node.instructions.size() * (node.maxLocals + node.maxStack) / (1024 * 1024);
-        return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB;
-    }
 }
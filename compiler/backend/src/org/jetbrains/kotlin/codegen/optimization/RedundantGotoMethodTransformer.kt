@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.codegen.optimization
 
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodAnalysisCache
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
@@ -53,4 +54,12 @@ public class RedundantGotoMethodTransformer : MethodTransformer() {
             methodNode.instructions.remove(insnToRemove)
         }
     }
+
+    override fun transform(internalClassName: String, methodNode: MethodNode, analyses: MethodAnalysisCache): Boolean {
+        val size = methodNode.instructions.size()
+        transform(internalClassName, methodNode)
+        return methodNode.instructions.size() != size
+    }
+
+    override fun requiresFramesForAllInstructions() = false
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.boxing
+
+import org.jetbrains.kotlin.codegen.optimization.common.InsnSequence
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodAnalysisCache
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.kotlin.resolve.jvm.AsmTypes
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import java.util.LinkedHashMap
+
+/**
+ * Replaces `kotlin.jvm.internal.Ref` objects which don't escape the method with local variables holding their elements.
+ *
+ * A local variable captured by a lambda and modified is stored in a `Ref` object shared by the function and the lambda.
+ * After the lambda is inlined, the object is only used by the method itself, but it's still allocated each time
+ * the variable is declared, e.g. on every iteration of a loop.
+ *
+ * An object is replaced if all its uses are the initialization, copying the reference between the stack and local
+ * variables and accesses to the `element` field, and no path mixes it with other values. Accesses to the field become
+ * loads and stores of a new local variable, which is reset to the default value where the object was allocated.
+ */
+public class CapturedVarsOptimizationMethodTransformer : MethodTransformer() {
+    override fun transform(internalClassName: String, methodNode: MethodNode) {
+        transformMethod(internalClassName, methodNode)
+    }
+
+    override fun transform(internalClassName: String, methodNode: MethodNode, analyses: MethodAnalysisCache): Boolean =
+            transformMethod(internalClassName, methodNode)
+
+    private fun transformMethod(internalClassName: String, methodNode: MethodNode): Boolean {
+        // Most methods don't allocate shared variables at all, and shouldn't pay for the analysis
+        if (InsnSequence(methodNode.instructions).none { it.refElementType() != null }) return false
+
+        val interpreter = RefTrackingInterpreter()
+        val frames = MethodTransformer.analyze(internalClassName, methodNode, interpreter)
+        val insns = methodNode.instructions.toArray()
+
+        interpretStackInstructions(insns, frames)
+
+        val candidates = interpreter.candidates.values().filter { !it.escapes }
+        if (candidates.isEmpty()) return false
+
+        for (candidate in candidates) {
+            candidate.localIndex = methodNode.maxLocals
+            methodNode.maxLocals += candidate.elementType.getSize()
+        }
+
+        adaptLocalVariableTable(methodNode, insns, frames)
+        rewriteInstructions(methodNode.instructions, insns, frames, interpreter)
+        return true
+    }
+
+    // POP instructions and the values under the top of the stack moved by DUP_X* instructions are not passed to the interpreter
+    // by the analyzer. A Ref right under a value duplicated by DUP_X1/DUP2_X1, like in `x++`, is supported: the instruction
+    // becomes DUP/DUP2 when the Ref is removed. Refs moved by other forms are left as they are.
+    private fun interpretStackInstructions(insns: Array<AbstractInsnNode>, frames: Array<Frame<BasicValue>?>) {
+        for (i in insns.indices) {
+            val frame = frames[i] ?: continue
+            when (insns[i].getOpcode()) {
+                Opcodes.POP -> {
+                    val top = frame.peek(0)
+                    if (top !is RefValue) markEscaping(top)
+                }
+                Opcodes.POP2 -> {
+                    val top = frame.peek(0)
+                    markEscaping(top)
+                    if (top.getSize() == 1) markEscaping(frame.peek(1))
+                }
+                Opcodes.DUP_X1 -> {
+                    val under = frame.peek(1)
+                    if (under !is RefValue) markEscaping(under)
+                }
+                Opcodes.DUP2_X1 -> {
+                    if (frame.peek(0).getSize() == 2) {
+                        val under = frame.peek(1)
+                        if (under !is RefValue) markEscaping(under)
+                    }
+                    else {
+                        markEscaping(frame.peek(2))
+                    }
+                }
+                Opcodes.DUP_X2, Opcodes.DUP2_X2 -> {
+                    for (depth in 1..Math.min(3, frame.getStackSize() - 1)) {
+                        markEscaping(frame.peek(depth))
+                    }
+                }
+            }
+        }
+    }
+
+    private fun adaptLocalVariableTable(methodNode: MethodNode, insns: Array<AbstractInsnNode>, frames: Array<Frame<BasicValue>?>) {
+        val localVariables = methodNode.localVariables ?: return
+        val instructions = methodNode.instructions
+        val iterator = localVariables.iterator()
+        while (iterator.hasNext()) {
+            val localVariable = iterator.next()
+            if (!localVariable.desc.startsWith("L" + AsmTypes.REF_TYPE_PREFIX)) continue
+
+            val replaced = hashSetOf<RefCandidate>()
+            for (i in instructions.indexOf(localVariable.start)..instructions.indexOf(localVariable.end) - 1) {
+                val candidate = frames[i]?.getLocal(localVariable.index).replacedCandidate() ?: continue
+                replaced.add(candidate)
+            }
+
+            when (replaced.size()) {
+                0 -> {}
+                1 -> {
+                    val candidate = replaced.single()
+                    localVariable.index = candidate.localIndex
+                    localVariable.desc = candidate.elementType.getDescriptor()
+                }
+                // Several objects share the variable, there's no single local to show in the debugger
+                else -> iterator.remove()
+            }
+        }
+    }
+
+    private fun rewriteInstructions(
+            instructions: InsnList,
+            insns: Array<AbstractInsnNode>,
+            frames: Array<Frame<BasicValue>?>,
+            interpreter: RefTrackingInterpreter
+    ) {
+        for (i in insns.indices) {
+            val frame = frames[i] ?: continue
+            val insn = insns[i]
+            when (insn.getOpcode()) {
+                Opcodes.NEW -> {
+                    val candidate = interpreter.candidates[insn]
+                    if (candidate != null && !candidate.escapes) {
+                        val elementType = candidate.elementType
+                        instructions.insertBefore(insn, InsnNode(defaultValueOpcode(elementType)))
+                        instructions.insertBefore(insn, VarInsnNode(elementType.getOpcode(Opcodes.ISTORE), candidate.localIndex))
+                        instructions.remove(insn)
+                    }
+                }
+                Opcodes.ALOAD -> {
+                    if (frame.getLocal((insn as VarInsnNode).`var`).replacedCandidate() != null) {
+                        instructions.remove(insn)
+                    }
+                }
+                Opcodes.ASTORE, Opcodes.DUP, Opcodes.POP, Opcodes.INVOKESPECIAL -> {
+                    if (frame.peek(0).replacedCandidate() != null) {
+                        instructions.remove(insn)
+                    }
+                }
+                Opcodes.DUP_X1 -> {
+                    if (frame.peek(1).replacedCandidate() != null) {
+                        instructions.set(insn, InsnNode(Opcodes.DUP))
+                    }
+                }
+                Opcodes.DUP2_X1 -> {
+                    if (frame.peek(0).getSize() == 2 && frame.peek(1).replacedCandidate() != null) {
+                        instructions.set(insn, InsnNode(Opcodes.DUP2))
+                    }
+                }
+                Opcodes.GETFIELD -> {
+                    val candidate = frame.peek(0).replacedCandidate()
+                    if (candidate != null) {
+                        instructions.set(insn, VarInsnNode(candidate.elementType.getOpcode(Opcodes.ILOAD), candidate.localIndex))
+                    }
+                }
+                Opcodes.PUTFIELD -> {
+                    val candidate = frame.peek(1).replacedCandidate()
+                    if (candidate != null) {
+                        instructions.set(insn, VarInsnNode(candidate.elementType.getOpcode(Opcodes.ISTORE), candidate.localIndex))
+                    }
+                }
+            }
+        }
+    }
+}
+
+private class RefCandidate(val allocation: TypeInsnNode, val elementType: Type) {
+    var escapes = false
+    var localIndex = -1
+}
+
+private class RefValue(val candidate: RefCandidate) : BasicValue(Type.getObjectType(candidate.allocation.desc)) {
+    override fun equals(other: Any?) = other is RefValue && other.candidate === candidate
+
+    override fun hashCode() = candidate.hashCode()
+}
+
+// A value which is one of the candidates on some paths, and something else on the others
+private class MergedRefValue(val candidates: Set<RefCandidate>) : BasicValue(AsmTypes.OBJECT_TYPE) {
+    override fun equals(other: Any?) = other is MergedRefValue && other.candidates == candidates
+
+    override fun hashCode() = candidates.hashCode()
+}
+
+private class RefTrackingInterpreter : OptimizationBasicInterpreter() {
+    val candidates = LinkedHashMap<AbstractInsnNode, RefCandidate>()
+
+    override fun newOperation(insn: AbstractInsnNode): BasicValue? {
+        val elementType = insn.refElementType() ?: return super.newOperation(insn)
+        return RefValue(candidates.getOrPut(insn) { RefCandidate(insn as TypeInsnNode, elementType) })
+    }
+
+    override fun copyOperation(insn: AbstractInsnNode, value: BasicValue): BasicValue? {
+        if (value is RefValue) {
+            when (insn.getOpcode()) {
+                Opcodes.ALOAD, Opcodes.ASTORE, Opcodes.DUP -> return value
+            }
+        }
+        markEscaping(value)
+        return super.copyOperation(insn, value)
+    }
+
+    override fun unaryOperation(insn: AbstractInsnNode, value: BasicValue): BasicValue? {
+        if (!(value is RefValue && insn.getOpcode() == Opcodes.GETFIELD && insn.isElementAccess(value.candidate))) {
+            markEscaping(value)
+        }
+        return super.unaryOperation(insn, value)
+    }
+
+    override fun binaryOperation(insn: AbstractInsnNode, value1: BasicValue, value2: BasicValue): BasicValue? {
+        if (!(value1 is RefValue && insn.getOpcode() == Opcodes.PUTFIELD && insn.isElementAccess(value1.candidate))) {
+            markEscaping(value1)
+        }
+        markEscaping(value2)
+        return super.binaryOperation(insn, value1, value2)
+    }
+
+    override fun ternaryOperation(insn: AbstractInsnNode, value1: BasicValue, value2: BasicValue, value3: BasicValue): BasicValue? {
+        markEscaping(value1)
+        markEscaping(value2)
+        markEscaping(value3)
+        return super.ternaryOperation(insn, value1, value2, value3)
+    }
+
+    override fun naryOperation(insn: AbstractInsnNode, values: List<BasicValue>): BasicValue? {
+        val receiver = values.singleOrNull()
+        if (!(receiver is RefValue && insn.isInitialization(receiver.candidate))) {
+            values.forEach { markEscaping(it) }
+        }
+        return super.naryOperation(insn, values)
+    }
+
+    override fun returnOperation(insn: AbstractInsnNode, value: BasicValue, expected: BasicValue) {
+        markEscaping(value)
+        super.returnOperation(insn, value, expected)
+    }
+
+    override fun merge(v: BasicValue, w: BasicValue): BasicValue {
+        val merged = v.refCandidates() + w.refCandidates()
+        if (merged.isEmpty()) return super.merge(v, w)
+
+        // The verifier doesn't allow to use a variable which is uninitialized on some path
+        if (v === BasicValue.UNINITIALIZED_VALUE || w === BasicValue.UNINITIALIZED_VALUE) return BasicValue.UNINITIALIZED_VALUE
+
+        if (v is RefValue && v == w) return v
+        return MergedRefValue(merged)
+    }
+}
+
+private fun markEscaping(value: BasicValue?) {
+    when (value) {
+        is RefValue -> value.candidate.escapes = true
+        is MergedRefValue -> value.candidates.forEach { it.escapes = true }
+    }
+}
+
+private fun BasicValue?.refCandidates(): Set<RefCandidate> =
+        when (this) {
+            is RefValue -> setOf(candidate)
+            is MergedRefValue -> candidates
+            else -> emptySet()
+        }
+
+private fun BasicValue?.replacedCandidate(): RefCandidate? {
+    val candidate = (this as? RefValue)?.candidate ?: return null
+    return if (candidate.escapes) null else candidate
+}
+
+private fun Frame<BasicValue>.peek(depth: Int): BasicValue = getStack(getStackSize() - 1 - depth)
+
+private fun AbstractInsnNode.isElementAccess(candidate: RefCandidate): Boolean {
+    val field = this as? FieldInsnNode ?: return false
+    return field.owner == candidate.allocation.desc && field.name == "element"
+}
+
+private fun AbstractInsnNode.isInitialization(candidate: RefCandidate): Boolean {
+    val method = this as? MethodInsnNode ?: return false
+    return method.getOpcode() == Opcodes.INVOKESPECIAL &&
+           method.owner == candidate.allocation.desc && method.name == "<init>" && method.desc == "()V"
+}
+
+private fun AbstractInsnNode.refElementType(): Type? =
+        if (getOpcode() == Opcodes.NEW) REF_ELEMENT_TYPES[(this as TypeInsnNode).desc] else null
+
+private fun defaultValueOpcode(type: Type): Int =
+        when (type.getSort()) {
+            Type.LONG -> Opcodes.LCONST_0
+            Type.FLOAT -> Opcodes.FCONST_0
+            Type.DOUBLE -> Opcodes.DCONST_0
+            Type.OBJECT -> Opcodes.ACONST_NULL
+            else -> Opcodes.ICONST_0
+        }
+
+private val REF_ELEMENT_TYPES: Map<String, Type> = hashMapOf(
+        AsmTypes.OBJECT_REF_TYPE.getInternalName() to AsmTypes.OBJECT_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "BooleanRef" to Type.BOOLEAN_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "CharRef" to Type.CHAR_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "ByteRef" to Type.BYTE_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "ShortRef" to Type.SHORT_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "IntRef" to Type.INT_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "FloatRef" to Type.FLOAT_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "LongRef" to Type.LONG_TYPE,
+        AsmTypes.REF_TYPE_PREFIX + "DoubleRef" to Type.DOUBLE_TYPE
+)
@@ -19,7 +19,10 @@ package org.jetbrains.kotlin.codegen.optimization.boxing;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.intellij.openapi.util.Pair;
+import kotlin.jvm.functions.Function1;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockAnalyzer;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodAnalysisCache;
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
 import org.jetbrains.org.objectweb.asm.Opcodes;
 import org.jetbrains.org.objectweb.asm.Type;
@@ -34,24 +37,66 @@ public class RedundantBoxingMethodTransformer extends MethodTransformer {
 
     @Override
     public void transform(@NotNull String internalClassName, @NotNull MethodNode node) {
+        transform(internalClassName, node, new MethodAnalysisCache(node));
+    }
+
+    @Override
+    public boolean transform(@NotNull String internalClassName, @NotNull MethodNode node, @NotNull MethodAnalysisCache analyses) {
         RedundantBoxingInterpreter interpreter = new RedundantBoxingInterpreter(node.instructions);
-        Frame<BasicValue>[] frames = analyze(
-                internalClassName, node, interpreter
-        );
+        Frame<BasicValue>[] frames = new BasicBlockAnalyzer<BasicValue>(
+                internalClassName, analyses.getControlFlowGraph(), interpreter
+        ).analyze(getInstructionsWithFramesUsed(node));
         interpretPopInstructionsForBoxedValues(interpreter, node, frames);
 
         RedundantBoxedValuesCollection valuesToOptimize = interpreter.getCandidatesBoxedValues();
 
-        if (!valuesToOptimize.isEmpty()) {
-            // has side effect on valuesToOptimize and frames, containing BoxedBasicValues that are unsafe to remove
-            removeValuesClashingWithVariables(valuesToOptimize, node, frames);
+        if (valuesToOptimize.isEmpty()) return false;
+
+        // has side effect on valuesToOptimize and frames, containing BoxedBasicValues that are unsafe to remove
+        removeValuesClashingWithVariables(valuesToOptimize, node, frames);
 
-            adaptLocalVariableTableForBoxedValues(node, frames);
+        adaptLocalVariableTableForBoxedValues(node, frames);
+
+        applyVariablesRemapping(node, buildVariablesRemapping(valuesToOptimize, node));
+
+        adaptInstructionsForBoxedValues(node, valuesToOptimize);
+
+        return true;
+    }
 
-            applyVariablesRemapping(node, buildVariablesRemapping(valuesToOptimize, node));
+    @Override
+    public boolean requiresFramesForAllInstructions() {
+        return false;
+    }
 
-            adaptInstructionsForBoxedValues(node, valuesToOptimize);
+    /**
+     * Frames are only read before pops, loads and stores of variables and the first instructions of local variables,
+     * so the other frames aren't kept
+     */
+    @NotNull
+    private static Function1<AbstractInsnNode, Boolean> getInstructionsWithFramesUsed(@NotNull MethodNode node) {
+        final Set<AbstractInsnNode> variableStarts = new HashSet<AbstractInsnNode>();
+        for (LocalVariableNode localVariableNode : node.localVariables) {
+            AbstractInsnNode first = localVariableNode.start.getNext();
+            if (first != null) {
+                variableStarts.add(first);
+            }
         }
+
+        return new Function1<AbstractInsnNode, Boolean>() {
+            @Override
+            public Boolean invoke(AbstractInsnNode insn) {
+                switch (insn.getOpcode()) {
+                    case Opcodes.POP:
+                    case Opcodes.POP2:
+                    case Opcodes.ALOAD:
+                    case Opcodes.ASTORE:
+                        return true;
+                    default:
+                        return variableStarts.contains(insn);
+                }
+            }
+        };
     }
 
     private static void interpretPopInstructionsForBoxedValues(
@@ -16,7 +16,10 @@
 
 package org.jetbrains.kotlin.codegen.optimization.boxing;
 
+import kotlin.jvm.functions.Function1;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockAnalyzer;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodAnalysisCache;
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
 import org.jetbrains.org.objectweb.asm.Opcodes;
 import org.jetbrains.org.objectweb.asm.tree.*;
@@ -28,19 +31,44 @@ import java.util.List;
 
 public class RedundantNullCheckMethodTransformer extends MethodTransformer {
 
+    private static final Function1<AbstractInsnNode, Boolean> IS_NULL_CHECK = new Function1<AbstractInsnNode, Boolean>() {
+        @Override
+        public Boolean invoke(AbstractInsnNode insn) {
+            return insn.getOpcode() == Opcodes.IFNULL || insn.getOpcode() == Opcodes.IFNONNULL;
+        }
+    };
+
     @Override
     public void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode) {
-        while (removeRedundantNullCheckPass(internalClassName, methodNode)) {
-            //do nothing
+        transform(internalClassName, methodNode, new MethodAnalysisCache(methodNode));
+    }
+
+    @Override
+    public boolean transform(@NotNull String internalClassName, @NotNull MethodNode methodNode, @NotNull MethodAnalysisCache analyses) {
+        boolean changed = false;
+        while (removeRedundantNullCheckPass(internalClassName, methodNode, analyses)) {
+            analyses.invalidate();
+            changed = true;
         }
+        return changed;
+    }
+
+    @Override
+    public boolean requiresFramesForAllInstructions() {
+        return false;
     }
 
-    private static boolean removeRedundantNullCheckPass(@NotNull String internalClassName, @NotNull MethodNode methodNode) {
+    private static boolean removeRedundantNullCheckPass(
+            @NotNull String internalClassName,
+            @NotNull MethodNode methodNode,
+            @NotNull MethodAnalysisCache analyses
+    ) {
         InsnList insnList = methodNode.instructions;
-        Frame<BasicValue>[] frames = analyze(
-                internalClassName, methodNode,
+        // Only frames before null checks are needed, so they're the only ones kept
+        Frame<BasicValue>[] frames = new BasicBlockAnalyzer<BasicValue>(
+                internalClassName, analyses.getControlFlowGraph(),
                 new NullabilityInterpreter(insnList)
-        );
+        ).analyze(IS_NULL_CHECK);
 
         List<AbstractInsnNode> insnsToOptimize = new ArrayList<AbstractInsnNode>();
 
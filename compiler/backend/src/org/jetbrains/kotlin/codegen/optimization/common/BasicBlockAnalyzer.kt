@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+
+/**
+ * Data flow analysis equivalent to the one of [MethodAnalyzer], which only keeps frames at the entries of the basic blocks of [cfg].
+ *
+ * Frames inside of a block are obtained by interpreting the block from its entry frame, and only the frames requested by
+ * the caller are stored. Memory used by the analysis is proportional to the number of blocks rather than instructions,
+ * so methods which are too large to keep a frame for every instruction can still be analyzed.
+ */
+public class BasicBlockAnalyzer<V : Value>(
+        private val owner: String,
+        private val cfg: ControlFlowGraph,
+        private val interpreter: Interpreter<V>
+) {
+    private val method = cfg.method
+
+    private val entryFrames = arrayOfNulls<Frame<V>>(cfg.blockCount)
+    private val queued = BooleanArray(cfg.blockCount)
+    private val queue = IntArray(cfg.blockCount)
+    private var top = 0
+
+    private val current = Frame<V>(method.maxLocals, method.maxStack)
+    private val handler = Frame<V>(method.maxLocals, method.maxStack)
+
+    /**
+     * @return frames before the instructions accepted by [keepFrame], other elements and elements for unreachable instructions are null
+     */
+    public fun analyze(keepFrame: (AbstractInsnNode) -> Boolean): Array<Frame<V>?> {
+        val result = arrayOfNulls<Frame<V>>(cfg.insnCount)
+        if (cfg.insnCount == 0) return result
+
+        mergeControlFlowEdge(0, createInitialFrame())
+
+        while (top > 0) {
+            val block = queue[--top]
+            queued[block] = false
+            interpretBlock(block) { insn, frame -> }
+        }
+
+        // Entry frames are final at this point, so interpreting the blocks again doesn't change anything but gives the frames inside them
+        for (block in 0..cfg.blockCount - 1) {
+            if (entryFrames[block] == null) continue
+            interpretBlock(block) { insn, frame ->
+                if (keepFrame(cfg.getInsn(insn))) {
+                    result[insn] = Frame(frame)
+                }
+            }
+        }
+
+        return result
+    }
+
+    private inline fun interpretBlock(block: Int, visitFrame: (Int, Frame<V>) -> Unit) {
+        current.init(entryFrames[block]!!)
+
+        for (insn in cfg.blockStart(block)..cfg.blockEnd(block) - 1) {
+            visitFrame(insn, current)
+
+            cfg.getHandlers(insn)?.forEach { tcb ->
+                handler.init(current)
+                handler.clearStack()
+                handler.push(interpreter.newValue(Type.getObjectType(tcb.type ?: "java/lang/Throwable")))
+                mergeControlFlowEdge(cfg.blockOf(cfg.indexOf(tcb.handler)), handler)
+            }
+
+            val insnNode = cfg.getInsn(insn)
+            val insnType = insnNode.type
+            if (insnType != AbstractInsnNode.LABEL && insnType != AbstractInsnNode.LINE && insnType != AbstractInsnNode.FRAME) {
+                try {
+                    current.execute(insnNode, interpreter)
+                }
+                catch (e: AnalyzerException) {
+                    throw AnalyzerException(e.node, "Error at instruction " + insn + ": " + e.message, e)
+                }
+                catch (e: Exception) {
+                    throw AnalyzerException(insnNode, "Error at instruction " + insn + ": " + e.message, e)
+                }
+            }
+        }
+
+        cfg.forEachSuccessor(block) { mergeControlFlowEdge(it, current) }
+    }
+
+    private fun createInitialFrame(): Frame<V> {
+        val frame = Frame<V>(method.maxLocals, method.maxStack)
+        frame.setReturn(interpreter.newValue(Type.getReturnType(method.desc)))
+
+        var local = 0
+        if ((method.access and Opcodes.ACC_STATIC) == 0) {
+            frame.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)))
+        }
+        for (arg in Type.getArgumentTypes(method.desc)) {
+            frame.setLocal(local++, interpreter.newValue(arg))
+            if (arg.size == 2) {
+                frame.setLocal(local++, interpreter.newValue(null))
+            }
+        }
+        while (local < method.maxLocals) {
+            frame.setLocal(local++, interpreter.newValue(null))
+        }
+
+        return frame
+    }
+
+    private fun mergeControlFlowEdge(block: Int, frame: Frame<V>) {
+        val oldFrame = entryFrames[block]
+        val changes =
+                if (oldFrame == null) {
+                    entryFrames[block] = Frame(frame)
+                    true
+                }
+                else {
+                    oldFrame.merge(frame, interpreter)
+                }
+
+        if (changes && !queued[block]) {
+            queued[block] = true
+            queue[top++] = block
+        }
+    }
+}
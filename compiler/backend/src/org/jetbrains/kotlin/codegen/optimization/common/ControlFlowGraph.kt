@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.*
+import java.util.*
+
+/**
+ * Basic blocks of a method and control flow edges between them.
+ *
+ * Blocks start at jump targets, exception handlers and instructions following jumps, switches, returns and throws, so all
+ * instructions of a block are executed one after another. Edges are stored in flat arrays, the graph takes a few ints per
+ * instruction regardless of the size of the frames of the method.
+ *
+ * The graph describes the instructions of the method at the moment of its construction and should be rebuilt after they change.
+ */
+public class ControlFlowGraph private constructor(
+        public val method: MethodNode,
+        private val instructions: Array<AbstractInsnNode>,
+        private val blockStarts: IntArray,
+        private val blockOfInsn: IntArray,
+        private val successorOffsets: IntArray,
+        private val successors: IntArray,
+        private val handlers: Array<out List<TryCatchBlockNode>?>
+) {
+    public val blockCount: Int get() = blockStarts.size()
+
+    public val insnCount: Int get() = instructions.size()
+
+    public fun getInsn(index: Int): AbstractInsnNode = instructions[index]
+
+    public fun blockStart(block: Int): Int = blockStarts[block]
+
+    /**
+     * @return index of the instruction following the last instruction of the block
+     */
+    public fun blockEnd(block: Int): Int = if (block + 1 < blockStarts.size()) blockStarts[block + 1] else instructions.size()
+
+    public fun blockOf(insn: Int): Int = blockOfInsn[insn]
+
+    public inline fun forEachSuccessor(block: Int, body: (Int) -> Unit) {
+        for (i in successorsStart(block)..successorsEnd(block) - 1) {
+            body(successor(i))
+        }
+    }
+
+    public fun successorsStart(block: Int): Int = successorOffsets[block]
+
+    public fun successorsEnd(block: Int): Int = successorOffsets[block + 1]
+
+    public fun successor(i: Int): Int = successors[i]
+
+    /**
+     * @return try/catch blocks covering the instruction
+     */
+    public fun getHandlers(insn: Int): List<TryCatchBlockNode>? = handlers[insn]
+
+    public fun indexOf(label: LabelNode): Int = method.instructions.indexOf(label)
+
+    /**
+     * @return for each instruction, whether it can be executed
+     */
+    public fun computeReachableInstructions(): BooleanArray {
+        val reachable = BooleanArray(instructions.size())
+        if (instructions.isEmpty()) return reachable
+
+        val visited = BooleanArray(blockCount)
+        val queue = IntArray(blockCount)
+        var top = 0
+        visited[0] = true
+        queue[top++] = 0
+
+        fun enqueue(block: Int) {
+            if (!visited[block]) {
+                visited[block] = true
+                queue[top++] = block
+            }
+        }
+
+        while (top > 0) {
+            val block = queue[--top]
+            for (insn in blockStart(block)..blockEnd(block) - 1) {
+                reachable[insn] = true
+                handlers[insn]?.forEach { enqueue(blockOf(indexOf(it.handler))) }
+            }
+            forEachSuccessor(block) { enqueue(it) }
+        }
+
+        return reachable
+    }
+
+    companion object {
+        @JvmStatic
+        public fun build(method: MethodNode): ControlFlowGraph {
+            val insnList = method.instructions
+            val instructions = insnList.toArray()
+            val n = instructions.size()
+
+            val handlers = arrayOfNulls<MutableList<TryCatchBlockNode>>(n)
+            val isBlockStart = BooleanArray(n + 1)
+            if (n > 0) isBlockStart[0] = true
+
+            for (tcb in method.tryCatchBlocks) {
+                val begin = insnList.indexOf(tcb.start)
+                val end = insnList.indexOf(tcb.end)
+                for (i in begin..end - 1) {
+                    val insnHandlers = handlers[i] ?: ArrayList<TryCatchBlockNode>(1)
+                    insnHandlers.add(tcb)
+                    handlers[i] = insnHandlers
+                }
+                isBlockStart[insnList.indexOf(tcb.handler)] = true
+            }
+
+            for (i in 0..n - 1) {
+                val insn = instructions[i]
+                when (insn) {
+                    is JumpInsnNode -> isBlockStart[insnList.indexOf(insn.label)] = true
+                    is TableSwitchInsnNode -> (insn.labels + insn.dflt).forEach { isBlockStart[insnList.indexOf(it)] = true }
+                    is LookupSwitchInsnNode -> (insn.labels + insn.dflt).forEach { isBlockStart[insnList.indexOf(it)] = true }
+                }
+                if (insn.endsBlock()) {
+                    isBlockStart[i + 1] = true
+                }
+            }
+
+            val blockOfInsn = IntArray(n)
+            var blockCount = 0
+            for (i in 0..n - 1) {
+                if (isBlockStart[i]) blockCount++
+                blockOfInsn[i] = blockCount - 1
+            }
+
+            val blockStarts = IntArray(blockCount)
+            for (i in n - 1 downTo 0) {
+                blockStarts[blockOfInsn[i]] = i
+            }
+
+            val successorOffsets = IntArray(blockCount + 1)
+            var successors = IntArray(blockCount + 1)
+            var size = 0
+
+            fun addSuccessor(insn: Int) {
+                if (size == successors.size()) successors = Arrays.copyOf(successors, size * 2)
+                successors[size++] = blockOfInsn[insn]
+            }
+
+            for (block in 0..blockCount - 1) {
+                successorOffsets[block] = size
+                val lastIndex = (if (block + 1 < blockCount) blockStarts[block + 1] else n) - 1
+                val last = instructions[lastIndex]
+                val opcode = last.opcode
+                when {
+                    last is JumpInsnNode -> {
+                        if (opcode != Opcodes.GOTO && lastIndex + 1 < n) addSuccessor(lastIndex + 1)
+                        addSuccessor(insnList.indexOf(last.label))
+                    }
+                    last is TableSwitchInsnNode -> (last.labels + last.dflt).forEach { addSuccessor(insnList.indexOf(it)) }
+                    last is LookupSwitchInsnNode -> (last.labels + last.dflt).forEach { addSuccessor(insnList.indexOf(it)) }
+                    opcode == Opcodes.ATHROW || opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN -> {}
+                    lastIndex + 1 < n -> addSuccessor(lastIndex + 1)
+                }
+            }
+            successorOffsets[blockCount] = size
+
+            return ControlFlowGraph(method, instructions, blockStarts, blockOfInsn, successorOffsets, Arrays.copyOf(successors, size), handlers)
+        }
+
+        private fun AbstractInsnNode.endsBlock(): Boolean {
+            val opcode = opcode
+            return this is JumpInsnNode || this is TableSwitchInsnNode || this is LookupSwitchInsnNode ||
+                   opcode == Opcodes.ATHROW || opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.transformer
+
+import org.jetbrains.kotlin.codegen.optimization.common.ControlFlowGraph
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+/**
+ * Analyses of a method shared by the passes of [MethodPassManager]. They are computed on the first request and kept until
+ * a pass changes the method, any change invalidates all of them.
+ */
+public class MethodAnalysisCache(private val method: MethodNode) {
+    private var controlFlowGraph: ControlFlowGraph? = null
+    private var reachableInstructions: BooleanArray? = null
+
+    public fun getControlFlowGraph(): ControlFlowGraph =
+            controlFlowGraph ?: ControlFlowGraph.build(method).apply { controlFlowGraph = this }
+
+    public fun getReachableInstructions(): BooleanArray =
+            reachableInstructions ?: getControlFlowGraph().computeReachableInstructions().apply { reachableInstructions = this }
+
+    public fun invalidate() {
+        controlFlowGraph = null
+        reachableInstructions = null
+    }
+}
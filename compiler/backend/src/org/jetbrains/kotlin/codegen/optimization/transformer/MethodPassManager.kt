@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.transformer
+
+import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs transformers over a method one after another, sharing the control flow graph of the method between them.
+ *
+ * Frames are not shared, each pass computes them with its own interpreter. Transformers which keep a frame for every instruction
+ * are skipped if the frames of the method would exceed [memoryLimitMb], the others are applied to methods of any size.
+ * The time spent in each pass is reported with -Xreport-perf, as well as the methods which took longer than
+ * [SLOW_METHOD_THRESHOLD_MS] to transform, see [recordMethodTime].
+ */
+public class MethodPassManager(private val memoryLimitMb: Int, vararg passes: MethodTransformer) {
+    private val passes = passes.map { Pass(it, PerformanceCounter.create("Method optimization: ${it.javaClass.simpleName}")) }
+
+    public fun transform(internalClassName: String, methodNode: MethodNode) {
+        val analyses = MethodAnalysisCache(methodNode)
+        val allFramesFit = framesSizeMb(methodNode) < memoryLimitMb
+
+        for (pass in passes) {
+            if (!allFramesFit && pass.transformer.requiresFramesForAllInstructions()) {
+                skippedLargeMethodsCounter.increment()
+                continue
+            }
+
+            val changed = pass.counter.time {
+                pass.transformer.transform(internalClassName, methodNode, analyses)
+            }
+            if (changed) {
+                analyses.invalidate()
+            }
+        }
+    }
+
+    private class Pass(val transformer: MethodTransformer, val counter: PerformanceCounter)
+
+    private class SlowMethod(val description: String, val millis: Long)
+
+    companion object {
+        public val SLOW_METHOD_THRESHOLD_MS: Long = 100
+        private val MAX_REPORTED_SLOW_METHODS = 20
+
+        private val skippedLargeMethodsCounter = PerformanceCounter.create("Method optimization skipped because of frames size")
+
+        // the slowest methods since the last report, at most MAX_REPORTED_SLOW_METHODS of them
+        private val slowMethods = ArrayList<SlowMethod>()
+
+        @JvmStatic
+        public fun recordMethodTime(internalClassName: String, methodNode: MethodNode, nanos: Long) {
+            val millis = TimeUnit.NANOSECONDS.toMillis(nanos)
+            if (millis < SLOW_METHOD_THRESHOLD_MS) return
+
+            val slowMethod = SlowMethod("$internalClassName.${methodNode.name}${methodNode.desc}", millis)
+            synchronized(slowMethods) {
+                if (slowMethods.size() < MAX_REPORTED_SLOW_METHODS) {
+                    slowMethods.add(slowMethod)
+                    return
+                }
+                val fastest = slowMethods.indices.minBy { slowMethods[it].millis }!!
+                if (slowMethods[fastest].millis < millis) {
+                    slowMethods[fastest] = slowMethod
+                }
+            }
+        }
+
+        @JvmStatic
+        public fun reportSlowMethods(consumer: (String) -> Unit) {
+            val reported = synchronized(slowMethods) {
+                val copy = slowMethods.sortedByDescending { it.millis }
+                slowMethods.clear()
+                copy
+            }
+            for (method in reported) {
+                consumer("Method transformation of ${method.description} took ${method.millis} ms")
+            }
+        }
+
+        @JvmStatic
+        public fun framesSizeMb(node: MethodNode): Int =
+                (node.instructions.size().toLong() * (node.maxLocals + node.maxStack) / (1024 * 1024)).toInt()
+    }
+}
@@ -49,4 +49,23 @@ public abstract class MethodTransformer {
     }
 
     abstract public void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode);
+
+    /**
+     * Transforms the method as a pass of {@link MethodPassManager}, which invalidates the shared analyses if the method has changed.
+     * Transformers which can't tell whether they have changed the method don't override it and are treated as changing it.
+     *
+     * @return true if the method has been changed
+     */
+    public boolean transform(@NotNull String internalClassName, @NotNull MethodNode methodNode, @NotNull MethodAnalysisCache analyses) {
+        transform(internalClassName, methodNode);
+        return true;
+    }
+
+    /**
+     * @return true if the transformer keeps a frame for each instruction of the method, so that it should be skipped for methods
+     * for which the frames would take too much memory
+     */
+    public boolean requiresFramesForAllInstructions() {
+        return true;
+    }
 }
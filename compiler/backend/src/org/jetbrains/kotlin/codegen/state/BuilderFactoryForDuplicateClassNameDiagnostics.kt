@@ -22,6 +22,7 @@ import org.jetbrains.kotlin.diagnostics.DiagnosticSink
 import org.jetbrains.kotlin.renderer.DescriptorRenderer
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.ErrorsJvm
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin
+import java.util.concurrent.ConcurrentHashMap
 
 
 class BuilderFactoryForDuplicateClassNameDiagnostics(
@@ -29,10 +30,11 @@ class BuilderFactoryForDuplicateClassNameDiagnostics(
         private val diagnostics: DiagnosticSink
 ) : ClassNameCollectionClassBuilderFactory(builderFactory) {
 
-    private val className = hashMapOf<String, JvmDeclarationOrigin> ()
+    // classes are generated on several threads with parallel codegen
+    private val className = ConcurrentHashMap<String, JvmDeclarationOrigin>()
 
     override fun handleClashingNames(internalName: String, origin: JvmDeclarationOrigin) {
-        val another = className.getOrPut(internalName, { origin })
+        val another = className.putIfAbsent(internalName, origin) ?: origin
         //workaround for inlined anonymous objects
         if (origin.element != another.element) {
             reportError(internalName, origin, another)
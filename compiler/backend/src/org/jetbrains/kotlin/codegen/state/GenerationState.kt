@@ -24,10 +24,12 @@ import org.jetbrains.kotlin.codegen.binding.CodegenBinding
 import org.jetbrains.kotlin.codegen.context.CodegenContext
 import org.jetbrains.kotlin.codegen.context.RootContext
 import org.jetbrains.kotlin.codegen.extensions.ClassBuilderInterceptorExtension
+import org.jetbrains.kotlin.codegen.inline.InlineMethodNodeCache
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
 import org.jetbrains.kotlin.codegen.optimization.OptimizationClassBuilderFactory
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.ScriptDescriptor
+import org.jetbrains.kotlin.diagnostics.Diagnostic
 import org.jetbrains.kotlin.diagnostics.DiagnosticSink
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCache
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
@@ -39,6 +41,9 @@ import org.jetbrains.kotlin.psi.JetScript
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingTrace
 import org.jetbrains.kotlin.resolve.DelegatingBindingTrace
+import org.jetbrains.kotlin.storage.LockBasedLazyResolveStorageManager
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.StorageManager
 import java.io.File
 
 public class GenerationState @JvmOverloads constructor(
@@ -53,7 +58,7 @@ public class GenerationState @JvmOverloads constructor(
         disableInline: Boolean = false,
         disableOptimization: Boolean = false,
         public val packageFacadesAsMultifileClasses: Boolean = false,
-        public val diagnostics: DiagnosticSink = DiagnosticSink.DO_NOTHING,
+        diagnostics: DiagnosticSink = DiagnosticSink.DO_NOTHING,
         public val packagesWithObsoleteParts: Collection<FqName> = emptySet(),
         public val obsoleteMultifileClasses: Collection<FqName> = emptySet(),
         // for PackageCodegen in incremental compilation mode
@@ -64,7 +69,9 @@ public class GenerationState @JvmOverloads constructor(
         // TODO: get rid of it with the proper module infrastructure
         public val outDirectory: File? = null,
         public val incrementalCompilationComponents: IncrementalCompilationComponents? = null,
-        public val progress: Progress = Progress.DEAF
+        public val progress: Progress = Progress.DEAF,
+        // generate package parts and multifile class parts on several threads, see KotlinCodegenFacade
+        parallelCodegen: Boolean = false
 ) {
     public abstract class GenerateClassFilter {
         public abstract fun shouldAnnotateClass(classOrObject: JetClassOrObject): Boolean
@@ -92,14 +99,25 @@ public class GenerationState @JvmOverloads constructor(
                 incrementalCompilationComponents.getIncrementalCache(targetId)
             else null
 
+    public val isParallelCodegen: Boolean = parallelCodegen
+        @JvmName("isParallelCodegen") get
+
+    private val codegenStorageManager = if (parallelCodegen) LockBasedLazyResolveStorageManager(LockBasedStorageManager()) else null
+
+    public val diagnostics: DiagnosticSink =
+            if (codegenStorageManager != null) LockProtectedDiagnosticSink(codegenStorageManager, diagnostics) else diagnostics
+
     public val moduleName: String = moduleName ?: JvmCodegenUtil.getModuleName(module)
     public val classBuilderMode: ClassBuilderMode = builderFactory.getClassBuilderMode()
-    public val bindingTrace: BindingTrace = DelegatingBindingTrace(bindingContext, "trace in GenerationState")
+    public val bindingTrace: BindingTrace = DelegatingBindingTrace(bindingContext, "trace in GenerationState").let {
+        codegenStorageManager?.createSafeTrace(it) ?: it
+    }
     public val bindingContext: BindingContext = bindingTrace.getBindingContext()
     public val typeMapper: JetTypeMapper = JetTypeMapper(this.bindingContext, classBuilderMode, fileClassesProvider, getIncrementalCacheForThisTarget(), this.moduleName)
     public val intrinsics: IntrinsicMethods = IntrinsicMethods()
     public val samWrapperClasses: SamWrapperClasses = SamWrapperClasses(this)
-    public val inlineCycleReporter: InlineCycleReporter = InlineCycleReporter(diagnostics)
+    public val inlineCycleReporter: InlineCycleReporter = InlineCycleReporter(this.diagnostics)
+    public val inlineMethodNodeCache: InlineMethodNodeCache = InlineMethodNodeCache()
     public val mappingsClassesForWhenByEnum: MappingsClassesForWhenByEnum = MappingsClassesForWhenByEnum(this)
     public var earlierScriptsForReplInterpreter: List<ScriptDescriptor>? = null
     public val reflectionTypes: ReflectionTypes = ReflectionTypes(module)
@@ -123,16 +141,16 @@ public class GenerationState @JvmOverloads constructor(
     init {
         val optimizationClassBuilderFactory = OptimizationClassBuilderFactory(builderFactory, disableOptimization)
         var interceptedBuilderFactory: ClassBuilderFactory = BuilderFactoryForDuplicateSignatureDiagnostics(
-                optimizationClassBuilderFactory, this.bindingContext, diagnostics, fileClassesProvider,
+                optimizationClassBuilderFactory, this.bindingContext, this.diagnostics, fileClassesProvider,
                 getIncrementalCacheForThisTarget(),
                 this.moduleName)
 
-        interceptedBuilderFactory = BuilderFactoryForDuplicateClassNameDiagnostics(interceptedBuilderFactory, diagnostics);
+        interceptedBuilderFactory = BuilderFactoryForDuplicateClassNameDiagnostics(interceptedBuilderFactory, this.diagnostics);
 
         val interceptExtensions = ClassBuilderInterceptorExtension.getInstances(project)
 
         for (extension in interceptExtensions) {
-            interceptedBuilderFactory = extension.interceptClassBuilderFactory(interceptedBuilderFactory, bindingContext, diagnostics)
+            interceptedBuilderFactory = extension.interceptClassBuilderFactory(interceptedBuilderFactory, bindingContext, this.diagnostics)
         }
 
         this.interceptedBuilderFactory = interceptedBuilderFactory
@@ -155,3 +173,9 @@ public class GenerationState @JvmOverloads constructor(
         interceptedBuilderFactory.close()
     }
 }
+
+private class LockProtectedDiagnosticSink(private val storageManager: StorageManager, private val sink: DiagnosticSink) : DiagnosticSink {
+    override fun report(diagnostic: Diagnostic) {
+        storageManager.compute { sink.report(diagnostic) }
+    }
+}
@@ -32,7 +32,7 @@ if not "%_KOTLIN_RUNNER%"=="" (
     org.jetbrains.kotlin.runner.Main %*
 ) else (
   "%_JAVACMD%" %_JAVA_OPTS% -noverify -cp "%_KOTLIN_HOME%\lib\kotlin-preloader.jar" ^
-    org.jetbrains.kotlin.preloading.Preloader -cp "%_KOTLIN_HOME%\lib\kotlin-compiler.jar" ^
+    org.jetbrains.kotlin.preloading.Preloader -lazy -cp "%_KOTLIN_HOME%\lib\kotlin-compiler.jar" ^
     %_KOTLIN_COMPILER% %*
 )
 
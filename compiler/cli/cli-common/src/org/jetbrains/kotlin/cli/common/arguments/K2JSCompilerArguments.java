@@ -58,6 +58,16 @@ public class K2JSCompilerArguments extends CommonCompilerArguments {
     @ValueDescription("<path>")
     public String outputPostfix;
 
+    @Argument(value = "Xmeta-binary", description = "Also generate an index of metadata in binary form (with -meta-info)")
+    public boolean binaryMetaInfo;
+
+    @Argument(value = "Xincremental-cache", description = "Keep the output in the given directory and reuse it if no inputs have changed")
+    @ValueDescription("<path>")
+    public String incrementalCache;
+
+    @Argument(value = "Xparallel-translation", description = "Translate independent source files on several threads")
+    public boolean parallelTranslation;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
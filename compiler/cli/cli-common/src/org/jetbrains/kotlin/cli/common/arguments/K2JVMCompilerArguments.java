@@ -68,6 +68,13 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "Xreport-perf", description = "Report detailed performance statistics")
     public boolean reportPerf;
 
+    @Argument(value = "Xparallel-codegen", description = "Generate bytecode for independent packages on several threads")
+    public boolean parallelCodegen;
+
+    @Argument(value = "Xdependencies-index", description = "Store the index of packages in classpath jars in the given file between compilations")
+    @ValueDescription("<path>")
+    public String dependenciesIndex;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
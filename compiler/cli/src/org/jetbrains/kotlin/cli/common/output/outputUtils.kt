@@ -17,11 +17,14 @@
 package org.jetbrains.kotlin.cli.common.output.outputUtils
 
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.backend.common.output.StreamingOutputFile
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import java.io.BufferedOutputStream
 import java.io.File
+import java.io.FileOutputStream
 import com.intellij.openapi.util.io.FileUtil
 
 public fun OutputFileCollection.writeAll(outputDir: File, report: (sources: List<File>, output: File) -> Unit) {
@@ -29,7 +32,13 @@ public fun OutputFileCollection.writeAll(outputDir: File, report: (sources: List
         val sources = file.sourceFiles
         val output = File(outputDir, file.relativePath)
         report(sources, output)
-        FileUtil.writeToFile(output, file.asByteArray())
+        if (file is StreamingOutputFile) {
+            FileUtil.createParentDirs(output)
+            BufferedOutputStream(FileOutputStream(output)).use { file.writeTo(it) }
+        }
+        else {
+            FileUtil.writeToFile(output, file.asByteArray())
+        }
     }
 }
 
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.js;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection;
+import org.jetbrains.kotlin.cli.common.KotlinVersion;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache.TranslatedMember;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.utils.PathUtil;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Results of the previous translation of a module, which are reused when none of its inputs have changed since then.
+ *
+ * The cache stores a fingerprint of every input separately: the contents of each source file and each other input file
+ * (libraries, output prefix and postfix), the arguments affecting the output and the version of the compiler. Inputs are
+ * invalidated one by one, so an input which was rewritten with the same content (e.g. a library rebuilt without changes)
+ * doesn't invalidate the cache, and the inputs which did change are reported.
+ *
+ * When some inputs have changed, the cache provides the translations of single source files, see {@link TranslatedFileCache}.
+ * The translator decides which of them are still valid, and they are linked into the program instead of translating their files
+ * again. The translations are also keyed by the inputs other than the sources, so all files are translated once a library, an
+ * argument or the compiler changes.
+ */
+public class JsIncrementalCache {
+    private static final String INPUTS_FILE_NAME = "inputs.properties";
+    private static final String OUTPUT_DIR_NAME = "output";
+    private static final String TRANSLATED_FILES_DIR_NAME = "files";
+    private static final String SOURCE_KEY_PREFIX = "source:";
+    private static final String OUTPUT_FILES_KEY = "output.files";
+    private static final String COMPILER_VERSION_KEY = "compiler.version";
+    private static final String COMPILER_KEY = "compiler";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File cacheDir;
+    // written to the cache with the output
+    private final Map<String, TranslatedFile> updatedTranslatedFiles = new LinkedHashMap<String, TranslatedFile>();
+
+    public JsIncrementalCache(@NotNull File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    @NotNull
+    public static Properties computeInputs(
+            @NotNull List<JetFile> sourceFiles,
+            @NotNull List<String> otherInputFiles,
+            @NotNull List<String> arguments
+    ) {
+        Properties inputs = new Properties();
+        inputs.setProperty(COMPILER_VERSION_KEY, KotlinVersion.VERSION);
+        // snapshot builds of the compiler all have the same version
+        inputs.setProperty(COMPILER_KEY, fileStamp(PathUtil.getResourcePathForClass(JsIncrementalCache.class)));
+        for (JetFile sourceFile : sourceFiles) {
+            inputs.setProperty(SOURCE_KEY_PREFIX + getPath(sourceFile), hash(sourceFile.getText().getBytes(UTF8)));
+        }
+        for (String path : otherInputFiles) {
+            inputs.setProperty("file:" + path, fileStampOrHash(new File(path)));
+        }
+        inputs.setProperty("arguments", hash(StringUtil.join(arguments, "\n").getBytes(UTF8)));
+        return inputs;
+    }
+
+    /**
+     * @return the keys of the inputs which were added, removed or changed since the output was cached (in which case the module
+     * should be compiled), or null if there is no cached output
+     */
+    @Nullable
+    public List<String> getChangedInputs(@NotNull Properties inputs) throws IOException {
+        Properties cached = loadInputs();
+        if (cached == null || cached.getProperty(OUTPUT_FILES_KEY) == null) return null;
+        cached.remove(OUTPUT_FILES_KEY);
+
+        Set<String> keys = new TreeSet<String>(inputs.stringPropertyNames());
+        keys.addAll(cached.stringPropertyNames());
+
+        List<String> result = new ArrayList<String>();
+        for (String key : keys) {
+            if (!StringUtil.equals(cached.getProperty(key), inputs.getProperty(key))) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the cached output to the given directory. Should only be called if there are no changed inputs.
+     *
+     * @return false if the cached output is missing, in which case the module should be compiled
+     */
+    public boolean restoreOutput(@NotNull File outputDir) throws IOException {
+        Properties cached = loadInputs();
+        String outputFiles = cached != null ? cached.getProperty(OUTPUT_FILES_KEY) : null;
+        if (outputFiles == null) return false;
+
+        List<String> relativePaths = StringUtil.split(outputFiles, "\n");
+        for (String relativePath : relativePaths) {
+            if (!new File(getOutputDir(), relativePath).isFile()) return false;
+        }
+        for (String relativePath : relativePaths) {
+            FileUtil.copy(new File(getOutputDir(), relativePath), new File(outputDir, relativePath));
+        }
+        return true;
+    }
+
+    /**
+     * @return the translations of single source files, which are valid for the given inputs other than the sources. The translations
+     * put into it are written to the cache by {@link #save}
+     */
+    @NotNull
+    public TranslatedFileCache getTranslatedFileCache(@NotNull Properties inputs) {
+        StringBuilder otherInputs = new StringBuilder();
+        for (String key : new TreeSet<String>(inputs.stringPropertyNames())) {
+            if (!key.startsWith(SOURCE_KEY_PREFIX)) {
+                otherInputs.append(key).append('=').append(inputs.getProperty(key)).append('\n');
+            }
+        }
+        final String otherInputsHash = hash(otherInputs.toString().getBytes(UTF8));
+
+        return new TranslatedFileCache() {
+            @Nullable
+            @Override
+            public List<TranslatedMember> get(@NotNull JetFile file, @NotNull String key) {
+                File translatedFile = getTranslatedFile(getPath(file));
+                if (!translatedFile.isFile()) return null;
+
+                try {
+                    return TranslatedFile.read(translatedFile, otherInputsHash + ":" + key);
+                }
+                catch (IOException e) {
+                    // the file is translated again
+                    return null;
+                }
+            }
+
+            @Override
+            public void put(@NotNull JetFile file, @NotNull String key, @NotNull List<TranslatedMember> members) {
+                updatedTranslatedFiles.put(getPath(file), new TranslatedFile(otherInputsHash + ":" + key, members));
+            }
+        };
+    }
+
+    /**
+     * Copies the output files which have just been written to the given directory into the cache, together with the translations
+     * of the source files which were translated.
+     */
+    public void save(@NotNull Properties inputs, @NotNull OutputFileCollection outputFiles, @NotNull File outputDir) throws IOException {
+        File inputsFile = new File(cacheDir, INPUTS_FILE_NAME);
+        // The inputs are written last, so that an interrupted update leaves the cache invalid rather than inconsistent
+        FileUtil.delete(inputsFile);
+        FileUtil.delete(getOutputDir());
+
+        saveTranslatedFiles(inputs);
+
+        List<String> relativePaths = new ArrayList<String>();
+        for (OutputFile outputFile : outputFiles.asList()) {
+            // The content of an output file may be generated each time it's requested, so it's copied from the written file instead
+            FileUtil.copy(new File(outputDir, outputFile.getRelativePath()), new File(getOutputDir(), outputFile.getRelativePath()));
+            relativePaths.add(outputFile.getRelativePath());
+        }
+
+        Properties cached = new Properties();
+        cached.putAll(inputs);
+        cached.setProperty(OUTPUT_FILES_KEY, StringUtil.join(relativePaths, "\n"));
+
+        FileUtil.createParentDirs(inputsFile);
+        OutputStream stream = new FileOutputStream(inputsFile);
+        try {
+            cached.store(stream, null);
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    private void saveTranslatedFiles(@NotNull Properties inputs) throws IOException {
+        for (Map.Entry<String, TranslatedFile> entry : updatedTranslatedFiles.entrySet()) {
+            entry.getValue().write(getTranslatedFile(entry.getKey()));
+        }
+        updatedTranslatedFiles.clear();
+
+        // translations of the files which are no longer in the module
+        Set<String> sourceFileNames = new HashSet<String>();
+        for (String key : inputs.stringPropertyNames()) {
+            if (key.startsWith(SOURCE_KEY_PREFIX)) {
+                sourceFileNames.add(getTranslatedFile(key.substring(SOURCE_KEY_PREFIX.length())).getName());
+            }
+        }
+        File[] translatedFiles = new File(cacheDir, TRANSLATED_FILES_DIR_NAME).listFiles();
+        if (translatedFiles != null) {
+            for (File translatedFile : translatedFiles) {
+                if (!sourceFileNames.contains(translatedFile.getName())) {
+                    FileUtil.delete(translatedFile);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private File getTranslatedFile(@NotNull String sourcePath) {
+        return new File(new File(cacheDir, TRANSLATED_FILES_DIR_NAME), hash(sourcePath.getBytes(UTF8)));
+    }
+
+    @NotNull
+    private static String getPath(@NotNull JetFile sourceFile) {
+        VirtualFile virtualFile = sourceFile.getVirtualFile();
+        return virtualFile != null ? virtualFile.getPath() : sourceFile.getName();
+    }
+
+    @Nullable
+    private Properties loadInputs() throws IOException {
+        File inputsFile = new File(cacheDir, INPUTS_FILE_NAME);
+        if (!inputsFile.isFile()) return null;
+
+        Properties result = new Properties();
+        InputStream stream = new FileInputStream(inputsFile);
+        try {
+            result.load(stream);
+        }
+        finally {
+            stream.close();
+        }
+        return result;
+    }
+
+    @NotNull
+    private File getOutputDir() {
+        return new File(cacheDir, OUTPUT_DIR_NAME);
+    }
+
+    @NotNull
+    private static String fileStampOrHash(@NotNull File file) {
+        if (!file.isFile()) return fileStamp(file);
+
+        try {
+            return hash(FileUtil.loadFileBytes(file));
+        }
+        catch (IOException e) {
+            // the file will be reported by the compiler, the cache is updated after a successful compilation only
+            return fileStamp(file);
+        }
+    }
+
+    @NotNull
+    private static String fileStamp(@NotNull File file) {
+        if (!file.isDirectory()) {
+            return file.length() + ":" + file.lastModified();
+        }
+
+        long length = 0;
+        long lastModified = 0;
+        int count = 0;
+        Stack<File> directories = new Stack<File>();
+        directories.push(file);
+        while (!directories.isEmpty()) {
+            File[] children = directories.pop().listFiles();
+            if (children == null) continue;
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    directories.push(child);
+                }
+                else {
+                    length += child.length();
+                    lastModified = Math.max(lastModified, child.lastModified());
+                    count++;
+                }
+            }
+        }
+        return count + ":" + length + ":" + lastModified;
+    }
+
+    private static class TranslatedFile {
+        @NotNull
+        private final String key;
+        @NotNull
+        private final List<TranslatedMember> members;
+
+        TranslatedFile(@NotNull String key, @NotNull List<TranslatedMember> members) {
+            this.key = key;
+            this.members = members;
+        }
+
+        void write(@NotNull File file) throws IOException {
+            FileUtil.createParentDirs(file);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                output.writeUTF(key);
+                output.writeInt(members.size());
+                for (TranslatedMember member : members) {
+                    output.writeUTF(member.getName());
+                    // the code may be longer than writeUTF allows
+                    byte[] code = member.getCode().getBytes(UTF8);
+                    output.writeInt(code.length);
+                    output.write(code);
+                }
+            }
+            finally {
+                output.close();
+            }
+        }
+
+        /**
+         * @return the members stored in the file, or null if they were stored with another key
+         */
+        @Nullable
+        static List<TranslatedMember> read(@NotNull File file, @NotNull String key) throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (!key.equals(input.readUTF())) return null;
+
+                int count = input.readInt();
+                List<TranslatedMember> members = new ArrayList<TranslatedMember>(count);
+                for (int i = 0; i < count; i++) {
+                    String name = input.readUTF();
+                    byte[] code = new byte[input.readInt()];
+                    input.readFully(code);
+                    members.add(new TranslatedMember(name, new String(code, UTF8)));
+                }
+                return members;
+            }
+            finally {
+                input.close();
+            }
+        }
+    }
+
+    @NotNull
+    private static String hash(@NotNull byte[] bytes) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(bytes)).toString(16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
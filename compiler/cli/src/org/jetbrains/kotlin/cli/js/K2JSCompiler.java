@@ -20,6 +20,7 @@ import com.google.common.base.Joiner;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Function;
 import com.intellij.util.SmartList;
@@ -52,12 +53,17 @@ import org.jetbrains.kotlin.js.config.EcmaVersion;
 import org.jetbrains.kotlin.js.config.LibrarySourcesConfig;
 import org.jetbrains.kotlin.js.facade.K2JSTranslator;
 import org.jetbrains.kotlin.js.facade.MainCallParameters;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache;
 import org.jetbrains.kotlin.js.facade.TranslationResult;
 import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.utils.PathUtil;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 
 import static org.jetbrains.kotlin.cli.common.ExitCode.COMPILATION_ERROR;
 import static org.jetbrains.kotlin.cli.common.ExitCode.OK;
@@ -138,6 +144,32 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             return COMPILATION_ERROR;
         }
 
+        JsIncrementalCache incrementalCache = null;
+        Properties incrementalCacheInputs = null;
+        if (arguments.incrementalCache != null) {
+            incrementalCache = new JsIncrementalCache(new File(arguments.incrementalCache));
+            incrementalCacheInputs = JsIncrementalCache.computeInputs(
+                    sourcesFiles, getIncrementalCacheInputFiles(arguments), getIncrementalCacheArguments(arguments));
+            try {
+                List<String> changedInputs = incrementalCache.getChangedInputs(incrementalCacheInputs);
+                if (changedInputs != null && !changedInputs.isEmpty()) {
+                    messageSeverityCollector.report(CompilerMessageSeverity.LOGGING,
+                                                    "Inputs changed since the output was cached: " + StringUtil.join(changedInputs, ", "),
+                                                    CompilerMessageLocation.NO_LOCATION);
+                }
+                else if (changedInputs != null && !outputFile.isDirectory() && incrementalCache.restoreOutput(getOutputDir(outputFile))) {
+                    messageSeverityCollector.report(CompilerMessageSeverity.LOGGING,
+                                                    "Sources, libraries and arguments haven't changed, using output from " + arguments.incrementalCache,
+                                                    CompilerMessageLocation.NO_LOCATION);
+                    return OK;
+                }
+            }
+            catch (IOException e) {
+                messageSeverityCollector.report(CompilerMessageSeverity.WARNING,
+                                                "Cannot read incremental cache: " + e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+            }
+        }
+
         AnalyzerWithCompilerReport analyzerWithCompilerReport = analyzeAndReportErrors(messageSeverityCollector, sourcesFiles, config);
         if (analyzerWithCompilerReport.hasErrors()) {
             return COMPILATION_ERROR;
@@ -175,12 +207,16 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         TranslationResult translationResult;
 
         K2JSTranslator translator = new K2JSTranslator(config);
+        TranslatedFileCache translatedFileCache =
+                incrementalCache != null ? incrementalCache.getTranslatedFileCache(incrementalCacheInputs) : null;
+        long translationStart = System.nanoTime();
         try {
             //noinspection unchecked
-            translationResult = translator.translate(sourcesFiles, mainCallParameters, jsAnalysisResult);
+            translationResult = translator.translate(sourcesFiles, mainCallParameters, jsAnalysisResult, translatedFileCache);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        long translationTime = (System.nanoTime() - translationStart) / 1000000;
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
 
@@ -189,6 +225,18 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         if (!(translationResult instanceof TranslationResult.Success)) return ExitCode.COMPILATION_ERROR;
 
         TranslationResult.Success successResult = (TranslationResult.Success) translationResult;
+        if (translatedFileCache != null) {
+            messageSeverityCollector.report(CompilerMessageSeverity.LOGGING,
+                                            "Translated " + successResult.getTranslatedFiles().size() + " of " + sourcesFiles.size() +
+                                            " source files, the others are reused from " + arguments.incrementalCache,
+                                            CompilerMessageLocation.NO_LOCATION);
+        }
+        // Use with -Xrepeat to compare the translation time with and without -Xparallel-translation
+        messageSeverityCollector.report(CompilerMessageSeverity.LOGGING,
+                                        "Translation took " + translationTime + " ms, " +
+                                        successResult.getFilesTranslatedInParallel().size() + " of " + sourcesFiles.size() +
+                                        " source files were translated on other threads",
+                                        CompilerMessageLocation.NO_LOCATION);
         OutputFileCollection outputFiles = successResult.getOutputFiles(outputFile, outputPrefixFile, outputPostfixFile);
 
         if (outputFile.isDirectory()) {
@@ -198,16 +246,48 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             return ExitCode.COMPILATION_ERROR;
         }
 
+        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+
+        File outputDir = getOutputDir(outputFile);
+        OutputUtilsPackage.writeAll(outputFiles, outputDir, messageSeverityCollector);
+
+        if (incrementalCache != null) {
+            try {
+                incrementalCache.save(incrementalCacheInputs, outputFiles, outputDir);
+            }
+            catch (IOException e) {
+                messageSeverityCollector.report(CompilerMessageSeverity.WARNING,
+                                                "Cannot update incremental cache: " + e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+            }
+        }
+
+        return OK;
+    }
+
+    @NotNull
+    private static File getOutputDir(@NotNull File outputFile) {
         File outputDir = outputFile.getParentFile();
         if (outputDir == null) {
             outputDir = outputFile.getAbsoluteFile().getParentFile();
         }
+        return outputDir;
+    }
 
-        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
-
-        OutputUtilsPackage.writeAll(outputFiles, outputDir, messageSeverityCollector);
+    @NotNull
+    private static List<String> getIncrementalCacheInputFiles(@NotNull K2JSCompilerArguments arguments) {
+        List<String> result = new ArrayList<String>(getLibraryFiles(arguments));
+        ContainerUtil.addIfNotNull(result, arguments.outputPrefix);
+        ContainerUtil.addIfNotNull(result, arguments.outputPostfix);
+        return result;
+    }
 
-        return OK;
+    @NotNull
+    private static List<String> getIncrementalCacheArguments(@NotNull K2JSCompilerArguments arguments) {
+        return Arrays.asList(
+                arguments.outputFile, arguments.main, arguments.target, arguments.outputPrefix, arguments.outputPostfix,
+                String.valueOf(arguments.sourceMap), String.valueOf(arguments.metaInfo), String.valueOf(arguments.binaryMetaInfo),
+                String.valueOf(arguments.noInline)
+        );
     }
 
     private static void reportCompiledSourcesList(@NotNull MessageCollector messageCollector, @NotNull List<JetFile> sourceFiles) {
@@ -247,6 +327,18 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         String moduleId = FileUtil.getNameWithoutExtension(new File(arguments.outputFile));
         boolean inlineEnabled = !arguments.noInline;
 
+        return new LibrarySourcesConfig.Builder(project, moduleId, getLibraryFiles(arguments))
+                .ecmaVersion(ecmaVersion)
+                .sourceMap(arguments.sourceMap)
+                .inlineEnabled(inlineEnabled)
+                .metaInfo(arguments.metaInfo)
+                .binaryMetaInfo(arguments.metaInfo && arguments.binaryMetaInfo)
+                .parallelTranslation(arguments.parallelTranslation)
+                .build();
+    }
+
+    @NotNull
+    private static List<String> getLibraryFiles(@NotNull K2JSCompilerArguments arguments) {
         List<String> libraryFiles = new SmartList<String>();
         if (!arguments.noStdlib) {
             libraryFiles.add(0, PathUtil.getKotlinPathsForCompiler().getJsStdLibJarPath().getAbsolutePath());
@@ -255,13 +347,7 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         if (arguments.libraryFiles != null) {
             ContainerUtil.addAllNotNull(libraryFiles, arguments.libraryFiles);
         }
-
-        return new LibrarySourcesConfig.Builder(project, moduleId, libraryFiles)
-                .ecmaVersion(ecmaVersion)
-                .sourceMap(arguments.sourceMap)
-                .inlineEnabled(inlineEnabled)
-                .metaInfo(arguments.metaInfo)
-                .build();
+        return libraryFiles;
     }
 
     public static MainCallParameters createMainCallParameters(String main) {
@@ -32,6 +32,7 @@ import org.jetbrains.kotlin.cli.jvm.config.addJavaSourceRoot
 import org.jetbrains.kotlin.cli.jvm.config.addJvmClasspathRoots
 import org.jetbrains.kotlin.cli.jvm.repl.ReplFromTerminal
 import org.jetbrains.kotlin.codegen.CompilationException
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodPassManager
 import org.jetbrains.kotlin.compiler.plugin.CliOptionProcessingException
 import org.jetbrains.kotlin.compiler.plugin.PluginCliOptionProcessingException
 import org.jetbrains.kotlin.compiler.plugin.cliPluginUsageString
@@ -196,6 +197,7 @@ public open class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
                 reportGCTime(environment.configuration)
                 reportCompilationTime(environment.configuration)
                 PerformanceCounter.report { s -> reportPerf(environment.configuration, s) }
+                MethodPassManager.reportSlowMethods { s -> reportPerf(environment.configuration, s) }
             }
             return OK
         }
@@ -273,6 +275,10 @@ public open class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
             configuration.put(JVMConfigurationKeys.DISABLE_INLINE, arguments.noInline)
             configuration.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize)
             configuration.put(JVMConfigurationKeys.PACKAGE_FACADES_AS_MULTIFILE_CLASSES, arguments.packageFacadesAsMultifileClasses);
+            configuration.put(JVMConfigurationKeys.PARALLEL_CODEGEN, arguments.parallelCodegen)
+            if (arguments.dependenciesIndex != null) {
+                configuration.put(JVMConfigurationKeys.DEPENDENCIES_INDEX_FILE, File(arguments.dependenciesIndex))
+            }
         }
 
         private fun getClasspath(paths: KotlinPaths, arguments: K2JVMCompilerArguments): List<File> {
@@ -19,7 +19,6 @@ package org.jetbrains.kotlin.cli.jvm.compiler;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -47,7 +46,8 @@ import java.io.*;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation.NO_LOCATION;
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR;
@@ -79,15 +79,13 @@ public class CompileEnvironmentUtil {
             if (mainClass != null) {
                 mainAttributes.putValue("Main-Class", mainClass.asString());
             }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (OutputFile outputFile : outputFiles.asList()) {
-                stream.putNextEntry(new JarEntry(outputFile.getRelativePath()));
-                stream.write(outputFile.asByteArray());
-            }
+            ParallelJarWriter writer = new ParallelJarWriter(fos);
+            writer.writeManifest(manifest);
+            writer.writeFiles(outputFiles.asList());
             if (includeRuntime) {
-                writeRuntimeToJar(stream);
+                writeRuntimeToJar(writer);
             }
-            stream.finish();
+            writer.finish();
         }
         catch (IOException e) {
             throw new CompileEnvironmentException("Failed to generate jar file", e);
@@ -112,28 +110,13 @@ public class CompileEnvironmentUtil {
         }
     }
 
-    private static void writeRuntimeToJar(JarOutputStream stream) throws IOException {
+    private static void writeRuntimeToJar(ParallelJarWriter writer) throws IOException {
         File runtimePath = PathUtil.getKotlinPathsForCompiler().getRuntimePath();
         if (!runtimePath.exists()) {
             throw new CompileEnvironmentException("Couldn't find runtime library");
         }
 
-        JarInputStream jis = new JarInputStream(new FileInputStream(runtimePath));
-        try {
-            while (true) {
-                JarEntry e = jis.getNextJarEntry();
-                if (e == null) {
-                    break;
-                }
-                if (FileUtilRt.extensionEquals(e.getName(), "class")) {
-                    stream.putNextEntry(e);
-                    FileUtil.copy(jis, stream);
-                }
-            }
-        }
-        finally {
-            jis.close();
-        }
+        writer.copyClassesFrom(runtimePath);
     }
 
     @NotNull
@@ -22,7 +22,7 @@ import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import java.util.ArrayList
 import java.util.EnumSet
-import java.util.HashMap
+import java.util.concurrent.ConcurrentHashMap
 
 public data class JavaRoot(public val file: VirtualFile, public val type: JavaRoot.RootType) {
     public enum class RootType {
@@ -37,43 +37,31 @@ public data class JavaRoot(public val file: VirtualFile, public val type: JavaRo
 }
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-public class JvmDependenciesIndex(_roots: List<JavaRoot>) {
+// thread-safe: information about a package is computed at most once per thread and never changes afterwards,
+// so it can be shared between threads of a multithreaded compiler
+public class JvmDependenciesIndex(
+        _roots: List<JavaRoot>,
+        private val jarPackagesIndex: PersistentJarPackagesIndex? = null
+) {
 
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
-    private val maxIndex: Int
-        get() = roots.size()
-
-    // each "Cache" object corresponds to a package
-    private class Cache {
-        private val innerPackageCaches = HashMap<String, Cache>()
-
-        fun get(name: String) = innerPackageCaches.getOrPut(name) { Cache() }
-
-        // indices of roots that are known to contain this package
-        // if this list contains [1, 3, 5] then roots with indices 1, 3 and 5 are known to contain this package, 2 and 4 are known not to (no information about roots 6 or higher)
-        // if this list contains maxIndex that means that all roots containing this package are known
-        val rootIndices = IntArrayList()
+    // packages contained in each root, if they are known in advance (only for jars when jarPackagesIndex is given)
+    private val rootPackages: List<Lazy<Set<String>?>> by lazy {
+        roots.map { root -> lazy { jarPackagesIndex?.getPackages(root) } }
     }
 
-    // root "Cache" object corresponds to DefaultPackage which exists in every root
-    private val rootCache: Cache by lazy {
-        with(Cache()) {
-            roots.indices.forEach {
-                rootIndices.add(it)
-            }
-            rootIndices.add(maxIndex)
-            rootIndices.trimToSize()
-            this
-        }
-    }
+    // each "PackageInfo" object corresponds to a package and holds the roots which contain it in the order of roots,
+    // along with the directory corresponding to the package in each of those roots
+    private class PackageInfo(val rootIndices: IntArray, val directories: Array<VirtualFile>)
+
+    private val packageInfos = ConcurrentHashMap<FqName, PackageInfo>()
 
     // holds the request and the result last time we searched for class
     // helps improve several scenarios, LazyJavaResolverContext.findClassInJava being the most important
-    private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
+    @Volatile private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
 
 
     // findClassGivenDirectory MUST check whether the class with this classId exists in given package
@@ -109,10 +97,11 @@ public class JvmDependenciesIndex(_roots: List<JavaRoot>) {
         fun doSearch() = doSearch(request, handler)
 
         // make a decision based on information saved from last class search
+        val lastClassSearch = lastClassSearch
         if (request !is FindClassRequest || lastClassSearch == null) {
             return doSearch()
         }
-        val (cachedRequest, cachedResult) = lastClassSearch!!
+        val (cachedRequest, cachedResult) = lastClassSearch
         if (cachedRequest.classId != request.classId) {
             return doSearch()
         }
@@ -140,93 +129,61 @@ public class JvmDependenciesIndex(_roots: List<JavaRoot>) {
     private fun <T : Any> doSearch(request: SearchRequest, handler: (VirtualFile, JavaRoot.RootType) -> HandleResult<T>): T? {
         val findClassRequest = request as? FindClassRequest
 
-        fun <T : Any> found(packageDirectory: VirtualFile, root: JavaRoot, result: T): T {
-            if (findClassRequest != null) {
-                lastClassSearch = Pair(findClassRequest, SearchResult.Found(packageDirectory, root))
-            }
-            return result
-        }
-
-        fun <T : Any> notFound(): T? {
-            if (findClassRequest != null) {
-                lastClassSearch = Pair(findClassRequest, SearchResult.NotFound)
-            }
-            return null
-        }
-
-        fun handle(root: JavaRoot, targetDirInRoot: VirtualFile): T? {
-            if (root.type in request.acceptedRootTypes) {
-                val (result, shouldContinue) = handler(targetDirInRoot, root.type)
-                if (!shouldContinue) {
-                    return result
+        val packageInfo = getPackageInfo(request.packageFqName)
+        val rootIndices = packageInfo.rootIndices
+        for (i in 0..rootIndices.size() - 1) {
+            val root = roots[rootIndices[i]]
+            if (root.type !in request.acceptedRootTypes) continue
+
+            val directoryInRoot = packageInfo.directories[i]
+            val (result, shouldContinue) = handler(directoryInRoot, root.type)
+            if (!shouldContinue && result != null) {
+                if (findClassRequest != null) {
+                    lastClassSearch = Pair(findClassRequest, SearchResult.Found(directoryInRoot, root))
                 }
+                return result
             }
-            return null
         }
 
-        // a list of package sub names, ["org", "jb", "kotlin"]
-        val packagesPath = request.packageFqName.pathSegments().map { it.getIdentifier() }
-        // a list of caches corresponding to packages, [default, "org", "org.jb", "org.jb.kotlin"]
-        val caches = cachesPath(packagesPath)
-
-        var processedRootsUpTo = -1
-        // traverse caches starting from last, which contains most specific information
-
-        // NOTE: indices manipulation instead of using caches.indices.reversed() is here for performance reasons
-        val cachesLastIndex = caches.lastIndex
-        for (cacheIndex in 0..cachesLastIndex) {
-            val reverseCacheIndex = cachesLastIndex - cacheIndex
-            val cache = caches[reverseCacheIndex]
-            for (i in 0..cache.rootIndices.size() - 1) {
-                val rootIndex = cache.rootIndices[i]
-                if (rootIndex <= processedRootsUpTo) continue // roots with those indices have been processed by now
-
-                val directoryInRoot = travelPath(rootIndex, packagesPath, reverseCacheIndex, caches) ?: continue
-                val root = roots[rootIndex]
-                val result = handle(root, directoryInRoot)
-                if (result != null) {
-                    return found(directoryInRoot, root, result)
-                }
-            }
-            processedRootsUpTo = cache.rootIndices.lastOrNull() ?: processedRootsUpTo
+        if (findClassRequest != null) {
+            lastClassSearch = Pair(findClassRequest, SearchResult.NotFound)
         }
-        return notFound()
+        return null
     }
 
-    // try to find a target directory corresponding to package represented by packagesPath in a given root reprenting by index
-    // possibly filling "Cache" objects with new information
-    private fun travelPath(rootIndex: Int, packagesPath: List<String>, fillCachesAfter: Int, cachesPath: List<Cache>): VirtualFile? {
-        if (rootIndex >= maxIndex) {
-            for (i in (fillCachesAfter + 1)..cachesPath.size() - 1) {
-                // we all know roots that contain this package by now
-                cachesPath[i].rootIndices.add(maxIndex)
-                cachesPath[i].rootIndices.trimToSize()
+    // roots containing a package are looked for only among roots containing its parent package
+    // several threads may compute information about the same package simultaneously, the results are equal then
+    private fun getPackageInfo(packageFqName: FqName): PackageInfo {
+        packageInfos[packageFqName]?.let { return it }
+
+        val packageInfo = if (packageFqName.isRoot()) {
+            // default package exists in every root
+            val rootIndices = IntArray(roots.size())
+            for (i in rootIndices.indices) {
+                rootIndices[i] = i
             }
-            return null
+            PackageInfo(rootIndices, roots.map { it.file }.toTypedArray())
         }
-
-        var currentFile = roots[rootIndex].file
-        for (pathIndex in packagesPath.indices) {
-            val subPackageName = packagesPath[pathIndex]
-            currentFile = currentFile.findChild(subPackageName) ?: return null
-            val correspondingCacheIndex = pathIndex + 1
-            if (correspondingCacheIndex > fillCachesAfter) {
-                // subPackageName exists in this root
-                cachesPath[correspondingCacheIndex].rootIndices.add(rootIndex)
+        else {
+            val parentInfo = getPackageInfo(packageFqName.parent())
+            val subPackageName = packageFqName.shortName().asString()
+            val packageFqNameString = packageFqName.asString()
+
+            val rootIndices = IntArrayList()
+            val directories = ArrayList<VirtualFile>()
+            for (i in 0..parentInfo.rootIndices.size() - 1) {
+                val rootIndex = parentInfo.rootIndices[i]
+                val knownPackages = rootPackages[rootIndex].value
+                if (knownPackages != null && packageFqNameString !in knownPackages) continue
+
+                val directory = parentInfo.directories[i].findChild(subPackageName) ?: continue
+                rootIndices.add(rootIndex)
+                directories.add(directory)
             }
+            PackageInfo(rootIndices.toArray(), directories.toTypedArray())
         }
-        return currentFile
-    }
 
-    private fun cachesPath(path: List<String>): List<Cache> {
-        val caches = ArrayList<Cache>()
-        caches.add(rootCache)
-        var currentCache = rootCache
-        for (subPackageName in path) {
-            currentCache = currentCache[subPackageName]
-            caches.add(currentCache)
-        }
-        return caches
+        return packageInfos.putIfAbsent(packageFqName, packageInfo) ?: packageInfo
     }
 
     private data class FindClassRequest(val classId: ClassId, override val acceptedRootTypes: Set<JavaRoot.RootType>) : SearchRequest {
@@ -249,7 +206,4 @@ public class JvmDependenciesIndex(_roots: List<JavaRoot>) {
 
         object NotFound : SearchResult
     }
-}
-
-private fun IntArrayList.lastOrNull() = if (isEmpty()) null else get(size() - 1)
-private val IntArrayList.indices: IntRange get() = 0..size()-1
\ No newline at end of file
+}
\ No newline at end of file
@@ -73,6 +73,7 @@ import org.jetbrains.kotlin.extensions.StorageComponentContainerContributor
 import org.jetbrains.kotlin.idea.JetFileType
 import org.jetbrains.kotlin.load.kotlin.JvmVirtualFileFinderFactory
 import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryDataCache
 import org.jetbrains.kotlin.load.kotlin.ModuleVisibilityManager
 import org.jetbrains.kotlin.parsing.JetParserDefinition
 import org.jetbrains.kotlin.parsing.JetScriptDefinitionProvider
@@ -115,7 +116,13 @@ public class KotlinCoreEnvironment private constructor(
 
         fillClasspath(configuration)
         val fileManager = ServiceManager.getService(project, javaClass<CoreJavaFileManager>())
-        val index = JvmDependenciesIndex(javaRoots)
+        val jarPackagesIndex = configuration.get(JVMConfigurationKeys.DEPENDENCIES_INDEX_FILE)?.let {
+            PersistentJarPackagesIndex.getOrLoad(it)
+        }
+        if (jarPackagesIndex != null) {
+            Disposer.register(parentDisposable, Disposable { jarPackagesIndex.save() })
+        }
+        val index = JvmDependenciesIndex(javaRoots, jarPackagesIndex)
         (fileManager as KotlinCliJavaFileManagerImpl).initIndex(index)
 
         sourceFiles.addAll(CompileEnvironmentUtil.getJetFiles(project, getSourceRootsCheckingForDuplicates(), {
@@ -232,6 +239,8 @@ public class KotlinCoreEnvironment private constructor(
         private val APPLICATION_LOCK = Object()
         private var ourApplicationEnvironment: JavaCoreApplicationEnvironment? = null
         private var ourProjectCount = 0
+        private var ourRetainCount = 0
+        private var ourApplicationEnvironmentOutdated = false
 
         @JvmStatic
         public fun createForProduction(
@@ -242,18 +251,14 @@ public class KotlinCoreEnvironment private constructor(
             Disposer.register(parentDisposable, object : Disposable {
                 override fun dispose() {
                     synchronized (APPLICATION_LOCK) {
-                        if (--ourProjectCount <= 0) {
+                        if (--ourProjectCount <= 0 && (ourRetainCount <= 0 || ourApplicationEnvironmentOutdated)) {
                             disposeApplicationEnvironment()
                         }
+                        (APPLICATION_LOCK as Object).notifyAll()
                     }
                 }
             })
-            val environment = KotlinCoreEnvironment(parentDisposable, getOrCreateApplicationEnvironmentForProduction(configuration, configFilePaths), configuration)
-
-            synchronized (APPLICATION_LOCK) {
-                ourProjectCount++
-            }
-            return environment
+            return KotlinCoreEnvironment(parentDisposable, getOrCreateApplicationEnvironmentForProduction(configuration, configFilePaths), configuration)
         }
 
         @TestOnly
@@ -265,26 +270,74 @@ public class KotlinCoreEnvironment private constructor(
             return KotlinCoreEnvironment(parentDisposable, createApplicationEnvironment(parentDisposable, configuration, extensionConfigs), configuration)
         }
 
-        private fun getOrCreateApplicationEnvironmentForProduction(configuration: CompilerConfiguration, configFilePaths: List<String>): JavaCoreApplicationEnvironment {
+        /**
+         * Keeps the application environment (extension points, application services and opened jars) alive between compilations
+         * until the returned disposable is disposed, even when there are no projects. Used by long-running processes, e.g. the daemon.
+         */
+        @JvmStatic
+        public fun retainApplicationEnvironment(): Disposable {
             synchronized (APPLICATION_LOCK) {
-                if (ourApplicationEnvironment != null) return ourApplicationEnvironment!!
-
-                val parentDisposable = Disposer.newDisposable()
-                ourApplicationEnvironment = createApplicationEnvironment(parentDisposable, configuration, configFilePaths)
-                ourProjectCount = 0
-                Disposer.register(parentDisposable, object : Disposable {
-                    override fun dispose() {
-                        synchronized (APPLICATION_LOCK) {
-                            ourApplicationEnvironment = null
+                ourRetainCount++
+            }
+            return object : Disposable {
+                override fun dispose() {
+                    synchronized (APPLICATION_LOCK) {
+                        if (--ourRetainCount <= 0 && ourProjectCount <= 0) {
+                            disposeApplicationEnvironment()
                         }
                     }
-                })
+                }
+            }
+        }
+
+        /**
+         * Makes the retained application environment be recreated, e.g. when some jar it has opened has changed on disk.
+         * Projects created after this call don't get the outdated environment: they wait until the projects using it are disposed,
+         * and get a new one.
+         */
+        @JvmStatic
+        public fun invalidateApplicationEnvironment() {
+            synchronized (APPLICATION_LOCK) {
+                if (ourProjectCount <= 0) {
+                    disposeApplicationEnvironment()
+                }
+                else {
+                    ourApplicationEnvironmentOutdated = true
+                }
+            }
+        }
+
+        private fun getOrCreateApplicationEnvironmentForProduction(configuration: CompilerConfiguration, configFilePaths: List<String>): JavaCoreApplicationEnvironment {
+            synchronized (APPLICATION_LOCK) {
+                while (ourApplicationEnvironmentOutdated && ourProjectCount > 0) {
+                    (APPLICATION_LOCK as Object).wait()
+                }
+                if (ourApplicationEnvironmentOutdated) {
+                    disposeApplicationEnvironment()
+                }
+
+                if (ourApplicationEnvironment == null) {
+                    val parentDisposable = Disposer.newDisposable()
+                    ourApplicationEnvironment = createApplicationEnvironment(parentDisposable, configuration, configFilePaths)
+                    ourProjectCount = 0
+                    Disposer.register(parentDisposable, object : Disposable {
+                        override fun dispose() {
+                            synchronized (APPLICATION_LOCK) {
+                                ourApplicationEnvironment = null
+                            }
+                        }
+                    })
+                }
+
+                // counted under the same lock, so that the environment can't be disposed before the project is registered
+                ourProjectCount++
                 return ourApplicationEnvironment!!
             }
         }
 
         public fun disposeApplicationEnvironment() {
             synchronized (APPLICATION_LOCK) {
+                ourApplicationEnvironmentOutdated = false
                 if (ourApplicationEnvironment == null) return
                 val environment = ourApplicationEnvironment
                 ourApplicationEnvironment = null
@@ -351,6 +404,7 @@ public class KotlinCoreEnvironment private constructor(
                 registerFileType(JetFileType.INSTANCE, JetParserDefinition.STD_SCRIPT_SUFFIX)
                 registerParserDefinition(JetParserDefinition())
                 getApplication().registerService(javaClass<KotlinBinaryClassCache>(), KotlinBinaryClassCache())
+                getApplication().registerService(javaClass<KotlinBinaryDataCache>(), KotlinBinaryDataCache())
                 getApplication().registerService(javaClass<JavaClassSupers>(), javaClass<JavaClassSupersImpl>())
             }
         }
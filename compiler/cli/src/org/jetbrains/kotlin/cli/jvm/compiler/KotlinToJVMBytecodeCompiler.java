@@ -29,6 +29,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.analyzer.AnalysisResult;
 import org.jetbrains.kotlin.asJava.FilteredJvmDiagnostics;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
 import org.jetbrains.kotlin.cli.common.CompilerPlugin;
 import org.jetbrains.kotlin.cli.common.CompilerPluginContext;
@@ -38,7 +39,9 @@ import org.jetbrains.kotlin.cli.common.output.outputUtils.OutputUtilsPackage;
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
 import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys;
 import org.jetbrains.kotlin.codegen.*;
+import org.jetbrains.kotlin.codegen.inline.InlineMethodNodeCache;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.codegen.state.Progress;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.context.ModuleContext;
 import org.jetbrains.kotlin.idea.MainFunctionDetector;
@@ -66,6 +69,7 @@ import org.jetbrains.kotlin.util.PerformanceCounter;
 import org.jetbrains.kotlin.utils.KotlinPaths;
 
 import java.io.File;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
@@ -132,7 +136,7 @@ public class KotlinToJVMBytecodeCompiler {
                 return input != null ? input.getModuleName() + "-" + input.getModuleType() : "<null>";
             }
         })) + "] ";
-        AnalysisResult result = analyze(environment, targetDescription);
+        AnalysisResult result = analyze(environment, environment.getSourceFiles(), targetDescription);
         if (result == null) {
             return false;
         }
@@ -262,12 +266,7 @@ public class KotlinToJVMBytecodeCompiler {
             @NotNull KotlinPaths paths,
             @NotNull KotlinCoreEnvironment environment
     ) {
-        List<AnalyzerScriptParameter> scriptParameters = environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS);
-        if (!scriptParameters.isEmpty()) {
-            JetScriptDefinitionProvider.getInstance(environment.getProject()).addScriptDefinition(
-                    new JetScriptDefinition(".kts", scriptParameters)
-            );
-        }
+        registerScriptParameters(environment);
         GenerationState state = analyzeAndGenerate(environment);
         if (state == null) {
             return null;
@@ -275,14 +274,7 @@ public class KotlinToJVMBytecodeCompiler {
 
         GeneratedClassLoader classLoader;
         try {
-            List<URL> classPaths = Lists.newArrayList(paths.getRuntimePath().toURI().toURL());
-            for (File file : getJvmClasspathRoots(configuration)) {
-                classPaths.add(file.toURI().toURL());
-            }
-            //noinspection UnnecessaryFullyQualifiedName
-            classLoader = new GeneratedClassLoader(state.getFactory(),
-                                                   new URLClassLoader(classPaths.toArray(new URL[classPaths.size()]), null)
-            );
+            classLoader = new GeneratedClassLoader(state.getFactory(), createScriptParentClassLoader(configuration, paths));
 
             FqName nameForScript = ScriptNameUtil.classNameForScript(environment.getSourceFiles().get(0).getScript());
             return classLoader.loadClass(nameForScript.asString());
@@ -292,9 +284,130 @@ public class KotlinToJVMBytecodeCompiler {
         }
     }
 
+    /**
+     * Compiles all scripts of the environment together. The scripts are analyzed and generated in a single pass, so the libraries
+     * are resolved once for all of them, and the code is generated in parallel if {@link JVMConfigurationKeys#PARALLEL_CODEGEN} is set.
+     *
+     * If the cache directory is given, the class files of each compiled script are stored there, and the scripts which have
+     * already been compiled against the same classpath are loaded from the cache without analysis.
+     *
+     * @return classes of the scripts in the order of the source files, or null if there were compilation errors
+     */
+    @Nullable
+    public static Map<JetFile, Class<?>> compileScripts(
+            @NotNull CompilerConfiguration configuration,
+            @NotNull KotlinPaths paths,
+            @NotNull KotlinCoreEnvironment environment,
+            @Nullable File cacheDir
+    ) {
+        List<AnalyzerScriptParameter> scriptParameters = registerScriptParameters(environment);
+        List<JetFile> scripts = environment.getSourceFiles();
+
+        ScriptCompilationCache cache =
+                cacheDir != null ? new ScriptCompilationCache(cacheDir, getJvmClasspathRoots(configuration), scriptParameters) : null;
+
+        Map<JetFile, File> classesDirs = new HashMap<JetFile, File>();
+        List<JetFile> scriptsToCompile = new ArrayList<JetFile>();
+        for (JetFile script : scripts) {
+            File classesDir = cache != null ? cache.getCompiled(script) : null;
+            if (classesDir != null) {
+                classesDirs.put(script, classesDir);
+            }
+            else {
+                scriptsToCompile.add(script);
+            }
+        }
+        K2JVMCompiler.Companion.reportPerf(configuration, "SCRIPTS: " + scripts.size() + " scripts, " +
+                                                          classesDirs.size() + " loaded from cache");
+
+        GenerationState state = null;
+        if (!scriptsToCompile.isEmpty()) {
+            state = analyzeAndGenerate(environment, scriptsToCompile);
+            if (state == null) {
+                return null;
+            }
+        }
+
+        try {
+            // Each script gets its own class loader, so that scripts with the same class name (e.g. from different directories)
+            // don't clash, and the static state of one script isn't visible to the others
+            ClassLoader parentClassLoader = createScriptParentClassLoader(configuration, paths);
+            Map<JetFile, ClassLoader> classLoaders = new HashMap<JetFile, ClassLoader>();
+            if (cache == null) {
+                assert state != null : "All scripts are compiled when there's no cache";
+                for (JetFile script : scripts) {
+                    classLoaders.put(script, new GeneratedClassLoader(state.getFactory(), parentClassLoader));
+                }
+            }
+            else {
+                if (state != null) {
+                    Map<File, List<OutputFile>> outputsBySource = new HashMap<File, List<OutputFile>>();
+                    for (OutputFile outputFile : state.getFactory().asList()) {
+                        for (File sourceFile : outputFile.getSourceFiles()) {
+                            List<OutputFile> outputs = outputsBySource.get(sourceFile);
+                            if (outputs == null) {
+                                outputs = new ArrayList<OutputFile>();
+                                outputsBySource.put(sourceFile, outputs);
+                            }
+                            outputs.add(outputFile);
+                        }
+                    }
+
+                    for (JetFile script : scriptsToCompile) {
+                        List<OutputFile> outputs = outputsBySource.get(new File(script.getVirtualFile().getPath()));
+                        classesDirs.put(script, cache.save(script, outputs != null ? outputs : Collections.<OutputFile>emptyList()));
+                    }
+                }
+
+                for (Map.Entry<JetFile, File> entry : classesDirs.entrySet()) {
+                    classLoaders.put(entry.getKey(), new URLClassLoader(new URL[] {entry.getValue().toURI().toURL()}, parentClassLoader));
+                }
+            }
+
+            Map<JetFile, Class<?>> result = new LinkedHashMap<JetFile, Class<?>>();
+            for (JetFile script : scripts) {
+                //noinspection ConstantConditions
+                FqName nameForScript = ScriptNameUtil.classNameForScript(script.getScript());
+                result.put(script, classLoaders.get(script).loadClass(nameForScript.asString()));
+            }
+            return result;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate script: " + e, e);
+        }
+    }
+
+    @NotNull
+    private static List<AnalyzerScriptParameter> registerScriptParameters(@NotNull KotlinCoreEnvironment environment) {
+        List<AnalyzerScriptParameter> scriptParameters = environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS);
+        if (!scriptParameters.isEmpty()) {
+            JetScriptDefinitionProvider.getInstance(environment.getProject()).addScriptDefinition(
+                    new JetScriptDefinition(".kts", scriptParameters)
+            );
+        }
+        return scriptParameters;
+    }
+
+    @NotNull
+    private static ClassLoader createScriptParentClassLoader(
+            @NotNull CompilerConfiguration configuration,
+            @NotNull KotlinPaths paths
+    ) throws MalformedURLException {
+        List<URL> classPaths = Lists.newArrayList(paths.getRuntimePath().toURI().toURL());
+        for (File file : getJvmClasspathRoots(configuration)) {
+            classPaths.add(file.toURI().toURL());
+        }
+        return new URLClassLoader(classPaths.toArray(new URL[classPaths.size()]), null);
+    }
+
     @Nullable
     public static GenerationState analyzeAndGenerate(@NotNull KotlinCoreEnvironment environment) {
-        AnalysisResult result = analyze(environment, null);
+        return analyzeAndGenerate(environment, environment.getSourceFiles());
+    }
+
+    @Nullable
+    private static GenerationState analyzeAndGenerate(@NotNull KotlinCoreEnvironment environment, @NotNull List<JetFile> sourceFiles) {
+        AnalysisResult result = analyze(environment, sourceFiles, null);
 
         if (result == null) {
             return null;
@@ -304,18 +417,22 @@ public class KotlinToJVMBytecodeCompiler {
 
         result.throwIfError();
 
-        return generate(environment, result, environment.getSourceFiles(), null, null, null);
+        return generate(environment, result, sourceFiles, null, null, null);
     }
 
     @Nullable
-    private static AnalysisResult analyze(@NotNull final KotlinCoreEnvironment environment, @Nullable String targetDescription) {
+    private static AnalysisResult analyze(
+            @NotNull final KotlinCoreEnvironment environment,
+            @NotNull final List<JetFile> sourceFiles,
+            @Nullable String targetDescription
+    ) {
         MessageCollector collector = environment.getConfiguration().get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY);
         assert collector != null;
 
         long analysisStart = PerformanceCounter.Companion.currentTime();
         AnalyzerWithCompilerReport analyzerWithCompilerReport = new AnalyzerWithCompilerReport(collector);
         analyzerWithCompilerReport.analyzeAndReport(
-                environment.getSourceFiles(), new Function0<AnalysisResult>() {
+                sourceFiles, new Function0<AnalysisResult>() {
                     @NotNull
                     @Override
                     public AnalysisResult invoke() {
@@ -325,7 +442,7 @@ public class KotlinToJVMBytecodeCompiler {
 
                         return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
                                 moduleContext,
-                                environment.getSourceFiles(),
+                                sourceFiles,
                                 sharedTrace,
                                 environment.getConfiguration().get(JVMConfigurationKeys.MODULES),
                                 environment.getConfiguration().get(JVMConfigurationKeys.INCREMENTAL_COMPILATION_COMPONENTS),
@@ -335,17 +452,18 @@ public class KotlinToJVMBytecodeCompiler {
                 }
         );
         long analysisNanos = PerformanceCounter.Companion.currentTime() - analysisStart;
-        String message = "ANALYZE: " + environment.getSourceFiles().size() + " files (" +
-                         environment.getSourceLinesOfCode() + " lines) " +
+        int linesOfCode = sourceFiles == environment.getSourceFiles()
+                          ? environment.getSourceLinesOfCode()
+                          : environment.countLinesOfCode(sourceFiles);
+        String message = "ANALYZE: " + sourceFiles.size() + " files (" + linesOfCode + " lines) " +
                          (targetDescription != null ? targetDescription : "") +
                          "in " + TimeUnit.NANOSECONDS.toMillis(analysisNanos) + " ms";
         K2JVMCompiler.Companion.reportPerf(environment.getConfiguration(), message);
 
         AnalysisResult result = analyzerWithCompilerReport.getAnalysisResult();
-        assert result != null : "AnalysisResult should be non-null, compiling: " + environment.getSourceFiles();
+        assert result != null : "AnalysisResult should be non-null, compiling: " + sourceFiles;
 
-        CompilerPluginContext context = new CompilerPluginContext(environment.getProject(), result.getBindingContext(),
-                                                                  environment.getSourceFiles());
+        CompilerPluginContext context = new CompilerPluginContext(environment.getProject(), result.getBindingContext(), sourceFiles);
         for (CompilerPlugin plugin : environment.getConfiguration().getList(CLIConfigurationKeys.COMPILER_PLUGINS)) {
             plugin.processFiles(context);
         }
@@ -406,7 +524,9 @@ public class KotlinToJVMBytecodeCompiler {
                 targetId,
                 moduleName,
                 outputDirectory,
-                incrementalCompilationComponents
+                incrementalCompilationComponents,
+                Progress.DEAF,
+                configuration.get(JVMConfigurationKeys.PARALLEL_CODEGEN, false)
         );
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
 
@@ -419,6 +539,12 @@ public class KotlinToJVMBytecodeCompiler {
         String message = "GENERATE: " + sourceFiles.size() + " files (" +
                          environment.countLinesOfCode(sourceFiles) + " lines) " + desc + "in " + TimeUnit.NANOSECONDS.toMillis(generationNanos) + " ms";
         K2JVMCompiler.Companion.reportPerf(environment.getConfiguration(), message);
+
+        InlineMethodNodeCache inlineCache = generationState.getInlineMethodNodeCache();
+        K2JVMCompiler.Companion.reportPerf(environment.getConfiguration(),
+                                           "INLINE CACHE: " + inlineCache.getHits() + " hits, " + inlineCache.getMisses() + " misses, " +
+                                           inlineCache.getEvictions() + " evictions, " +
+                                           inlineCache.getEstimatedSize() / 1024 + " KB");
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
 
         AnalyzerWithCompilerReport.reportDiagnostics(
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a jar file without {@link java.util.zip.ZipOutputStream}, which compresses entries one by one on the calling thread.
+ *
+ * Output files are compressed concurrently and written in their original order, with at most a few entries per thread being
+ * kept in memory at a time. Classes from another jar (the runtime) are copied as they are stored there, without being
+ * decompressed and compressed again.
+ */
+class ParallelJarWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final int FLAG_ENCRYPTED = 0x1;
+    // compression options of deflate and the UTF-8 flag are kept when entries are copied, the data descriptor flag is not
+    private static final int FLAGS_TO_COPY = 0x806;
+    private static final int FLAG_UTF8 = 0x800;
+
+    private static final int MAX_ZIP_VALUE = 0xFFFF;
+    private static final long MAX_ZIP_LONG_VALUE = 0xFFFFFFFFL;
+
+    // JarOutputStream marks the first entry of a jar with this extra field
+    private static final byte[] JAR_MAGIC = new byte[] {(byte) 0xFE, (byte) 0xCA, 0, 0};
+    private static final byte[] NO_EXTRA = new byte[0];
+
+    // the number of compressed entries waiting to be written, per thread
+    private static final int ENTRIES_PER_THREAD = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static class Entry {
+        final String name;
+        final byte[] nameBytes;
+        final int flags;
+        final int method;
+        final int dosTime;
+        final int crc;
+        final long compressedSize;
+        final long size;
+        final byte[] extra;
+        long offset;
+
+        Entry(
+                @NotNull String name, @NotNull byte[] nameBytes, int flags, int method, int dosTime, int crc,
+                long compressedSize, long size, @NotNull byte[] extra
+        ) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.extra = extra;
+        }
+    }
+
+    private final OutputStream out;
+    private final int dosTime = toDosTime(System.currentTimeMillis());
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Set<String> names = new HashSet<String>();
+    private long written = 0;
+
+    ParallelJarWriter(@NotNull OutputStream out) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+    }
+
+    public void writeManifest(@NotNull Manifest manifest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        manifest.write(bytes);
+        writeCompressed(compress(JarFile.MANIFEST_NAME, bytes.toByteArray(), JAR_MAGIC));
+    }
+
+    public void writeFiles(@NotNull List<OutputFile> files) throws IOException {
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        if (threads == 1) {
+            for (OutputFile file : files) {
+                writeCompressed(compress(file.getRelativePath(), file.asByteArray(), NO_EXTRA));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<CompressedEntry>> pending = new ArrayDeque<Future<CompressedEntry>>();
+            for (OutputFile file : files) {
+                final String name = file.getRelativePath();
+                final byte[] bytes = file.asByteArray();
+                pending.addLast(executor.submit(new Callable<CompressedEntry>() {
+                    @Override
+                    public CompressedEntry call() {
+                        return compress(name, bytes, NO_EXTRA);
+                    }
+                }));
+                if (pending.size() >= threads * ENTRIES_PER_THREAD) {
+                    writeCompressed(getResult(pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeCompressed(getResult(pending.removeFirst()));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies class files from the given jar. Their compressed data is copied as is if the format of the jar allows,
+     * otherwise they are read and compressed again.
+     */
+    public void copyClassesFrom(@NotNull File jar) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            List<Entry> classes = readClassEntries(file);
+            if (classes != null) {
+                for (Entry entry : classes) {
+                    copyRaw(file, entry);
+                }
+                return;
+            }
+        }
+        finally {
+            file.close();
+        }
+
+        JarInputStream input = new JarInputStream(new FileInputStream(jar));
+        try {
+            while (true) {
+                JarEntry entry = input.getNextJarEntry();
+                if (entry == null) break;
+                if (FileUtilRt.extensionEquals(entry.getName(), "class")) {
+                    writeCompressed(compress(entry.getName(), FileUtil.loadBytes(input), NO_EXTRA));
+                }
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    public void finish() throws IOException {
+        long centralDirectoryOffset = written;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralDirectorySize = written - centralDirectoryOffset;
+
+        boolean zip64 = entries.size() >= MAX_ZIP_VALUE || centralDirectoryOffset >= MAX_ZIP_LONG_VALUE;
+        if (zip64) {
+            writeZip64End(centralDirectoryOffset, centralDirectorySize);
+        }
+
+        ByteBuffer end = littleEndian(END_SIZE);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(entries.size(), MAX_ZIP_VALUE));
+        end.putShort((short) Math.min(entries.size(), MAX_ZIP_VALUE));
+        end.putInt((int) Math.min(centralDirectorySize, MAX_ZIP_LONG_VALUE));
+        end.putInt((int) Math.min(centralDirectoryOffset, MAX_ZIP_LONG_VALUE));
+        end.putShort((short) 0);
+        write(end.array());
+        out.flush();
+    }
+
+    private static class CompressedEntry {
+        final Entry entry;
+        final byte[] data;
+
+        CompressedEntry(@NotNull Entry entry, @NotNull byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+    }
+
+    @NotNull
+    private CompressedEntry compress(@NotNull String name, @NotNull byte[] bytes, @NotNull byte[] extra) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+        }
+        finally {
+            deflater.end();
+        }
+
+        byte[] data = compressed.toByteArray();
+        Entry entry = new Entry(name, name.getBytes(UTF8), FLAG_UTF8, DEFLATED, dosTime, (int) crc.getValue(),
+                                data.length, bytes.length, extra);
+        return new CompressedEntry(entry, data);
+    }
+
+    private void writeCompressed(@NotNull CompressedEntry compressed) throws IOException {
+        writeLocalHeader(compressed.entry);
+        write(compressed.data);
+    }
+
+    private void copyRaw(@NotNull RandomAccessFile file, @NotNull Entry entry) throws IOException {
+        ByteBuffer header = littleEndian(LOCAL_HEADER_SIZE);
+        file.seek(entry.offset);
+        file.readFully(header.array());
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + entry.name);
+        }
+        long dataOffset = entry.offset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+
+        writeLocalHeader(entry);
+        file.seek(dataOffset);
+        byte[] buffer = new byte[8192];
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            int length = (int) Math.min(buffer.length, remaining);
+            file.readFully(buffer, 0, length);
+            write(buffer, length);
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Returns class entries from the central directory of the given jar, with offsets of their local headers in that jar,
+     * or null if the jar uses zip features which don't allow to copy entries as they are
+     */
+    @Nullable
+    private static List<Entry> readClassEntries(@NotNull RandomAccessFile file) throws IOException {
+        long length = file.length();
+        int tailLength = (int) Math.min(length, END_SIZE + MAX_ZIP_VALUE);
+        ByteBuffer tail = littleEndian(tailLength);
+        file.seek(length - tailLength);
+        file.readFully(tail.array());
+
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) return null;
+
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long centralDirectorySize = tail.getInt(end + 12) & MAX_ZIP_LONG_VALUE;
+        long centralDirectoryOffset = tail.getInt(end + 16) & MAX_ZIP_LONG_VALUE;
+        if (count == MAX_ZIP_VALUE || centralDirectoryOffset == MAX_ZIP_LONG_VALUE ||
+            centralDirectoryOffset + centralDirectorySize > length) {
+            return null;
+        }
+
+        ByteBuffer directory = littleEndian((int) centralDirectorySize);
+        file.seek(centralDirectoryOffset);
+        file.readFully(directory.array());
+
+        List<Entry> result = new ArrayList<Entry>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directory.capacity() || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                return null;
+            }
+            int flags = directory.getShort(position + 8) & 0xFFFF;
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            int dosTime = directory.getInt(position + 12);
+            int crc = directory.getInt(position + 16);
+            long compressedSize = directory.getInt(position + 20) & MAX_ZIP_LONG_VALUE;
+            long size = directory.getInt(position + 24) & MAX_ZIP_LONG_VALUE;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long offset = directory.getInt(position + 42) & MAX_ZIP_LONG_VALUE;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != STORED && method != DEFLATED) ||
+                compressedSize == MAX_ZIP_LONG_VALUE || size == MAX_ZIP_LONG_VALUE || offset == MAX_ZIP_LONG_VALUE) {
+                return null;
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            directory.position(position + CENTRAL_HEADER_SIZE);
+            directory.get(nameBytes);
+            String name = new String(nameBytes, UTF8);
+
+            if (FileUtilRt.extensionEquals(name, "class")) {
+                Entry entry = new Entry(name, nameBytes, flags & FLAGS_TO_COPY, method, dosTime, crc, compressedSize, size, NO_EXTRA);
+                entry.offset = offset;
+                result.add(entry);
+            }
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    private void writeLocalHeader(@NotNull Entry source) throws IOException {
+        if (!names.add(source.name)) {
+            throw new ZipException("duplicate entry: " + source.name);
+        }
+
+        Entry entry = new Entry(source.name, source.nameBytes, source.flags, source.method, source.dosTime, source.crc,
+                                source.compressedSize, source.size, source.extra);
+        entry.offset = written;
+        if (entry.offset >= MAX_ZIP_LONG_VALUE) {
+            throw new ZipException("Jar file is too large");
+        }
+        entries.add(entry);
+
+        ByteBuffer header = littleEndian(LOCAL_HEADER_SIZE);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort(versionNeeded(entry));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.nameBytes.length);
+        header.putShort((short) entry.extra.length);
+        write(header.array());
+        write(entry.nameBytes);
+        write(entry.extra);
+    }
+
+    private void writeCentralHeader(@NotNull Entry entry) throws IOException {
+        ByteBuffer header = littleEndian(CENTRAL_HEADER_SIZE);
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort(versionNeeded(entry));
+        header.putShort(versionNeeded(entry));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.nameBytes.length);
+        header.putShort((short) entry.extra.length);
+        // comment length, disk number, internal and external attributes
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) entry.offset);
+        write(header.array());
+        write(entry.nameBytes);
+        write(entry.extra);
+    }
+
+    private void writeZip64End(long centralDirectoryOffset, long centralDirectorySize) throws IOException {
+        long zip64EndOffset = written;
+
+        ByteBuffer end = littleEndian(56);
+        end.putInt(ZIP64_END_SIGNATURE);
+        end.putLong(44);
+        end.putShort((short) 45);
+        end.putShort((short) 45);
+        end.putInt(0);
+        end.putInt(0);
+        end.putLong(entries.size());
+        end.putLong(entries.size());
+        end.putLong(centralDirectorySize);
+        end.putLong(centralDirectoryOffset);
+        write(end.array());
+
+        ByteBuffer locator = littleEndian(20);
+        locator.putInt(ZIP64_LOCATOR_SIGNATURE);
+        locator.putInt(0);
+        locator.putLong(zip64EndOffset);
+        locator.putInt(1);
+        write(locator.array());
+    }
+
+    private void write(@NotNull byte[] bytes) throws IOException {
+        write(bytes, bytes.length);
+    }
+
+    private void write(@NotNull byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        written += length;
+    }
+
+    private static short versionNeeded(@NotNull Entry entry) {
+        return (short) (entry.method == DEFLATED ? 20 : 10);
+    }
+
+    @NotNull
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 |
+               (calendar.get(Calendar.MONTH) + 1) << 21 |
+               calendar.get(Calendar.DAY_OF_MONTH) << 16 |
+               calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+               calendar.get(Calendar.MINUTE) << 5 |
+               calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
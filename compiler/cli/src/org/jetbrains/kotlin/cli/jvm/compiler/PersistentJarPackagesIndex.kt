@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.HashSet
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Packages contained in each jar of the classpath, stored on disk between compilations.
+ *
+ * A jar is identified by its path, modification time and size, so a changed jar is re-indexed. The index is loaded with
+ * a single memory-mapped read, and the same instance is shared by all compilations in one process (e.g. in the daemon)
+ * which use the same storage file.
+ */
+public class PersistentJarPackagesIndex private constructor(private val storageFile: File) {
+    private data class JarKey(val path: String, val timestamp: Long, val length: Long)
+
+    private val packagesByJar = ConcurrentHashMap<JarKey, Set<String>>()
+
+    @Volatile private var isModified = false
+
+    // Returns null for roots which are not jars
+    public fun getPackages(root: JavaRoot): Set<String>? {
+        if (root.type != JavaRoot.RootType.BINARY) return null
+        val jarFile = root.file
+        val path = jarFile.getPath()
+        if (!path.endsWith(JAR_SEPARATOR)) return null
+
+        val ioFile = File(path.removeSuffix(JAR_SEPARATOR))
+        val key = JarKey(ioFile.getAbsolutePath(), ioFile.lastModified(), ioFile.length())
+        packagesByJar[key]?.let { return it }
+
+        val packages = collectPackages(jarFile)
+        packagesByJar.put(key, packages)
+        isModified = true
+        return packages
+    }
+
+    private fun collectPackages(jarRoot: VirtualFile): Set<String> {
+        val result = HashSet<String>()
+        fun collect(directory: VirtualFile, packageFqName: String) {
+            result.add(packageFqName)
+            for (child in directory.getChildren()) {
+                if (child.isDirectory()) {
+                    collect(child, if (packageFqName.isEmpty()) child.getName() else packageFqName + "." + child.getName())
+                }
+            }
+        }
+        collect(jarRoot, "")
+        return result
+    }
+
+    @Synchronized
+    public fun save() {
+        if (!isModified) return
+        isModified = false
+
+        FileUtil.createParentDirs(storageFile)
+        val tempFile = File(storageFile.getPath() + ".tmp")
+        DataOutputStream(FileOutputStream(tempFile).buffered()).use { output ->
+            output.writeInt(VERSION)
+            output.writeInt(packagesByJar.size())
+            for ((key, packages) in packagesByJar) {
+                output.writeString(key.path)
+                output.writeLong(key.timestamp)
+                output.writeLong(key.length)
+                output.writeInt(packages.size())
+                for (packageFqName in packages) {
+                    output.writeString(packageFqName)
+                }
+            }
+        }
+        FileUtil.rename(tempFile, storageFile)
+    }
+
+    private fun load() {
+        if (!storageFile.exists()) return
+
+        try {
+            RandomAccessFile(storageFile, "r").use { file ->
+                val buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+                if (buffer.getInt() != VERSION) return
+
+                val jarCount = buffer.getInt()
+                for (i in 1..jarCount) {
+                    val key = JarKey(buffer.readString(), buffer.getLong(), buffer.getLong())
+                    val packageCount = buffer.getInt()
+                    val packages = HashSet<String>(packageCount)
+                    for (j in 1..packageCount) {
+                        packages.add(buffer.readString())
+                    }
+                    // Entries for jars which have changed since are not loaded
+                    val file = File(key.path)
+                    if (file.lastModified() == key.timestamp && file.length() == key.length) {
+                        packagesByJar.put(key, packages)
+                    }
+                }
+            }
+        }
+        catch (e: IOException) {
+            // A broken index is rebuilt from scratch
+            packagesByJar.clear()
+            isModified = true
+        }
+        catch (e: RuntimeException) {
+            packagesByJar.clear()
+            isModified = true
+        }
+    }
+
+    companion object {
+        private val VERSION = 1
+        private val JAR_SEPARATOR = "!/"
+
+        private val instances = ConcurrentHashMap<File, PersistentJarPackagesIndex>()
+
+        public fun getOrLoad(storageFile: File): PersistentJarPackagesIndex {
+            val file = storageFile.getAbsoluteFile()
+            instances[file]?.let { return it }
+
+            val index = PersistentJarPackagesIndex(file)
+            index.load()
+            return instances.putIfAbsent(file, index) ?: index
+        }
+    }
+}
+
+private fun DataOutputStream.writeString(string: String) {
+    val bytes = string.toByteArray(Charsets.UTF_8)
+    writeInt(bytes.size())
+    write(bytes)
+}
+
+private fun ByteBuffer.readString(): String {
+    val bytes = ByteArray(getInt())
+    get(bytes)
+    return String(bytes, Charsets.UTF_8)
+}
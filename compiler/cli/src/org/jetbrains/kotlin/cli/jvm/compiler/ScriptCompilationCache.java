@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
+import org.jetbrains.kotlin.cli.common.KotlinVersion;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class files of compiled scripts, stored in a directory per script.
+ *
+ * A script is identified by the hash of its path and text, and of everything else which affects the generated code: the script
+ * parameters, the compiler version and the classpath. Files on the classpath are identified by their sizes and timestamps,
+ * so that the classpath digest is computed once for a batch of scripts without reading the libraries.
+ */
+public class ScriptCompilationCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File cacheDir;
+    private final String environmentDigest;
+
+    public ScriptCompilationCache(
+            @NotNull File cacheDir,
+            @NotNull List<File> classpath,
+            @NotNull List<AnalyzerScriptParameter> scriptParameters
+    ) {
+        this.cacheDir = cacheDir;
+
+        StringBuilder environment = new StringBuilder(KotlinVersion.VERSION);
+        for (AnalyzerScriptParameter parameter : scriptParameters) {
+            environment.append('\n').append(parameter.getName()).append(':').append(parameter.getType());
+        }
+        for (File root : classpath) {
+            environment.append('\n').append(root.getAbsolutePath()).append('=').append(fileStamp(root));
+        }
+        this.environmentDigest = hash(environment.toString());
+    }
+
+    @NotNull
+    public File getClassesDir(@NotNull JetFile script) {
+        VirtualFile file = script.getVirtualFile();
+        String path = file != null ? file.getPath() : script.getName();
+        return new File(cacheDir, hash(environmentDigest + "\n" + path + "\n" + script.getText()));
+    }
+
+    /**
+     * @return the directory with the class files of the script, or null if the script hasn't been compiled yet
+     */
+    @Nullable
+    public File getCompiled(@NotNull JetFile script) {
+        File classesDir = getClassesDir(script);
+        return classesDir.isDirectory() ? classesDir : null;
+    }
+
+    /**
+     * @return the directory with the given class files of the script
+     */
+    @NotNull
+    public File save(@NotNull JetFile script, @NotNull List<OutputFile> outputFiles) throws IOException {
+        File classesDir = getClassesDir(script);
+        // The files are written to a temporary directory first, so that an interrupted compilation doesn't leave a partial entry
+        File tmpDir = new File(cacheDir, classesDir.getName() + ".tmp");
+        FileUtil.delete(tmpDir);
+        FileUtil.createDirectory(tmpDir);
+        for (OutputFile outputFile : outputFiles) {
+            FileUtil.writeToFile(new File(tmpDir, outputFile.getRelativePath()), outputFile.asByteArray());
+        }
+        FileUtil.delete(classesDir);
+        if (!tmpDir.renameTo(classesDir)) {
+            throw new IOException("Failed to rename " + tmpDir + " to " + classesDir);
+        }
+        return classesDir;
+    }
+
+    @NotNull
+    private static String fileStamp(@NotNull File file) {
+        if (!file.isDirectory()) {
+            return file.length() + ":" + file.lastModified();
+        }
+
+        StringBuilder result = new StringBuilder();
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                result.append(child.getName()).append('(').append(fileStamp(child)).append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    @NotNull
+    private static String hash(@NotNull String text) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF8))).toString(16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.jetbrains.kotlin.config.CompilerConfigurationKey;
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents;
 import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
 
+import java.io.File;
 import java.util.List;
 
 public class JVMConfigurationKeys {
@@ -41,6 +42,11 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("disable optimization");
     public static final CompilerConfigurationKey<Boolean> PACKAGE_FACADES_AS_MULTIFILE_CLASSES =
             CompilerConfigurationKey.create("compile package facades as multifile classes");
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_CODEGEN =
+            CompilerConfigurationKey.create("generate bytecode on several threads");
+
+    public static final CompilerConfigurationKey<File> DEPENDENCIES_INDEX_FILE =
+            CompilerConfigurationKey.create("file to store the index of packages in classpath jars");
 
     public static final CompilerConfigurationKey<IncrementalCompilationComponents> INCREMENTAL_COMPILATION_COMPONENTS =
             CompilerConfigurationKey.create("incremental cache provider");
@@ -31,6 +31,7 @@ import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.utils.UtilsPackage;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.List;
@@ -210,7 +211,11 @@ public class ReplFromTerminal {
                                    ":help                   show this help\n" +
                                    ":quit                   exit the interpreter\n" +
                                    ":dump bytecode          dump classes to terminal\n" +
-                                   ":load <file>            load script from specified file"
+                                   ":load <file>            load script from specified file\n" +
+                                   ":save <file>            save the evaluated lines of this session to file\n" +
+                                   ":restore <file>         evaluate a saved session which only has declarations\n" +
+                                   ":restore-declarations <file>\n" +
+                                   "                        evaluate the declarations of a saved session, skip the other lines"
             );
             return true;
         }
@@ -227,6 +232,39 @@ public class ReplFromTerminal {
             eval(scriptText);
             return true;
         }
+        else if (split.size() >= 2 && split.get(0).equals("save")) {
+            try {
+                getReplInterpreter().saveSession(new File(split.get(1)));
+            }
+            catch (IOException e) {
+                replWriter.printlnCompileError("Cannot save the session: " + e.getMessage());
+            }
+            return true;
+        }
+        else if (split.size() >= 2 && (split.get(0).equals("restore") || split.get(0).equals("restore-declarations"))) {
+            ReplInterpreter.RestoredSession restored;
+            try {
+                restored = getReplInterpreter().restoreSession(new File(split.get(1)), split.get(0).equals("restore-declarations"));
+            }
+            catch (IOException e) {
+                replWriter.printlnCompileError("Cannot restore the session: " + e.getMessage());
+                return true;
+            }
+            catch (ReplInterpreter.UnrestorableSessionException e) {
+                replWriter.printlnCompileError("Cannot restore the session. " + e.getMessage());
+                return true;
+            }
+
+            StringBuilder message = new StringBuilder("Restored " + restored.getRestoredLineCount() + " lines");
+            if (!restored.getSkippedLines().isEmpty()) {
+                message.append(", skipped the lines which execute code or depend on such lines:");
+                for (String line : restored.getSkippedLines()) {
+                    message.append("\n").append(line);
+                }
+            }
+            replWriter.printlnHelp(message.toString());
+            return true;
+        }
         else {
             replWriter.printlnHelp("Unknown command\n" +
                                    "Type :help for help"
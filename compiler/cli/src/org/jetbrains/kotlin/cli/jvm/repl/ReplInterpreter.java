@@ -56,7 +56,11 @@ import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.parsing.JetParserDefinition;
+import org.jetbrains.kotlin.psi.JetClassOrObject;
+import org.jetbrains.kotlin.psi.JetExpression;
 import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.psi.JetNamedFunction;
+import org.jetbrains.kotlin.psi.JetProperty;
 import org.jetbrains.kotlin.psi.JetScript;
 import org.jetbrains.kotlin.resolve.*;
 import org.jetbrains.kotlin.resolve.calls.smartcasts.DataFlowInfo;
@@ -71,8 +75,7 @@ import org.jetbrains.kotlin.types.JetType;
 import org.jetbrains.kotlin.utils.UtilsPackage;
 import org.jetbrains.org.objectweb.asm.Type;
 
-import java.io.File;
-import java.io.PrintWriter;
+import java.io.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
@@ -90,6 +93,8 @@ import static org.jetbrains.kotlin.codegen.binding.CodegenBinding.registerClassN
 import static org.jetbrains.kotlin.resolve.DescriptorToSourceUtils.descriptorToDeclaration;
 
 public class ReplInterpreter {
+    private static final int SESSION_FILE_MAGIC = 0x4B52504C; // "KRPL"
+
     private int lineNumber = 0;
 
     @Nullable
@@ -353,7 +358,7 @@ public class ReplInterpreter {
             rvField.setAccessible(true);
             Object rv = rvField.get(scriptInstance);
 
-            earlierLines.add(new EarlierLine(line, scriptDescriptor, scriptClass, scriptInstance, scriptClassType));
+            earlierLines.add(new EarlierLine(fullText.toString(), scriptDescriptor, scriptClass, scriptInstance, scriptClassType));
 
             JetType returnType = scriptDescriptor.getScriptCodeDescriptor().getReturnType();
             return LineResult.successful(rv, returnType != null && KotlinBuiltIns.isUnit(returnType));
@@ -430,6 +435,149 @@ public class ReplInterpreter {
         classLoader.dumpClasses(out);
     }
 
+    /**
+     * Saves the source code of the successfully evaluated lines of this session.
+     *
+     * Script instances may hold arbitrary runtime state which can't be persisted, so only the declarations of a saved session
+     * can be restored (see {@link #restoreSession}).
+     */
+    public void saveSession(@NotNull File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(SESSION_FILE_MAGIC);
+            output.writeInt(earlierLines.size());
+            for (EarlierLine earlierLine : earlierLines) {
+                byte[] code = earlierLine.getCode().getBytes(CharsetToolkit.UTF8_CHARSET);
+                output.writeInt(code.length);
+                output.write(code);
+            }
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Evaluates the lines saved by {@link #saveSession} in this session. Only the lines which declare functions, classes, objects
+     * or properties without initializers can be restored: evaluating them doesn't execute any code, so the side effects
+     * of the saved session are not repeated.
+     *
+     * @param skipUnrestorableLines if false, nothing is restored if the session has other lines, and the restoring stops
+     *                              at the first line which can't be compiled. If true, such lines are skipped and returned
+     *                              in {@link RestoredSession#getSkippedLines()}
+     * @throws UnrestorableSessionException if skipUnrestorableLines is false and a line can't be restored
+     */
+    @NotNull
+    public RestoredSession restoreSession(@NotNull File file, boolean skipUnrestorableLines)
+            throws IOException, UnrestorableSessionException {
+        List<String> lines = new ArrayList<String>();
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != SESSION_FILE_MAGIC) {
+                throw new IOException("Not a saved REPL session: " + file);
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] code = new byte[input.readInt()];
+                input.readFully(code);
+                lines.add(new String(code, CharsetToolkit.UTF8_CHARSET));
+            }
+        }
+        catch (EOFException e) {
+            throw new IOException("Saved REPL session is truncated: " + file);
+        }
+        finally {
+            input.close();
+        }
+
+        List<String> linesWithCode = new ArrayList<String>();
+        for (String line : lines) {
+            if (!isDeclarationsOnly(line)) {
+                linesWithCode.add(line);
+            }
+        }
+        if (!skipUnrestorableLines && !linesWithCode.isEmpty()) {
+            StringBuilder message = new StringBuilder("The session has lines which execute code and can't be restored:");
+            for (String line : linesWithCode) {
+                message.append("\n").append(line);
+            }
+            throw new UnrestorableSessionException(message.toString());
+        }
+
+        int restoredLineCount = 0;
+        List<String> skippedLines = new ArrayList<String>();
+        for (String line : lines) {
+            if (linesWithCode.contains(line)) {
+                skippedLines.add(line);
+                continue;
+            }
+
+            LineResult result = eval(line);
+            if (result.getType() == LineResultType.SUCCESS) {
+                restoredLineCount++;
+                continue;
+            }
+
+            // Saved lines are always complete, so an incomplete line is broken as well
+            previousIncompleteLines.clear();
+            if (!skipUnrestorableLines) {
+                String errorText = result.getType() == LineResultType.INCOMPLETE ? "incomplete line" : result.getErrorText();
+                throw new UnrestorableSessionException(
+                        "Restored " + restoredLineCount + " lines, the next one can't be compiled:\n" + line + "\n" + errorText
+                );
+            }
+            skippedLines.add(line);
+        }
+        return new RestoredSession(restoredLineCount, skippedLines);
+    }
+
+    private boolean isDeclarationsOnly(@NotNull String code) {
+        LightVirtualFile virtualFile = new LightVirtualFile("restored" + JetParserDefinition.STD_SCRIPT_EXT, KotlinLanguage.INSTANCE, code);
+        virtualFile.setCharset(CharsetToolkit.UTF8_CHARSET);
+        JetFile psiFile = (JetFile) psiFileFactory.trySetupPsiForFile(virtualFile, KotlinLanguage.INSTANCE, true, false);
+        JetScript script = psiFile != null ? psiFile.getScript() : null;
+        if (script == null) return false;
+
+        for (JetExpression statement : script.getBlockExpression().getStatements()) {
+            // objects are initialized on the first access, not when they're declared
+            if (statement instanceof JetNamedFunction || statement instanceof JetClassOrObject) continue;
+            if (statement instanceof JetProperty && !((JetProperty) statement).hasInitializer() && !((JetProperty) statement).hasDelegate()) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public static class UnrestorableSessionException extends Exception {
+        public UnrestorableSessionException(@NotNull String message) {
+            super(message);
+        }
+    }
+
+    public static class RestoredSession {
+        private final int restoredLineCount;
+        private final List<String> skippedLines;
+
+        private RestoredSession(int restoredLineCount, @NotNull List<String> skippedLines) {
+            this.restoredLineCount = restoredLineCount;
+            this.skippedLines = skippedLines;
+        }
+
+        public int getRestoredLineCount() {
+            return restoredLineCount;
+        }
+
+        /**
+         * Lines which execute code or can't be compiled without such lines, they should be evaluated again manually if needed.
+         * Empty unless unrestorable lines were requested to be skipped
+         */
+        @NotNull
+        public List<String> getSkippedLines() {
+            return skippedLines;
+        }
+    }
+
     private static void registerEarlierScripts(
             @NotNull GenerationState state,
             @NotNull List<Pair<ScriptDescriptor, Type>> earlierScripts
@@ -469,18 +617,18 @@ public class ReplInterpreter {
 
     private static class ScriptMutableDeclarationProviderFactory implements DeclarationProviderFactory {
         private DeclarationProviderFactory delegateFactory;
-        private AdaptablePackageMemberDeclarationProvider rootPackageProvider;
+        private ReplPackageMemberDeclarationProvider rootPackageProvider;
 
         public void setDelegateFactory(DeclarationProviderFactory delegateFactory) {
             this.delegateFactory = delegateFactory;
 
             PackageMemberDeclarationProvider provider = delegateFactory.getPackageMemberDeclarationProvider(FqName.ROOT);
+            assert provider != null;
             if (rootPackageProvider == null) {
-                assert provider != null;
-                rootPackageProvider = new AdaptablePackageMemberDeclarationProvider(provider);
+                rootPackageProvider = new ReplPackageMemberDeclarationProvider(provider);
             }
             else {
-                rootPackageProvider.addDelegateProvider(provider);
+                rootPackageProvider.addLine(provider);
             }
         }
 
@@ -499,21 +647,5 @@ public class ReplInterpreter {
 
             return this.delegateFactory.getPackageMemberDeclarationProvider(packageFqName);
         }
-
-        public static class AdaptablePackageMemberDeclarationProvider extends DelegatePackageMemberDeclarationProvider {
-            @NotNull
-            private PackageMemberDeclarationProvider delegateProvider;
-
-            public AdaptablePackageMemberDeclarationProvider(@NotNull PackageMemberDeclarationProvider delegateProvider) {
-                super(delegateProvider);
-                this.delegateProvider = delegateProvider;
-            }
-
-            public void addDelegateProvider(PackageMemberDeclarationProvider provider) {
-                delegateProvider = new CombinedPackageMemberDeclarationProvider(Lists.newArrayList(provider, delegateProvider));
-
-                setDelegate(delegateProvider);
-            }
-        }
     }
 }
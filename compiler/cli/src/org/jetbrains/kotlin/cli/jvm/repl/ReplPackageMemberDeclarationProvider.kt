@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.repl
+
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.JetNamedDeclaration
+import org.jetbrains.kotlin.psi.JetScript
+import org.jetbrains.kotlin.resolve.lazy.ResolveSessionUtils
+import org.jetbrains.kotlin.resolve.lazy.data.JetScriptInfo
+import org.jetbrains.kotlin.resolve.lazy.declarations.PackageMemberDeclarationProvider
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.JetScope
+import java.util.ArrayList
+import java.util.HashMap
+
+/**
+ * Declarations of the root package from all REPL lines, the latest line first.
+ *
+ * Lines are indexed by the names they declare, so that a lookup by name only queries the lines which declare something
+ * with this name, and its cost doesn't grow with the number of evaluated lines.
+ */
+class ReplPackageMemberDeclarationProvider(firstLine: PackageMemberDeclarationProvider) : PackageMemberDeclarationProvider {
+    // In the order of evaluation, all lookups iterate them backwards
+    private val lines = ArrayList<PackageMemberDeclarationProvider>()
+    private val linesByName = HashMap<Name, MutableList<PackageMemberDeclarationProvider>>()
+
+    init {
+        addLine(firstLine)
+    }
+
+    fun addLine(provider: PackageMemberDeclarationProvider) {
+        lines.add(provider)
+
+        for (declaration in provider.getDeclarations(DescriptorKindFilter.ALL, JetScope.ALL_NAME_FILTER)) {
+            val name = when (declaration) {
+                is JetScript -> JetScriptInfo(declaration).fqName.shortName()
+                is JetNamedDeclaration -> ResolveSessionUtils.safeNameForLazyResolve(declaration)
+                else -> null
+            } ?: continue
+
+            val linesWithName = linesByName.getOrPut(name) { ArrayList(1) }
+            if (linesWithName.lastOrNull() !== provider) {
+                linesWithName.add(provider)
+            }
+        }
+    }
+
+    private inline fun <T> collect(providers: List<PackageMemberDeclarationProvider>, query: (PackageMemberDeclarationProvider) -> Collection<T>): List<T> {
+        if (providers.size() == 1) return query(providers[0]).toList()
+
+        val result = ArrayList<T>()
+        for (i in providers.indices.reversed()) {
+            result.addAll(query(providers[i]))
+        }
+        return result
+    }
+
+    private fun linesDeclaring(name: Name): List<PackageMemberDeclarationProvider> =
+            linesByName[ResolveSessionUtils.safeNameForLazyResolve(name)] ?: emptyList()
+
+    override fun getAllDeclaredSubPackages(nameFilter: (Name) -> Boolean) = collect(lines) { it.getAllDeclaredSubPackages(nameFilter) }
+
+    override fun getPackageFiles() = collect(lines) { it.getPackageFiles() }
+
+    override fun getDeclarations(kindFilter: DescriptorKindFilter, nameFilter: (Name) -> Boolean) =
+            collect(lines) { it.getDeclarations(kindFilter, nameFilter) }
+
+    override fun getFunctionDeclarations(name: Name) = collect(linesDeclaring(name)) { it.getFunctionDeclarations(name) }
+
+    override fun getPropertyDeclarations(name: Name) = collect(linesDeclaring(name)) { it.getPropertyDeclarations(name) }
+
+    override fun getClassOrObjectDeclarations(name: Name) = collect(linesDeclaring(name)) { it.getClassOrObjectDeclarations(name) }
+}
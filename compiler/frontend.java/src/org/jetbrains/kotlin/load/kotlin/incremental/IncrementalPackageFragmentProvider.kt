@@ -19,10 +19,13 @@ package org.jetbrains.kotlin.load.kotlin.incremental
 import com.google.protobuf.MessageLite
 import com.intellij.util.containers.MultiMap
 import org.apache.log4j.Logger
+import org.jetbrains.kotlin.descriptors.FunctionDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentProvider
+import org.jetbrains.kotlin.descriptors.VariableDescriptor
 import org.jetbrains.kotlin.descriptors.impl.PackageFragmentDescriptorImpl
+import org.jetbrains.kotlin.incremental.components.LookupLocation
 import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import org.jetbrains.kotlin.load.kotlin.PackagePartClassUtils
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCache
@@ -167,6 +170,16 @@ public class IncrementalPackageFragmentProvider(
                 this@IncrementalPackageFragment, packageData.packageProto, packageData.nameResolver, deserializationComponents,
                 { listOf() }
         ) {
+            override fun getFunctions(name: Name, location: LookupLocation): Collection<FunctionDescriptor> {
+                recordLookup(name, location)
+                return super.getFunctions(name, location)
+            }
+
+            override fun getProperties(name: Name, location: LookupLocation): Collection<VariableDescriptor> {
+                recordLookup(name, location)
+                return super.getProperties(name, location)
+            }
+
             override fun filteredFunctionProtos(protos: Collection<ProtoBuf.Function>): Collection<ProtoBuf.Function> {
                 return filteredMemberProtos(protos) {
                     it.getExtension(JvmProtoBuf.methodImplClassName)?.let { packageData.nameResolver.getName(it) }
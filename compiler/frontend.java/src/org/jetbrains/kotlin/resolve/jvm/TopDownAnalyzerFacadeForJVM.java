@@ -28,6 +28,7 @@ import org.jetbrains.kotlin.descriptors.PackageFragmentProvider;
 import org.jetbrains.kotlin.descriptors.PackagePartProvider;
 import org.jetbrains.kotlin.frontend.java.di.ContainerForTopDownAnalyzerForJvm;
 import org.jetbrains.kotlin.frontend.java.di.DiPackage;
+import org.jetbrains.kotlin.incremental.components.DeduplicatingLookupTracker;
 import org.jetbrains.kotlin.incremental.components.LookupTracker;
 import org.jetbrains.kotlin.load.kotlin.incremental.IncrementalPackageFragmentProvider;
 import org.jetbrains.kotlin.load.kotlin.incremental.IncrementalPackagePartProvider;
@@ -98,6 +99,9 @@ public enum TopDownAnalyzerFacadeForJVM {
 
         LookupTracker lookupTracker =
                 incrementalCompilationComponents != null ? incrementalCompilationComponents.getLookupTracker() : LookupTracker.Companion.getDO_NOTHING();
+        if (lookupTracker != LookupTracker.Companion.getDO_NOTHING() && !lookupTracker.getRequiresLookupLineAndColumn()) {
+            lookupTracker = new DeduplicatingLookupTracker(lookupTracker);
+        }
 
         List<TargetId> targetIds = null;
         if (modules != null) {
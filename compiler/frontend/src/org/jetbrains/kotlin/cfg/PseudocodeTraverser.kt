@@ -65,17 +65,58 @@ public fun <D> Pseudocode.collectData(
     initializeEdgesMap(edgesMap, initialDataValue)
     edgesMap.put(getStartInstruction(traversalOrder), Edges(initialDataValue, initialDataValue))
 
+    val dependentInstructions = HashMap<Instruction, MutableList<Instruction>>()
+    collectDependentInstructions(traversalOrder, mergeDataWithLocalDeclarations, dependentInstructions, Collections.emptyList<Instruction>())
+
+    // Only the instructions whose data may have changed since they were processed last time are processed on each pass,
+    // the data of the other ones would be the same anyway. All of them are processed on the first pass.
+    val dirtyInstructions = HashSet<Instruction>(edgesMap.keySet())
+
     val changed = BooleanArray(1)
     changed[0] = true
     while (changed[0]) {
         changed[0] = false
         collectDataFromSubgraph(
                 traversalOrder, mergeDataWithLocalDeclarations, edgesMap,
-                mergeEdges, updateEdge, Collections.emptyList<Instruction>(), changed, false)
+                mergeEdges, updateEdge, Collections.emptyList<Instruction>(), changed, false,
+                dependentInstructions, dirtyInstructions)
     }
     return edgesMap
 }
 
+private fun Pseudocode.collectDependentInstructions(
+        traversalOrder: TraversalOrder,
+        mergeDataWithLocalDeclarations: Boolean,
+        dependentInstructions: MutableMap<Instruction, MutableList<Instruction>>,
+        previousSubGraphInstructions: Collection<Instruction>
+) {
+    val startInstruction = getStartInstruction(traversalOrder)
+
+    fun addDependency(from: Instruction, to: Instruction) {
+        dependentInstructions.getOrPut(from) { ArrayList<Instruction>(2) }.add(to)
+    }
+
+    for (instruction in getInstructions(traversalOrder)) {
+        val previousInstructions = ArrayList(instruction.getPreviousInstructions(traversalOrder))
+        if (instruction == startInstruction) {
+            previousInstructions.addAll(previousSubGraphInstructions)
+        }
+
+        if (instruction is LocalFunctionDeclarationInstruction) {
+            val subroutinePseudocode = instruction.body
+            val previous = if (mergeDataWithLocalDeclarations) previousInstructions else Collections.emptyList()
+            subroutinePseudocode.collectDependentInstructions(traversalOrder, mergeDataWithLocalDeclarations, dependentInstructions, previous)
+            if (mergeDataWithLocalDeclarations) {
+                addDependency(subroutinePseudocode.getLastInstruction(traversalOrder), instruction)
+                continue
+            }
+        }
+        for (previousInstruction in previousInstructions) {
+            addDependency(previousInstruction, instruction)
+        }
+    }
+}
+
 private fun <D> Pseudocode.initializeEdgesMap(
         edgesMap: MutableMap<Instruction, Edges<D>>,
         initialDataValue: D
@@ -98,7 +139,9 @@ private fun <D> Pseudocode.collectDataFromSubgraph(
         updateEdge: (Instruction, Instruction, D) -> D,
         previousSubGraphInstructions: Collection<Instruction>,
         changed: BooleanArray,
-        isLocal: Boolean
+        isLocal: Boolean,
+        dependentInstructions: Map<Instruction, List<Instruction>>,
+        dirtyInstructions: MutableSet<Instruction>
 ) {
     val instructions = getInstructions(traversalOrder)
     val startInstruction = getStartInstruction(traversalOrder)
@@ -126,6 +169,7 @@ private fun <D> Pseudocode.collectDataFromSubgraph(
             if (previousValue != newValue && newValue != null) {
                 changed[0] = true
                 edgesMap.put(instruction, newValue)
+                dependentInstructions[instruction]?.let { dirtyInstructions.addAll(it) }
             }
         }
 
@@ -134,7 +178,9 @@ private fun <D> Pseudocode.collectDataFromSubgraph(
             val previous = if (mergeDataWithLocalDeclarations) previousInstructions else Collections.emptyList()
             subroutinePseudocode.collectDataFromSubgraph(
                     traversalOrder, mergeDataWithLocalDeclarations,
-                    edgesMap, mergeEdges, updateEdge, previous, changed, true)
+                    edgesMap, mergeEdges, updateEdge, previous, changed, true,
+                    dependentInstructions, dirtyInstructions)
+            if (!dirtyInstructions.remove(instruction)) continue
             if (mergeDataWithLocalDeclarations) {
                 val lastInstruction = subroutinePseudocode.getLastInstruction(traversalOrder)
                 val previousValue = edgesMap.get(instruction)
@@ -149,6 +195,9 @@ private fun <D> Pseudocode.collectDataFromSubgraph(
                 continue
             }
         }
+        else if (!dirtyInstructions.remove(instruction)) {
+            continue
+        }
         val previousDataValue = edgesMap.get(instruction)
 
         val incomingEdgesData = HashSet<D>()
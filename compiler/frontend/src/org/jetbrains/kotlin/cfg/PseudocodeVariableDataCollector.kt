@@ -27,7 +27,6 @@ import org.jetbrains.kotlin.cfg.pseudocodeTraverser.traverse
 import org.jetbrains.kotlin.descriptors.VariableDescriptor
 import org.jetbrains.kotlin.resolve.BindingContext
 import java.util.ArrayList
-import java.util.Collections
 import java.util.HashMap
 
 public class PseudocodeVariableDataCollector(
@@ -36,40 +35,51 @@ public class PseudocodeVariableDataCollector(
 ) {
     val lexicalScopeVariableInfo = computeLexicalScopeVariableInfo(pseudocode)
 
-    @Suppress("UNCHECKED_CAST")
-    public fun <D> collectData(
+    /**
+     * Data of the variables with indices in [variables] is packed into [planes] planes of [VariableBitData].
+     */
+    public fun collectData(
             traversalOrder: TraversalOrder,
             mergeDataWithLocalDeclarations: Boolean,
-            instructionDataMergeStrategy: InstructionDataMergeStrategy<D>
-    ): MutableMap<Instruction, Edges<MutableMap<VariableDescriptor, D>>> {
-        val result = pseudocode.collectData(
+            variables: List<VariableDescriptor>,
+            planes: Int,
+            instructionDataMergeStrategy: (Instruction, Collection<VariableBitData>) -> Edges<VariableBitData>
+    ): Map<Instruction, Edges<VariableBitData>> {
+        // masks of the variables visible at each depth of lexical scopes
+        val scopeMasks = HashMap<Int, LongArray>()
+        return pseudocode.collectData(
                 traversalOrder, mergeDataWithLocalDeclarations,
-                //see KT-4605
-                instructionDataMergeStrategy as
-                    (Instruction, Collection<Map<VariableDescriptor, D>>) -> Edges<Map<VariableDescriptor, D>>,
-                { from, to, data -> filterOutVariablesOutOfScope(from, to, data)},
-                Collections.emptyMap<VariableDescriptor, D>())
-        //see KT-4605
-        return result as MutableMap<Instruction, Edges<MutableMap<VariableDescriptor, D>>>
+                instructionDataMergeStrategy,
+                { from, to, data -> filterOutVariablesOutOfScope(from, to, data, variables, scopeMasks) },
+                VariableBitData.empty(planes, variables.size()))
     }
 
-    private fun <D> filterOutVariablesOutOfScope(
+    private fun filterOutVariablesOutOfScope(
             from: Instruction,
             to: Instruction,
-            data: Map<VariableDescriptor, D>
-    ): Map<VariableDescriptor, D> {
+            data: VariableBitData,
+            variables: List<VariableDescriptor>,
+            scopeMasks: MutableMap<Int, LongArray>
+    ): VariableBitData {
         // If an edge goes from deeper lexical scope to a less deep one, this means that it points outside of the deeper scope.
         val toDepth = to.lexicalScope.depth
         if (toDepth >= from.lexicalScope.depth) return data
 
         // Variables declared in an inner (deeper) scope can't be accessed from an outer scope.
         // Thus they can be filtered out upon leaving the inner scope.
-        return data.filterKeys { variable ->
-            val lexicalScope = lexicalScopeVariableInfo.declaredIn[variable]
-            // '-1' for variables declared outside this pseudocode
-            val depth = lexicalScope?.depth ?: -1
-            depth <= toDepth
+        val mask = scopeMasks.getOrPut(toDepth) {
+            val words = LongArray(VariableBitData.wordCount(variables.size()))
+            variables.forEachIndexed { index, variable ->
+                val lexicalScope = lexicalScopeVariableInfo.declaredIn[variable]
+                // '-1' for variables declared outside this pseudocode
+                val depth = lexicalScope?.depth ?: -1
+                if (depth <= toDepth) {
+                    words[index ushr 6] = words[index ushr 6] or (1L shl index)
+                }
+            }
+            words
         }
+        return data.retain(mask)
     }
 
     fun computeLexicalScopeVariableInfo(pseudocode: Pseudocode): LexicalScopeVariableInfo {
@@ -96,10 +106,6 @@ public class PseudocodeVariableDataCollector(
     }
 }
 
-//todo may be a type alias
-interface InstructionDataMergeStrategy<D> :
-  (Instruction, Collection<MutableMap<VariableDescriptor, D>>) -> Edges<MutableMap<VariableDescriptor, D>>
-
 public interface LexicalScopeVariableInfo {
     val declaredIn : Map<VariableDescriptor, LexicalScope>
     val scopeVariables : Map<LexicalScope, Collection<VariableDescriptor>>
@@ -16,8 +16,11 @@
 
 package org.jetbrains.kotlin.cfg;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import kotlin.jvm.functions.Function1;
+import kotlin.jvm.functions.Function2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode;
@@ -35,10 +38,7 @@ import org.jetbrains.kotlin.psi.JetDeclaration;
 import org.jetbrains.kotlin.psi.JetProperty;
 import org.jetbrains.kotlin.resolve.BindingContext;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static org.jetbrains.kotlin.cfg.pseudocodeTraverser.TraversalOrder.BACKWARD;
 import static org.jetbrains.kotlin.cfg.pseudocodeTraverser.TraversalOrder.FORWARD;
@@ -120,29 +120,42 @@ public class PseudocodeVariablesData {
         return variableInitializers;
     }
 
+    // Each variable has a bit in the following planes. The initialization state is merged as a set of possible states.
+    private static final int INIT_PRESENT = 0;
+    private static final int INIT_MAY_BE_INITIALIZED = 1;
+    private static final int INIT_MAY_BE_NOT_INITIALIZED = 2;
+    private static final int INIT_MAY_BE_NOT_DECLARED = 3;
+    private static final int INIT_PLANES = 4;
+
     @NotNull
     private Map<Instruction, Edges<Map<VariableDescriptor, VariableControlFlowState>>> computeVariableInitializers() {
 
         final LexicalScopeVariableInfo lexicalScopeVariableInfo = pseudocodeVariableDataCollector.getLexicalScopeVariableInfo();
+        final VariableIndex variables = VariableIndex.create(pseudocode, false, bindingContext);
+        final VariableBitData empty = VariableBitData.empty(INIT_PLANES, variables.size());
 
-        return pseudocodeVariableDataCollector.collectData(
-                FORWARD, /*mergeDataWithLocalDeclarations=*/ false,
-                new InstructionDataMergeStrategy<VariableControlFlowState>() {
-                    @NotNull
+        Map<Instruction, Edges<VariableBitData>> data = pseudocodeVariableDataCollector.collectData(
+                FORWARD, /*mergeDataWithLocalDeclarations=*/ false, variables.getDescriptors(), INIT_PLANES,
+                new Function2<Instruction, Collection<VariableBitData>, Edges<VariableBitData>>() {
                     @Override
-                    public Edges<Map<VariableDescriptor, VariableControlFlowState>> invoke(
+                    public Edges<VariableBitData> invoke(
                             @NotNull Instruction instruction,
-                            @NotNull Collection<? extends Map<VariableDescriptor, VariableControlFlowState>> incomingEdgesData
+                            @NotNull Collection<VariableBitData> incomingEdgesData
                     ) {
-
-                        Map<VariableDescriptor, VariableControlFlowState> enterInstructionData =
-                                mergeIncomingEdgesDataForInitializers(incomingEdgesData);
-                        Map<VariableDescriptor, VariableControlFlowState> exitInstructionData = addVariableInitStateFromCurrentInstructionIfAny(
-                                instruction, enterInstructionData, lexicalScopeVariableInfo);
-                        return new Edges<Map<VariableDescriptor, VariableControlFlowState>>(enterInstructionData, exitInstructionData);
+                        VariableBitData enterInstructionData = VariableBitData.merge(empty, incomingEdgesData);
+                        VariableBitData exitInstructionData = addVariableInitStateFromCurrentInstructionIfAny(
+                                instruction, enterInstructionData, variables, lexicalScopeVariableInfo);
+                        return new Edges<VariableBitData>(enterInstructionData, exitInstructionData);
                     }
                 }
         );
+
+        return toVariableMaps(data, new Function1<VariableBitData, Map<VariableDescriptor, VariableControlFlowState>>() {
+            @Override
+            public Map<VariableDescriptor, VariableControlFlowState> invoke(VariableBitData data) {
+                return new InitializersMap(variables, data);
+            }
+        });
     }
 
     public static VariableControlFlowState getDefaultValueForInitializers(
@@ -159,126 +172,288 @@ public class PseudocodeVariablesData {
     }
 
     @NotNull
-    private static Map<VariableDescriptor, VariableControlFlowState> mergeIncomingEdgesDataForInitializers(
-            @NotNull Collection<? extends Map<VariableDescriptor, VariableControlFlowState>> incomingEdgesData
-    ) {
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableControlFlowState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
-        }
-
-        Map<VariableDescriptor, VariableControlFlowState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            TriInitState initState = null;
-            boolean isDeclared = true;
-            for (Map<VariableDescriptor, VariableControlFlowState> edgeData : incomingEdgesData) {
-                VariableControlFlowState varControlFlowState = edgeData.get(variable);
-                if (varControlFlowState != null) {
-                    initState = initState != null ? initState.merge(varControlFlowState.initState) : varControlFlowState.initState;
-                    if (!varControlFlowState.isDeclared) {
-                        isDeclared = false;
-                    }
-                }
-            }
-            if (initState == null) {
-                throw new AssertionError("An empty set of incoming edges data");
-            }
-            enterInstructionData.put(variable, VariableControlFlowState.create(initState, isDeclared));
-        }
-        return enterInstructionData;
-    }
-
-    @NotNull
-    private Map<VariableDescriptor, VariableControlFlowState> addVariableInitStateFromCurrentInstructionIfAny(
+    private VariableBitData addVariableInitStateFromCurrentInstructionIfAny(
             @NotNull Instruction instruction,
-            @NotNull Map<VariableDescriptor, VariableControlFlowState> enterInstructionData,
+            @NotNull VariableBitData enterInstructionData,
+            @NotNull VariableIndex variables,
             @NotNull LexicalScopeVariableInfo lexicalScopeVariableInfo
     ) {
         if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
             return enterInstructionData;
         }
-        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
-        if (variable == null) {
+        int index = variables.getVariableIndex(instruction);
+        if (index < 0) {
             return enterInstructionData;
         }
-        Map<VariableDescriptor, VariableControlFlowState> exitInstructionData = Maps.newHashMap(enterInstructionData);
+        VariableControlFlowState enterInitState = decodeInitState(enterInstructionData, index);
         if (instruction instanceof WriteValueInstruction) {
             // if writing to already initialized object
             if (!PseudocodeUtil.isThisOrNoDispatchReceiver((WriteValueInstruction) instruction, bindingContext)) {
                 return enterInstructionData;
             }
 
-            VariableControlFlowState enterInitState = enterInstructionData.get(variable);
             VariableControlFlowState initializationAtThisElement =
                     VariableControlFlowState
                             .create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+            return encodeInitState(enterInstructionData, index, initializationAtThisElement);
         }
         else { // instruction instanceof VariableDeclarationInstruction
-            VariableControlFlowState enterInitState = enterInstructionData.get(variable);
             if (enterInitState == null) {
-                enterInitState = getDefaultValueForInitializers(variable, instruction, lexicalScopeVariableInfo);
+                enterInitState = getDefaultValueForInitializers(variables.getDescriptor(index), instruction, lexicalScopeVariableInfo);
             }
-            if (enterInitState == null || !enterInitState.mayBeInitialized() || !enterInitState.isDeclared) {
-                boolean isInitialized = enterInitState != null && enterInitState.mayBeInitialized();
-                VariableControlFlowState variableDeclarationInfo = VariableControlFlowState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
+            if (!enterInitState.mayBeInitialized() || !enterInitState.isDeclared) {
+                VariableControlFlowState variableDeclarationInfo = VariableControlFlowState.create(enterInitState.mayBeInitialized(), true);
+                return encodeInitState(enterInstructionData, index, variableDeclarationInfo);
             }
         }
-        return exitInstructionData;
+        return enterInstructionData;
+    }
+
+    @Nullable
+    private static VariableControlFlowState decodeInitState(@NotNull VariableBitData data, int index) {
+        if (!data.get(INIT_PRESENT, index)) return null;
+
+        boolean mayBeInitialized = data.get(INIT_MAY_BE_INITIALIZED, index);
+        boolean mayBeNotInitialized = data.get(INIT_MAY_BE_NOT_INITIALIZED, index);
+        TriInitState initState = mayBeInitialized
+                                 ? (mayBeNotInitialized ? TriInitState.UNKNOWN : TriInitState.INITIALIZED)
+                                 : TriInitState.NOT_INITIALIZED;
+        return VariableControlFlowState.create(initState, !data.get(INIT_MAY_BE_NOT_DECLARED, index));
+    }
+
+    @NotNull
+    private static VariableBitData encodeInitState(@NotNull VariableBitData data, int index, @NotNull VariableControlFlowState state) {
+        return data.with(index,
+                         true,
+                         state.initState != TriInitState.NOT_INITIALIZED,
+                         state.initState != TriInitState.INITIALIZED,
+                         !state.isDeclared);
     }
 
 // variable use
 
+    // Each variable has a bit in the following planes, a state with a higher priority has all bits of the lower ones,
+    // so the merged state is the one with the highest priority.
+    private static final int USE_PRESENT = 0;
+    private static final int USE_PRIORITY_ABOVE_0 = 1;
+    private static final int USE_PRIORITY_ABOVE_1 = 2;
+    private static final int USE_PRIORITY_ABOVE_2 = 3;
+    private static final int USE_PLANES = 4;
+
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        return pseudocodeVariableDataCollector.collectData(
-                BACKWARD, /*mergeDataWithLocalDeclarations=*/ true,
-                new InstructionDataMergeStrategy<VariableUseState>() {
-                    @NotNull
+        final VariableIndex variables = VariableIndex.create(pseudocode, true, bindingContext);
+        final VariableBitData empty = VariableBitData.empty(USE_PLANES, variables.size());
+
+        Map<Instruction, Edges<VariableBitData>> data = pseudocodeVariableDataCollector.collectData(
+                BACKWARD, /*mergeDataWithLocalDeclarations=*/ true, variables.getDescriptors(), USE_PLANES,
+                new Function2<Instruction, Collection<VariableBitData>, Edges<VariableBitData>>() {
                     @Override
-                    public Edges<Map<VariableDescriptor, VariableUseState>> invoke(
+                    public Edges<VariableBitData> invoke(
                             @NotNull Instruction instruction,
-                            @NotNull Collection<? extends Map<VariableDescriptor, VariableUseState>> incomingEdgesData
+                            @NotNull Collection<VariableBitData> incomingEdgesData
                     ) {
 
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-                            }
-                        }
-                        VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(
-                                instruction, true, bindingContext);
-                        if (variableDescriptor == null ||
+                        VariableBitData enterResult = VariableBitData.merge(empty, incomingEdgesData);
+                        int index = variables.getVariableIndex(instruction);
+                        if (index < 0 ||
                             (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return new Edges<Map<VariableDescriptor, VariableUseState>>(enterResult, enterResult);
+                            return new Edges<VariableBitData>(enterResult, enterResult);
                         }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
+                        VariableBitData exitResult;
                         if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.READ);
+                            exitResult = encodeUseState(enterResult, index, VariableUseState.READ);
                         }
                         else { //instruction instanceof WriteValueInstruction
-                            VariableUseState variableUseState = enterResult.get(variableDescriptor);
+                            VariableUseState variableUseState = decodeUseState(enterResult, index);
                             if (variableUseState == null) {
                                 variableUseState = VariableUseState.UNUSED;
                             }
                             switch (variableUseState) {
                                 case UNUSED:
                                 case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
+                                    exitResult = encodeUseState(enterResult, index, VariableUseState.ONLY_WRITTEN_NEVER_READ);
                                     break;
-                                case WRITTEN_AFTER_READ:
-                                case READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.WRITTEN_AFTER_READ);
+                                default: // WRITTEN_AFTER_READ, READ
+                                    exitResult = encodeUseState(enterResult, index, VariableUseState.WRITTEN_AFTER_READ);
                             }
                         }
-                        return new Edges<Map<VariableDescriptor, VariableUseState>>(enterResult, exitResult);
+                        return new Edges<VariableBitData>(enterResult, exitResult);
                     }
                 }
         );
+
+        return toVariableMaps(data, new Function1<VariableBitData, Map<VariableDescriptor, VariableUseState>>() {
+            @Override
+            public Map<VariableDescriptor, VariableUseState> invoke(VariableBitData data) {
+                return new UseStatusMap(variables, data);
+            }
+        });
+    }
+
+    @Nullable
+    private static VariableUseState decodeUseState(@NotNull VariableBitData data, int index) {
+        if (!data.get(USE_PRESENT, index)) return null;
+        if (data.get(USE_PRIORITY_ABOVE_2, index)) return VariableUseState.READ;
+        if (data.get(USE_PRIORITY_ABOVE_1, index)) return VariableUseState.WRITTEN_AFTER_READ;
+        if (data.get(USE_PRIORITY_ABOVE_0, index)) return VariableUseState.ONLY_WRITTEN_NEVER_READ;
+        return VariableUseState.UNUSED;
+    }
+
+    @NotNull
+    private static VariableBitData encodeUseState(@NotNull VariableBitData data, int index, @NotNull VariableUseState state) {
+        return data.with(index, true, state.priority > 0, state.priority > 1, state.priority > 2);
+    }
+
+    @NotNull
+    private static <S> Map<Instruction, Edges<Map<VariableDescriptor, S>>> toVariableMaps(
+            @NotNull Map<Instruction, Edges<VariableBitData>> data,
+            @NotNull Function1<VariableBitData, Map<VariableDescriptor, S>> createMap
+    ) {
+        Map<Instruction, Edges<Map<VariableDescriptor, S>>> result = Maps.newLinkedHashMap();
+        for (Map.Entry<Instruction, Edges<VariableBitData>> entry : data.entrySet()) {
+            VariableBitData incoming = entry.getValue().getIncoming();
+            VariableBitData outgoing = entry.getValue().getOutgoing();
+            Map<VariableDescriptor, S> incomingMap = createMap.invoke(incoming);
+            Map<VariableDescriptor, S> outgoingMap = incoming == outgoing ? incomingMap : createMap.invoke(outgoing);
+            result.put(entry.getKey(), new Edges<Map<VariableDescriptor, S>>(incomingMap, outgoingMap));
+        }
+        return result;
+    }
+
+    /**
+     * Variables which may have data in the analysis, and variables which are accessed by the instructions.
+     */
+    private static class VariableIndex {
+        private final List<VariableDescriptor> descriptors = Lists.newArrayList();
+        private final Map<VariableDescriptor, Integer> indices = Maps.newHashMap();
+        private final Map<Instruction, Integer> instructionVariables = Maps.newHashMap();
+
+        @NotNull
+        static VariableIndex create(@NotNull Pseudocode pseudocode, boolean onlyReference, @NotNull BindingContext bindingContext) {
+            VariableIndex index = new VariableIndex();
+            index.addVariables(pseudocode, onlyReference, bindingContext);
+            return index;
+        }
+
+        private void addVariables(@NotNull Pseudocode pseudocode, boolean onlyReference, @NotNull BindingContext bindingContext) {
+            for (Instruction instruction : pseudocode.getInstructions()) {
+                if (instruction instanceof LocalFunctionDeclarationInstruction) {
+                    addVariables(((LocalFunctionDeclarationInstruction) instruction).getBody(), onlyReference, bindingContext);
+                }
+                VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, onlyReference, bindingContext);
+                if (variable == null) continue;
+
+                Integer index = indices.get(variable);
+                if (index == null) {
+                    index = descriptors.size();
+                    descriptors.add(variable);
+                    indices.put(variable, index);
+                }
+                instructionVariables.put(instruction, index);
+            }
+        }
+
+        int size() {
+            return descriptors.size();
+        }
+
+        @NotNull
+        List<VariableDescriptor> getDescriptors() {
+            return descriptors;
+        }
+
+        @NotNull
+        VariableDescriptor getDescriptor(int index) {
+            return descriptors.get(index);
+        }
+
+        int getIndex(@Nullable Object variable) {
+            Integer index = indices.get(variable);
+            return index != null ? index : -1;
+        }
+
+        int getVariableIndex(@NotNull Instruction instruction) {
+            Integer index = instructionVariables.get(instruction);
+            return index != null ? index : -1;
+        }
+    }
+
+    /**
+     * Read-only view of the data of all variables at some point.
+     */
+    private abstract static class VariableDataMap<S> extends AbstractMap<VariableDescriptor, S> {
+        protected final VariableIndex variables;
+        protected final VariableBitData data;
+
+        VariableDataMap(@NotNull VariableIndex variables, @NotNull VariableBitData data) {
+            this.variables = variables;
+            this.data = data;
+        }
+
+        @Nullable
+        protected abstract S decode(int index);
+
+        @Override
+        public S get(Object key) {
+            int index = variables.getIndex(key);
+            return index >= 0 ? decode(index) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @NotNull
+        @Override
+        public Set<Entry<VariableDescriptor, S>> entrySet() {
+            Set<Entry<VariableDescriptor, S>> entries = Sets.newLinkedHashSet();
+            for (int index = 0; index < variables.size(); index++) {
+                S state = decode(index);
+                if (state != null) {
+                    entries.add(new SimpleImmutableEntry<VariableDescriptor, S>(variables.getDescriptor(index), state));
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof VariableDataMap && ((VariableDataMap) o).variables == variables) {
+                return data.equals(((VariableDataMap) o).data);
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+
+    private static class InitializersMap extends VariableDataMap<VariableControlFlowState> {
+        InitializersMap(@NotNull VariableIndex variables, @NotNull VariableBitData data) {
+            super(variables, data);
+        }
+
+        @Nullable
+        @Override
+        protected VariableControlFlowState decode(int index) {
+            return decodeInitState(data, index);
+        }
+    }
+
+    private static class UseStatusMap extends VariableDataMap<VariableUseState> {
+        UseStatusMap(@NotNull VariableIndex variables, @NotNull VariableBitData data) {
+            super(variables, data);
+        }
+
+        @Nullable
+        @Override
+        protected VariableUseState decode(int index) {
+            return decodeUseState(data, index);
+        }
     }
 
     private enum TriInitState {
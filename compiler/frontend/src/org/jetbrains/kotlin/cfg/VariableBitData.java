@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cfg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable data flow states of a fixed set of indexed variables.
+ *
+ * A state of a variable is a combination of flags, and every flag is kept in its own plane, which has one bit per variable.
+ * States are encoded so that merging them is a bitwise "or" of the planes, which makes merging the data of all variables
+ * at a join point a few word operations.
+ */
+public final class VariableBitData {
+    private final int wordsPerPlane;
+    private final long[] words;
+    private int hashCode;
+
+    private VariableBitData(int wordsPerPlane, @NotNull long[] words) {
+        this.wordsPerPlane = wordsPerPlane;
+        this.words = words;
+    }
+
+    @NotNull
+    public static VariableBitData empty(int planes, int variableCount) {
+        int wordsPerPlane = wordCount(variableCount);
+        return new VariableBitData(wordsPerPlane, new long[planes * wordsPerPlane]);
+    }
+
+    public static int wordCount(int variableCount) {
+        return (variableCount + 63) >>> 6;
+    }
+
+    public boolean get(int plane, int index) {
+        return (words[plane * wordsPerPlane + (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the data in which the variable with the given index has the given flags in the corresponding planes
+     */
+    @NotNull
+    public VariableBitData with(int index, @NotNull boolean... flags) {
+        assert flags.length * wordsPerPlane == words.length : "Flags should be given for all planes: " + flags.length;
+
+        long[] result = words.clone();
+        long bit = 1L << index;
+        for (int plane = 0; plane < flags.length; plane++) {
+            int word = plane * wordsPerPlane + (index >>> 6);
+            result[word] = flags[plane] ? result[word] | bit : result[word] & ~bit;
+        }
+        return Arrays.equals(result, words) ? this : new VariableBitData(wordsPerPlane, result);
+    }
+
+    /**
+     * @return the data in which the states of the variables absent in the mask are cleared
+     */
+    @NotNull
+    public VariableBitData retain(@NotNull long[] mask) {
+        long[] result = null;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i] & mask[i % wordsPerPlane];
+            if (word != words[i]) {
+                if (result == null) result = words.clone();
+                result[i] = word;
+            }
+        }
+        return result != null ? new VariableBitData(wordsPerPlane, result) : this;
+    }
+
+    @NotNull
+    public static VariableBitData merge(@NotNull VariableBitData empty, @NotNull Collection<VariableBitData> data) {
+        if (data.isEmpty()) return empty;
+        if (data.size() == 1) return data.iterator().next();
+
+        long[] result = null;
+        for (VariableBitData item : data) {
+            if (result == null) {
+                result = item.words.clone();
+                continue;
+            }
+            for (int i = 0; i < result.length; i++) {
+                result[i] |= item.words[i];
+            }
+        }
+        return new VariableBitData(empty.wordsPerPlane, result);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VariableBitData)) return false;
+        return Arrays.equals(words, ((VariableBitData) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hashCode == 0) {
+            hashCode = Arrays.hashCode(words);
+        }
+        return hashCode;
+    }
+}
@@ -26,6 +26,7 @@ import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.platform.PlatformToKotlinClassMap
 import org.jetbrains.kotlin.resolve.TargetPlatform
 import org.jetbrains.kotlin.resolve.createModule
+import org.jetbrains.kotlin.storage.ConcurrentStorageManager
 import org.jetbrains.kotlin.storage.ExceptionTracker
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.storage.StorageManager
@@ -97,6 +98,14 @@ public fun GlobalContext(): GlobalContextImpl {
     return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(tracker), tracker)
 }
 
+/**
+ * A context whose storage manager computes lazy values on several threads at once, see [ConcurrentStorageManager]
+ */
+public fun ConcurrentGlobalContext(): SimpleGlobalContext {
+    val tracker = ExceptionTracker()
+    return SimpleGlobalContext(ConcurrentStorageManager.createWithExceptionHandling(tracker), tracker)
+}
+
 public fun ProjectContext(project: Project): ProjectContext = ProjectContextImpl(project, GlobalContext())
 public fun ModuleContext(module: ModuleDescriptor, project: Project): ModuleContext =
         ModuleContextImpl(module, ProjectContext(project))
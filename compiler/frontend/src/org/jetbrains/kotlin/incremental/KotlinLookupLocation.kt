@@ -16,7 +16,25 @@
 
 package org.jetbrains.kotlin.incremental
 
+import org.jetbrains.kotlin.diagnostics.DiagnosticUtils.getLineAndColumnInPsiFile
+import org.jetbrains.kotlin.incremental.components.LocationInfo
 import org.jetbrains.kotlin.incremental.components.LookupLocation
+import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.psi.JetElement
+import org.jetbrains.kotlin.psi.doNotAnalyze
 
-class KotlinLookupLocation(val element: JetElement) : LookupLocation
+class KotlinLookupLocation(val element: JetElement) : LookupLocation {
+    override val location: LocationInfo?
+        get() {
+            val containingJetFile = element.getContainingJetFile()
+
+            if (containingJetFile.doNotAnalyze != null) return null
+
+            return object : LocationInfo {
+                override val filePath = containingJetFile.virtualFile.path
+
+                override val position: Position
+                    get() = getLineAndColumnInPsiFile(containingJetFile, element.textRange).let { Position(it.line, it.column) }
+            }
+        }
+}
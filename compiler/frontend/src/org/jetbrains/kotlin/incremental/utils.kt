@@ -16,16 +16,11 @@
 
 package org.jetbrains.kotlin.incremental
 
-import org.jetbrains.kotlin.descriptors.ClassifierDescriptor
-import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor
-import org.jetbrains.kotlin.diagnostics.DiagnosticUtils.getLineAndColumnInPsiFile
 import org.jetbrains.kotlin.incremental.components.LookupLocation
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.NoLookupLocation
-import org.jetbrains.kotlin.incremental.components.ScopeKind
+import org.jetbrains.kotlin.incremental.components.record
 import org.jetbrains.kotlin.name.Name
-import org.jetbrains.kotlin.psi.doNotAnalyze
-import org.jetbrains.kotlin.resolve.descriptorUtil.fqNameUnsafe
 import org.jetbrains.kotlin.resolve.scopes.JetScope
 
 public fun LookupTracker.record(from: LookupLocation, inScope: JetScope, name: Name) {
@@ -33,21 +28,5 @@ public fun LookupTracker.record(from: LookupLocation, inScope: JetScope, name: N
 
     if (from !is KotlinLookupLocation) throw AssertionError("Unexpected location type: ${from.javaClass}")
 
-    val containingJetFile = from.element.getContainingJetFile()
-
-    if (containingJetFile.doNotAnalyze != null) return
-
-    val containingFilePath = containingJetFile.virtualFile.path
-    val lineAndColumn = if (requiresLookupLineAndColumn) getLineAndColumnInPsiFile(containingJetFile, from.element.textRange) else null
-
-    val scopeContainingDeclaration = inScope.getContainingDeclaration()
-
-    val scopeKind =
-            when (scopeContainingDeclaration) {
-                is ClassifierDescriptor -> ScopeKind.CLASSIFIER
-                is PackageFragmentDescriptor -> ScopeKind.PACKAGE
-                else -> throw AssertionError("Unexpected containing declaration type: ${scopeContainingDeclaration.javaClass}")
-            }
-
-    record(containingFilePath, lineAndColumn?.line, lineAndColumn?.column, scopeContainingDeclaration.fqNameUnsafe.asString(), scopeKind, name.asString())
+    record(from, inScope.getContainingDeclaration(), name)
 }
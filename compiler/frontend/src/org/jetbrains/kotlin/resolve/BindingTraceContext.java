@@ -36,6 +36,9 @@ public class BindingTraceContext implements BindingTrace {
     /* package */ final static boolean TRACK_REWRITES = false;
     /* package */ final static boolean TRACK_WITH_STACK_TRACES = true;
 
+    // Stores the data of each slice in a separate compact table, see PerSliceSlicedMap
+    /* package */ final static boolean USE_PER_SLICE_MAP = Boolean.getBoolean("kotlin.binding.trace.per.slice.map");
+
     private final MutableSlicedMap map;
     private final MutableDiagnosticsWithSuppression mutableDiagnostics;
 
@@ -79,7 +82,8 @@ public class BindingTraceContext implements BindingTrace {
 
     public BindingTraceContext() {
         //noinspection ConstantConditions
-        this(TRACK_REWRITES ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create());
+        this(TRACK_REWRITES ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) :
+             USE_PER_SLICE_MAP ? PerSliceSlicedMap.create() : SlicedMapImpl.create());
     }
 
 
@@ -33,6 +33,8 @@ import org.jetbrains.annotations.ReadOnly;
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
 import org.jetbrains.kotlin.descriptors.*;
 import org.jetbrains.kotlin.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.kotlin.incremental.KotlinLookupLocation;
+import org.jetbrains.kotlin.incremental.components.LookupLocation;
 import org.jetbrains.kotlin.incremental.components.NoLookupLocation;
 import org.jetbrains.kotlin.lexer.JetToken;
 import org.jetbrains.kotlin.lexer.JetTokens;
@@ -739,11 +741,12 @@ public class OverrideResolver {
             @NotNull CallableMemberDescriptor declared,
             @NotNull ClassDescriptor declaringClass
     ) {
+        LookupLocation location = lookupLocationFor(declared);
         for (JetType supertype : declaringClass.getTypeConstructor().getSupertypes()) {
             Set<CallableMemberDescriptor> all = Sets.newLinkedHashSet();
-            all.addAll(supertype.getMemberScope().getFunctions(declared.getName(), NoLookupLocation.UNSORTED));
+            all.addAll(supertype.getMemberScope().getFunctions(declared.getName(), location));
             //noinspection unchecked
-            all.addAll((Collection) supertype.getMemberScope().getProperties(declared.getName(), NoLookupLocation.UNSORTED));
+            all.addAll((Collection) supertype.getMemberScope().getProperties(declared.getName(), location));
             for (CallableMemberDescriptor fromSuper : all) {
                 if (OverridingUtil.DEFAULT.isOverridableBy(fromSuper, declared).getResult() == OVERRIDABLE) {
                     if (Visibilities.isVisible(ReceiverValue.IRRELEVANT_RECEIVER, fromSuper, declared)) {
@@ -757,6 +760,15 @@ public class OverrideResolver {
         return null;
     }
 
+    @NotNull
+    private static LookupLocation lookupLocationFor(@NotNull CallableMemberDescriptor declared) {
+        // Whether a member of a supertype is overridden depends on it, so the lookup is recorded for incremental compilation
+        PsiElement declaration = DescriptorToSourceUtils.descriptorToDeclaration(declared);
+        return declaration instanceof JetElement
+               ? new KotlinLookupLocation((JetElement) declaration)
+               : NoLookupLocation.WHEN_GET_SUPER_MEMBERS;
+    }
+
     private void checkParameterOverridesForAllClasses(@NotNull TopDownAnalysisContext c) {
         for (ClassDescriptorWithResolutionScopes classDescriptor : c.getDeclaredClasses().values()) {
             for (DeclarationDescriptor member : classDescriptor.getDefaultType().getMemberScope().getAllDescriptors()) {
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import com.intellij.openapi.util.Key;
+import gnu.trove.THashMap;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An alternative to {@link SlicedMapImpl} which stores the data of each slice separately.
+ *
+ * Instead of a holder object for every key, which contains the values of all slices for this key, every slice has its own
+ * open addressing hash table with keys and values stored in plain arrays. PSI elements, which are the keys of most slices,
+ * don't override equals() and hashCode(), so they are effectively compared by identity there.
+ * Slices with boolean values (see {@link Slices.SetSlice}) only store their keys, the rarely recorded false values are
+ * marked in a bit set.
+ */
+public class PerSliceSlicedMap implements MutableSlicedMap {
+
+    public static PerSliceSlicedMap create() {
+        return new PerSliceSlicedMap();
+    }
+
+    private final Map<Key<?>, SliceStorage> storages = new THashMap<Key<?>, SliceStorage>();
+    private Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = null;
+
+    @Override
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        Key<V> sliceKey = slice.getKey();
+        SliceStorage storage = storages.get(sliceKey);
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (storage != null && rewritePolicy.rewriteProcessingNeeded(key)) {
+            //noinspection unchecked
+            V oldValue = (V) storage.get(key);
+            if (oldValue != null) {
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
+                    return;
+                }
+            }
+        }
+
+        if (slice.isCollective()) {
+            if (collectiveSliceKeys == null) {
+                collectiveSliceKeys = ArrayListMultimap.create();
+            }
+
+            collectiveSliceKeys.put(slice, key);
+        }
+
+        if (value == null) {
+            // Like UserDataHolder, null means removal
+            if (storage != null) {
+                storage.remove(key);
+            }
+        }
+        else {
+            if (storage == null) {
+                storage = slice instanceof Slices.SetSlice ? new BooleanSliceStorage() : new SliceStorage();
+                storages.put(sliceKey, storage);
+            }
+            storage.put(key, value);
+        }
+
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        storages.clear();
+        collectiveSliceKeys = null;
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        SliceStorage storage = storages.get(slice.getKey());
+
+        //noinspection unchecked
+        V value = storage == null ? null : (V) storage.get(key);
+
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+
+        if (collectiveSliceKeys == null) return Collections.emptyList();
+        return (Collection<K>) collectiveSliceKeys.get(slice);
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        for (Map.Entry<Key<?>, SliceStorage> entry : storages.entrySet()) {
+            WritableSlice slice = ((AbstractWritableSlice) entry.getKey()).getSlice();
+            SliceStorage storage = entry.getValue();
+
+            for (int i = 0; i < storage.keys.length; i++) {
+                Object key = storage.keys[i];
+                if (key == null || key == REMOVED) continue;
+
+                f.invoke(slice, key, storage.valueAt(i));
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+
+        SliceStorage storage = storages.get(slice.getKey());
+        if (storage != null) {
+            for (int i = 0; i < storage.keys.length; i++) {
+                Object key = storage.keys[i];
+                if (key == null || key == REMOVED) continue;
+
+                //noinspection unchecked
+                builder.put((K) key, (V) storage.valueAt(i));
+            }
+        }
+        return builder.build();
+    }
+
+    private static final Object REMOVED = new Object();
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Open addressing with linear probing, the capacity is always a power of two
+    private static class SliceStorage {
+        protected Object[] keys = new Object[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        // the number of cells which are not null, including removed ones
+        private int occupied = 0;
+
+        @Nullable
+        public final Object get(@NotNull Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : valueAt(index);
+        }
+
+        public final void put(@NotNull Object key, @NotNull Object value) {
+            int index = indexOf(key);
+            if (index < 0) {
+                if ((occupied + 1) * 4 > keys.length * 3) {
+                    rehash();
+                }
+                index = insertionIndex(keys, key);
+                if (keys[index] == null) {
+                    occupied++;
+                }
+                keys[index] = key;
+            }
+            setValueAt(index, value);
+        }
+
+        public final void remove(@NotNull Object key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                keys[index] = REMOVED;
+                setValueAt(index, null);
+            }
+        }
+
+        protected Object valueAt(int index) {
+            return values[index];
+        }
+
+        protected void setValueAt(int index, @Nullable Object value) {
+            values[index] = value;
+        }
+
+        protected void resizeValues(@NotNull Object[] oldKeys, @NotNull Object[] newKeys) {
+            Object[] oldValues = values;
+            values = new Object[newKeys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                Object key = oldKeys[i];
+                if (key == null || key == REMOVED) continue;
+                values[find(newKeys, key)] = oldValues[i];
+            }
+        }
+
+        private int indexOf(@NotNull Object key) {
+            int index = find(keys, key);
+            return keys[index] == null ? -1 : index;
+        }
+
+        private void rehash() {
+            Object[] oldKeys = keys;
+            int size = 0;
+            for (Object key : oldKeys) {
+                if (key != null && key != REMOVED) size++;
+            }
+
+            int capacity = INITIAL_CAPACITY;
+            while ((size + 1) * 2 > capacity) {
+                capacity <<= 1;
+            }
+
+            Object[] newKeys = new Object[capacity];
+            for (Object key : oldKeys) {
+                if (key == null || key == REMOVED) continue;
+                newKeys[insertionIndex(newKeys, key)] = key;
+            }
+            resizeValues(oldKeys, newKeys);
+            keys = newKeys;
+            occupied = size;
+        }
+
+        // Index of the cell containing the key, or of the empty cell where the search has stopped
+        private static int find(@NotNull Object[] keys, @NotNull Object key) {
+            int mask = keys.length - 1;
+            int index = spread(key.hashCode()) & mask;
+            while (true) {
+                Object current = keys[index];
+                if (current == null || current == key || (current != REMOVED && current.equals(key))) return index;
+                index = (index + 1) & mask;
+            }
+        }
+
+        // Index of the first removed or empty cell for a key which is known to be absent
+        private static int insertionIndex(@NotNull Object[] keys, @NotNull Object key) {
+            int mask = keys.length - 1;
+            int index = spread(key.hashCode()) & mask;
+            while (keys[index] != null && keys[index] != REMOVED) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private static int spread(int hashCode) {
+            int h = hashCode * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static class BooleanSliceStorage extends SliceStorage {
+        // Cells holding false, all other cells hold true
+        private BitSet falseValues = new BitSet();
+
+        @Override
+        protected Object valueAt(int index) {
+            return !falseValues.get(index);
+        }
+
+        @Override
+        protected void setValueAt(int index, @Nullable Object value) {
+            falseValues.set(index, Boolean.FALSE.equals(value));
+        }
+
+        @Override
+        protected void resizeValues(@NotNull Object[] oldKeys, @NotNull Object[] newKeys) {
+            BitSet oldFalseValues = falseValues;
+            falseValues = new BitSet();
+            for (int i = oldFalseValues.nextSetBit(0); i >= 0; i = oldFalseValues.nextSetBit(i + 1)) {
+                Object key = oldKeys[i];
+                if (key == null || key == REMOVED) continue;
+                falseValues.set(SliceStorage.find(newKeys, key));
+            }
+        }
+    }
+}
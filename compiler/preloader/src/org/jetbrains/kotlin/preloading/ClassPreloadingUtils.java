@@ -36,6 +36,8 @@ public class ClassPreloadingUtils {
      * @param parentClassLoader parent class loader
      * @param handler handler to be notified on class definitions done by this class loader, or null
      * @param classesToLoadByParent condition to load some classes via parent class loader
+     * @param lazy if true, jars are mapped into memory and only their directories are read, each class is read and inflated
+     *             only when it's loaded; otherwise all classes are read and inflated right away
      * @return a class loader that reads classes from memory
      * @throws IOException on from reading the jar
      */
@@ -44,13 +46,14 @@ public class ClassPreloadingUtils {
             int classCountEstimation,
             ClassLoader parentClassLoader,
             ClassCondition classesToLoadByParent,
-            ClassHandler handler
+            ClassHandler handler,
+            boolean lazy
     ) throws IOException {
-        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
+        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler, lazy);
 
         Collection<File> classpath = mergeClasspathFromManifests(entries);
         if (!classpath.isEmpty()) {
-            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler);
+            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler, lazy);
         }
 
         return new MemoryBasedClassLoader(classesToLoadByParent, parentClassLoader, entries, handler, createFallbackClassLoader(jarFiles));
@@ -64,6 +67,16 @@ public class ClassPreloadingUtils {
         return new URLClassLoader(urls.toArray(new URL[urls.size()]), null);
     }
 
+    public static ClassLoader preloadClasses(
+            Collection<File> jarFiles,
+            int classCountEstimation,
+            ClassLoader parentClassLoader,
+            ClassCondition classesToLoadByParent,
+            ClassHandler handler
+    ) throws IOException {
+        return preloadClasses(jarFiles, classCountEstimation, parentClassLoader, classesToLoadByParent, handler, false);
+    }
+
     public static ClassLoader preloadClasses(
             Collection<File> jarFiles, int classCountEstimation, ClassLoader parentClassLoader, ClassCondition classesToLoadByParent
     ) throws IOException {
@@ -89,7 +102,7 @@ public class ClassPreloadingUtils {
     }
 
     private static Collection<File> extractManifestClasspath(ResourceData manifestData) throws IOException {
-        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.bytes));
+        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.getBytes()));
         String classpathSpaceSeparated = (String) manifest.getMainAttributes().get(Attributes.Name.CLASS_PATH);
         if (classpathSpaceSeparated == null) return Collections.emptyList();
 
@@ -114,7 +127,8 @@ public class ClassPreloadingUtils {
     private static Map<String, Object> loadAllClassesFromJars(
             Collection<File> jarFiles,
             int classNumberEstimate,
-            ClassHandler handler
+            ClassHandler handler,
+            boolean lazy
     ) throws IOException {
         // 0.75 is HashMap.DEFAULT_LOAD_FACTOR
         Map<String, Object> resources = new HashMap<String, Object>((int) (classNumberEstimate / 0.75));
@@ -124,56 +138,22 @@ public class ClassPreloadingUtils {
                 handler.beforeLoadJar(jarFile);
             }
 
-            FileInputStream fileInputStream = new FileInputStream(jarFile);
-            try {
-                byte[] buffer = new byte[10 * 1024];
-                ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
-                while (true) {
-                    ZipEntry entry = stream.getNextEntry();
-                    if (entry == null) break;
-                    if (entry.isDirectory()) continue;
-
-                    int size = (int) entry.getSize();
-                    int effectiveSize = size < 0 ? 32 : size;
-                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
-
-                    int count;
-                    while ((count = stream.read(buffer)) > 0) {
-                        bytes.write(buffer, 0, count);
-                    }
-
-                    String name = entry.getName();
-                    byte[] data = bytes.toByteArray();
-                    if (handler != null) {
-                        data = handler.instrument(name, data);
-                    }
-                    ResourceData resourceData = new ResourceData(jarFile, name, data);
-
-                    Object previous = resources.get(name);
-                    if (previous == null) {
-                        resources.put(name, resourceData);
-                    }
-                    else if (previous instanceof ResourceData) {
-                        List<ResourceData> list = new ArrayList<ResourceData>();
-                        list.add((ResourceData) previous);
-                        list.add(resourceData);
-                        resources.put(name, list);
-                    }
-                    else {
-                        assert previous instanceof ArrayList :
-                                "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
-                        ((ArrayList<ResourceData>) previous).add(resourceData);
-                    }
+            List<ResourceData> mappedEntries = null;
+            if (lazy) {
+                MappedJar mappedJar = MappedJar.open(jarFile);
+                if (mappedJar != null) {
+                    mappedEntries = mappedJar.readEntries(handler);
                 }
             }
-            finally {
-                try {
-                    fileInputStream.close();
-                }
-                catch (IOException e) {
-                    // Ignore
+
+            if (mappedEntries != null) {
+                for (ResourceData resourceData : mappedEntries) {
+                    addResource(resources, resourceData);
                 }
             }
+            else {
+                loadAllClassesFromJar(jarFile, resources, handler);
+            }
 
             if (handler != null) {
                 handler.afterLoadJar(jarFile);
@@ -188,4 +168,60 @@ public class ClassPreloadingUtils {
 
         return resources;
     }
+
+    private static void loadAllClassesFromJar(File jarFile, Map<String, Object> resources, ClassHandler handler) throws IOException {
+        FileInputStream fileInputStream = new FileInputStream(jarFile);
+        try {
+            byte[] buffer = new byte[10 * 1024];
+            ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
+            while (true) {
+                ZipEntry entry = stream.getNextEntry();
+                if (entry == null) break;
+                if (entry.isDirectory()) continue;
+
+                int size = (int) entry.getSize();
+                int effectiveSize = size < 0 ? 32 : size;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
+
+                int count;
+                while ((count = stream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, count);
+                }
+
+                String name = entry.getName();
+                byte[] data = bytes.toByteArray();
+                if (handler != null) {
+                    data = handler.instrument(name, data);
+                }
+                addResource(resources, new ResourceData(jarFile, name, data));
+            }
+        }
+        finally {
+            try {
+                fileInputStream.close();
+            }
+            catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static void addResource(Map<String, Object> resources, ResourceData resourceData) {
+        String name = resourceData.resourceName;
+        Object previous = resources.get(name);
+        if (previous == null) {
+            resources.put(name, resourceData);
+        }
+        else if (previous instanceof ResourceData) {
+            List<ResourceData> list = new ArrayList<ResourceData>();
+            list.add((ResourceData) previous);
+            list.add(resourceData);
+            resources.put(name, list);
+        }
+        else {
+            assert previous instanceof ArrayList :
+                    "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
+            ((ArrayList<ResourceData>) previous).add(resourceData);
+        }
+    }
 }
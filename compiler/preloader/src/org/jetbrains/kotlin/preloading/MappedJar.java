@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A jar file mapped into memory, whose entries are read directly from the mapped buffer.
+ *
+ * Only the central directory is parsed when the jar is opened, the contents of an entry are inflated each time they are requested,
+ * so the memory is taken only by the classes which are actually loaded, and only until they are defined.
+ */
+class MappedJar {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final ByteBuffer buffer;
+
+    private MappedJar(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return the mapped jar, or null if the jar can't be read this way (it's too large or uses features of the zip format
+     * which are not supported here), in which case it should be read with java.util.zip
+     */
+    public static MappedJar open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long length = randomAccessFile.length();
+            if (length < END_SIZE || length > Integer.MAX_VALUE) return null;
+
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedJar(file, buffer);
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return resources for all files in the jar in the order of the central directory, or null if the jar is not supported
+     */
+    public List<ResourceData> readEntries(ClassHandler handler) {
+        int end = findEndOfCentralDirectory();
+        if (end < 0) return null;
+
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long centralDirectoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (centralDirectoryOffset >= end) return null;
+
+        List<ResourceData> result = new ArrayList<ResourceData>(count);
+        int position = (int) centralDirectoryOffset;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > end || buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) return null;
+
+            int flags = buffer.getShort(position + 8) & 0xFFFF;
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != STORED && method != DEFLATED) ||
+                size > Integer.MAX_VALUE || localHeaderOffset + LOCAL_HEADER_SIZE + compressedSize > centralDirectoryOffset) {
+                return null;
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(position + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(nameBytes);
+            // ZipInputStream, which is used to read jars otherwise, decodes all names as UTF-8 as well
+            String name = new String(nameBytes, UTF8);
+
+            if (!name.endsWith("/")) {
+                result.add(new Entry(name, (int) localHeaderOffset, method, (int) compressedSize, (int) size, handler));
+            }
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    private int findEndOfCentralDirectory() {
+        int limit = Math.max(0, buffer.capacity() - END_SIZE - MAX_COMMENT_LENGTH);
+        for (int i = buffer.capacity() - END_SIZE; i >= limit; i--) {
+            if (buffer.getInt(i) == END_SIGNATURE) return i;
+        }
+        return -1;
+    }
+
+    private class Entry extends ResourceData {
+        private final int localHeaderOffset;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final ClassHandler handler;
+
+        Entry(String name, int localHeaderOffset, int method, int compressedSize, int size, ClassHandler handler) {
+            super(file, name, null);
+            this.localHeaderOffset = localHeaderOffset;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.handler = handler;
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            // Absolute reads on a duplicate, because this may be called concurrently for resources
+            ByteBuffer data = buffer.duplicate();
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid local header of " + resourceName + " in " + jarFile);
+            }
+            int dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE +
+                             (data.getShort(localHeaderOffset + 26) & 0xFFFF) + (data.getShort(localHeaderOffset + 28) & 0xFFFF);
+            if (dataOffset + compressedSize > data.capacity()) {
+                throw new IOException("Invalid size of " + resourceName + " in " + jarFile);
+            }
+            data.position(dataOffset);
+
+            byte[] bytes = method == STORED ? read(data, size) : inflate(data);
+            return handler != null ? handler.instrument(resourceName, bytes) : bytes;
+        }
+
+        private byte[] read(ByteBuffer data, int length) {
+            byte[] result = new byte[length];
+            data.get(result);
+            return result;
+        }
+
+        private byte[] inflate(ByteBuffer data) throws IOException {
+            // Inflater in the "nowrap" mode may need an extra byte after the compressed data, see its documentation
+            byte[] compressed = new byte[compressedSize + 1];
+            data.get(compressed, 0, compressedSize);
+
+            byte[] result = new byte[size];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int offset = 0;
+                while (offset < size) {
+                    int count = inflater.inflate(result, offset, size - offset);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                    offset += count;
+                }
+                if (offset != size) {
+                    throw new IOException("Unexpected size of " + resourceName + " in " + jarFile + ": " + offset + " instead of " + size);
+                }
+            }
+            catch (DataFormatException e) {
+                throw new IOException("Corrupted entry " + resourceName + " in " + jarFile + ": " + e.getMessage());
+            }
+            finally {
+                inflater.end();
+            }
+            return result;
+        }
+    }
+}
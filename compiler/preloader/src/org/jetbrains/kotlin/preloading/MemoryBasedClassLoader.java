@@ -23,6 +23,7 @@ import java.util.*;
 @SuppressWarnings("unchecked")
 /**
  * A class loader which loads classes and resources from the given map.
+ * Resources are either read into memory in advance, or read from memory-mapped jars when requested (see {@link MappedJar}).
  *
  * To save memory, as soon as any class is loaded, its bytecode is removed from the map.
  * This means that once any class is loaded, it _cannot be found_ as a resource anymore.
@@ -95,12 +96,20 @@ public class MemoryBasedClassLoader extends ClassLoader {
                                     ? ((ResourceData) resources)
                                     : ((List<ResourceData>) resources).get(0);
 
-        int sizeInBytes = resourceData.bytes.length;
+        byte[] bytes;
+        try {
+            bytes = resourceData.getBytes();
+        }
+        catch (IOException e) {
+            throw new ClassNotFoundException("Failed to read class " + name + " from " + resourceData.jarFile, e);
+        }
+
+        int sizeInBytes = bytes.length;
         if (handler != null) {
             handler.beforeDefineClass(name, sizeInBytes);
         }
 
-        Class<?> definedClass = defineClass(name, resourceData.bytes, 0, sizeInBytes);
+        Class<?> definedClass = defineClass(name, bytes, 0, sizeInBytes);
 
         if (handler != null) {
             handler.afterDefineClass(name);
@@ -18,8 +18,10 @@ package org.jetbrains.kotlin.preloading;
 
 import org.jetbrains.kotlin.preloading.instrumentation.Instrumenter;
 
-import java.io.File;
-import java.io.PrintStream;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -50,7 +52,10 @@ public class Preloader {
         ClassLoader classLoader = createClassLoader(options);
 
         final Handler handler = getHandler(options, classLoader);
-        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(options.classpath, options.estimate, classLoader, null, handler);
+        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(
+                options.classpath, options.estimate, classLoader, null, handler, options.lazy
+        );
+        final long preloadingTime = System.nanoTime() - startTime;
 
         Class<?> mainClass = preloaded.loadClass(options.mainClass);
         Method mainMethod = mainClass.getMethod("main", String[].class);
@@ -63,6 +68,8 @@ public class Preloader {
                             System.out.println();
                             System.out.println("=== Preloader's measurements: ");
                             System.out.format("Total time: %.3fs\n", (System.nanoTime() - startTime) / 1e9);
+                            System.out.format("Preloading time: %.3fs%s\n", preloadingTime / 1e9, options.lazy ? " (lazy)" : "");
+                            printPeakMemory();
                         }
                         handler.done();
                     }
@@ -73,6 +80,43 @@ public class Preloader {
         mainMethod.invoke(0, (Object) options.arguments.toArray(new String[options.arguments.size()]));
     }
 
+    private static void printPeakMemory() {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println("Peak heap usage: " + (peakHeap >> 20) + " MB");
+
+        // Resident set size is only available on Linux
+        String peakRss = readProcStatus("VmHWM:");
+        if (peakRss != null) {
+            System.out.println("Peak RSS: " + peakRss);
+        }
+    }
+
+    private static String readProcStatus(String key) {
+        File status = new File("/proc/self/status");
+        if (!status.exists()) return null;
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(status));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(key)) return line.substring(key.length()).trim();
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException e) {
+            // Ignore
+        }
+        return null;
+    }
+
     private static ClassLoader createClassLoader(Options options) throws MalformedURLException {
         ClassLoader parent = Preloader.class.getClassLoader();
 
@@ -91,6 +135,7 @@ public class Preloader {
     private static Options parseOptions(String[] args) throws Exception {
         List<File> classpath = Collections.emptyList();
         boolean measure = false;
+        boolean lazy = false;
         List<File> instrumenters = Collections.emptyList();
         int estimate = DEFAULT_CLASS_NUMBER_ESTIMATE;
         String mainClass = null;
@@ -119,6 +164,9 @@ public class Preloader {
             else if ("-measure".equals(arg)) {
                 measure = true;
             }
+            else if ("-lazy".equals(arg)) {
+                lazy = true;
+            }
             else {
                 mainClass = arg;
                 arguments.addAll(Arrays.asList(args).subList(i + 1, args.length));
@@ -128,7 +176,7 @@ public class Preloader {
 
         if (mainClass == null) throw new PreloaderException("no main class name provided");
 
-        return new Options(classpath, measure, instrumenters, estimate, mainClass, arguments);
+        return new Options(classpath, measure, lazy, instrumenters, estimate, mainClass, arguments);
     }
 
     private static List<File> parseClassPath(String classpath) {
@@ -196,6 +244,8 @@ public class Preloader {
         out.println("where possible options include:");
         out.println("  -classpath (-cp) <paths>    Paths where to find class files");
         out.println("  -measure                    Record and output the total time taken by the program and number of loaded classes");
+        out.println("  -lazy                       Read classes from memory-mapped jars when they are loaded instead of reading all of them");
+        out.println("                              at startup");
         out.println("  -instrument <paths>         Paths where the instrumenter will be looked up by java.util.ServiceLoader");
         out.println("                              (the class must implement " + Instrumenter.class.getCanonicalName() + " interface)");
         out.println("  -estimate <number>          Class number estimate (" + DEFAULT_CLASS_NUMBER_ESTIMATE + " by default)");
@@ -205,6 +255,7 @@ public class Preloader {
     private static class Options {
         public final List<File> classpath;
         public final boolean measure;
+        public final boolean lazy;
         public final List<File> instrumenters;
         public final int estimate;
         public final String mainClass;
@@ -213,6 +264,7 @@ public class Preloader {
         private Options(
                 List<File> classpath,
                 boolean measure,
+                boolean lazy,
                 List<File> instrumenters,
                 int estimate,
                 String mainClass,
@@ -220,6 +272,7 @@ public class Preloader {
         ) {
             this.classpath = classpath;
             this.measure = measure;
+            this.lazy = lazy;
             this.instrumenters = instrumenters;
             this.estimate = estimate;
             this.mainClass = mainClass;
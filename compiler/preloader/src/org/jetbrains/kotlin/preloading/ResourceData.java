@@ -25,10 +25,10 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 
-public final class ResourceData {
+public class ResourceData {
     public final File jarFile;
     public final String resourceName;
-    public final byte[] bytes;
+    private final byte[] bytes;
 
     public ResourceData(File jarFile, String resourceName, byte[] bytes) {
         this.jarFile = jarFile;
@@ -36,6 +36,10 @@ public final class ResourceData {
         this.bytes = bytes;
     }
 
+    public byte[] getBytes() throws IOException {
+        return bytes;
+    }
+
     public URL getURL() {
         try {
             String path = "file:" + jarFile + "!/" + resourceName;
@@ -48,7 +52,7 @@ public final class ResourceData {
 
                         @Override
                         public InputStream getInputStream() throws IOException {
-                            return new ByteArrayInputStream(bytes);
+                            return new ByteArrayInputStream(getBytes());
                         }
                     };
                 }
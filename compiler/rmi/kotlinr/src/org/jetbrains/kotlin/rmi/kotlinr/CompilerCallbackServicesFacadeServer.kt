@@ -17,12 +17,13 @@
 package org.jetbrains.kotlin.rmi.kotlinr
 
 import org.jetbrains.kotlin.incremental.components.LookupTracker
-import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartProto
 import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import org.jetbrains.kotlin.rmi.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.rmi.InlineRegistration
+import org.jetbrains.kotlin.rmi.LookupBatch
 import org.jetbrains.kotlin.rmi.LoopbackNetworkInterface
 import org.jetbrains.kotlin.rmi.SOCKET_ANY_FREE_PORT
 import java.rmi.server.UnicastRemoteObject
@@ -62,8 +63,11 @@ public class CompilerCallbackServicesFacadeServer(
 
     override fun incrementalCache_getModuleMappingData(target: TargetId): ByteArray? = incrementalCompilationComponents!!.getIncrementalCache(target).getModuleMappingData()
 
-    override fun incrementalCache_registerInline(target: TargetId, fromPath: String, jvmSignature: String, toPath: String) {
-        incrementalCompilationComponents!!.getIncrementalCache(target).registerInline(fromPath, jvmSignature, toPath)
+    override fun incrementalCache_registerInlines(target: TargetId, inlines: Collection<InlineRegistration>) {
+        val cache = incrementalCompilationComponents!!.getIncrementalCache(target)
+        for ((fromPath, jvmSignature, toPath) in inlines) {
+            cache.registerInline(fromPath, jvmSignature, toPath)
+        }
     }
 
     override fun incrementalCache_getClassFilePath(target: TargetId, internalClassName: String): String = incrementalCompilationComponents!!.getIncrementalCache(target).getClassFilePath(internalClassName)
@@ -72,8 +76,11 @@ public class CompilerCallbackServicesFacadeServer(
         incrementalCompilationComponents!!.getIncrementalCache(target).close()
     }
 
-    override fun lookupTracker_record(lookupContainingFile: String, lookupLine: Int?, lookupColumn: Int?, scopeFqName: String, scopeKind: ScopeKind, name: String) {
-        incrementalCompilationComponents!!.getLookupTracker().record(lookupContainingFile, lookupLine, lookupColumn, scopeFqName, scopeKind, name)
+    override fun lookupTracker_record(lookups: LookupBatch) {
+        val lookupTracker = incrementalCompilationComponents!!.getLookupTracker()
+        lookups.forEach { file, line, column, scopeFqName, scopeKind, name ->
+            lookupTracker.record(file, line, column, scopeFqName, scopeKind, name)
+        }
     }
 
     private val lookupTracker_isDoNothing: Boolean = incrementalCompilationComponents != null && incrementalCompilationComponents.getLookupTracker() == LookupTracker.DO_NOTHING
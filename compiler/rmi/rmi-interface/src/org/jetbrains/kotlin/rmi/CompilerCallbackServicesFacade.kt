@@ -16,7 +16,6 @@
 
 package org.jetbrains.kotlin.rmi
 
-import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartProto
 import org.jetbrains.kotlin.modules.TargetId
 import java.rmi.Remote
@@ -57,7 +56,7 @@ public interface CompilerCallbackServicesFacade : Remote {
     public fun incrementalCache_getModuleMappingData(target: TargetId): ByteArray?
 
     @Throws(RemoteException::class)
-    public fun incrementalCache_registerInline(target: TargetId, fromPath: String, jvmSignature: String, toPath: String)
+    public fun incrementalCache_registerInlines(target: TargetId, inlines: Collection<InlineRegistration>)
 
     @Throws(RemoteException::class)
     fun incrementalCache_getClassFilePath(target: TargetId, internalClassName: String): String
@@ -71,14 +70,7 @@ public interface CompilerCallbackServicesFacade : Remote {
     // ----------------------------------------------------
     // LookupTracker
     @Throws(RemoteException::class)
-    fun lookupTracker_record(
-            lookupContainingFile: String,
-            lookupLine: Int?,
-            lookupColumn: Int?,
-            scopeFqName: String,
-            scopeKind: ScopeKind,
-            name: String
-    )
+    fun lookupTracker_record(lookups: LookupBatch)
     
     @Throws(RemoteException::class)
     fun lookupTracker_isDoNothing(): Boolean
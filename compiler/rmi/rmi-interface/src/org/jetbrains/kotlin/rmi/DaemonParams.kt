@@ -46,6 +46,7 @@ public val COMPILE_DAEMON_DATA_DIRECTORY_NAME: String = "." + COMPILE_DAEMON_DEF
 public val COMPILE_DAEMON_TIMEOUT_INFINITE_S: Int = 0
 public val COMPILE_DAEMON_DEFAULT_IDLE_TIMEOUT_S: Int = 7200 // 2 hours
 public val COMPILE_DAEMON_MEMORY_THRESHOLD_INFINITE: Long = 0L
+public val COMPILE_DAEMON_PARALLEL_COMPILATIONS_AUTO: Int = 0
 
 public val COMPILE_DAEMON_DEFAULT_RUN_DIR_PATH: String get() =
     // TODO consider special case for windows - local appdata
@@ -207,7 +208,8 @@ public data class DaemonOptions(
         public var autoshutdownIdleSeconds: Int = COMPILE_DAEMON_DEFAULT_IDLE_TIMEOUT_S,
         public var clientAliveFlagPath: String? = null,
         public var verbose: Boolean = false,
-        public var reportPerf: Boolean = false
+        public var reportPerf: Boolean = false,
+        public var maxParallelCompilations: Int = COMPILE_DAEMON_PARALLEL_COMPILATIONS_AUTO
 ) : OptionsGroup {
 
     override val mappers: List<PropMapper<*, *, *>>
@@ -216,7 +218,28 @@ public data class DaemonOptions(
                        PropMapper(this, DaemonOptions::autoshutdownIdleSeconds, fromString = { it.toInt() }, skipIf = { it == 0 }, mergeDelimiter = "="),
                        NullablePropMapper(this, DaemonOptions::clientAliveFlagPath, fromString = { it }, toString = { "${it?.trimQuotes()}" }, mergeDelimiter = "="),
                        BoolPropMapper(this, DaemonOptions::verbose),
-                       BoolPropMapper(this, DaemonOptions::reportPerf))
+                       BoolPropMapper(this, DaemonOptions::reportPerf),
+                       PropMapper(this, DaemonOptions::maxParallelCompilations, fromString = { it.toInt() }, skipIf = { it == 0 }, mergeDelimiter = "="))
+}
+
+
+// converts memory size in the -Xmx format (e.g. "512m", "2G") to bytes, returns null if the string is empty or malformed
+public fun String.memToBytes(): Long? {
+    val trimmed = trim()
+    if (trimmed.isEmpty()) return null
+    val multiplier = when (trimmed.last().toLowerCase()) {
+        'k' -> 1024L
+        'm' -> 1024L * 1024
+        'g' -> 1024L * 1024 * 1024
+        else -> 1L
+    }
+    val digits = if (multiplier == 1L) trimmed else trimmed.dropLast(1)
+    return try {
+        digits.toLong() * multiplier
+    }
+    catch (e: NumberFormatException) {
+        null
+    }
 }
 
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.rmi
+
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.io.Serializable
+import java.util.*
+
+/**
+ * Lookups recorded by the compiler on the daemon, sent to the client in a single call.
+ *
+ * Strings are deduplicated: every record takes [RECORD_SIZE] ints (indices of the containing file, line, column, index of
+ * the scope fq name, ordinal of the scope kind and index of the name), strings are referred to by the index in [strings].
+ * Missing line and column are stored as -1.
+ */
+public class LookupBatch(val strings: Array<String>, val records: IntArray) : Serializable {
+    val size: Int get() = records.size() / RECORD_SIZE
+
+    public inline fun forEach(body: (file: String, line: Int?, column: Int?, scopeFqName: String, scopeKind: ScopeKind, name: String) -> Unit) {
+        val scopeKinds = ScopeKind.values()
+        for (i in 0..size - 1) {
+            val offset = i * RECORD_SIZE
+            val line = records[offset + 1]
+            val column = records[offset + 2]
+            body(strings[records[offset]], if (line >= 0) line else null, if (column >= 0) column else null,
+                 strings[records[offset + 3]], scopeKinds[records[offset + 4]], strings[records[offset + 5]])
+        }
+    }
+
+    companion object {
+        public val RECORD_SIZE: Int = 6
+    }
+}
+
+public class LookupBatchBuilder {
+    private val strings = ArrayList<String>()
+    private val stringIndices = HashMap<String, Int>()
+    private var records = IntArray(LookupBatch.RECORD_SIZE * 256)
+    private var recordsSize = 0
+
+    val size: Int get() = recordsSize / LookupBatch.RECORD_SIZE
+
+    public fun add(file: String, line: Int?, column: Int?, scopeFqName: String, scopeKind: ScopeKind, name: String) {
+        if (recordsSize + LookupBatch.RECORD_SIZE > records.size()) {
+            records = Arrays.copyOf(records, records.size() * 2)
+        }
+        records[recordsSize++] = indexOf(file)
+        records[recordsSize++] = line ?: -1
+        records[recordsSize++] = column ?: -1
+        records[recordsSize++] = indexOf(scopeFqName)
+        records[recordsSize++] = scopeKind.ordinal()
+        records[recordsSize++] = indexOf(name)
+    }
+
+    /**
+     * @return the batch of the lookups added since the previous call
+     */
+    public fun build(): LookupBatch {
+        val batch = LookupBatch(strings.toTypedArray(), Arrays.copyOf(records, recordsSize))
+        strings.clear()
+        stringIndices.clear()
+        recordsSize = 0
+        return batch
+    }
+
+    private fun indexOf(string: String): Int =
+            stringIndices.getOrPut(string) {
+                strings.add(string)
+                strings.size() - 1
+            }
+}
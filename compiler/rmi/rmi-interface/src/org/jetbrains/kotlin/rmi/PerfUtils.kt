@@ -169,6 +169,7 @@ class WallAndThreadByClassProfiler() : TotalProfiler() {
 
     override fun getCounters(): Map<Any?,PerfCounters> = counters
 
+    // measurements may come from several threads, e.g. lookups are sent to the client in background
     override final inline fun <R> withMeasure(obj: Any?, body: () -> R): R =
-            withMeasureWallAndThreadTimes(counters.getOrPut(obj?.javaClass?.name, { SimplePerfCountersWithTotal(total) } ), threadMXBean, body)
+            withMeasureWallAndThreadTimes(synchronized(counters) { counters.getOrPut(obj?.javaClass?.name, { SimplePerfCountersWithTotal(total) }) }, threadMXBean, body)
 }
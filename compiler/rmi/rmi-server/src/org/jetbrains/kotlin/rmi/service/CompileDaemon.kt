@@ -143,7 +143,8 @@ public object CompileDaemon {
                     CompileService.TargetPlatform.JS -> js
                 }
             }
-            val compilerService = CompileServiceImpl(registry, compilerSelector, compilerId, daemonOptions, port)
+            val daemonJVMOptions = configureDaemonJVMOptions(inheritMemoryLimits = true)
+            val compilerService = CompileServiceImpl(registry, compilerSelector, compilerId, daemonOptions, daemonJVMOptions, port)
 
             if (daemonOptions.runFilesPath.isNotEmpty())
                 println(daemonOptions.runFilesPath)
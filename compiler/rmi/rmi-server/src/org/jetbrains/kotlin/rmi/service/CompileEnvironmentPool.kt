@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.rmi.service
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.rmi.CompileService
+import java.io.File
+import java.util.*
+import java.util.logging.Logger
+
+/**
+ * Keeps the compiler application environment warm between compilations.
+ *
+ * The environment (registered extension points, application services and jar file systems with the opened jars) is shared
+ * by all compilations in the process, so it is retained until the daemon shuts down. The jars it may have opened are remembered
+ * with their timestamps and sizes, and a compilation against a jar which has changed since then makes the environment be
+ * recreated before the compilation creates its project, so that no compilation reads stale jar contents.
+ */
+class CompileEnvironmentPool(val log: Logger) {
+
+    private data class JarStamp(val lastModified: Long, val length: Long)
+
+    // all jars from the classpaths of compilations which have used the current environment
+    private val knownJars = HashMap<String, JarStamp>()
+
+    private var retainedEnvironment: Disposable? = null
+
+    var hits = 0
+        private set
+    var misses = 0
+        private set
+
+    /**
+     * Should be called before a compilation with the given arguments creates its environment, returns true if the environment
+     * is known to be warm for its classpath
+     */
+    fun prepare(targetPlatform: CompileService.TargetPlatform, args: Array<out String>): Boolean {
+        if (targetPlatform != CompileService.TargetPlatform.JVM) return false
+
+        // directories are read through the local file system which isn't cached, only jars are kept opened by the environment
+        val jars = extractClasspath(args).map { File(it) }.filter { it.isFile }.map { it.absolutePath to JarStamp(it.lastModified(), it.length()) }
+
+        synchronized(this) {
+            if (retainedEnvironment == null) {
+                retainedEnvironment = KotlinCoreEnvironment.retainApplicationEnvironment()
+            }
+
+            val changed = jars.firstOrNull { knownJars[it.first].let { known -> known != null && known != it.second } }
+            if (changed != null) {
+                misses++
+                log.info("${changed.first} has changed, recreating compiler environment")
+                // the compilation will wait for the environment to be recreated when it creates its project
+                KotlinCoreEnvironment.invalidateApplicationEnvironment()
+                knownJars.clear()
+                jars.forEach { knownJars.put(it.first, it.second) }
+                return false
+            }
+
+            val warm = jars.all { knownJars.containsKey(it.first) }
+            jars.forEach { knownJars.put(it.first, it.second) }
+            if (warm) hits++ else misses++
+            return warm
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        knownJars.clear()
+        retainedEnvironment?.let { Disposer.dispose(it) }
+        retainedEnvironment = null
+    }
+
+    private fun extractClasspath(args: Array<out String>): List<String> {
+        val index = args.indexOfFirst { it == "-classpath" || it == "-cp" }
+        if (index < 0 || index + 1 >= args.size()) return listOf()
+        return args[index + 1].split(File.pathSeparator).filter { it.isNotEmpty() }
+    }
+}
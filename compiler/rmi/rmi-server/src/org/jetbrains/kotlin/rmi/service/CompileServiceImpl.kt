@@ -22,13 +22,13 @@ import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import org.jetbrains.kotlin.rmi.*
-import java.io.BufferedOutputStream
 import java.io.PrintStream
 import java.rmi.NoSuchObjectException
 import java.rmi.registry.Registry
 import java.rmi.server.UnicastRemoteObject
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.locks.ReentrantReadWriteLock
+import java.util.logging.Level
 import java.util.logging.Logger
 import kotlin.concurrent.read
 import kotlin.concurrent.write
@@ -45,6 +45,7 @@ class CompileServiceImpl(
         val compiler: CompilerSelector,
         val selfCompilerId: CompilerId,
         val daemonOptions: DaemonOptions,
+        val daemonJVMOptions: DaemonJVMOptions,
         port: Int
 ) : CompileService, UnicastRemoteObject() {
 
@@ -59,6 +60,12 @@ class CompileServiceImpl(
             log.info("Shutdown started")
             alive = false
             UnicastRemoteObject.unexportObject(this, true)
+            sessions.shutdown()
+            environments.clear()
+            if (daemonOptions.reportPerf) {
+                val total = sessions.totalCounters
+                log.info("PERF: Daemon total: ${total.count} sessions, ${TimeUnit.NANOSECONDS.toMillis(total.time)} ms, thread ${TimeUnit.NANOSECONDS.toMillis(total.threadTime)} ms")
+            }
             log.info("Shutdown complete")
         }
     }
@@ -69,10 +76,12 @@ class CompileServiceImpl(
                                compilerOutputStream: RemoteOutputStream,
                                outputFormat: CompileService.OutputFormat, serviceOutputStream: RemoteOutputStream
     ): Int =
-            doCompile(args, compilerOutputStream, serviceOutputStream) { printStream, profiler ->
+            doCompile(targetPlatform, args, compilerOutputStream, serviceOutputStream) { printStream, profiler ->
                 when (outputFormat) {
                     CompileService.OutputFormat.PLAIN -> compiler[targetPlatform].exec(printStream, *args)
-                    CompileService.OutputFormat.XML -> compiler[targetPlatform].execAndOutputXml(printStream, createCompileServices(servicesFacade, profiler), *args)
+                    CompileService.OutputFormat.XML -> withCompileServices(servicesFacade, profiler) {
+                        compiler[targetPlatform].execAndOutputXml(printStream, it, *args)
+                    }
                 }
             }
 
@@ -83,10 +92,12 @@ class CompileServiceImpl(
                                           compilerOutputFormat: CompileService.OutputFormat,
                                           serviceOutputStream: RemoteOutputStream
     ): Int =
-            doCompile(args, compilerOutputStream, serviceOutputStream) { printStream, profiler ->
+            doCompile(targetPlatform, args, compilerOutputStream, serviceOutputStream) { printStream, profiler ->
                 when (compilerOutputFormat) {
                     CompileService.OutputFormat.PLAIN -> throw NotImplementedError("Only XML output is supported in remote incremental compilation")
-                    CompileService.OutputFormat.XML -> compiler[targetPlatform].execAndOutputXml(printStream, createCompileServices(servicesFacade, profiler), *args)
+                    CompileService.OutputFormat.XML -> withCompileServices(servicesFacade, profiler) {
+                        compiler[targetPlatform].execAndOutputXml(printStream, it, *args)
+                    }
                 }
             }
 
@@ -100,6 +111,11 @@ class CompileServiceImpl(
     private val rwlock = ReentrantReadWriteLock()
     private var alive = false
 
+    // compilations are run concurrently, each in its own session with separate services and output streams
+    private val sessions = CompileSessionScheduler.create(daemonOptions, daemonJVMOptions, log)
+
+    private val environments = CompileEnvironmentPool(log)
+
     // TODO: consider matching compilerId coming from outside with actual one
     //    private val selfCompilerId by lazy {
     //        CompilerId(
@@ -114,7 +130,8 @@ class CompileServiceImpl(
     //    }
 
     init {
-        // assuming logically synchronized
+        // only the construction is assumed to be logically synchronized, compilations may run concurrently
+        log.info("Running up to ${sessions.maxSessions} compilations in parallel, memory limit ${sessions.memoryLimit / 1024} kb")
         try {
             // cleanup for the case of incorrect restart and many other situations
             UnicastRemoteObject.unexportObject(this, false)
@@ -128,41 +145,65 @@ class CompileServiceImpl(
         alive = true
     }
 
-    private fun doCompile(args: Array<out String>, compilerMessagesStreamProxy: RemoteOutputStream, serviceOutputStreamProxy: RemoteOutputStream, body: (PrintStream, Profiler) -> ExitCode): Int =
+    private fun doCompile(targetPlatform: CompileService.TargetPlatform, args: Array<out String>, compilerMessagesStreamProxy: RemoteOutputStream, serviceOutputStreamProxy: RemoteOutputStream, body: (PrintStream, Profiler) -> ExitCode): Int =
             ifAlive {
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
-                val compilerMessagesStream = PrintStream(BufferedOutputStream(RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler), 4096))
-                val serviceOutputStream = PrintStream(BufferedOutputStream(RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler), 4096))
-                try {
-                    checkedCompile(args, serviceOutputStream, rpcProfiler) {
-                        val res = body(compilerMessagesStream, rpcProfiler).code
-                        _lastUsedSeconds = nowSeconds()
-                        res
+                sessions.runSession { session ->
+                    if (environments.prepare(targetPlatform, args)) {
+                        log.info("Reusing warm compiler environment (${environments.hits} hits, ${environments.misses} misses)")
+                    }
+                    val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadByClassProfiler() else DummyProfiler()
+                    val compilerMessagesStream = PrintStream(RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler))
+                    val serviceOutputStream = PrintStream(RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler))
+                    try {
+                        checkedCompile(args, serviceOutputStream, rpcProfiler, session) {
+                            val res = body(compilerMessagesStream, rpcProfiler).code
+                            _lastUsedSeconds = nowSeconds()
+                            res
+                        }
+                    }
+                    finally {
+                        serviceOutputStream.flush()
+                        compilerMessagesStream.flush()
                     }
-                }
-                finally {
-                    serviceOutputStream.flush()
-                    compilerMessagesStream.flush()
                 }
             }
 
-    private fun createCompileServices(facade: CompilerCallbackServicesFacade, rpcProfiler: Profiler): Services {
+    private fun <R> withCompileServices(facade: CompilerCallbackServicesFacade, rpcProfiler: Profiler, body: (Services) -> R): R {
         val builder = Services.Builder()
-        if (facade.hasIncrementalCaches() || facade.hasLookupTracker()) {
-            builder.register(IncrementalCompilationComponents::class.java, RemoteIncrementalCompilationComponentsClient(facade, rpcProfiler))
+        val incrementalCompilationComponents =
+                if (facade.hasIncrementalCaches() || facade.hasLookupTracker()) RemoteIncrementalCompilationComponentsClient(facade, rpcProfiler)
+                else null
+        if (incrementalCompilationComponents != null) {
+            builder.register(IncrementalCompilationComponents::class.java, incrementalCompilationComponents)
         }
         if (facade.hasCompilationCanceledStatus()) {
             builder.register(CompilationCanceledStatus::class.java, RemoteCompilationCanceledStatusClient(facade, rpcProfiler))
         }
-        return builder.build()
+        val result = try {
+            body(builder.build())
+        }
+        catch (e: Throwable) {
+            // the sender threads should be stopped anyway, but a failure to flush must not hide the failure of the compilation
+            try {
+                incrementalCompilationComponents?.flush()
+            }
+            catch (flushError: Throwable) {
+                log.log(Level.WARNING, "Failed to flush compile services after failed compilation", flushError)
+            }
+            throw e
+        }
+        // the client reads the lookups and registered inlines as soon as the compilation returns
+        incrementalCompilationComponents?.flush()
+        return result
     }
 
 
-    fun<R> checkedCompile(args: Array<out String>, serviceOut: PrintStream, rpcProfiler: Profiler, body: () -> R): R {
+    fun<R> checkedCompile(args: Array<out String>, serviceOut: PrintStream, rpcProfiler: Profiler, session: CompileSessionScheduler.Session, body: () -> R): R {
         try {
             if (args.none())
                 throw IllegalArgumentException("Error: empty arguments list.")
             log.info("Starting compilation with args: " + args.joinToString(" "))
+            log.info("Session #${session.id}, ${sessions.activeSessionsCount} active")
 
             val profiler = if (daemonOptions.reportPerf) WallAndThreadAndMemoryTotalProfiler(withGC = false) else DummyProfiler()
 
@@ -170,7 +211,7 @@ class CompileServiceImpl(
 
             val endMem = if (daemonOptions.reportPerf) usedMemory(withGC = false) else 0L
 
-            log.info("Done with result " + res.toString())
+            log.info("Done with result " + res.toString() + " in session #${session.id}")
 
             if (daemonOptions.reportPerf) {
                 fun Long.ms() = TimeUnit.NANOSECONDS.toMillis(this)
@@ -178,7 +219,7 @@ class CompileServiceImpl(
                 val pc = profiler.getTotalCounters()
                 val rpc = rpcProfiler.getTotalCounters()
 
-                "PERF: Compile on daemon: ${pc.time.ms()} ms; thread: user ${pc.threadUserTime.ms()} ms, sys ${(pc.threadTime - pc.threadUserTime).ms()} ms; rpc: ${rpc.count} calls, ${rpc.time.ms()} ms, thread ${rpc.threadTime.ms()} ms; memory: ${endMem.kb()} kb (${"%+d".format(pc.memory.kb())} kb)".let {
+                "PERF: Compile on daemon: ${pc.time.ms()} ms; session #${session.id}, waited ${session.waitNanos.ms()} ms; thread: user ${pc.threadUserTime.ms()} ms, sys ${(pc.threadTime - pc.threadUserTime).ms()} ms; rpc: ${rpc.count} calls, ${rpc.time.ms()} ms, thread ${rpc.threadTime.ms()} ms; memory: ${endMem.kb()} kb (${"%+d".format(pc.memory.kb())} kb)".let {
                     serviceOut.println(it)
                     log.info(it)
                 }
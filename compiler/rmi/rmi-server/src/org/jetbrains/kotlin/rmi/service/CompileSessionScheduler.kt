@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.rmi.service
+
+import org.jetbrains.kotlin.rmi.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.ReentrantLock
+import java.util.logging.Logger
+import kotlin.concurrent.withLock
+
+// a new session is admitted only if the used memory is below this fraction of the daemon memory limit
+val COMPILE_SESSION_ADMISSION_MEMORY_RATIO = 0.75
+val COMPILE_SESSION_ADMISSION_RECHECK_MS = 500L
+
+/**
+ * Runs compilation sessions on a bounded pool of worker threads.
+ *
+ * At most [maxSessions] sessions run at the same time. Another session is admitted only when the used memory is below
+ * [COMPILE_SESSION_ADMISSION_MEMORY_RATIO] of [memoryLimit], except when nothing is running, so a single session always makes progress.
+ * The memory usage changes without any notification, so the waiting sessions re-check it periodically.
+ */
+class CompileSessionScheduler(val maxSessions: Int, val memoryLimit: Long, val log: Logger) {
+
+    class Session(val id: Int, val waitNanos: Long)
+
+    private val lock = ReentrantLock()
+    private val sessionFinished = lock.newCondition()
+    private var activeSessions = 0
+
+    private val sessionCounter = AtomicInteger(0)
+
+    // totals over all sessions run by this daemon
+    val totalCounters = SimplePerfCounters()
+
+    private val workers: ExecutorService = Executors.newFixedThreadPool(maxSessions, object : ThreadFactory {
+        private val threadCounter = AtomicInteger(0)
+        override fun newThread(r: Runnable): Thread =
+                Thread(r, "kotlin-daemon-compile-${threadCounter.incrementAndGet()}").apply { isDaemon = true }
+    })
+
+    val activeSessionsCount: Int get() = lock.withLock { activeSessions }
+
+    fun<R> runSession(body: (Session) -> R): R {
+        val waitStart = System.nanoTime()
+        admit()
+        val session = Session(sessionCounter.incrementAndGet(), System.nanoTime() - waitStart)
+        try {
+            val future = workers.submit(Callable {
+                withMeasureWallAndThreadTimes(totalCounters) { body(session) }
+            })
+            try {
+                return future.get()
+            }
+            catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+        finally {
+            release()
+        }
+    }
+
+    fun shutdown() {
+        workers.shutdown()
+    }
+
+    private fun admit() {
+        lock.withLock {
+            while (activeSessions >= maxSessions || (activeSessions > 0 && !isMemoryAvailable())) {
+                sessionFinished.await(COMPILE_SESSION_ADMISSION_RECHECK_MS, TimeUnit.MILLISECONDS)
+            }
+            activeSessions++
+        }
+    }
+
+    private fun release() {
+        lock.withLock {
+            activeSessions--
+            sessionFinished.signalAll()
+        }
+    }
+
+    private fun isMemoryAvailable(): Boolean {
+        val used = usedMemory(withGC = false)
+        val available = used < memoryLimit * COMPILE_SESSION_ADMISSION_MEMORY_RATIO
+        if (!available) {
+            log.info("Postponing compilation session: used memory ${used / 1024} kb is close to the limit ${memoryLimit / 1024} kb")
+        }
+        return available
+    }
+
+    companion object {
+        fun create(daemonOptions: DaemonOptions, daemonJVMOptions: DaemonJVMOptions, log: Logger): CompileSessionScheduler {
+            val maxSessions =
+                    if (daemonOptions.maxParallelCompilations > 0) daemonOptions.maxParallelCompilations
+                    else Runtime.getRuntime().availableProcessors()
+            val memoryLimit = daemonJVMOptions.maxMemory.memToBytes() ?: Runtime.getRuntime().maxMemory()
+            return CompileSessionScheduler(maxSessions, memoryLimit, log)
+        }
+    }
+}
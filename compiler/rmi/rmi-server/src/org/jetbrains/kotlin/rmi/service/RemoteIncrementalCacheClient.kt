@@ -21,27 +21,77 @@ import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartPro
 import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.rmi.CompilerCallbackServicesFacade
 import org.jetbrains.kotlin.rmi.DummyProfiler
+import org.jetbrains.kotlin.rmi.InlineRegistration
 import org.jetbrains.kotlin.rmi.Profiler
+import java.util.*
 
+/**
+ * The caches are only updated by the client after the compilation, so the results of the queries are remembered
+ * and each of them is made at most once. Registered inlines are sent in a single call on [flush] or [close].
+ */
 public class RemoteIncrementalCacheClient(val facade: CompilerCallbackServicesFacade, val target: TargetId, val profiler: Profiler = DummyProfiler()): IncrementalCache {
 
-    override fun getObsoletePackageParts(): Collection<String> = profiler.withMeasure(this) { facade.incrementalCache_getObsoletePackageParts(target) }
+    private val obsoletePackageParts by lazy { profiler.withMeasure(this) { facade.incrementalCache_getObsoletePackageParts(target) } }
+
+    private val obsoleteMultifileClasses by lazy { profiler.withMeasure(this) { facade.incrementalCache_getObsoleteMultifileClassFacades(target) } }
+
+    private val moduleMappingData by lazy { profiler.withMeasure(this) { facade.incrementalCache_getModuleMappingData(target) } }
+
+    private val stableMultifileFacadeParts = Memoized<String, Collection<String>?> { facade.incrementalCache_getMultifileFacadeParts(target, it) }
+
+    private val packagePartData = Memoized<String, JvmPackagePartProto?> { facade.incrementalCache_getPackagePartData(target, it) }
+
+    private val multifileFacades = Memoized<String, String?> { facade.incrementalCache_getMultifileFacade(target, it) }
+
+    private val classFilePaths = Memoized<String, String> { facade.incrementalCache_getClassFilePath(target, it) }
+
+    private val registeredInlines = ArrayList<InlineRegistration>()
 
-    override fun getObsoleteMultifileClasses(): Collection<String> = profiler.withMeasure(this) { facade.incrementalCache_getObsoleteMultifileClassFacades(target) }
+    override fun getObsoletePackageParts(): Collection<String> = obsoletePackageParts
 
-    override fun getStableMultifileFacadeParts(facadeInternalName: String): Collection<String>? = profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacadeParts(target, facadeInternalName) }
+    override fun getObsoleteMultifileClasses(): Collection<String> = obsoleteMultifileClasses
 
-    override fun getPackagePartData(fqName: String): JvmPackagePartProto? = profiler.withMeasure(this) { facade.incrementalCache_getPackagePartData(target, fqName) }
+    override fun getStableMultifileFacadeParts(facadeInternalName: String): Collection<String>? = stableMultifileFacadeParts[facadeInternalName]
 
-    override fun getMultifileFacade(partInternalName: String): String? = profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacade(target, partInternalName) }
+    override fun getPackagePartData(fqName: String): JvmPackagePartProto? = packagePartData[fqName]
 
-    override fun getModuleMappingData(): ByteArray? = profiler.withMeasure(this) { facade.incrementalCache_getModuleMappingData(target) }
+    override fun getMultifileFacade(partInternalName: String): String? = multifileFacades[partInternalName]
+
+    override fun getModuleMappingData(): ByteArray? = moduleMappingData
 
     override fun registerInline(fromPath: String, jvmSignature: String, toPath: String) {
-        profiler.withMeasure(this) { facade.incrementalCache_registerInline(target, fromPath, jvmSignature, toPath) }
+        synchronized(registeredInlines) {
+            registeredInlines.add(InlineRegistration(fromPath, jvmSignature, toPath))
+        }
     }
 
-    override fun getClassFilePath(internalClassName: String): String = profiler.withMeasure(this) { facade.incrementalCache_getClassFilePath(target,internalClassName) }
+    override fun getClassFilePath(internalClassName: String): String = classFilePaths[internalClassName]
+
+    fun flush() {
+        val inlines = synchronized(registeredInlines) {
+            if (registeredInlines.isEmpty()) return
+            val result = ArrayList(registeredInlines)
+            registeredInlines.clear()
+            result
+        }
+        profiler.withMeasure(this) { facade.incrementalCache_registerInlines(target, inlines) }
+    }
 
-    override fun close(): Unit = profiler.withMeasure(this) { facade.incrementalCache_close(target) }
+    override fun close() {
+        flush()
+        profiler.withMeasure(this) { facade.incrementalCache_close(target) }
+    }
+
+    private inner class Memoized<K, V>(private val query: (K) -> V) {
+        private val values = HashMap<K, V>()
+
+        @Synchronized
+        operator fun get(key: K): V {
+            @Suppress("UNCHECKED_CAST")
+            if (key in values) return values[key] as V
+            val value = profiler.withMeasure(this@RemoteIncrementalCacheClient) { query(key) }
+            values[key] = value
+            return value
+        }
+    }
 }
@@ -23,11 +23,31 @@ import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.rmi.CompilerCallbackServicesFacade
 import org.jetbrains.kotlin.rmi.DummyProfiler
 import org.jetbrains.kotlin.rmi.Profiler
+import java.util.*
 
 
 class RemoteIncrementalCompilationComponentsClient(val facade: CompilerCallbackServicesFacade, val profiler: Profiler = DummyProfiler()) : IncrementalCompilationComponents {
 
-    override fun getIncrementalCache(target: TargetId): IncrementalCache = RemoteIncrementalCacheClient(facade, target, profiler)
+    private val incrementalCaches = HashMap<TargetId, RemoteIncrementalCacheClient>()
 
-    override fun getLookupTracker(): LookupTracker = RemoteLookupTrackerClient(facade, profiler)
+    private var lookupTracker: RemoteLookupTrackerClient? = null
+
+    @Synchronized
+    override fun getIncrementalCache(target: TargetId): IncrementalCache =
+            incrementalCaches.getOrPut(target) { RemoteIncrementalCacheClient(facade, target, profiler) }
+
+    @Synchronized
+    override fun getLookupTracker(): LookupTracker =
+            lookupTracker ?: RemoteLookupTrackerClient(facade, profiler).apply { lookupTracker = this }
+
+    /**
+     * Sends the data buffered by the caches and the lookup tracker to the client, should be called when the compilation is finished
+     */
+    @Synchronized
+    fun flush() {
+        for (cache in incrementalCaches.values()) {
+            cache.flush()
+        }
+        lookupTracker?.close()
+    }
 }
@@ -20,18 +20,65 @@ import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.rmi.CompilerCallbackServicesFacade
 import org.jetbrains.kotlin.rmi.DummyProfiler
+import org.jetbrains.kotlin.rmi.LookupBatchBuilder
 import org.jetbrains.kotlin.rmi.Profiler
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
 
-
+/**
+ * Collects lookups into batches, which are sent to the client in a background thread while the compilation goes on.
+ * The order of lookups doesn't matter to the client, so if the client falls behind, batches are sent by the compiling thread.
+ * All lookups are delivered by the time [close] returns.
+ */
 class RemoteLookupTrackerClient(val facade: CompilerCallbackServicesFacade, val profiler: Profiler = DummyProfiler()) : LookupTracker {
 
     private val isDoNothing = profiler.withMeasure(this) { facade.lookupTracker_isDoNothing() }
 
+    private val batch = LookupBatchBuilder()
+
+    private val sender by lazy {
+        ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, ArrayBlockingQueue(MAX_PENDING_BATCHES),
+                           { Thread(it, "lookup-tracker-client").apply { isDaemon = true } },
+                           ThreadPoolExecutor.CallerRunsPolicy())
+    }
+
+    @Volatile private var sendFailure: Throwable? = null
+
+    @Synchronized
     override fun record(lookupContainingFile: String, lookupLine: Int?, lookupColumn: Int?, scopeFqName: String, scopeKind: ScopeKind, name: String) {
         if (!isDoNothing) {
-            profiler.withMeasure(this) {
-                facade.lookupTracker_record(lookupContainingFile, lookupLine, lookupColumn, scopeFqName, scopeKind, name)
+            batch.add(lookupContainingFile, lookupLine, lookupColumn, scopeFqName, scopeKind, name)
+            if (batch.size >= BATCH_SIZE) {
+                val lookups = batch.build()
+                sender.execute {
+                    try {
+                        profiler.withMeasure(this) { facade.lookupTracker_record(lookups) }
+                    }
+                    catch (e: Throwable) {
+                        sendFailure = sendFailure ?: e
+                    }
+                }
             }
         }
     }
+
+    @Synchronized
+    fun close() {
+        if (isDoNothing) return
+
+        if (batch.size > 0) {
+            val lookups = batch.build()
+            profiler.withMeasure(this) { facade.lookupTracker_record(lookups) }
+        }
+        sender.shutdown()
+        sender.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+
+        sendFailure?.let { throw it }
+    }
+
+    private companion object {
+        val BATCH_SIZE = 4096
+        val MAX_PENDING_BATCHES = 16
+    }
 }
@@ -20,17 +20,64 @@ import org.jetbrains.kotlin.rmi.DummyProfiler
 import org.jetbrains.kotlin.rmi.Profiler
 import org.jetbrains.kotlin.rmi.RemoteOutputStream
 import java.io.OutputStream
+import java.util.Arrays
+
+/**
+ * Sends the written data to the remote stream in chunks of up to [bufferSize] bytes.
+ */
+class RemoteOutputStreamClient(
+        val remote: RemoteOutputStream,
+        val profiler: Profiler = DummyProfiler(),
+        bufferSize: Int = 8192
+): OutputStream() {
+    private val buffer = ByteArray(bufferSize)
+    private var count = 0
 
-class RemoteOutputStreamClient(val remote: RemoteOutputStream, val profiler: Profiler = DummyProfiler()): OutputStream() {
     override fun write(data: ByteArray) {
-        profiler.withMeasure(this) { remote.write(data, 0, data.size()) }
+        write(data, 0, data.size())
     }
 
+    @Synchronized
     override fun write(data: ByteArray, offset: Int, length: Int) {
-        profiler.withMeasure(this) { remote.write(data, offset, length) }
+        if (length >= buffer.size()) {
+            flushBuffer()
+            send(data, offset, length)
+            return
+        }
+        if (length > buffer.size() - count) {
+            flushBuffer()
+        }
+        System.arraycopy(data, offset, buffer, count, length)
+        count += length
     }
 
+    @Synchronized
     override fun write(byte: Int) {
-        profiler.withMeasure(this) { remote.write(byte) }
+        if (count == buffer.size()) {
+            flushBuffer()
+        }
+        buffer[count++] = byte.toByte()
+    }
+
+    @Synchronized
+    override fun flush() {
+        flushBuffer()
+    }
+
+    override fun close() {
+        flush()
+    }
+
+    private fun flushBuffer() {
+        if (count > 0) {
+            send(buffer, 0, count)
+            count = 0
+        }
+    }
+
+    private fun send(data: ByteArray, offset: Int, length: Int) {
+        // The whole array is serialized by RMI, so only the written part of it is sent
+        val chunk = if (offset == 0 && length == data.size()) data else Arrays.copyOfRange(data, offset, offset + length)
+        profiler.withMeasure(this) { remote.write(chunk, 0, chunk.size()) }
     }
 }
@@ -0,0 +1,63 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun runNotInline(block: () -> Unit) {
+    block()
+}
+
+fun declaredInLoop(): String {
+    var result = ""
+    for (i in 1..3) {
+        var x = 0
+        runInline { x += i }
+        runInline { x *= 10 }
+        result += x
+    }
+    return result
+}
+
+fun allTypes(): String {
+    var z = false
+    var c = 'a'
+    var b: Byte = 0
+    var s: Short = 0
+    var i = 0
+    var f = 0.0f
+    var j = 0L
+    var d = 0.0
+    var o: String? = null
+    runInline {
+        z = !z
+        c++
+        b++
+        s++
+        i += 3
+        f += 4.0f
+        j += 5L
+        d += 6.0
+        o = (o ?: "") + "O"
+    }
+    return "$z $c $b $s $i ${f.toInt()} $j ${d.toInt()} $o"
+}
+
+fun escaping(): Int {
+    var x = 0
+    runInline { x++ }
+    runNotInline { x += 10 }
+    runInline { x++ }
+    return x
+}
+
+fun box(): String {
+    val loop = declaredInLoop()
+    if (loop != "102030") return "Fail loop: $loop"
+
+    val types = allTypes()
+    if (types != "true b 1 1 3 4 5 6 O") return "Fail types: $types"
+
+    val escaping = escaping()
+    if (escaping != 12) return "Fail escaping: $escaping"
+
+    return "OK"
+}
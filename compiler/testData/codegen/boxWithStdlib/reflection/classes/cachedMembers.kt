@@ -0,0 +1,59 @@
+import kotlin.reflect.*
+import kotlin.reflect.jvm.*
+import kotlin.test.*
+
+open class Base {
+    val inherited: String = "inherited"
+}
+
+class A : Base() {
+    val x: Int = 42
+    var y: String = "y"
+    fun foo(s: String): String = s + x
+    fun String.ext(): String = this + y
+}
+
+fun box(): String {
+    val klass = A::class
+    assertEquals(klass.members.map { it.name }.toSet(), klass.members.map { it.name }.toSet())
+    assertEquals(klass.members, klass.members)
+    assertTrue(klass.members !== klass.members)
+
+    // java.lang.reflect objects are mutable, so they must not be shared between different callables
+    val field = klass.memberProperties.single { it.name == "x" }.javaField!!
+    field.isAccessible = true
+    assertFalse(klass.memberProperties.single { it.name == "x" }.javaField!!.isAccessible)
+    assertFalse(A::x.javaField!!.isAccessible)
+
+    val method = klass.memberFunctions.single { it.name == "foo" }.javaMethod!!
+    method.isAccessible = true
+    assertFalse(klass.memberFunctions.single { it.name == "foo" }.javaMethod!!.isAccessible)
+    assertFalse(A::foo.javaMethod!!.isAccessible)
+
+    val a = A()
+    for (i in 1..3) {
+        val x = klass.memberProperties.single { it.name == "x" }
+        assertEquals(42, x.get(a))
+
+        val y = klass.memberProperties.single { it.name == "y" } as KMutableProperty1<A, String>
+        y.set(a, "y$i")
+        assertEquals("y$i", y.get(a))
+
+        val foo = klass.memberFunctions.single { it.name == "foo" }
+        assertEquals("s42", foo.call(a, "s"))
+
+        assertEquals("inherited", klass.memberProperties.single { it.name == "inherited" }.get(a))
+        assertEquals(listOf("inherited", "x", "y"), klass.memberProperties.map { it.name }.sorted())
+        assertEquals(listOf("x", "y"), klass.declaredMemberProperties.map { it.name }.sorted())
+        assertEquals(listOf("ext"), klass.declaredMemberExtensionFunctions.map { it.name })
+    }
+
+    // references resolve the same descriptors on every evaluation
+    for (i in 1..3) {
+        assertEquals(42, A::x.get(a))
+        assertEquals("s42", A::foo.call(a, "s"))
+        assertEquals(A::x, klass.memberProperties.single { it.name == "x" })
+    }
+
+    return "OK"
+}
@@ -0,0 +1,30 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun test(): String {
+    var z = false
+    var c = 'a'
+    var b: Byte = 0
+    var s: Short = 0
+    var i = 0
+    var f = 0.0f
+    var j = 0L
+    var d = 0.0
+    var o: String? = null
+    runInline {
+        z = true
+        c = 'b'
+        b = 1
+        s = 2
+        i = 3
+        f = 4.0f
+        j = 5L
+        d = 6.0
+        o = "O"
+    }
+    return "$z $c $b $s $i $f $j $d $o"
+}
+
+// 0 NEW kotlin/jvm/internal/Ref
+// 0 element
@@ -0,0 +1,15 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun sum(n: Int): Int {
+    var result = 0
+    for (i in 1..n) {
+        runInline { result += i }
+    }
+    return result
+}
+
+// 0 NEW kotlin/jvm/internal/Ref
+// 0 GETFIELD kotlin/jvm/internal/Ref
+// 0 PUTFIELD kotlin/jvm/internal/Ref
@@ -0,0 +1,16 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun count(n: Int): Int {
+    var total = 0
+    for (i in 1..n) {
+        var x = i
+        runInline { x *= 2 }
+        total += x
+    }
+    return total
+}
+
+// 0 NEW kotlin/jvm/internal/Ref
+// 0 element
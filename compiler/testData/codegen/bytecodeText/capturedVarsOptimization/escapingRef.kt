@@ -0,0 +1,22 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun runNotInline(block: () -> Unit) {
+    block()
+}
+
+fun escaping(): Int {
+    var x = 0
+    runInline { x++ }
+    runNotInline { x++ }
+    return x
+}
+
+fun notEscaping(): Int {
+    var y = 0
+    runInline { y++ }
+    return y
+}
+
+// 1 NEW kotlin/jvm/internal/Ref\$IntRef
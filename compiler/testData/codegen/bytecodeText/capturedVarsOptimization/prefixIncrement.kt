@@ -0,0 +1,20 @@
+inline fun runInline(block: () -> Unit) {
+    block()
+}
+
+fun test(): Double {
+    var i = 0
+    var j = 0L
+    var d = 0.0
+    var result = 0.0
+    runInline {
+        result += ++i
+        result += --j
+        result += ++d
+    }
+    return result + i + j + d
+}
+
+// 0 NEW kotlin/jvm/internal/Ref
+// 0 DUP_X1
+// 0 DUP2_X1
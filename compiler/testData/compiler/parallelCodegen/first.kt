@@ -0,0 +1,19 @@
+package first
+
+enum class Color { RED, GREEN, BLUE }
+
+inline fun <T> withLog(message: String, block: () -> T): T {
+    println(message)
+    return block()
+}
+
+fun describe(color: Color): String =
+        when (color) {
+            Color.RED -> "red"
+            Color.GREEN -> "green"
+            Color.BLUE -> "blue"
+        }
+
+fun lambdas(): List<String> = withLog("lambdas") {
+    Color.values().map { describe(it) }.filter { it.length() > 3 }
+}
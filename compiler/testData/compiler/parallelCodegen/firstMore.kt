@@ -0,0 +1,19 @@
+package first
+
+object Registry {
+    val names = arrayListOf<String>()
+
+    fun register(name: String) {
+        names.add(name)
+    }
+}
+
+fun registerAll() {
+    var counter = 0
+    withLog("register") {
+        Color.values().forEach {
+            counter++
+            Registry.register(describe(it) + counter)
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package second
+
+import first.*
+
+class Holder(val color: Color) {
+    fun name(): String = withLog("name") { describe(color) }
+
+    inner class Inner {
+        fun upper() = name().toUpperCase()
+    }
+}
+
+fun runnable(): Runnable = Runnable { registerAll() }
+
+fun main(args: Array<String>) {
+    runnable().run()
+    println(lambdas() + Holder(Color.RED).Inner().upper())
+}
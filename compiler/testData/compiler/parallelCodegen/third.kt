@@ -0,0 +1,8 @@
+package third
+
+import first.Color
+import first.describe
+
+fun colors(): Map<String, Color> = Color.values().toMap { describe(it) }
+
+val lazyColors by lazy { colors() }
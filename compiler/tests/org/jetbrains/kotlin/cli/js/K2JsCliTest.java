@@ -16,11 +16,19 @@
 
 package org.jetbrains.kotlin.cli.js;
 
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.cli.CliBaseTest;
+import org.jetbrains.kotlin.cli.common.ExitCode;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class K2JsCliTest extends CliBaseTest {
     @Test
@@ -99,6 +107,95 @@ public class K2JsCliTest extends CliBaseTest {
         Assert.assertTrue(new File(tmpdir.getTmpDir(), "jslib-example.js").isFile());
     }
 
+    @Test
+    public void incrementalCache() throws Exception {
+        executeCompilerCompareOutputJS();
+
+        File outputFile = new File(tmpdir.getTmpDir(), "out.js");
+        String output = FileUtil.loadFile(outputFile);
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "cache").isDirectory());
+
+        // The second compilation should restore the output from the cache
+        Assert.assertTrue(outputFile.delete());
+        String log = compileVerbose("compiler/testData/cli/js/simple2js.kt", "-no-stdlib", "-output", outputFile.getPath(),
+                                    "-Xincremental-cache", new File(tmpdir.getTmpDir(), "cache").getPath());
+        Assert.assertTrue(log, log.contains("Sources, libraries and arguments haven't changed"));
+        Assert.assertEquals(output, FileUtil.loadFile(outputFile));
+    }
+
+    @Test
+    public void incrementalCacheTranslatesChangedFiles() throws Exception {
+        File sources = new File(tmpdir.getTmpDir(), "src");
+        File inlineFile = new File(sources, "inline.kt");
+        File callerFile = new File(sources, "caller.kt");
+        File otherFile = new File(sources, "other.kt");
+        FileUtil.writeToFile(inlineFile, "package foo\n\ninline fun twice(f: () -> Int): Int = f() + f()\n");
+        FileUtil.writeToFile(callerFile, "package foo\n\nfun callTwice(): Int = twice { 21 }\n");
+        FileUtil.writeToFile(otherFile, "package foo\n\nfun other(): String = \"a\"\n");
+        compileIncrementally(sources, 3);
+
+        // A change of a body is local to its file
+        FileUtil.writeToFile(otherFile, "package foo\n\nfun other(): String = \"b\"\n");
+        compileIncrementally(sources, 1);
+
+        // The body of an inline function is a part of the translation of its callers
+        FileUtil.writeToFile(inlineFile, "package foo\n\ninline fun twice(f: () -> Int): Int = 2 * f()\n");
+        compileIncrementally(sources, 2);
+
+        // A new declaration may change the resolution of calls in any file
+        FileUtil.writeToFile(otherFile, "package foo\n\nfun other(): String = \"b\"\n\nfun another() {}\n");
+        compileIncrementally(sources, 3);
+    }
+
+    /**
+     * Compiles the sources with the incremental cache and checks that the output is the same as the output of the compilation
+     * which translates all files.
+     */
+    private void compileIncrementally(@NotNull File sources, int expectedTranslatedFiles) throws IOException {
+        File outputFile = new File(tmpdir.getTmpDir(), "out.js");
+
+        String log = compileVerbose(sources.getPath(), "-no-stdlib", "-output", outputFile.getPath(),
+                                    "-Xincremental-cache", new File(tmpdir.getTmpDir(), "cache").getPath());
+        Assert.assertTrue(log, log.contains("Translated " + expectedTranslatedFiles + " of 3 source files"));
+        String output = FileUtil.loadFile(outputFile);
+
+        File emptyCache = FileUtil.createTempDirectory(tmpdir.getTmpDir(), "cache", null);
+        log = compileVerbose(sources.getPath(), "-no-stdlib", "-output", outputFile.getPath(),
+                             "-Xincremental-cache", emptyCache.getPath());
+        Assert.assertTrue(log, log.contains("Translated 3 of 3 source files"));
+        Assert.assertEquals(FileUtil.loadFile(outputFile), output);
+    }
+
+    @Test
+    public void parallelTranslation() throws Exception {
+        File sources = new File(tmpdir.getTmpDir(), "src");
+        FileUtil.writeToFile(new File(sources, "inline.kt"), "package foo\n\ninline fun twice(f: () -> Int): Int = f() + f()\n");
+        FileUtil.writeToFile(new File(sources, "caller.kt"), "package foo\n\nfun callTwice(): Int = twice { 21 }\n");
+        FileUtil.writeToFile(new File(sources, "other.kt"),
+                             "package foo\n\nfun call(f: () -> String): String = f()\n\nfun other(): String = call { \"a\" }\n");
+        // A property with an initializer is translated in the program of the module
+        FileUtil.writeToFile(new File(sources, "values.kt"), "package foo\n\nval answer = callTwice()\n");
+        FileUtil.writeToFile(new File(sources, "bar.kt"), "package bar\n\nclass A {\n    fun other() = foo.other()\n}\n");
+        File outputFile = new File(tmpdir.getTmpDir(), "out.js");
+
+        String log = compileVerbose(sources.getPath(), "-no-stdlib", "-output", outputFile.getPath(), "-Xparallel-translation");
+        Assert.assertTrue(log, log.contains("4 of 5 source files were translated on other threads"));
+        String output = FileUtil.loadFile(outputFile);
+
+        log = compileVerbose(sources.getPath(), "-no-stdlib", "-output", outputFile.getPath());
+        Assert.assertTrue(log, log.contains("0 of 5 source files were translated on other threads"));
+        Assert.assertEquals(FileUtil.loadFile(outputFile), output);
+    }
+
+    @NotNull
+    private static String compileVerbose(@NotNull String... args) {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        arguments.add("-verbose");
+        Pair<String, ExitCode> outputAndExitCode = executeCompilerGrabOutput(new K2JSCompiler(), arguments);
+        Assert.assertEquals(outputAndExitCode.first, ExitCode.OK, outputAndExitCode.second);
+        return outputAndExitCode.first;
+    }
+
     @Test
     public void libraryDirNotFound() throws Exception {
         executeCompilerCompareOutputJS();
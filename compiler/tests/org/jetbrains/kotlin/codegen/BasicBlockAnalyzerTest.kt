@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.BasicBlockAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.ControlFlowGraph
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.Analyzer
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicInterpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+
+public class BasicBlockAnalyzerTest : TestCase() {
+    public fun testFramesAreTheSameAsComputedByAnalyzer() {
+        val method = createMethod()
+        val expected = Analyzer(BasicInterpreter()).analyze("Test", method)
+        val actual = BasicBlockAnalyzer<BasicValue>("Test", ControlFlowGraph.build(method), BasicInterpreter()).analyze { true }
+
+        assertEquals(expected.size(), actual.size())
+        for (i in expected.indices) {
+            assertEquals("Frame at $i", expected[i]?.toString(), actual[i]?.toString())
+        }
+    }
+
+    public fun testOnlyRequestedFramesAreKept() {
+        val method = createMethod()
+        val frames = BasicBlockAnalyzer<BasicValue>("Test", ControlFlowGraph.build(method), BasicInterpreter()).analyze {
+            it.opcode == IFNULL
+        }
+
+        val kept = frames.indices.filter { frames[it] != null }
+        assertEquals(listOf(method.instructions.toArray().indexOfFirst { it.opcode == IFNULL }), kept)
+    }
+
+    public fun testReachableInstructions() {
+        val method = createMethod()
+        val frames = Analyzer(BasicInterpreter()).analyze("Test", method)
+        val reachable = ControlFlowGraph.build(method).computeReachableInstructions()
+
+        assertEquals(frames.map { it != null }, reachable.toList())
+        assertTrue(reachable.any { !it })
+    }
+
+    private fun createMethod(): MethodNode {
+        val method = MethodNode(ACC_STATIC, "test", "(ILjava/lang/Object;)I", null, null)
+        with(method) {
+            val returnOne = Label()
+            val tryStart = Label()
+            val tryEnd = Label()
+            val handler = Label()
+            val loop = Label()
+            val exit = Label()
+
+            visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Exception")
+
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IFEQ, tryStart)
+            visitVarInsn(ALOAD, 1)
+            visitJumpInsn(IFNULL, returnOne)
+
+            visitLabel(tryStart)
+            visitVarInsn(ALOAD, 1)
+            visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;", false)
+            visitVarInsn(ASTORE, 2)
+            visitLabel(tryEnd)
+            visitJumpInsn(GOTO, loop)
+
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 2)
+
+            visitLabel(loop)
+            visitIincInsn(0, -1)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IFGT, loop)
+            visitJumpInsn(GOTO, exit)
+
+            // unreachable
+            visitInsn(ICONST_2)
+            visitInsn(IRETURN)
+
+            visitLabel(returnOne)
+            visitInsn(ICONST_1)
+            visitInsn(IRETURN)
+
+            visitLabel(exit)
+            visitInsn(ICONST_0)
+            visitInsn(IRETURN)
+
+            visitMaxs(2, 3)
+        }
+        return method
+    }
+}
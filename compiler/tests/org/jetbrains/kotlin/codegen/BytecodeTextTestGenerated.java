@@ -392,6 +392,51 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         }
     }
 
+    @TestMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization")
+    @TestDataPath("$PROJECT_ROOT")
+    @RunWith(JUnit3RunnerWithInners.class)
+    public static class CapturedVarsOptimization extends AbstractBytecodeTextTest {
+        public void testAllFilesPresentInCapturedVarsOptimization() throws Exception {
+            JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), new File("compiler/testData/codegen/bytecodeText/capturedVarsOptimization"), Pattern.compile("^(.+)\\.kt$"), true);
+        }
+
+        @TestMetadata("allTypes.kt")
+        public void testAllTypes() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/allTypes.kt");
+            doTest(fileName);
+        }
+
+        @TestMetadata("capturedInInlineLambda.kt")
+        public void testCapturedInInlineLambda() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/capturedInInlineLambda.kt");
+            doTest(fileName);
+        }
+
+        @TestMetadata("declaredInLoop.kt")
+        public void testDeclaredInLoop() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/declaredInLoop.kt");
+            doTest(fileName);
+        }
+
+        @TestMetadata("escapingRef.kt")
+        public void testEscapingRef() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/escapingRef.kt");
+            doTest(fileName);
+        }
+
+        @TestMetadata("postfixIncrement.kt")
+        public void testPostfixIncrement() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/postfixIncrement.kt");
+            doTest(fileName);
+        }
+
+        @TestMetadata("prefixIncrement.kt")
+        public void testPrefixIncrement() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/bytecodeText/capturedVarsOptimization/prefixIncrement.kt");
+            doTest(fileName);
+        }
+    }
+
     @TestMetadata("compiler/testData/codegen/bytecodeText/conditions")
     @TestDataPath("$PROJECT_ROOT")
     @RunWith(JUnit3RunnerWithInners.class)
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import com.intellij.testFramework.BinaryLightVirtualFile
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.InlineMethodNodeCache
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.InsnNode
+
+public class InlineMethodNodeCacheTest : TestCase() {
+    private val classId = ClassId.topLevel(FqName("Test"))
+    private val file = BinaryLightVirtualFile("Test.class", createClass())
+
+    public fun testHitReturnsIndependentCopy() {
+        val cache = InlineMethodNodeCache()
+
+        val first = cache.getMethodNode(file, "foo", "()I", classId)!!.node
+        val instructionCount = first.instructions.size()
+        first.instructions.clear()
+        first.instructions.add(InsnNode(NOP))
+
+        val second = cache.getMethodNode(file, "foo", "()I", classId)!!.node
+        assertEquals(1L, cache.misses)
+        assertEquals(1L, cache.hits)
+        assertNotSame(first, second)
+        assertEquals(instructionCount, second.instructions.size())
+        assertTrue(second.instructions.toArray().none { it.opcode == NOP })
+    }
+
+    public fun testMissingMethod() {
+        val cache = InlineMethodNodeCache()
+        assertNull(cache.getMethodNode(file, "foo", "()V", classId))
+        assertEquals(0L, cache.estimatedSize)
+    }
+
+    public fun testEvictionWhenBudgetIsExceeded() {
+        val probe = InlineMethodNodeCache()
+        probe.getMethodNode(file, "foo", "()I", classId)
+        val oneMethodSize = probe.estimatedSize
+
+        // the estimated sizes of foo and bar are the same, only one of them fits into the budget
+        val cache = InlineMethodNodeCache(oneMethodSize)
+        cache.getMethodNode(file, "foo", "()I", classId)
+        assertEquals(0L, cache.evictions)
+
+        cache.getMethodNode(file, "bar", "()I", classId)
+        assertEquals(1L, cache.evictions)
+        assertEquals(oneMethodSize, cache.estimatedSize)
+
+        cache.getMethodNode(file, "bar", "()I", classId)
+        assertEquals(1L, cache.hits)
+
+        cache.getMethodNode(file, "foo", "()I", classId)
+        assertEquals(3L, cache.misses)
+        assertEquals(2L, cache.evictions)
+    }
+
+    private fun createClass(): ByteArray {
+        val writer = ClassWriter(ClassWriter.COMPUTE_MAXS)
+        writer.visit(V1_6, ACC_PUBLIC, "Test", null, "java/lang/Object", null)
+        for (name in listOf("foo", "bar")) {
+            val mv = writer.visitMethod(ACC_PUBLIC or ACC_STATIC, name, "()I", null, null)
+            mv.visitCode()
+            mv.visitInsn(ICONST_1)
+            mv.visitInsn(ICONST_2)
+            mv.visitInsn(IADD)
+            mv.visitInsn(IRETURN)
+            mv.visitMaxs(-1, -1)
+            mv.visitEnd()
+        }
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+}
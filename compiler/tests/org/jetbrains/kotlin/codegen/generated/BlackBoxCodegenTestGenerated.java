@@ -1699,6 +1699,12 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest(fileName);
         }
 
+        @TestMetadata("capturedVarsInInlineLambda.kt")
+        public void testCapturedVarsInInlineLambda() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/box/closures/capturedVarsInInlineLambda.kt");
+            doTest(fileName);
+        }
+
         @TestMetadata("closureInsideConstrucor.kt")
         public void testClosureInsideConstrucor() throws Exception {
             String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/box/closures/closureInsideConstrucor.kt");
@@ -3297,6 +3297,12 @@ public class BlackBoxWithStdlibCodegenTestGenerated extends AbstractBlackBoxCode
                 JetTestUtils.assertAllTestsPresentByMetadata(this.getClass(), new File("compiler/testData/codegen/boxWithStdlib/reflection/classes"), Pattern.compile("^(.+)\\.kt$"), true);
             }
 
+            @TestMetadata("cachedMembers.kt")
+            public void testCachedMembers() throws Exception {
+                String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/boxWithStdlib/reflection/classes/cachedMembers.kt");
+                doTestWithStdlib(fileName);
+            }
+
             @TestMetadata("classSimpleName.kt")
             public void testClassSimpleName() throws Exception {
                 String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/boxWithStdlib/reflection/classes/classSimpleName.kt");
@@ -129,17 +129,66 @@ public class CompilerDaemonTest : KotlinIntegrationTestBase() {
     public fun testDaemonOptionsParsing() {
         val backupOptions = System.getProperty(COMPILE_DAEMON_OPTIONS_PROPERTY)
         try {
-            System.setProperty(COMPILE_DAEMON_OPTIONS_PROPERTY, "runFilesPath=abcd,clientAliveFlagPath=efgh,autoshutdownIdleSeconds=1111")
+            System.setProperty(COMPILE_DAEMON_OPTIONS_PROPERTY, "runFilesPath=abcd,clientAliveFlagPath=efgh,autoshutdownIdleSeconds=1111,maxParallelCompilations=3")
             val opts = configureDaemonOptions()
             TestCase.assertEquals("abcd", opts.runFilesPath)
             TestCase.assertEquals("efgh", opts.clientAliveFlagPath)
             TestCase.assertEquals(1111, opts.autoshutdownIdleSeconds)
+            TestCase.assertEquals(3, opts.maxParallelCompilations)
         }
         finally {
             restoreSystemProperty(COMPILE_DAEMON_OPTIONS_PROPERTY, backupOptions)
         }
     }
 
+    public fun testMemorySizeParsing() {
+        TestCase.assertEquals(200L * 1024 * 1024, "200m".memToBytes())
+        TestCase.assertEquals(2L * 1024 * 1024 * 1024, "2G".memToBytes())
+        TestCase.assertEquals(10L * 1024, "10k".memToBytes())
+        TestCase.assertEquals(100L, "100".memToBytes())
+        TestCase.assertNull("".memToBytes())
+        TestCase.assertNull("abc".memToBytes())
+    }
+
+    public fun testParallelCompilations() {
+        val flagFile = createTempFile(getTestName(true), ".alive")
+        flagFile.deleteOnExit()
+        val daemonOptions = DaemonOptions(runFilesPath = File(tmpdir, getTestName(true)).absolutePath,
+                                          clientAliveFlagPath = flagFile.absolutePath,
+                                          maxParallelCompilations = 2)
+
+        KotlinCompilerClient.shutdownCompileService(compilerId, daemonOptions)
+
+        val logFile = createTempFile("kotlin-daemon-test.", ".log")
+        val daemonJVMOptions = configureDaemonJVMOptions(false,
+                                                         "D$COMPILE_DAEMON_LOG_PATH_PROPERTY=\"${logFile.absolutePath}\"")
+        try {
+            // starting the daemon before running the compilations concurrently
+            TestCase.assertNotNull(KotlinCompilerClient.connectToCompileService(compilerId, daemonJVMOptions, daemonOptions,
+                                                                                DaemonReportingTargets(out = System.err), autostart = true, checkId = true))
+
+            val results = arrayOfNulls<CompilerResults>(4)
+            val threads = results.indices.map { i ->
+                thread {
+                    val jar = tmpdir.absolutePath + File.separator + "hello$i.jar"
+                    results[i] = compileOnDaemon(compilerId, daemonJVMOptions, daemonOptions,
+                                                 File(getHelloAppBaseDir(), "hello.kt").absolutePath, "-d", jar)
+                }
+            }
+            threads.forEach { it.join() }
+
+            for (res in results) {
+                TestCase.assertNotNull(res)
+                TestCase.assertEquals("compilation failed:\n${res!!.out}", 0, res.resultCode)
+            }
+            logFile.assertLogContainsSequence("Running up to 2 compilations in parallel")
+        }
+        finally {
+            KotlinCompilerClient.shutdownCompileService(compilerId, daemonOptions)
+            logFile.delete()
+        }
+    }
+
     public fun testDaemonInstances() {
         val jar = tmpdir.absolutePath + File.separator + "hello1.jar"
         val flagFile = createTempFile(getTestName(true), ".alive")
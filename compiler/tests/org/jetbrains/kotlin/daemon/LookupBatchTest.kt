@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartProto
+import org.jetbrains.kotlin.modules.TargetId
+import org.jetbrains.kotlin.rmi.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.rmi.InlineRegistration
+import org.jetbrains.kotlin.rmi.LookupBatch
+import org.jetbrains.kotlin.rmi.LookupBatchBuilder
+import org.jetbrains.kotlin.rmi.service.RemoteLookupTrackerClient
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.util.*
+
+public class LookupBatchTest : TestCase() {
+
+    private data class Lookup(val file: String, val line: Int?, val column: Int?, val scopeFqName: String, val scopeKind: ScopeKind, val name: String)
+
+    private fun lookups(count: Int): List<Lookup> = (0..count - 1).map {
+        Lookup("/src/file${it % 7}.kt", if (it % 5 == 0) null else it, if (it % 5 == 0) null else it % 80,
+               "foo.bar${it % 3}", if (it % 2 == 0) ScopeKind.PACKAGE else ScopeKind.CLASSIFIER, "name$it")
+    }
+
+    private fun LookupBatch.toLookups(): List<Lookup> {
+        val result = ArrayList<Lookup>()
+        forEach { file, line, column, scopeFqName, scopeKind, name -> result.add(Lookup(file, line, column, scopeFqName, scopeKind, name)) }
+        return result
+    }
+
+    private fun serializeAndDeserialize(batch: LookupBatch): LookupBatch {
+        val bytes = ByteArrayOutputStream()
+        ObjectOutputStream(bytes).use { it.writeObject(batch) }
+        return ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() as LookupBatch }
+    }
+
+    public fun testRoundTrip() {
+        val expected = lookups(100)
+        val builder = LookupBatchBuilder()
+        expected.forEach { builder.add(it.file, it.line, it.column, it.scopeFqName, it.scopeKind, it.name) }
+
+        val batch = serializeAndDeserialize(builder.build())
+
+        TestCase.assertEquals(expected.size(), batch.size)
+        TestCase.assertEquals(expected, batch.toLookups())
+    }
+
+    public fun testBuilderIsEmptyAfterBuild() {
+        val builder = LookupBatchBuilder()
+        val first = lookups(10)
+        first.forEach { builder.add(it.file, it.line, it.column, it.scopeFqName, it.scopeKind, it.name) }
+        val firstBatch = builder.build()
+        TestCase.assertEquals(0, builder.size)
+
+        val second = lookups(3)
+        second.forEach { builder.add(it.file, it.line, it.column, it.scopeFqName, it.scopeKind, it.name) }
+
+        TestCase.assertEquals(first, serializeAndDeserialize(firstBatch).toLookups())
+        TestCase.assertEquals(second, serializeAndDeserialize(builder.build()).toLookups())
+    }
+
+    public fun testLookupsBelowBatchSizeAreSentOnClose() {
+        doTestAllLookupsAreSent(10)
+    }
+
+    public fun testLookupsOfSeveralBatchesAreSentOnClose() {
+        doTestAllLookupsAreSent(10000)
+    }
+
+    private fun doTestAllLookupsAreSent(count: Int) {
+        val expected = lookups(count)
+        val facade = LookupRecordingFacade()
+        val tracker = RemoteLookupTrackerClient(facade)
+        expected.forEach { tracker.record(it.file, it.line, it.column, it.scopeFqName, it.scopeKind, it.name) }
+        tracker.close()
+
+        // the last batch is sent by the closing thread and may overtake the ones sent in background
+        TestCase.assertEquals(expected.toSet(), facade.received.toSet())
+        TestCase.assertEquals(expected.size(), facade.received.size())
+    }
+
+    private inner class LookupRecordingFacade : CompilerCallbackServicesFacade {
+        val received = Collections.synchronizedList(ArrayList<Lookup>())
+
+        override fun lookupTracker_record(lookups: LookupBatch) {
+            received.addAll(serializeAndDeserialize(lookups).toLookups())
+        }
+
+        override fun lookupTracker_isDoNothing(): Boolean = false
+
+        override fun hasIncrementalCaches(): Boolean = false
+        override fun hasLookupTracker(): Boolean = true
+        override fun hasCompilationCanceledStatus(): Boolean = false
+
+        override fun incrementalCache_getObsoletePackageParts(target: TargetId): Collection<String> = throw UnsupportedOperationException()
+        override fun incrementalCache_getObsoleteMultifileClassFacades(target: TargetId): Collection<String> = throw UnsupportedOperationException()
+        override fun incrementalCache_getMultifileFacade(target: TargetId, partInternalName: String): String? = throw UnsupportedOperationException()
+        override fun incrementalCache_getPackagePartData(target: TargetId, fqName: String): JvmPackagePartProto? = throw UnsupportedOperationException()
+        override fun incrementalCache_getModuleMappingData(target: TargetId): ByteArray? = throw UnsupportedOperationException()
+        override fun incrementalCache_registerInlines(target: TargetId, inlines: Collection<InlineRegistration>) = throw UnsupportedOperationException()
+        override fun incrementalCache_getClassFilePath(target: TargetId, internalClassName: String): String = throw UnsupportedOperationException()
+        override fun incrementalCache_close(target: TargetId) = throw UnsupportedOperationException()
+        override fun incrementalCache_getMultifileFacadeParts(target: TargetId, internalName: String): Collection<String>? = throw UnsupportedOperationException()
+        override fun compilationCanceledStatus_checkCanceled() = throw UnsupportedOperationException()
+    }
+}
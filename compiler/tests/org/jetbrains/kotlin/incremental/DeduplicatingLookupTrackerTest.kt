@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.incremental.components.*
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatform
+import java.util.*
+
+public class DeduplicatingLookupTrackerTest : TestCase() {
+    private val recorded = ArrayList<String>()
+
+    private val delegate = object : LookupTracker {
+        override fun record(
+                lookupContainingFile: String,
+                lookupLine: Int?,
+                lookupColumn: Int?,
+                scopeFqName: String,
+                scopeKind: ScopeKind,
+                name: String
+        ) {
+            recorded.add("$lookupContainingFile $scopeFqName.$name")
+        }
+    }
+
+    private fun from(path: String) = object : LookupLocation {
+        override val location: LocationInfo? = object : LocationInfo {
+            override val filePath = path
+            override val position: Position
+                get() = throw AssertionError("Position is not required")
+        }
+    }
+
+    public fun testRepeatedLookups() {
+        val tracker = DeduplicatingLookupTracker(delegate)
+        val any = JvmPlatform.builtIns.any
+        val intClass = JvmPlatform.builtIns.int
+
+        for (i in 1..3) {
+            tracker.record(from("a.kt"), any, Name.identifier("foo"))
+            tracker.record(from("a.kt"), any, Name.identifier("bar"))
+            tracker.record(from("a.kt"), intClass, Name.identifier("foo"))
+            tracker.record(from("b.kt"), any, Name.identifier("foo"))
+        }
+
+        assertEquals(listOf("a.kt kotlin.Any.foo", "a.kt kotlin.Any.bar", "a.kt kotlin.Int.foo", "b.kt kotlin.Any.foo"), recorded)
+        assertEquals(8, tracker.skippedLookups)
+    }
+
+    public fun testManyNames() {
+        val tracker = DeduplicatingLookupTracker(delegate)
+        val any = JvmPlatform.builtIns.any
+
+        for (i in 0..999) {
+            tracker.record(from("a.kt"), any, Name.identifier("name$i"))
+        }
+        for (i in 0..999) {
+            tracker.record(from("a.kt"), any, Name.identifier("name$i"))
+        }
+
+        assertEquals(1000, recorded.size())
+        assertEquals(1000, tracker.skippedLookups)
+    }
+}
@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.jvm.compiler;
 
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
 import junit.framework.TestCase;
 import org.jetbrains.kotlin.cli.common.ExitCode;
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
@@ -26,7 +27,11 @@ import org.junit.Assert;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
 
 public class CompileEnvironmentTest extends TestCase {
 
@@ -53,4 +58,91 @@ public class CompileEnvironmentTest extends TestCase {
             FileUtil.delete(tempDir);
         }
     }
+
+    public void testSmokeWithJarAndRuntime() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File jar = new File(tempDir, "smoke.jar");
+            File stdlib = ForTestCompileRuntime.runtimeJarForTests();
+            ExitCode exitCode = new K2JVMCompiler().exec(
+                    System.out,
+                    JetTestUtils.getTestDataPathBase() + "/compiler/smoke/Smoke.kt",
+                    "-d", jar.getAbsolutePath(),
+                    "-include-runtime",
+                    "-no-stdlib",
+                    "-classpath", stdlib.getAbsolutePath()
+            );
+            Assert.assertEquals(ExitCode.OK, exitCode);
+
+            JarFile jarFile = new JarFile(jar);
+            try {
+                assertNotNull(jarFile.getManifest());
+                assertNotNull(jarFile.getEntry("Smoke/SmokePackage.class"));
+                assertNotNull(jarFile.getEntry("kotlin/Unit.class"));
+
+                // reads every entry completely, which checks its size and CRC
+                byte[] buffer = new byte[8192];
+                for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                    InputStream input = jarFile.getInputStream(entries.nextElement());
+                    try {
+                        while (input.read(buffer) >= 0) {}
+                    }
+                    finally {
+                        input.close();
+                    }
+                }
+            }
+            finally {
+                jarFile.close();
+            }
+        }
+        finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
+    public void testParallelCodegenGivesSameOutput() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File sequentialOut = new File(tempDir, "sequential");
+            File parallelOut = new File(tempDir, "parallel");
+            compileParallelCodegenTestData(sequentialOut);
+            compileParallelCodegenTestData(parallelOut, "-Xparallel-codegen");
+
+            List<String> sequentialFiles = collectRelativePaths(sequentialOut);
+            assertEquals(collectRelativePaths(parallelOut), sequentialFiles);
+            for (String path : sequentialFiles) {
+                assertTrue("Different contents of " + path, Arrays.equals(
+                        FileUtil.loadFileBytes(new File(sequentialOut, path)),
+                        FileUtil.loadFileBytes(new File(parallelOut, path))
+                ));
+            }
+        }
+        finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
+    private static void compileParallelCodegenTestData(File out, String... extraArguments) {
+        List<String> arguments = new ArrayList<String>();
+        arguments.add(JetTestUtils.getTestDataPathBase() + "/compiler/parallelCodegen");
+        arguments.add("-d");
+        arguments.add(out.getAbsolutePath());
+        arguments.add("-no-stdlib");
+        arguments.add("-classpath");
+        arguments.add(ForTestCompileRuntime.runtimeJarForTests().getAbsolutePath());
+        Collections.addAll(arguments, extraArguments);
+
+        ExitCode exitCode = new K2JVMCompiler().exec(System.out, ArrayUtil.toStringArray(arguments));
+        Assert.assertEquals(ExitCode.OK, exitCode);
+    }
+
+    private static List<String> collectRelativePaths(File root) {
+        List<String> result = new ArrayList<String>();
+        for (File file : FileUtil.findFilesByMask(Pattern.compile(".*"), root)) {
+            result.add(FileUtil.getRelativePath(root, file));
+        }
+        Collections.sort(result);
+        return result;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.load.kotlin.JvmVirtualFileFinder;
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryDataCache;
+import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass;
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader;
+import org.jetbrains.kotlin.name.ClassId;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.TestJdkKind;
+
+public class KotlinBinaryDataCacheTest extends TestCase {
+    private static final String SOURCE = "fun foo() = Pair(1, listOf(1, 2).map { it.toString() })";
+
+    public void testSharedBetweenCompilations() {
+        Disposable retained = KotlinCoreEnvironment.retainApplicationEnvironment();
+        try {
+            KotlinBinaryDataCache cache = analyze();
+            long misses = cache.getMisses();
+            long hits = cache.getHits();
+            assertTrue("Library classes should be parsed by the first compilation", misses > 0);
+
+            assertSame(cache, analyze());
+            assertEquals("Library classes should not be parsed again by the second compilation", misses, cache.getMisses());
+            assertEquals(misses + hits, cache.getHits() - hits);
+        }
+        finally {
+            Disposer.dispose(retained);
+        }
+    }
+
+    public void testEvictsOldestEntries() {
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            KotlinCoreEnvironment environment = KotlinCoreEnvironment.createForTests(
+                    disposable,
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK),
+                    EnvironmentConfigFiles.JVM_CONFIG_FILES
+            );
+            KotlinJvmBinaryClass pair = findKotlinClass(environment, "kotlin.Pair");
+            KotlinJvmBinaryClass triple = findKotlinClass(environment, "kotlin.Triple");
+
+            KotlinBinaryDataCache unbounded = new KotlinBinaryDataCache(Long.MAX_VALUE);
+            getClassData(unbounded, pair);
+            getClassData(unbounded, triple);
+            long budget = Math.max(unbounded.getEstimatedSize() - 1, 0);
+            assertEquals(0L, unbounded.getEvictions());
+
+            KotlinBinaryDataCache cache = new KotlinBinaryDataCache(budget);
+            ClassData pairData = getClassData(cache, pair);
+            assertSame(pairData, getClassData(cache, pair));
+            assertEquals(1L, cache.getHits());
+
+            getClassData(cache, triple);
+            assertEquals(1L, cache.getEvictions());
+            assertNotSame(pairData, getClassData(cache, pair));
+            assertEquals(3L, cache.getMisses());
+            assertTrue(cache.getEstimatedSize() <= budget);
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    public void testDisabled() {
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            KotlinCoreEnvironment environment = KotlinCoreEnvironment.createForTests(
+                    disposable,
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK),
+                    EnvironmentConfigFiles.JVM_CONFIG_FILES
+            );
+            KotlinJvmBinaryClass pair = findKotlinClass(environment, "kotlin.Pair");
+
+            assertNotSame(getClassData(KotlinBinaryDataCache.DISABLED, pair), getClassData(KotlinBinaryDataCache.DISABLED, pair));
+            assertEquals(0L, KotlinBinaryDataCache.DISABLED.getEstimatedSize());
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    @NotNull
+    private static KotlinJvmBinaryClass findKotlinClass(@NotNull KotlinCoreEnvironment environment, @NotNull String fqName) {
+        KotlinJvmBinaryClass kotlinClass = JvmVirtualFileFinder.SERVICE.getInstance(environment.getProject())
+                .findKotlinClass(ClassId.topLevel(new FqName(fqName)));
+        assertNotNull("No binary class for " + fqName, kotlinClass);
+        return kotlinClass;
+    }
+
+    @NotNull
+    private static ClassData getClassData(@NotNull KotlinBinaryDataCache cache, @NotNull KotlinJvmBinaryClass kotlinClass) {
+        KotlinClassHeader header = kotlinClass.getClassHeader();
+        String[] data = header.getAnnotationData();
+        String[] strings = header.getStrings();
+        assertNotNull(data);
+        assertNotNull(strings);
+        return cache.getClassData(kotlinClass, data, strings);
+    }
+
+    @NotNull
+    private static KotlinBinaryDataCache analyze() {
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            KotlinCoreEnvironment environment = KotlinCoreEnvironment.createForProduction(
+                    disposable,
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK),
+                    EnvironmentConfigFiles.JVM_CONFIG_FILES
+            );
+            JetFile file = JetTestUtils.createFile("test.kt", SOURCE, environment.getProject());
+            JvmResolveUtil.analyzeOneFileWithJavaIntegration(file, environment);
+            return ServiceManager.getService(KotlinBinaryDataCache.class);
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.name
+
+import org.jetbrains.kotlin.load.kotlin.FileBasedKotlinClass
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
+import org.jetbrains.kotlin.utils.PathUtil
+import java.io.File
+import java.util.*
+import java.util.zip.ZipFile
+
+/**
+ * Measures the names of declarations created by deserialization of all classes and package parts in a jar, as each module
+ * using the jar creates them: the heap retained by the names, and the time of looking them up in a hash map filled with
+ * the names created for another module.
+ *
+ * Names are interned in [NameTable] by default, run it with -Dkotlin.name.table.capacity=0 to compare with names
+ * which are not interned.
+ *
+ * Usage: NameTableComparison [path to jar], kotlin-runtime.jar from the dist directory by default.
+ * Run it with a fixed heap size (e.g. -Xms1g -Xmx1g) for stable numbers.
+ */
+fun main(args: Array<String>) {
+    val jar = if (args.isNotEmpty()) File(args[0]) else PathUtil.getKotlinPathsForDistDirectory().getRuntimePath()
+    val headers = readHeaders(jar)
+    val interned = Name.identifier("main").id != Name.NO_ID
+    println("${headers.size()} classes and package parts in $jar, names are ${if (interned) "interned" else "not interned"}")
+
+    // The first rounds warm up the JIT
+    for (round in 0..2) {
+        println("Round $round")
+
+        val memoryBefore = usedMemory()
+        var start = System.nanoTime()
+        val names = headers.map { readNames(it) }
+        val readTime = System.nanoTime() - start
+        val memory = usedMemory() - memoryBefore
+        println("  ${names.map { it.size() }.sum()} names created in ${readTime / 1000000} ms, ~${memory / 1024} KB retained")
+
+        val map = HashMap<Name, Any>()
+        for (list in headers.map { readNames(it) }) {
+            for (name in list) map.put(name, name)
+        }
+
+        start = System.nanoTime()
+        var found = 0
+        for (i in 1..10) {
+            for (list in names) {
+                for (name in list) {
+                    if (map.get(name) != null) found++
+                }
+            }
+        }
+        println("  $found lookups in ${(System.nanoTime() - start) / 1000000} ms")
+    }
+}
+
+private fun readNames(header: KotlinClassHeader): List<Name> {
+    val result = ArrayList<Name>()
+    if (header.kind == KotlinClassHeader.Kind.CLASS) {
+        val (nameResolver, classProto) = JvmProtoBufUtil.readClassDataFrom(header.annotationData!!, header.strings!!)
+        classProto.typeParameterList.mapTo(result) { nameResolver.getName(it.name) }
+        classProto.constructorList.forEach { it.valueParameterList.mapTo(result) { nameResolver.getName(it.name) } }
+        addNames(result, nameResolver, classProto.functionList, classProto.propertyList)
+    }
+    else {
+        val (nameResolver, packageProto) = JvmProtoBufUtil.readPackageDataFrom(header.annotationData!!, header.strings!!)
+        addNames(result, nameResolver, packageProto.functionList, packageProto.propertyList)
+    }
+    return result
+}
+
+private fun addNames(
+        result: MutableList<Name>,
+        nameResolver: NameResolver,
+        functions: List<ProtoBuf.Function>,
+        properties: List<ProtoBuf.Property>
+) {
+    for (function in functions) {
+        result.add(nameResolver.getName(function.name))
+        function.typeParameterList.mapTo(result) { nameResolver.getName(it.name) }
+        function.valueParameterList.mapTo(result) { nameResolver.getName(it.name) }
+    }
+    properties.mapTo(result) { nameResolver.getName(it.name) }
+}
+
+private fun readHeaders(jar: File): List<KotlinClassHeader> {
+    val result = ArrayList<KotlinClassHeader>()
+    val zip = ZipFile(jar)
+    try {
+        for (entry in zip.entries()) {
+            if (!entry.name.endsWith(".class")) continue
+
+            val bytes = zip.getInputStream(entry).use { it.readBytes() }
+            val header = FileBasedKotlinClass.create(bytes) {
+                className, classHeader, innerClasses ->
+                object : FileBasedKotlinClass(className, classHeader, innerClasses) {
+                    override fun getLocation(): String = throw UnsupportedOperationException()
+                    override fun getFileContents(): ByteArray = throw UnsupportedOperationException()
+                    override fun hashCode(): Int = throw UnsupportedOperationException()
+                    override fun equals(other: Any?): Boolean = throw UnsupportedOperationException()
+                    override fun toString(): String = throw UnsupportedOperationException()
+                }
+            }?.getClassHeader()
+
+            if (header != null && header.annotationData != null && header.strings != null &&
+                header.kind in setOf(KotlinClassHeader.Kind.CLASS, KotlinClassHeader.Kind.FILE_FACADE, KotlinClassHeader.Kind.MULTIFILE_CLASS_PART)) {
+                result.add(header)
+            }
+        }
+    }
+    finally {
+        zip.close()
+    }
+    return result
+}
+
+private fun usedMemory(): Long {
+    val runtime = Runtime.getRuntime()
+    for (i in 0..2) {
+        System.gc()
+    }
+    return runtime.totalMemory() - runtime.freeMemory()
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.name;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class NameTableTest extends TestCase {
+    public void testEqualNamesAreIdentical() {
+        Name name = Name.identifier("foo");
+        assertSame(name, Name.identifier(new String("foo")));
+        assertSame(name, Name.identifierNoValidate("foo"));
+        assertSame(name, Name.guess("foo"));
+        assertTrue(name.getId() > 0);
+    }
+
+    public void testDifferentNames() {
+        Name foo = Name.identifier("foo");
+        Name bar = Name.identifier("bar");
+        assertFalse(foo.equals(bar));
+        assertTrue(foo.getId() != bar.getId());
+
+        Name special = Name.special("<foo>");
+        assertSame(special, Name.guess("<foo>"));
+        assertFalse(special.equals(Name.identifierNoValidate("<foo>")));
+        assertTrue(special.getId() != Name.identifierNoValidate("<foo>").getId());
+        assertTrue(special.isSpecial());
+        assertFalse(Name.identifierNoValidate("<foo>").isSpecial());
+    }
+
+    public void testFullTable() {
+        NameTable table = new NameTable(2);
+        Name foo = table.intern("foo", false);
+        Name bar = table.intern("bar", false);
+        assertEquals(2, table.size());
+        assertEquals(1, foo.getId());
+        assertEquals(2, bar.getId());
+
+        Name baz = table.intern("baz", false);
+        assertEquals(Name.NO_ID, baz.getId());
+        assertNotSame(baz, table.intern("baz", false));
+        assertEquals(baz, table.intern("baz", false));
+        assertEquals(baz.hashCode(), table.intern("baz", false).hashCode());
+        assertEquals(2, table.size());
+
+        // names already in the table are still found
+        assertSame(foo, table.intern("foo", false));
+
+        Name fooOutside = new Name("foo", false, Name.NO_ID);
+        assertEquals(foo, fooOutside);
+        assertEquals(fooOutside, foo);
+        assertFalse(bar.equals(fooOutside));
+    }
+
+    public void testIdsAreNotReused() {
+        NameTable table = new NameTable(Integer.MAX_VALUE);
+        int last = Name.NO_ID;
+        for (int i = 0; i < 1000; i++) {
+            int id = table.intern("name" + i, false).getId();
+            assertTrue(id > last);
+            last = id;
+        }
+    }
+
+    public void testConcurrentCreation() throws Exception {
+        final NameTable table = new NameTable(Integer.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Name>>> futures = new ArrayList<Future<List<Name>>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<List<Name>>() {
+                    @Override
+                    public List<Name> call() {
+                        List<Name> names = new ArrayList<Name>();
+                        for (int j = 0; j < 1000; j++) {
+                            names.add(table.intern("concurrent" + j, false));
+                        }
+                        return names;
+                    }
+                }));
+            }
+
+            List<Name> expected = futures.get(0).get();
+            for (Future<List<Name>> future : futures) {
+                List<Name> names = future.get();
+                for (int j = 0; j < names.size(); j++) {
+                    assertSame(expected.get(j), names.get(j));
+                }
+            }
+            assertEquals(1000, table.size());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import junit.framework.TestCase;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.org.objectweb.asm.ClassWriter;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.jetbrains.org.objectweb.asm.Opcodes.*;
+
+public class LazyPreloadingTest extends TestCase {
+    private static final byte[] TOP_LEVEL_CONTENT = "top level".getBytes();
+    private static final byte[] NESTED_CONTENT = "nested, stored without compression".getBytes();
+
+    private File jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        jar = new File(JetTestUtils.tmpDirForTest(this), "test.jar");
+        writeJar(jar);
+    }
+
+    public void testEntries() throws IOException {
+        Map<String, ResourceData> entries = readMappedEntries();
+
+        assertEquals(new HashSet<String>(Arrays.asList("top.txt", "dir/nested/file.txt", "test/Lazy.class")), entries.keySet());
+        assertTrue(Arrays.equals(TOP_LEVEL_CONTENT, entries.get("top.txt").getBytes()));
+        assertTrue(Arrays.equals(NESTED_CONTENT, entries.get("dir/nested/file.txt").getBytes()));
+        assertTrue(Arrays.equals(createClass(), entries.get("test/Lazy.class").getBytes()));
+    }
+
+    public void testMissingEntry() throws IOException {
+        Map<String, ResourceData> entries = readMappedEntries();
+
+        assertNull(entries.get("missing.txt"));
+        assertNull(entries.get("dir/"));
+        assertNull(entries.get("dir/nested/"));
+    }
+
+    public void testLazyPreloadingLoadsClassOnDemand() throws Exception {
+        final List<String> instrumented = new ArrayList<String>();
+        ClassHandler handler = new ClassHandler() {
+            @Override
+            public byte[] instrument(String resourceName, byte[] data) {
+                instrumented.add(resourceName);
+                return data;
+            }
+        };
+
+        ClassLoader loader = ClassPreloadingUtils.preloadClasses(Collections.singletonList(jar), 10, null, null, handler, true);
+        assertEquals("Nothing should be read before a class is loaded", Collections.<String>emptyList(), instrumented);
+
+        Class<?> lazyClass = loader.loadClass("test.Lazy");
+        assertSame(loader, lazyClass.getClassLoader());
+        assertEquals("lazy", lazyClass.getMethod("get").invoke(null));
+        assertEquals(Collections.singletonList("test/Lazy.class"), instrumented);
+    }
+
+    private Map<String, ResourceData> readMappedEntries() throws IOException {
+        MappedJar mappedJar = MappedJar.open(jar);
+        assertNotNull(mappedJar);
+        List<ResourceData> entries = mappedJar.readEntries(null);
+        assertNotNull(entries);
+
+        Map<String, ResourceData> result = new HashMap<String, ResourceData>();
+        for (ResourceData entry : entries) {
+            result.put(entry.resourceName, entry);
+        }
+        return result;
+    }
+
+    private static void writeJar(File file) throws IOException {
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(file));
+        try {
+            stream.putNextEntry(new ZipEntry("top.txt"));
+            stream.write(TOP_LEVEL_CONTENT);
+
+            stream.putNextEntry(new ZipEntry("dir/"));
+            stream.putNextEntry(new ZipEntry("dir/nested/"));
+
+            ZipEntry stored = new ZipEntry("dir/nested/file.txt");
+            CRC32 crc = new CRC32();
+            crc.update(NESTED_CONTENT);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(NESTED_CONTENT.length);
+            stored.setCrc(crc.getValue());
+            stream.putNextEntry(stored);
+            stream.write(NESTED_CONTENT);
+
+            stream.putNextEntry(new ZipEntry("test/Lazy.class"));
+            stream.write(createClass());
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] createClass() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_6, ACC_PUBLIC, "test/Lazy", null, "java/lang/Object", null);
+        MethodVisitor mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "get", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("lazy");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(-1, -1);
+        mv.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.repl
+
+import com.intellij.testFramework.UsefulTestCase
+import org.jetbrains.kotlin.cli.jvm.repl.ReplInterpreter
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.JetTestUtils
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+
+public class ReplSessionTest : UsefulTestCase() {
+    init {
+        System.setProperty("java.awt.headless", "true")
+    }
+
+    private fun createRepl(): ReplInterpreter {
+        val configuration = JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK)
+        return ReplInterpreter(getTestRootDisposable()!!, configuration, false, null)
+    }
+
+    private fun ReplInterpreter.evalValue(code: String): Any? {
+        val result = eval(code)
+        assertEquals(result.getErrorText(), ReplInterpreter.LineResultType.SUCCESS, result.getType())
+        return result.getValue()
+    }
+
+    fun testSaveAndRestore() {
+        val repl = createRepl()
+        repl.evalValue("import java.util.ArrayList")
+        repl.evalValue("fun twice(x: Int) = x * 2")
+        assertEquals(ReplInterpreter.LineResultType.INCOMPLETE, repl.eval("val list = ArrayList<Int>(").getType())
+        repl.evalValue(")")
+        repl.evalValue("list.add(twice(21))")
+        assertEquals(ReplInterpreter.LineResultType.COMPILE_ERROR, repl.eval("unresolved()").getType())
+
+        val file = File(JetTestUtils.tmpDir("replSession"), "session.bin")
+        repl.saveSession(file)
+
+        try {
+            createRepl().restoreSession(file, false)
+            fail("Lines which execute code should not be restored")
+        }
+        catch (e: ReplInterpreter.UnrestorableSessionException) {
+            assertTrue(e.message!!.contains("list.add(twice(21))"))
+        }
+
+        val restored = createRepl().restoreSession(file, true)
+        assertEquals(2, restored.getRestoredLineCount())
+        assertEquals(listOf("val list = ArrayList<Int>(\n)", "list.add(twice(21))"), restored.getSkippedLines())
+    }
+
+    fun testRestoreOnlyDeclarations() {
+        val property = "kotlin.repl.test.restored"
+        val repl = createRepl()
+        repl.evalValue("import java.util.ArrayList")
+        repl.evalValue("fun twice(x: Int) = x * 2")
+        repl.evalValue("System.setProperty(\"$property\", \"1\")")
+        repl.evalValue("val list = ArrayList<Int>()")
+        repl.evalValue("fun first() = list[0]")
+        repl.evalValue("object O { val value = twice(2) }")
+
+        val file = File(JetTestUtils.tmpDir("replSession"), "session.bin")
+        repl.saveSession(file)
+        System.clearProperty(property)
+
+        val restored = createRepl()
+        val result = restored.restoreSession(file, true)
+        assertNull(System.getProperty(property))
+        assertEquals(3, result.getRestoredLineCount())
+        // "first" depends on a skipped line
+        assertEquals(3, result.getSkippedLines().size())
+        assertEquals(6, restored.evalValue("twice(3)"))
+        assertEquals(4, restored.evalValue("O.value"))
+        assertEquals("[]", restored.evalValue("ArrayList<Int>()").toString())
+        assertEquals(ReplInterpreter.LineResultType.COMPILE_ERROR, restored.eval("list").getType())
+    }
+
+    fun testRestoreDeclarationsOnlySession() {
+        val repl = createRepl()
+        repl.evalValue("fun twice(x: Int) = x * 2")
+        repl.evalValue("class Box(val value: Int)")
+        repl.evalValue("fun boxTwice(x: Int) = Box(twice(x))")
+
+        val file = File(JetTestUtils.tmpDir("replSession"), "session.bin")
+        repl.saveSession(file)
+
+        val restored = createRepl()
+        val result = restored.restoreSession(file, false)
+        assertEquals(3, result.getRestoredLineCount())
+        assertTrue(result.getSkippedLines().isEmpty())
+        assertEquals(42, restored.evalValue("boxTwice(21).value"))
+    }
+
+    fun testRedeclarationShadowsEarlierLines() {
+        val repl = createRepl()
+        for (i in 1..50) {
+            repl.evalValue("fun f$i() = $i")
+        }
+        repl.evalValue("fun f1() = 100")
+        assertEquals(100, repl.evalValue("f1()"))
+        assertEquals(50, repl.evalValue("f50()"))
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.resolve.lazy;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.context.GlobalContext;
+import org.jetbrains.kotlin.context.ProjectContextImpl;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.diagnostics.Diagnostic;
+import org.jetbrains.kotlin.diagnostics.Severity;
+import org.jetbrains.kotlin.diagnostics.rendering.DefaultErrorMessages;
+import org.jetbrains.kotlin.psi.JetDeclaration;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.test.ConfigurationKind;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resolves the same set of files lazily from several threads at once, and checks that all threads observe the same descriptors
+ * and that the resolution doesn't report errors, with the default single-lock storage manager and with the concurrent one.
+ */
+public class ConcurrentResolveSessionStressTest extends KotlinTestWithEnvironment {
+    private static final int THREADS = 8;
+    private static final File TEST_DATA = new File("compiler/testData/loadJava/compiledKotlin");
+
+    @Override
+    protected KotlinCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.ALL);
+    }
+
+    public void testLockBasedStorageManager() throws Exception {
+        doTest(ContextPackage.GlobalContext());
+    }
+
+    public void testConcurrentStorageManager() throws Exception {
+        doTest(ContextPackage.ConcurrentGlobalContext());
+    }
+
+    private void doTest(@NotNull GlobalContext globalContext) throws Exception {
+        final List<JetFile> files = loadFiles();
+        final ResolveSession session = LazyPackage.createResolveSessionForFiles(
+                getProject(), files, true, new ProjectContextImpl(getProject(), globalContext)
+        );
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Map<JetDeclaration, DeclarationDescriptor>>> futures = new ArrayList<Future<Map<JetDeclaration, DeclarationDescriptor>>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int offset = i * files.size() / THREADS;
+                futures.add(executor.submit(new Callable<Map<JetDeclaration, DeclarationDescriptor>>() {
+                    @Override
+                    public Map<JetDeclaration, DeclarationDescriptor> call() {
+                        Map<JetDeclaration, DeclarationDescriptor> descriptors = new HashMap<JetDeclaration, DeclarationDescriptor>();
+                        // Every thread walks all files, starting from a different one to maximize contention on shared values
+                        for (int j = 0; j < files.size(); j++) {
+                            resolveFile(session, files.get((offset + j) % files.size()), descriptors);
+                        }
+                        return descriptors;
+                    }
+                }));
+            }
+
+            Map<JetDeclaration, DeclarationDescriptor> expected = futures.get(0).get(5, TimeUnit.MINUTES);
+            assertFalse("Nothing was resolved", expected.isEmpty());
+            for (Future<Map<JetDeclaration, DeclarationDescriptor>> future : futures) {
+                Map<JetDeclaration, DeclarationDescriptor> descriptors = future.get(5, TimeUnit.MINUTES);
+                assertEquals(expected.keySet(), descriptors.keySet());
+                for (Map.Entry<JetDeclaration, DeclarationDescriptor> entry : descriptors.entrySet()) {
+                    assertSame("Different descriptors for " + entry.getKey().getText(), expected.get(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        for (Diagnostic diagnostic : session.getBindingContext().getDiagnostics()) {
+            if (diagnostic.getSeverity() == Severity.ERROR) {
+                fail("Unexpected error in " + diagnostic.getPsiFile().getName() + ": " + DefaultErrorMessages.render(diagnostic));
+            }
+        }
+    }
+
+    private static void resolveFile(
+            @NotNull ResolveSession session,
+            @NotNull JetFile file,
+            @NotNull Map<JetDeclaration, DeclarationDescriptor> descriptors
+    ) {
+        for (JetDeclaration declaration : file.getDeclarations()) {
+            DeclarationDescriptor descriptor = session.resolveToDescriptor(declaration);
+            ForceResolveUtil.forceResolveAllContents(descriptor);
+            descriptors.put(declaration, descriptor);
+        }
+    }
+
+    @NotNull
+    private List<JetFile> loadFiles() throws Exception {
+        final List<File> ioFiles = new ArrayList<File>();
+        FileUtil.processFilesRecursively(TEST_DATA, new Processor<File>() {
+            @Override
+            public boolean process(File file) {
+                if (file.getName().endsWith(".kt")) {
+                    ioFiles.add(file);
+                }
+                return true;
+            }
+        });
+        return JetTestUtils.loadToJetFiles(getEnvironment(), ioFiles);
+    }
+}
@@ -28,12 +28,13 @@ import org.jetbrains.kotlin.resolve.CompilerEnvironment
 import org.jetbrains.kotlin.resolve.jvm.JvmAnalyzerFacade
 import org.jetbrains.kotlin.resolve.jvm.JvmPlatformParameters
 
+@JvmOverloads
 public fun createResolveSessionForFiles(
         project: Project,
         syntheticFiles: Collection<JetFile>,
-        addBuiltIns: Boolean
+        addBuiltIns: Boolean,
+        projectContext: ProjectContext = ProjectContext(project)
 ): ResolveSession {
-    val projectContext = ProjectContext(project)
     val testModule = TestModule(addBuiltIns)
     val resolverForProject = JvmAnalyzerFacade.setupResolverForProject(
             projectContext, listOf(testModule),
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.scripts;
 
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
@@ -33,6 +34,7 @@ import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.name.Name;
 import org.jetbrains.kotlin.parsing.JetScriptDefinition;
 import org.jetbrains.kotlin.parsing.JetScriptDefinitionProvider;
+import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
 import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatform;
 import org.jetbrains.kotlin.test.ConfigurationKind;
@@ -43,12 +45,18 @@ import org.jetbrains.kotlin.utils.PathUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.kotlin.config.ConfigPackage.addKotlinSourceRoot;
 
 public class ScriptTest {
+    private static final String SCRIPTS_DIR = "compiler/testData/script/";
+
     @Test
     public void testScript() throws Exception {
         Class<?> aClass = compileScript("fib.kts", numIntParam(), Collections.<JetScriptDefinition>emptyList());
@@ -71,6 +79,65 @@ public class ScriptTest {
         aClass.getConstructor(int.class).newInstance(4);
     }
 
+    @Test
+    public void testScriptBatchWithCache() throws Exception {
+        File cacheDir = JetTestUtils.tmpDir("scriptCache");
+        for (int i = 0; i < 2; i++) {
+            Map<JetFile, Class<?>> classes = compileScripts(cacheDir, SCRIPTS_DIR + "fib.kts", SCRIPTS_DIR + "fib.pkg.kts");
+            Assert.assertNotNull(classes);
+            Assert.assertEquals(2, classes.size());
+            for (Class<?> aClass : classes.values()) {
+                aClass.getConstructor(int.class).newInstance(4);
+            }
+        }
+        File[] entries = cacheDir.listFiles();
+        Assert.assertNotNull(entries);
+        Assert.assertEquals("Each script should be cached once: " + Arrays.toString(entries), 2, entries.length);
+    }
+
+    @Test
+    public void testScriptsWithSameNameInDifferentDirectories() throws Exception {
+        File cacheDir = JetTestUtils.tmpDir("scriptCache");
+        File script = new File(SCRIPTS_DIR + "fib.kts");
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (String dirName : new String[] {"first", "second"}) {
+            File copy = new File(JetTestUtils.tmpDir(dirName), script.getName());
+            FileUtil.copy(script, copy);
+            Map<JetFile, Class<?>> compiled = compileScripts(cacheDir, copy.getPath());
+            Assert.assertNotNull(compiled);
+            classes.addAll(compiled.values());
+        }
+        File[] entries = cacheDir.listFiles();
+        Assert.assertNotNull(entries);
+        Assert.assertEquals("Scripts should be cached by path: " + Arrays.toString(entries), 2, entries.length);
+        Assert.assertNotSame(classes.get(0).getClassLoader(), classes.get(1).getClassLoader());
+    }
+
+    @Nullable
+    private static Map<JetFile, Class<?>> compileScripts(@NotNull File cacheDir, @NotNull String... scriptPaths) {
+        KotlinPaths paths = PathUtil.getKotlinPathsForDistDirectory();
+        Disposable rootDisposable = Disposer.newDisposable();
+        try {
+            CompilerConfiguration configuration =
+                    JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
+            configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, PrintingMessageCollector.PLAIN_TEXT_TO_SYSTEM_ERR);
+            for (String scriptPath : scriptPaths) {
+                addKotlinSourceRoot(configuration, scriptPath);
+            }
+            configuration.put(JVMConfigurationKeys.SCRIPT_PARAMETERS, numIntParam());
+
+            KotlinCoreEnvironment environment =
+                    KotlinCoreEnvironment.createForProduction(rootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+            for (JetFile file : environment.getSourceFiles()) {
+                JetScriptDefinitionProvider.getInstance(environment.getProject()).markFileAsScript(file);
+            }
+            return KotlinToJVMBytecodeCompiler.compileScripts(configuration, paths, environment, cacheDir);
+        }
+        finally {
+            Disposer.dispose(rootDisposable);
+        }
+    }
+
     @Nullable
     private static Class<?> compileScript(
             @NotNull String scriptPath,
@@ -85,7 +152,7 @@ public class ScriptTest {
             CompilerConfiguration configuration =
                     JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
             configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
-            addKotlinSourceRoot(configuration, "compiler/testData/script/" + scriptPath);
+            addKotlinSourceRoot(configuration, SCRIPTS_DIR + scriptPath);
             configuration.addAll(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY, scriptDefinitions);
             configuration.put(JVMConfigurationKeys.SCRIPT_PARAMETERS, scriptParameters);
 
@@ -57,12 +57,28 @@ import static org.jetbrains.kotlin.builtins.KotlinBuiltIns.BUILT_INS_PACKAGE_FQ_
 import static org.jetbrains.kotlin.builtins.KotlinBuiltIns.BUILT_INS_PACKAGE_FQ_NAMES;
 
 public class LoadBuiltinsTest extends KotlinTestWithEnvironment {
+    private static final String COMPACT_MEMBER_PROTOS_PROPERTY = "kotlin.deserialization.compact.members";
+
     @Override
     protected KotlinCoreEnvironment createEnvironment() {
         return createEnvironmentWithJdk(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK);
     }
 
     public void testBuiltIns() throws Exception {
+        doTestBuiltIns();
+    }
+
+    public void testBuiltInsWithCompactMemberProtos() throws Exception {
+        System.setProperty(COMPACT_MEMBER_PROTOS_PROPERTY, "true");
+        try {
+            doTestBuiltIns();
+        }
+        finally {
+            System.clearProperty(COMPACT_MEMBER_PROTOS_PROPERTY);
+        }
+    }
+
+    private void doTestBuiltIns() throws Exception {
         RecursiveDescriptorComparator.Configuration configuration =
                 RecursiveDescriptorComparator.RECURSIVE_ALL.includeMethodsOfKotlinAny(false).withRenderer(
                         DescriptorRenderer.Companion.withOptions(
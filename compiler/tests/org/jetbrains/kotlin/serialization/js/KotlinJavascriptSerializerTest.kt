@@ -42,7 +42,7 @@ public class KotlinJavascriptSerializerTest : TestCaseWithTmpdir() {
     private final val MODULE_NAME = "module"
     private final val BASE_DIR = "compiler/testData/serialization"
 
-    private fun doTest(fileName: String, metaFileDir: File = tmpdir) {
+    private fun doTest(fileName: String, metaFileDir: File = tmpdir, binaryIndex: Boolean = false) {
         val source = "$BASE_DIR/$fileName"
         val metaFile = File(metaFileDir, "${FileUtil.getNameWithoutExtension(fileName)}.meta.js")
 
@@ -53,8 +53,8 @@ public class KotlinJavascriptSerializerTest : TestCaseWithTmpdir() {
 
         configuration.addKotlinSourceRoots(srcDirs map { it.path })
 
-        serialize(configuration, metaFile)
-        val module = deserialize(metaFile)
+        serialize(configuration, metaFile, binaryIndex)
+        val module = deserialize(metaFile, binaryIndex)
 
         RecursiveDescriptorComparator.validateAndCompareDescriptorWithFile(
                 module.getPackage(TEST_PACKAGE_FQNAME),
@@ -63,7 +63,7 @@ public class KotlinJavascriptSerializerTest : TestCaseWithTmpdir() {
         )
     }
 
-    private fun serialize(configuration: CompilerConfiguration, metaFile: File) {
+    private fun serialize(configuration: CompilerConfiguration, metaFile: File, binaryIndex: Boolean) {
         val rootDisposable = Disposer.newDisposable()
         try {
             val environment = KotlinCoreEnvironment.createForTests(rootDisposable, configuration, EnvironmentConfigFiles.JS_CONFIG_FILES)
@@ -71,18 +71,23 @@ public class KotlinJavascriptSerializerTest : TestCaseWithTmpdir() {
             val config = LibrarySourcesConfig.Builder(environment.project, MODULE_NAME, LibrarySourcesConfig.JS_STDLIB).build()
             val analysisResult = TopDownAnalyzerFacadeForJS.analyzeFiles(files, config)
             FileUtil.writeToFile(metaFile, KotlinJavascriptSerializationUtil.metadataAsString(MODULE_NAME, analysisResult.moduleDescriptor))
+            if (binaryIndex) {
+                val indexFile = File(KotlinJavascriptMetadataUtils.getBinaryMetadataPath(metaFile.path))
+                FileUtil.writeToFile(indexFile, KotlinJavascriptSerializationUtil.metadataAsBinaryIndex(MODULE_NAME, analysisResult.moduleDescriptor))
+            }
         }
         finally {
             Disposer.dispose(rootDisposable)
         }
     }
 
-    private fun deserialize(metaFile: File): ModuleDescriptorImpl {
+    private fun deserialize(metaFile: File, binaryIndex: Boolean): ModuleDescriptorImpl {
         val module = JetTestUtils.createEmptyModule("<$MODULE_NAME>", JsPlatform)
         val metadata = KotlinJavascriptMetadataUtils.loadMetadata(metaFile)
         assert(metadata.size() == 1)
+        assertEquals(binaryIndex, metadata[0].files != null)
 
-        val provider = KotlinJavascriptSerializationUtil.createPackageFragmentProvider(module, metadata[0].body, LockBasedStorageManager())
+        val provider = KotlinJavascriptSerializationUtil.createPackageFragmentProvider(module, metadata[0], LockBasedStorageManager())
                 .sure { "No package fragment provider was created" }
 
         module.initialize(provider)
@@ -103,6 +108,14 @@ public class KotlinJavascriptSerializerTest : TestCaseWithTmpdir() {
         doTest("builtinsSerializer/nestedClassesAndObjects.kt")
     }
 
+    fun testSimpleFromBinaryIndex() {
+        doTest("builtinsSerializer/simple.kt", binaryIndex = true)
+    }
+
+    fun testNestedClassesAndObjectsFromBinaryIndex() {
+        doTest("builtinsSerializer/nestedClassesAndObjects.kt", binaryIndex = true)
+    }
+
     fun testCompileTimeConstants() {
         doTest("builtinsSerializer/compileTimeConstants.kt")
     }
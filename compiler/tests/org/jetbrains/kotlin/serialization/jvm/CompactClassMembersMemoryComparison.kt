@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.serialization.jvm
+
+import org.jetbrains.kotlin.load.kotlin.FileBasedKotlinClass
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.serialization.ClassData
+import org.jetbrains.kotlin.utils.PathUtil
+import java.io.File
+import java.util.*
+import java.util.zip.ZipFile
+
+/**
+ * Compares the heap retained by the class data of all classes in a jar when members are parsed upfront
+ * and when they are kept serialized (-Dkotlin.deserialization.compact.members=true).
+ *
+ * Usage: CompactClassMembersMemoryComparison [path to jar], kotlin-runtime.jar from the dist directory by default.
+ * Run it with a fixed heap size (e.g. -Xms1g -Xmx1g) for stable numbers.
+ */
+fun main(args: Array<String>) {
+    val jar = if (args.isNotEmpty()) File(args[0]) else PathUtil.getKotlinPathsForDistDirectory().getRuntimePath()
+    val headers = readClassHeaders(jar)
+    println("${headers.size()} classes in $jar")
+
+    // The first rounds warm up the JIT
+    for (round in 0..2) {
+        println("Round $round")
+        println("  parsed members:     " + measure(headers) { JvmProtoBufUtil.readClassDataFrom(it.annotationData!!, it.strings!!) })
+        println("  serialized members: " + measure(headers) { JvmProtoBufUtil.readClassDataWithSerializedMembers(it.annotationData!!, it.strings!!) })
+    }
+}
+
+private fun measure(headers: List<KotlinClassHeader>, read: (KotlinClassHeader) -> ClassData): String {
+    val memoryBefore = usedMemory()
+    val start = System.nanoTime()
+    val retained = headers.map(read)
+    val time = System.nanoTime() - start
+    val memory = usedMemory() - memoryBefore
+
+    return "${retained.size()} classes read in ${time / 1000000} ms, ~${memory / 1024} KB retained"
+}
+
+private fun readClassHeaders(jar: File): List<KotlinClassHeader> {
+    val result = ArrayList<KotlinClassHeader>()
+    val zip = ZipFile(jar)
+    try {
+        for (entry in zip.entries()) {
+            if (!entry.name.endsWith(".class")) continue
+
+            val bytes = zip.getInputStream(entry).use { it.readBytes() }
+            val header = FileBasedKotlinClass.create(bytes) {
+                className, classHeader, innerClasses ->
+                object : FileBasedKotlinClass(className, classHeader, innerClasses) {
+                    override fun getLocation(): String = throw UnsupportedOperationException()
+                    override fun getFileContents(): ByteArray = throw UnsupportedOperationException()
+                    override fun hashCode(): Int = throw UnsupportedOperationException()
+                    override fun equals(other: Any?): Boolean = throw UnsupportedOperationException()
+                    override fun toString(): String = throw UnsupportedOperationException()
+                }
+            }?.getClassHeader()
+
+            if (header != null && header.kind == KotlinClassHeader.Kind.CLASS && header.annotationData != null && header.strings != null) {
+                result.add(header)
+            }
+        }
+    }
+    finally {
+        zip.close()
+    }
+    return result
+}
+
+private fun usedMemory(): Long {
+    val runtime = Runtime.getRuntime()
+    for (i in 0..2) {
+        System.gc()
+    }
+    return runtime.totalMemory() - runtime.freeMemory()
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentStorageManagerTest extends StorageManagerTest {
+    private static final int THREADS = 8;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        m = new ConcurrentStorageManager();
+    }
+
+    public void testLazyValueComputedOnceByManyThreads() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final NotNullLazyValue<String> value = m.createLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                counter.incrementAndGet();
+                sleep(50);
+                return "ok";
+            }
+        });
+
+        List<String> results = runInThreads(new Callable<String>() {
+            @Override
+            public String call() {
+                return value.invoke();
+            }
+        });
+
+        assertEquals(1, counter.get());
+        for (String result : results) {
+            assertEquals("ok", result);
+        }
+    }
+
+    public void testMemoizedFunctionComputedOnceByManyThreads() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final MemoizedFunctionToNotNull<Integer, Integer> f = m.createMemoizedFunction(new Function1<Integer, Integer>() {
+            @Override
+            public Integer invoke(Integer x) {
+                counter.incrementAndGet();
+                sleep(10);
+                return x * x;
+            }
+        });
+
+        runInThreads(new Callable<Object>() {
+            @Override
+            public Object call() {
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(i * i, f.invoke(i).intValue());
+                }
+                return null;
+            }
+        });
+
+        assertEquals(10, counter.get());
+    }
+
+    public void testDifferentValuesAreComputedConcurrently() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final MemoizedFunctionToNotNull<Integer, Boolean> f = m.createMemoizedFunction(new Function1<Integer, Boolean>() {
+            @Override
+            public Boolean invoke(Integer x) {
+                bothStarted.countDown();
+                try {
+                    // Would time out if computations were serialized behind one lock
+                    return bothStarted.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(call(f, 1));
+            Future<Boolean> second = executor.submit(call(f, 2));
+            assertTrue(first.get());
+            assertTrue(second.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testWaitingCycleBetweenThreadsIsBroken() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final MemoizedFunctionToNotNull<Integer, String>[] f = new MemoizedFunctionToNotNull[1];
+        f[0] = m.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer x) {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                // 1 needs 2 and 2 needs 1, each computed by its own thread
+                return "v" + x + f[0].invoke(3 - x);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(call(f[0], 1));
+            Future<String> second = executor.submit(call(f[0], 2));
+
+            int recursions = 0;
+            for (Future<String> future : new Future[] {first, second}) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                catch (ExecutionException e) {
+                    assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof AssertionError);
+                    assertTrue(e.getCause().getMessage().startsWith("Recursion detected on input"));
+                    recursions++;
+                }
+            }
+            // Both values end up failing: the one which detected the cycle, and the one depending on it
+            assertEquals(2, recursions);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <K, V> Callable<V> call(final Function1<K, V> f, final K x) {
+        return new Callable<V>() {
+            @Override
+            public V call() {
+                return f.invoke(x);
+            }
+        };
+    }
+
+    private static <T> List<T> runInThreads(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+public class PerSliceSlicedMapTest extends TestCase {
+    private static final WritableSlice<Object, String> NAME = Slices.createSimpleSlice();
+    private static final WritableSlice<Object, Integer> SIZE = Slices.createCollectiveSlice();
+    private static final WritableSlice<Object, Boolean> FLAG = Slices.createSimpleSetSlice();
+
+    public void testSameContentsAsSlicedMapImpl() {
+        MutableSlicedMap expected = SlicedMapImpl.create();
+        MutableSlicedMap actual = PerSliceSlicedMap.create();
+
+        Random random = new Random(42);
+        Object[] keys = createKeys(1000);
+        for (int i = 0; i < 10000; i++) {
+            Object key = keys[random.nextInt(keys.length)];
+            switch (random.nextInt(4)) {
+                case 0:
+                    String name = random.nextInt(10) == 0 ? null : "name" + random.nextInt(100);
+                    expected.put(NAME, key, name);
+                    actual.put(NAME, key, name);
+                    break;
+                case 1:
+                    expected.put(SIZE, key, i);
+                    actual.put(SIZE, key, i);
+                    break;
+                default:
+                    Boolean flag = random.nextInt(10) == 0 ? null : random.nextBoolean();
+                    expected.put(FLAG, key, flag);
+                    actual.put(FLAG, key, flag);
+                    break;
+            }
+        }
+
+        for (Object key : keys) {
+            assertEquals(expected.get(NAME, key), actual.get(NAME, key));
+            assertEquals(expected.get(SIZE, key), actual.get(SIZE, key));
+            assertEquals(expected.get(FLAG, key), actual.get(FLAG, key));
+        }
+        assertEquals(new HashSet<Object>(expected.getKeys(SIZE)), new HashSet<Object>(actual.getKeys(SIZE)));
+        assertEquals(expected.getSliceContents(NAME), actual.getSliceContents(NAME));
+        assertEquals(expected.getSliceContents(FLAG), actual.getSliceContents(FLAG));
+        assertEquals(contents(expected), contents(actual));
+    }
+
+    public void testNullValueRemovesKey() {
+        MutableSlicedMap map = PerSliceSlicedMap.create();
+        Object key = new Object();
+
+        map.put(NAME, key, "a");
+        map.put(NAME, key, null);
+        assertNull(map.get(NAME, key));
+        assertTrue(map.getSliceContents(NAME).isEmpty());
+
+        map.put(NAME, key, "b");
+        assertEquals("b", map.get(NAME, key));
+    }
+
+    public void testBooleanSlice() {
+        MutableSlicedMap map = PerSliceSlicedMap.create();
+        Object[] keys = createKeys(100);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(FLAG, keys[i], i % 3 == 0 ? Boolean.FALSE : Boolean.TRUE);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i % 3 != 0, (boolean) map.get(FLAG, keys[i]));
+        }
+        // Absent keys are false for set slices
+        assertEquals(Boolean.FALSE, map.get(FLAG, new Object()));
+    }
+
+    public void testClear() {
+        MutableSlicedMap map = PerSliceSlicedMap.create();
+        Object key = new Object();
+        map.put(SIZE, key, 1);
+        map.clear();
+
+        assertNull(map.get(SIZE, key));
+        assertTrue(map.getKeys(SIZE).isEmpty());
+    }
+
+    @NotNull
+    private static Object[] createKeys(int count) {
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new Object();
+        }
+        return keys;
+    }
+
+    @NotNull
+    private static Set<List<Object>> contents(@NotNull SlicedMap map) {
+        final Set<List<Object>> result = new HashSet<List<Object>>();
+        map.forEach(new Function3<WritableSlice, Object, Object, Void>() {
+            @Override
+            public Void invoke(WritableSlice slice, Object key, Object value) {
+                result.add(Arrays.asList(slice, key, value));
+                return null;
+            }
+        });
+        return result;
+    }
+}
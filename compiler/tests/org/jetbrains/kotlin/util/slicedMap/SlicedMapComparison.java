@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compares the time and the retained memory of SlicedMapImpl and PerSliceSlicedMap on the same keys.
+ * It's a standalone program rather than a test, run it with a fixed heap size (e.g. -Xms1g -Xmx1g) for stable numbers.
+ */
+public class SlicedMapComparison {
+    private static final WritableSlice<Object, String> NAME = Slices.createSimpleSlice();
+    private static final WritableSlice<Object, Boolean> FLAG = Slices.createSimpleSetSlice();
+
+    private static final int DEFAULT_KEYS = 200000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEYS;
+        Object[] keys = new Object[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = new Object();
+        }
+
+        // The first rounds warm up the JIT
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            System.out.println("  SlicedMapImpl:     " + measure(SlicedMapImpl.create(), keys));
+            System.out.println("  PerSliceSlicedMap: " + measure(PerSliceSlicedMap.create(), keys));
+        }
+    }
+
+    @NotNull
+    private static String measure(@NotNull MutableSlicedMap map, @NotNull Object[] keys) {
+        long memoryBefore = usedMemory();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < keys.length; i++) {
+            map.put(NAME, keys[i], "name");
+            if (i % 2 == 0) map.put(FLAG, keys[i], true);
+        }
+
+        long putTime = System.nanoTime() - start;
+        long memory = usedMemory() - memoryBefore;
+        start = System.nanoTime();
+
+        int found = 0;
+        for (int iteration = 0; iteration < 10; iteration++) {
+            for (Object key : keys) {
+                if (map.get(NAME, key) != null) found++;
+                if (map.get(FLAG, key)) found++;
+            }
+        }
+
+        long getTime = System.nanoTime() - start;
+        if (found != 15 * keys.length) {
+            throw new IllegalStateException("Unexpected number of found values: " + found);
+        }
+
+        return String.format("put %d ms, get %d ms, ~%d KB retained", putTime / 1000000, getTime / 1000000, memory / 1024);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
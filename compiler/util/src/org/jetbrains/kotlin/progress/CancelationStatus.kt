@@ -26,17 +26,18 @@ public interface CompilationCanceledStatus {
 }
 
 public object ProgressIndicatorAndCompilationCanceledStatus {
-    private var canceledStatus: CompilationCanceledStatus? = null
+    // Several compilations may run in one process (e.g. in the daemon), each on its own thread.
+    // Inheritable, so that threads started by a compilation (e.g. for parallel codegen) see its status
+    private val canceledStatus = InheritableThreadLocal<CompilationCanceledStatus?>()
 
     @JvmStatic
-    @Synchronized
     public fun setCompilationCanceledStatus(newCanceledStatus: CompilationCanceledStatus?): Unit {
-        canceledStatus = newCanceledStatus
+        canceledStatus.set(newCanceledStatus)
     }
 
     @JvmStatic
     public fun checkCanceled(): Unit {
         ProgressIndicatorProvider.checkCanceled()
-        canceledStatus?.checkCanceled()
+        canceledStatus.get()?.checkCanceled()
     }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.utils
+
+import java.io.*
+import java.nio.ByteBuffer
+import java.util.LinkedHashMap
+
+/**
+ * Serialized files of a Kotlin/JavaScript module read from a binary metadata index.
+ *
+ * The contents are slices of the buffer the index was read from (usually a memory-mapped file), nothing is copied
+ * until a file is actually read.
+ */
+public class KotlinJavascriptMetadataFiles(private val data: ByteBuffer, private val entries: Map<String, Entry>) {
+    public class Entry(val offset: Int, val length: Int)
+
+    public val paths: Set<String>
+        get() = entries.keySet()
+
+    public fun contains(path: String): Boolean = entries.containsKey(path)
+
+    public fun get(path: String): ByteBuffer? {
+        val entry = entries[path] ?: return null
+        val slice = data.duplicate()
+        slice.position(entry.offset)
+        slice.limit(entry.offset + entry.length)
+        return slice.slice().asReadOnlyBuffer()
+    }
+
+    public fun openStream(path: String): InputStream? = get(path)?.let { ByteBufferInputStream(it) }
+}
+
+/**
+ * Binary alternative to the metadata embedded into JavaScript files (see [KotlinJavascriptMetadataUtils.formatMetadataAsString]).
+ *
+ * The index is stored next to the JavaScript file and contains the serialized files of each module uncompressed,
+ * so they can be read directly from the mapped index without reading and decoding the whole metadata:
+ *
+ *   magic, format version, module count,
+ *   for each module: ABI version, module name, file count, for each file: path, offset and length in the data section,
+ *   data section
+ */
+public object KotlinJavascriptBinaryMetadata {
+    private val MAGIC = 0x4B4A534D // "KJSM"
+    private val FORMAT_VERSION = 1
+
+    public class Module(val abiVersion: Int, val moduleName: String, val files: Map<String, ByteArray>)
+
+    @JvmStatic
+    public fun write(modules: List<Module>): ByteArray {
+        val header = ByteArrayOutputStream()
+        val data = ByteArrayOutputStream()
+        DataOutputStream(header).use { output ->
+            output.writeInt(MAGIC)
+            output.writeInt(FORMAT_VERSION)
+            output.writeInt(modules.size())
+            for (module in modules) {
+                output.writeInt(module.abiVersion)
+                output.writeUTF(module.moduleName)
+                output.writeInt(module.files.size())
+                for ((path, content) in module.files) {
+                    output.writeUTF(path)
+                    output.writeInt(data.size())
+                    output.writeInt(content.size())
+                    data.write(content)
+                }
+            }
+        }
+        data.writeTo(header)
+        return header.toByteArray()
+    }
+
+    /**
+     * @return metadata of the modules in the index, or null if the buffer doesn't contain an index of a supported format
+     */
+    @JvmStatic
+    public fun read(buffer: ByteBuffer): List<KotlinJavascriptMetadata>? {
+        val input = DataInputStream(ByteBufferInputStream(buffer.duplicate()))
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) return null
+
+            class ModuleHeader(val abiVersion: Int, val moduleName: String, val entries: Map<String, KotlinJavascriptMetadataFiles.Entry>)
+
+            val headers = (1..input.readInt()).map {
+                val abiVersion = input.readInt()
+                val moduleName = input.readUTF()
+                val entries = LinkedHashMap<String, KotlinJavascriptMetadataFiles.Entry>()
+                for (i in 1..input.readInt()) {
+                    val path = input.readUTF()
+                    entries.put(path, KotlinJavascriptMetadataFiles.Entry(input.readInt(), input.readInt()))
+                }
+                ModuleHeader(abiVersion, moduleName, entries)
+            }
+
+            val dataStart = buffer.remaining() - input.available()
+            val data = buffer.duplicate()
+            data.position(data.position() + dataStart)
+            val dataSection = data.slice()
+
+            if (headers.any { header -> header.entries.values().any { it.offset < 0 || it.length < 0 || it.offset + it.length > dataSection.capacity() } }) {
+                return null
+            }
+
+            return headers.map {
+                KotlinJavascriptMetadata(it.abiVersion, it.moduleName, null, KotlinJavascriptMetadataFiles(dataSection, it.entries))
+            }
+        }
+        catch (e: EOFException) {
+            return null
+        }
+        catch (e: UTFDataFormatException) {
+            return null
+        }
+    }
+}
+
+private class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+    override fun read(): Int = if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) return 0
+        if (!buffer.hasRemaining()) return -1
+        val count = Math.min(len, buffer.remaining())
+        buffer.get(b, off, count)
+        return count
+    }
+
+    override fun skip(n: Long): Long {
+        val count = Math.min(n, buffer.remaining().toLong()).toInt()
+        buffer.position(buffer.position() + count)
+        return count.toLong()
+    }
+
+    override fun available(): Int = buffer.remaining()
+}
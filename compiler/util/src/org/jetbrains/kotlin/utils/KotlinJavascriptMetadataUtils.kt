@@ -20,13 +20,28 @@ import java.io.File
 import javax.xml.bind.DatatypeConverter.parseBase64Binary
 import javax.xml.bind.DatatypeConverter.printBase64Binary
 
-public class KotlinJavascriptMetadata(public val abiVersion: Int, public val moduleName: String, public val body: ByteArray) {
+/**
+ * Metadata of a Kotlin/JavaScript module: either the whole serialized [body] read from a JavaScript file,
+ * or the separate serialized [files] read from a binary metadata index (see [KotlinJavascriptBinaryMetadata]).
+ */
+public class KotlinJavascriptMetadata(
+        public val abiVersion: Int,
+        public val moduleName: String,
+        private val serializedBody: ByteArray?,
+        public val files: KotlinJavascriptMetadataFiles?
+) {
+    public constructor(abiVersion: Int, moduleName: String, body: ByteArray) : this(abiVersion, moduleName, body, null)
+
     public val isAbiVersionCompatible: Boolean = KotlinJavascriptMetadataUtils.isAbiVersionCompatible(abiVersion)
+
+    public val body: ByteArray
+        get() = serializedBody ?: throw IllegalStateException("Metadata of module $moduleName is read from a binary index, use files instead")
 }
 
 public object KotlinJavascriptMetadataUtils {
     public val JS_EXT: String = ".js"
     public val META_JS_SUFFIX: String = ".meta.js"
+    public val META_BINARY_SUFFIX: String = ".meta.bin"
     public val VFS_PROTOCOL: String = "kotlin-js-meta"
     private val KOTLIN_JAVASCRIPT_METHOD_NAME = "kotlin_module_metadata"
     private val KOTLIN_JAVASCRIPT_METHOD_NAME_PATTERN = "\\.kotlin_module_metadata\\(".toPattern()
@@ -40,6 +55,13 @@ public object KotlinJavascriptMetadataUtils {
 
     public fun replaceSuffix(filePath: String): String = filePath.substringBeforeLast(JS_EXT) + META_JS_SUFFIX
 
+    /**
+     * @return the path of the binary metadata index describing the given JavaScript file or its .meta.js file
+     */
+    @JvmStatic
+    public fun getBinaryMetadataPath(jsFilePath: String): String =
+            jsFilePath.substringBeforeLast(if (jsFilePath.endsWith(META_JS_SUFFIX)) META_JS_SUFFIX else JS_EXT) + META_BINARY_SUFFIX
+
     @JvmStatic
     public fun isAbiVersionCompatible(abiVersion: Int): Boolean = abiVersion == ABI_VERSION
 
@@ -63,15 +85,11 @@ public object KotlinJavascriptMetadataUtils {
     public fun loadMetadata(file: File): List<KotlinJavascriptMetadata> {
         assert(file.exists()) { "Library " + file + " not found" }
         val metadataList = arrayListOf<KotlinJavascriptMetadata>()
-        LibraryUtils.traverseJsLibrary(file) { content, relativePath ->
-            var path = file.getPath()
-
-            if (relativePath.isNotBlank()) {
-                path += "/$relativePath"
-            }
-
-            parseMetadata(content, metadataList)
-        }
+        LibraryUtils.traverseJsLibraryMetadata(
+                file,
+                { index -> metadataList.addAll(index) },
+                { content -> parseMetadata(content, metadataList) }
+        )
 
         return metadataList
     }
@@ -22,6 +22,8 @@ import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.util.Processor
 import org.jetbrains.kotlin.utils.fileUtils.withReplacedExtensionOrNull
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.util.Properties
 import java.util.jar.Attributes
 import java.util.jar.JarFile
@@ -125,6 +127,118 @@ public object LibraryUtils {
         }
     }
 
+    /**
+     * Passes the metadata read from binary metadata indices to [indexAction], and the texts of the other JavaScript files
+     * of the library to [textAction]. The JavaScript files which have an up-to-date index are not read. An index which is older
+     * than its JavaScript file is ignored: it's left from a previous compilation, e.g. one which was run with the binary index enabled.
+     */
+    @JvmStatic
+    public fun traverseJsLibraryMetadata(
+            lib: File,
+            indexAction: (List<KotlinJavascriptMetadata>) -> Unit,
+            textAction: (content: String) -> Unit
+    ) {
+        when {
+            lib.isDirectory() -> traverseDirectoryMetadata(lib, indexAction, textAction)
+            FileUtil.isJarOrZip(lib) -> traverseArchiveMetadata(lib, indexAction, textAction)
+            lib.getName().endsWith(KotlinJavascriptMetadataUtils.JS_EXT) -> {
+                val index = readBinaryMetadata(lib, File(KotlinJavascriptMetadataUtils.getBinaryMetadataPath(lib.getPath())))
+                if (index != null) {
+                    indexAction(index)
+                }
+                else {
+                    traverseJsLibrary(lib) { content, path -> textAction(content) }
+                }
+            }
+            else ->
+                throw IllegalArgumentException("Unknown library format (directory, zip or js file expected): $lib")
+        }
+    }
+
+    private fun traverseDirectoryMetadata(
+            dir: File,
+            indexAction: (List<KotlinJavascriptMetadata>) -> Unit,
+            textAction: (content: String) -> Unit
+    ) {
+        val readIndices = hashSetOf<String>()
+        try {
+            FileUtil.processFilesRecursively(dir, object : Processor<File> {
+                override fun process(file: File): Boolean {
+                    val relativePath = FileUtil.getRelativePath(dir, file) ?: throw IllegalArgumentException("relativePath should not be null " + dir + " " + file)
+                    if (file.isFile() && relativePath.endsWith(KotlinJavascriptMetadataUtils.JS_EXT) && getSuggestedPath(relativePath) != null) {
+                        val indexPath = KotlinJavascriptMetadataUtils.getBinaryMetadataPath(file.getPath())
+                        if (readIndices.contains(indexPath)) return true
+
+                        val index = readBinaryMetadata(file, File(indexPath))
+                        if (index != null) {
+                            readIndices.add(indexPath)
+                            indexAction(index)
+                        }
+                        else {
+                            textAction(FileUtil.loadFile(file))
+                        }
+                    }
+                    return true
+                }
+            })
+        }
+        catch (ex: IOException) {
+            LOG.error("Could not read files from directory ${dir.getName()}: ${ex.getMessage()}")
+        }
+    }
+
+    private fun traverseArchiveMetadata(
+            file: File,
+            indexAction: (List<KotlinJavascriptMetadata>) -> Unit,
+            textAction: (content: String) -> Unit
+    ) {
+        val zipFile = ZipFile(file.getPath())
+        try {
+            val readIndices = hashSetOf<String>()
+            val zipEntries = zipFile.entries()
+            while (zipEntries.hasMoreElements()) {
+                val entry = zipEntries.nextElement()
+                val entryName = entry.getName()
+                if (!entry.isDirectory() && entryName.endsWith(KotlinJavascriptMetadataUtils.JS_EXT) && getSuggestedPath(entryName) != null) {
+                    val indexPath = KotlinJavascriptMetadataUtils.getBinaryMetadataPath(entryName)
+                    if (readIndices.contains(indexPath)) continue
+
+                    val indexEntry = zipFile.getEntry(indexPath)?.let { if (it.getTime() < entry.getTime()) null else it }
+                    // entries of archives can't be mapped, so the index is read into memory as a whole
+                    val index = indexEntry?.let { readBinaryMetadata(ByteBuffer.wrap(FileUtil.loadBytes(zipFile.getInputStream(it)))) }
+                    if (index != null) {
+                        readIndices.add(indexPath)
+                        indexAction(index)
+                    }
+                    else {
+                        textAction(FileUtil.loadTextAndClose(zipFile.getInputStream(entry)))
+                    }
+                }
+            }
+        }
+        catch (ex: IOException) {
+            LOG.error("Could not extract files from archive ${file.getName()}: ${ex.getMessage()}")
+        }
+        finally {
+            zipFile.close()
+        }
+    }
+
+    private fun readBinaryMetadata(jsFile: File, file: File): List<KotlinJavascriptMetadata>? {
+        if (!file.isFile() || file.lastModified() < jsFile.lastModified()) return null
+
+        val buffer = RandomAccessFile(file, "r").use { it.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, it.length()) }
+        return readBinaryMetadata(buffer)
+    }
+
+    private fun readBinaryMetadata(buffer: ByteBuffer): List<KotlinJavascriptMetadata>? {
+        val result = KotlinJavascriptBinaryMetadata.read(buffer)
+        if (result == null) {
+            LOG.warn("Binary metadata index of unsupported format is ignored")
+        }
+        return result
+    }
+
     private fun File.runIfFileExists(action: (content: String, path: String)->Unit) {
         if (isFile()) {
             action(FileUtil.loadFile(this), "")
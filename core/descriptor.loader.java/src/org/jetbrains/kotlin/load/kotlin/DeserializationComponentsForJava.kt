@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.load.kotlin
 
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.load.java.lazy.LazyJavaPackageFragmentProvider
 import org.jetbrains.kotlin.serialization.deserialization.ClassDescriptorFactory
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationComponents
@@ -32,7 +33,8 @@ public class DeserializationComponentsForJava(
         classDataFinder: JavaClassDataFinder,
         annotationAndConstantLoader: BinaryClassAnnotationAndConstantLoaderImpl,
         packageFragmentProvider: LazyJavaPackageFragmentProvider,
-        errorReporter: ErrorReporter
+        errorReporter: ErrorReporter,
+        lookupTracker: LookupTracker
 ) {
     val components: DeserializationComponents
 
@@ -41,7 +43,8 @@ public class DeserializationComponentsForJava(
         components = DeserializationComponents(
                 storageManager, moduleDescriptor, classDataFinder, annotationAndConstantLoader, packageFragmentProvider, localClassResolver,
                 errorReporter, JavaFlexibleTypeCapabilitiesDeserializer, ClassDescriptorFactory.EMPTY, JavaTypeCapabilitiesLoader,
-                additionalSupertypes = BuiltInClassesAreSerializableOnJvm(moduleDescriptor)
+                additionalSupertypes = BuiltInClassesAreSerializableOnJvm(moduleDescriptor),
+                lookupTracker = lookupTracker
         )
         localClassResolver.setDeserializationComponents(components)
     }
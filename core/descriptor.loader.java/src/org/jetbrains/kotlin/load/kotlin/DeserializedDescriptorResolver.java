@@ -31,7 +31,6 @@ import org.jetbrains.kotlin.serialization.PackageData;
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationComponents;
 import org.jetbrains.kotlin.serialization.deserialization.ErrorReporter;
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedPackageMemberScope;
-import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
 
 import javax.inject.Inject;
 import java.util.*;
@@ -42,6 +41,7 @@ import static org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader.Kind.*;
 public final class DeserializedDescriptorResolver {
     private final ErrorReporter errorReporter;
     private DeserializationComponents components;
+    private KotlinBinaryDataCache dataCache = KotlinBinaryDataCache.DISABLED;
 
     public static final Set<KotlinClassHeader.Kind> KOTLIN_CLASS = setOf(CLASS);
     public static final Set<KotlinClassHeader.Kind> KOTLIN_FILE_FACADE_OR_MULTIFILE_CLASS_PART = setOf(FILE_FACADE, MULTIFILE_CLASS_PART);
@@ -57,13 +57,15 @@ public final class DeserializedDescriptorResolver {
         this.components = context.getComponents();
     }
 
+    @Inject
+    public void setDataCache(@NotNull KotlinBinaryDataCache dataCache) {
+        this.dataCache = dataCache;
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull KotlinJvmBinaryClass kotlinClass) {
-        String[] data = readData(kotlinClass, KOTLIN_CLASS);
-        if (data != null) {
-            String[] strings = kotlinClass.getClassHeader().getStrings();
-            assert strings != null : "String table not found in " + kotlinClass;
-            ClassData classData = JvmProtoBufUtil.readClassDataFrom(data, strings);
+        ClassData classData = readClassData(kotlinClass);
+        if (classData != null) {
             KotlinJvmBinarySourceElement sourceElement = new KotlinJvmBinarySourceElement(kotlinClass);
             return components.getClassDeserializer().deserializeClass(
                     kotlinClass.getClassId(),
@@ -79,7 +81,7 @@ public final class DeserializedDescriptorResolver {
         if (data != null) {
             String[] strings = kotlinClass.getClassHeader().getStrings();
             assert strings != null : "String table not found in " + kotlinClass;
-            PackageData packageData = JvmProtoBufUtil.readPackageDataFrom(data, strings);
+            PackageData packageData = dataCache.getPackageData(kotlinClass, data, strings);
             return new DeserializedPackageMemberScope(
                     descriptor, packageData.getPackageProto(), packageData.getNameResolver(), components,
                     new Function0<Collection<Name>>() {
@@ -109,6 +111,16 @@ public final class DeserializedDescriptorResolver {
         return new ChainedScope(descriptor, "Member scope for union of package parts data", list.toArray(new JetScope[list.size()]));
     }
 
+    @Nullable
+    public ClassData readClassData(@NotNull KotlinJvmBinaryClass kotlinClass) {
+        String[] data = readData(kotlinClass, KOTLIN_CLASS);
+        if (data == null) return null;
+
+        String[] strings = kotlinClass.getClassHeader().getStrings();
+        assert strings != null : "String table not found in " + kotlinClass;
+        return dataCache.getClassData(kotlinClass, data, strings);
+    }
+
     @Nullable
     public String[] readData(@NotNull KotlinJvmBinaryClass kotlinClass, @NotNull Set<KotlinClassHeader.Kind> expectedKinds) {
         KotlinClassHeader header = kotlinClass.getClassHeader();
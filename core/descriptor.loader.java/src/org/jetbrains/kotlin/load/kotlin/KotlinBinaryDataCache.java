@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.serialization.ClassData;
+import org.jetbrains.kotlin.serialization.PackageData;
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed metadata of Kotlin binary classes, shared by all compilations which use the same application environment.
+ *
+ * Each compilation creates its own module and deserializes the library classes it uses again, e.g. the standard library is
+ * deserialized by every module compiled by the daemon or by JPS. Descriptors can't be shared because they belong to their
+ * module, but the parsed protobuf messages and name resolvers are immutable and don't depend on the module, so they are cached
+ * here and each module only creates its own descriptors from them.
+ *
+ * Entries are keyed by the binary class (i.e. its file) and are used only if the class still has the same metadata, because the
+ * same class file may be recompiled between compilations. The cache is bounded by an estimated size of the parsed data, the
+ * oldest entries are evicted first.
+ */
+public final class KotlinBinaryDataCache {
+    private static final long DEFAULT_BUDGET_BYTES =
+            Long.getLong("kotlin.binary.data.cache.size.mb", 32L) * 1024 * 1024;
+
+    private static final int ENTRY_OVERHEAD = 256;
+    // parsed messages take several times more memory than the encoded metadata
+    private static final int PARSED_SIZE_FACTOR = 8;
+
+    /**
+     * Parses the metadata on each request, used where no shared cache is registered (e.g. in the IDE)
+     */
+    public static final KotlinBinaryDataCache DISABLED = new KotlinBinaryDataCache(0);
+
+    private static final class Entry {
+        final String[] data;
+        final String[] strings;
+        final Object parsed;
+        final long estimatedSize;
+
+        Entry(@NotNull String[] data, @NotNull String[] strings, @NotNull Object parsed) {
+            this.data = data;
+            this.strings = strings;
+            this.parsed = parsed;
+            this.estimatedSize = ENTRY_OVERHEAD + (long) PARSED_SIZE_FACTOR * (length(data) + length(strings));
+        }
+
+        boolean isValidFor(@NotNull String[] data, @NotNull String[] strings) {
+            return (this.data == data || Arrays.equals(this.data, data)) &&
+                   (this.strings == strings || Arrays.equals(this.strings, strings));
+        }
+
+        private static long length(@NotNull String[] strings) {
+            long result = 0;
+            for (String string : strings) {
+                result += string.length();
+            }
+            return result;
+        }
+    }
+
+    private final long budget;
+    private final ConcurrentMap<KotlinJvmBinaryClass, Entry> cache = new ConcurrentHashMap<KotlinJvmBinaryClass, Entry>();
+    private final Queue<KotlinJvmBinaryClass> insertionOrder = new ConcurrentLinkedQueue<KotlinJvmBinaryClass>();
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public KotlinBinaryDataCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public KotlinBinaryDataCache(long budget) {
+        this.budget = budget;
+    }
+
+    @NotNull
+    public ClassData getClassData(@NotNull KotlinJvmBinaryClass kotlinClass, @NotNull String[] data, @NotNull String[] strings) {
+        Object cached = getCached(kotlinClass, data, strings);
+        if (cached instanceof ClassData) return (ClassData) cached;
+
+        ClassData classData = JvmProtoBufUtil.readClassDataForDescriptor(data, strings);
+        put(kotlinClass, new Entry(data, strings, classData));
+        return classData;
+    }
+
+    @NotNull
+    public PackageData getPackageData(@NotNull KotlinJvmBinaryClass kotlinClass, @NotNull String[] data, @NotNull String[] strings) {
+        Object cached = getCached(kotlinClass, data, strings);
+        if (cached instanceof PackageData) return (PackageData) cached;
+
+        PackageData packageData = JvmProtoBufUtil.readPackageDataFrom(data, strings);
+        put(kotlinClass, new Entry(data, strings, packageData));
+        return packageData;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getEstimatedSize() {
+        return size.get();
+    }
+
+    @Nullable
+    private Object getCached(@NotNull KotlinJvmBinaryClass kotlinClass, @NotNull String[] data, @NotNull String[] strings) {
+        if (budget == 0) return null;
+
+        Entry entry = cache.get(kotlinClass);
+        if (entry != null && entry.isValidFor(data, strings)) {
+            hits.incrementAndGet();
+            return entry.parsed;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void put(@NotNull KotlinJvmBinaryClass kotlinClass, @NotNull Entry entry) {
+        if (entry.estimatedSize > budget) return;
+
+        Entry replaced = cache.put(kotlinClass, entry);
+        if (replaced != null) {
+            // the class has been recompiled (or parsed concurrently), its key is already in the queue
+            size.addAndGet(entry.estimatedSize - replaced.estimatedSize);
+        }
+        else {
+            insertionOrder.add(kotlinClass);
+            size.addAndGet(entry.estimatedSize);
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        while (size.get() > budget) {
+            KotlinJvmBinaryClass eldest = insertionOrder.poll();
+            if (eldest == null) return;
+
+            Entry removed = cache.remove(eldest);
+            if (removed != null) {
+                size.addAndGet(-removed.estimatedSize);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+}
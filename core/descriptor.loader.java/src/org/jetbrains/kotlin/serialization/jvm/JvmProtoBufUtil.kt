@@ -25,6 +25,7 @@ import org.jetbrains.kotlin.resolve.jvm.JvmPrimitiveType
 import org.jetbrains.kotlin.serialization.ClassData
 import org.jetbrains.kotlin.serialization.PackageData
 import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.SerializedClassMembers
 import org.jetbrains.kotlin.serialization.deserialization.NameResolver
 import java.io.ByteArrayInputStream
 
@@ -47,6 +48,26 @@ public object JvmProtoBufUtil {
         return ClassData(nameResolver, classProto)
     }
 
+    /**
+     * Reads the class data to deserialize the class descriptor from it. If [SerializedClassMembers.isEnabled], functions and properties
+     * are left serialized and the returned class proto has none of them
+     */
+    @JvmStatic
+    public fun readClassDataForDescriptor(data: Array<String>, strings: Array<String>): ClassData =
+            if (SerializedClassMembers.isEnabled()) readClassDataWithSerializedMembers(data, strings)
+            else readClassDataFrom(data, strings)
+
+    /**
+     * Reads the class data leaving functions and properties serialized, see [SerializedClassMembers]
+     */
+    @JvmStatic
+    public fun readClassDataWithSerializedMembers(data: Array<String>, strings: Array<String>): ClassData {
+        val bytes = BitEncoding.decodeBytes(data)
+        val input = ByteArrayInputStream(bytes)
+        val nameResolver = JvmNameResolver(JvmProtoBuf.StringTableTypes.parseDelimitedFrom(input, EXTENSION_REGISTRY), strings)
+        return SerializedClassMembers.readClassData(nameResolver, bytes, bytes.size() - input.available(), EXTENSION_REGISTRY)
+    }
+
     @JvmStatic
     public fun readPackageDataFrom(data: Array<String>, strings: Array<String>): PackageData =
             readPackageDataFrom(BitEncoding.decodeBytes(data), strings)
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental.components
+
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
+import org.jetbrains.kotlin.name.Name
+import java.util.*
+
+/**
+ * Passes each lookup of a name in a scope from a file to [delegate] only once.
+ *
+ * A file usually looks up the same name in the same scope many times, e.g. once for each call of a function, and each lookup
+ * renders the fq name of the scope and goes to the tracker, possibly in another process. Here a repeated lookup is recognized
+ * by the identity of the scope owner and the number of the name (see [Name.getId]), which takes no allocations.
+ * Names without a number are always passed.
+ *
+ * Can't be used with trackers which require positions of lookups, since these lookups differ in their positions.
+ */
+public class DeduplicatingLookupTracker(private val delegate: LookupTracker) : LookupTracker by delegate {
+    init {
+        assert(!delegate.requiresLookupLineAndColumn) { "Lookups at different positions must not be deduplicated" }
+    }
+
+    private val recorded = HashMap<String, IdentityHashMap<DeclarationDescriptor, NameIdSet>>()
+
+    public var skippedLookups: Int = 0
+        private set
+
+    @Synchronized
+    public fun isFirstLookup(filePath: String, scopeOwner: DeclarationDescriptor, name: Name): Boolean {
+        val id = name.id
+        if (id == 0) return true
+
+        val ids = recorded.getOrPut(filePath) { IdentityHashMap() }.getOrPut(scopeOwner) { NameIdSet() }
+        if (ids.add(id)) return true
+
+        skippedLookups++
+        return false
+    }
+}
+
+// Set of positive ints with open addressing, scopes are usually looked up with a few names from one file
+private class NameIdSet {
+    private var ids = IntArray(4)
+    private var size = 0
+
+    fun add(id: Int): Boolean {
+        if (!insert(ids, id)) return false
+
+        if (++size * 2 > ids.size()) {
+            val old = ids
+            ids = IntArray(old.size() * 2)
+            for (oldId in old) {
+                if (oldId != 0) insert(ids, oldId)
+            }
+        }
+        return true
+    }
+
+    private fun insert(table: IntArray, id: Int): Boolean {
+        val mask = table.size() - 1
+        // Fibonacci hashing spreads consecutive numbers of names over the table
+        var i = (id * -1640531527) and mask
+        while (true) {
+            val existing = table[i]
+            if (existing == id) return false
+            if (existing == 0) {
+                table[i] = id
+                return true
+            }
+            i = (i + 1) and mask
+        }
+    }
+}
@@ -17,8 +17,20 @@
 package org.jetbrains.kotlin.incremental.components
 
 public interface LookupLocation {
+    // null if the lookup is not made from a source file being compiled
+    val location: LocationInfo?
+        get() = null
 }
 
+public interface LocationInfo {
+    val filePath: String
+
+    // may be expensive, only computed if the tracker requires it
+    val position: Position
+}
+
+public data class Position(val line: Int, val column: Int)
+
 public enum class NoLookupLocation : LookupLocation {
     @Deprecated("Use more suitable constant if possible")
     UNSORTED,
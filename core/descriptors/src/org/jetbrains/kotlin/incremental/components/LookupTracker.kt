@@ -16,6 +16,12 @@
 
 package org.jetbrains.kotlin.incremental.components
 
+import org.jetbrains.kotlin.descriptors.ClassifierDescriptor
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
+import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.descriptorUtil.fqNameUnsafe
+
 public interface LookupTracker {
     // used in tests for more accurate checks
     val requiresLookupLineAndColumn: Boolean
@@ -49,3 +55,21 @@ public enum class ScopeKind {
     PACKAGE,
     CLASSIFIER
 }
+
+public fun LookupTracker.record(from: LookupLocation, scopeOwner: DeclarationDescriptor, name: Name) {
+    if (this == LookupTracker.DO_NOTHING) return
+
+    val location = from.location ?: return
+    if (this is DeduplicatingLookupTracker && !isFirstLookup(location.filePath, scopeOwner, name)) return
+
+    val position = if (requiresLookupLineAndColumn) location.position else null
+
+    val scopeKind =
+            when (scopeOwner) {
+                is ClassifierDescriptor -> ScopeKind.CLASSIFIER
+                is PackageFragmentDescriptor -> ScopeKind.PACKAGE
+                else -> throw AssertionError("Unexpected containing declaration type: ${scopeOwner.javaClass}")
+            }
+
+    record(location.filePath, position?.line, position?.column, scopeOwner.fqNameUnsafe.asString(), scopeKind, name.asString())
+}
@@ -18,14 +18,22 @@ package org.jetbrains.kotlin.name;
 
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Names are canonical instances from {@link NameTable}: equal names are identical and have the same number, see {@link #getId()}.
+ * Only when the table is full, names are created outside of it.
+ */
 public final class Name implements Comparable<Name> {
+    static final int NO_ID = 0;
+
     @NotNull
     private final String name;
     private final boolean special;
+    private final int id;
 
-    private Name(@NotNull String name, boolean special) {
+    /*package*/ Name(@NotNull String name, boolean special, int id) {
         this.name = name;
         this.special = special;
+        this.id = id;
     }
 
     @NotNull
@@ -45,6 +53,14 @@ public final class Name implements Comparable<Name> {
         return special;
     }
 
+    /**
+     * @return a positive number identifying this name in the process, which can be used as a key in int maps,
+     * or 0 if the name was created after the name table had become full
+     */
+    public int getId() {
+        return id;
+    }
+
     @Override
     public int compareTo(Name that) {
         return this.name.compareTo(that.name);
@@ -55,7 +71,7 @@ public final class Name implements Comparable<Name> {
         if (!isValidIdentifier(name)) {
             throw new IllegalArgumentException("invalid identifier: " + name);
         }
-        return new Name(name, false);
+        return NameTable.DEFAULT.intern(name, false);
     }
 
     public static boolean isValidIdentifier(@NotNull String name) {
@@ -65,7 +81,7 @@ public final class Name implements Comparable<Name> {
     /** Must be validated by caller */
     @NotNull
     public static Name identifierNoValidate(@NotNull String name) {
-        return new Name(name, false);
+        return NameTable.DEFAULT.intern(name, false);
     }
 
     @NotNull
@@ -73,7 +89,7 @@ public final class Name implements Comparable<Name> {
         if (!name.startsWith("<")) {
             throw new IllegalArgumentException("special name must start with '<': " + name);
         }
-        return new Name(name, true);
+        return NameTable.DEFAULT.intern(name, true);
     }
 
     // TODO: wrong
@@ -99,6 +115,9 @@ public final class Name implements Comparable<Name> {
 
         Name name1 = (Name) o;
 
+        // Different names from the table are different, only names created after the table had become full need to be compared
+        if (id != NO_ID && name1.id != NO_ID) return false;
+
         if (special != name1.special) return false;
         if (!name.equals(name1.name)) return false;
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canonical instances of {@link Name}s.
+ *
+ * Equal names are created over and over: by deserialization of each class which mentions them, for each reference in sources
+ * and so on, and the copies stay in memory as long as the descriptors holding them. The table keeps one instance of each name,
+ * so equal names are identical, and gives the instance a number which is never given to another name.
+ *
+ * Names are looked up by their string without taking locks or allocating anything. Entries are never removed, so the table
+ * is bounded: once it has as many names as its capacity, new names are created outside of it and have no number.
+ */
+final class NameTable {
+    private static final int DEFAULT_CAPACITY = Integer.getInteger("kotlin.name.table.capacity", 1 << 18);
+
+    static final NameTable DEFAULT = new NameTable(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final ConcurrentMap<String, Name> identifiers = new ConcurrentHashMap<String, Name>();
+    private final ConcurrentMap<String, Name> specialNames = new ConcurrentHashMap<String, Name>();
+    private final AtomicInteger lastId = new AtomicInteger(Name.NO_ID);
+
+    NameTable(int capacity) {
+        // Each thread can take one number above the capacity, this keeps the numbers far from an overflow
+        this.capacity = Math.min(Math.max(capacity, 0), Integer.MAX_VALUE / 2);
+    }
+
+    @NotNull
+    Name intern(@NotNull String name, boolean special) {
+        ConcurrentMap<String, Name> names = special ? specialNames : identifiers;
+
+        Name existing = names.get(name);
+        if (existing != null) return existing;
+
+        if (lastId.get() >= capacity) return new Name(name, special, Name.NO_ID);
+
+        // The string may be a substring sharing a larger array on Java 6, the copy doesn't keep that array alive
+        String copy = new String(name);
+        Name canonical = new Name(copy, special, lastId.incrementAndGet());
+        Name raced = names.putIfAbsent(copy, canonical);
+        // The number of a name which has lost the race is skipped
+        return raced != null ? raced : canonical;
+    }
+
+    int size() {
+        return identifiers.size() + specialNames.size();
+    }
+}
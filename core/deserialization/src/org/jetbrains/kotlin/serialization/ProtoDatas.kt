@@ -21,7 +21,9 @@ import org.jetbrains.kotlin.serialization.deserialization.NameResolver
 
 data class ClassData(
         val nameResolver: NameResolver,
-        val classProto: ProtoBuf.Class
+        val classProto: ProtoBuf.Class,
+        // If not null, functions and properties are stored here instead of classProto
+        val serializedMembers: SerializedClassMembers? = null
 )
 
 data class ClassDataWithSource(
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.serialization
+
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.ExtensionRegistryLite
+import com.google.protobuf.MessageLite
+import com.google.protobuf.Parser
+import com.google.protobuf.WireFormat
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver
+import java.io.ByteArrayOutputStream
+import java.util.*
+
+/**
+ * Functions and properties of a class, cut out of its serialized proto before the proto is parsed. A member is parsed only when
+ * the descriptors for its name are requested, so the object graph of member protos is never built for classes which are only
+ * used by name. Experimental, enabled with -Dkotlin.deserialization.compact.members=true
+ */
+public class SerializedClassMembers(
+        val functions: SerializedMemberProtos<ProtoBuf.Function>,
+        val properties: SerializedMemberProtos<ProtoBuf.Property>
+) {
+    companion object {
+        @JvmStatic
+        public fun isEnabled(): Boolean = java.lang.Boolean.getBoolean("kotlin.deserialization.compact.members")
+
+        /**
+         * Reads the class proto from [bytes] starting at [offset]. Functions and properties are not parsed: the returned class proto
+         * has none, and they are kept serialized in [ClassData.serializedMembers]
+         */
+        @JvmStatic
+        public fun readClassData(
+                nameResolver: NameResolver,
+                bytes: ByteArray,
+                offset: Int,
+                extensionRegistry: ExtensionRegistryLite
+        ): ClassData {
+            val functions = SerializedMemberProtos.Builder(ProtoBuf.Function.PARSER, extensionRegistry)
+            val properties = SerializedMemberProtos.Builder(ProtoBuf.Property.PARSER, extensionRegistry)
+            val rest = ByteArrayOutputStream(bytes.size() - offset)
+
+            val input = CodedInputStream.newInstance(bytes, offset, bytes.size() - offset)
+            while (true) {
+                val start = offset + input.totalBytesRead
+                val tag = input.readTag()
+                if (tag == 0) break
+
+                val members = when (WireFormat.getTagFieldNumber(tag)) {
+                    ProtoBuf.Class.FUNCTION_FIELD_NUMBER -> functions
+                    ProtoBuf.Class.PROPERTY_FIELD_NUMBER -> properties
+                    else -> null
+                }
+                if (members != null) {
+                    val length = input.readRawVarint32()
+                    members.add(bytes, offset + input.totalBytesRead, length)
+                    input.skipRawBytes(length)
+                }
+                else {
+                    input.skipField(tag)
+                    rest.write(bytes, start, offset + input.totalBytesRead - start)
+                }
+            }
+
+            val classProto = ProtoBuf.Class.parseFrom(rest.toByteArray(), extensionRegistry)
+            return ClassData(nameResolver, classProto, SerializedClassMembers(functions.build(), properties.build()))
+        }
+    }
+}
+
+/**
+ * Serialized protos of functions or properties, stored in one byte array. Only the name and the presence of the receiver type
+ * of each member are read upfront.
+ */
+public class SerializedMemberProtos<M : MessageLite> private constructor(
+        private val parser: Parser<M>,
+        private val extensionRegistry: ExtensionRegistryLite,
+        private val data: ByteArray,
+        private val offsets: IntArray,
+        private val nameIndices: IntArray,
+        private val extensions: BooleanArray
+) {
+    val size: Int
+        get() = nameIndices.size()
+
+    fun getNameIndex(index: Int): Int = nameIndices[index]
+
+    fun isExtension(index: Int): Boolean = extensions[index]
+
+    fun parse(index: Int): M = parser.parseFrom(data, offsets[index], offsets[index + 1] - offsets[index], extensionRegistry)
+
+    internal class Builder<M : MessageLite>(private val parser: Parser<M>, private val extensionRegistry: ExtensionRegistryLite) {
+        private val output = ByteArrayOutputStream()
+        private val offsets = arrayListOf(0)
+        private val nameIndices = ArrayList<Int>()
+        private val extensions = ArrayList<Boolean>()
+
+        fun add(bytes: ByteArray, offset: Int, length: Int) {
+            // Name and receiver type have the same numbers in Function and Property
+            var nameIndex = 0
+            var isExtension = false
+            val input = CodedInputStream.newInstance(bytes, offset, length)
+            while (true) {
+                val tag = input.readTag()
+                if (tag == 0) break
+
+                when (WireFormat.getTagFieldNumber(tag)) {
+                    ProtoBuf.Function.NAME_FIELD_NUMBER -> nameIndex = input.readInt32()
+                    ProtoBuf.Function.RECEIVER_TYPE_FIELD_NUMBER -> {
+                        isExtension = true
+                        input.skipField(tag)
+                    }
+                    else -> input.skipField(tag)
+                }
+            }
+
+            output.write(bytes, offset, length)
+            offsets.add(output.size())
+            nameIndices.add(nameIndex)
+            extensions.add(isExtension)
+        }
+
+        fun build(): SerializedMemberProtos<M> =
+                SerializedMemberProtos(
+                        parser, extensionRegistry, output.toByteArray(),
+                        offsets.toIntArray(), nameIndices.toIntArray(), extensions.toBooleanArray()
+                )
+    }
+}
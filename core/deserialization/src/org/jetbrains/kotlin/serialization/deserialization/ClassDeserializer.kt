@@ -36,7 +36,7 @@ public class ClassDeserializer(private val components: DeserializationComponents
         val (classData, sourceElement) = key.classDataWithSource
                                          ?: components.classDataFinder.findClassData(classId)
                                          ?: return null
-        val (nameResolver, classProto) = classData
+        val (nameResolver, classProto, serializedMembers) = classData
 
         val outerContext = if (classId.isNestedClass) {
             val outerClass = deserializeClass(classId.outerClassId) as? DeserializedClassDescriptor ?: return null
@@ -59,7 +59,7 @@ public class ClassDeserializer(private val components: DeserializationComponents
             components.createContext(fragment, nameResolver)
         }
 
-        return DeserializedClassDescriptor(outerContext, classProto, nameResolver, sourceElement)
+        return DeserializedClassDescriptor(outerContext, classProto, nameResolver, sourceElement, serializedMembers)
     }
 
     private data class ClassKey(val classId: ClassId, classDataWithSource: ClassDataWithSource?) {
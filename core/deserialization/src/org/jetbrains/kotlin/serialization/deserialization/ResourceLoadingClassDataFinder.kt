@@ -21,6 +21,7 @@ import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.serialization.ClassData
 import org.jetbrains.kotlin.serialization.ClassDataWithSource
 import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.SerializedClassMembers
 import org.jetbrains.kotlin.serialization.SerializedResourcePaths
 import java.io.InputStream
 
@@ -35,10 +36,12 @@ public open class ResourceLoadingClassDataFinder(
 
         val stream = loadResource(serializedResourcePaths.getClassMetadataPath(classId)) ?: return null
 
-        val classData = ClassData(
-                packageFragment.nameResolver,
-                ProtoBuf.Class.parseFrom(stream, serializedResourcePaths.extensionRegistry)
-        )
+        val extensionRegistry = serializedResourcePaths.extensionRegistry
+        val classData =
+                if (SerializedClassMembers.isEnabled())
+                    SerializedClassMembers.readClassData(packageFragment.nameResolver, stream.readBytes(), 0, extensionRegistry)
+                else
+                    ClassData(packageFragment.nameResolver, ProtoBuf.Class.parseFrom(stream, extensionRegistry))
         return ClassDataWithSource(classData)
     }
 }
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.serialization.deserialization
 import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.descriptors.annotations.AnnotationDescriptor
 import org.jetbrains.kotlin.descriptors.annotations.AnnotationWithTarget
+import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.resolve.constants.ConstantValue
 import org.jetbrains.kotlin.serialization.ProtoBuf
@@ -35,7 +36,8 @@ public class DeserializationComponents(
         val flexibleTypeCapabilitiesDeserializer: FlexibleTypeCapabilitiesDeserializer,
         val fictitiousClassDescriptorFactory: ClassDescriptorFactory,
         val typeCapabilitiesLoader: TypeCapabilitiesLoader = TypeCapabilitiesLoader.NONE,
-        val additionalSupertypes: AdditionalSupertypes = AdditionalSupertypes.None
+        val additionalSupertypes: AdditionalSupertypes = AdditionalSupertypes.None,
+        val lookupTracker: LookupTracker = LookupTracker.DO_NOTHING
 ) {
     public val classDeserializer: ClassDeserializer = ClassDeserializer(this)
 
@@ -30,6 +30,7 @@ import org.jetbrains.kotlin.resolve.scopes.JetScope
 import org.jetbrains.kotlin.resolve.scopes.StaticScopeForKotlinClass
 import org.jetbrains.kotlin.serialization.Flags
 import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.SerializedClassMembers
 import org.jetbrains.kotlin.serialization.deserialization.Deserialization
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationContext
 import org.jetbrains.kotlin.serialization.deserialization.DeserializedType
@@ -46,7 +47,8 @@ public class DeserializedClassDescriptor(
         outerContext: DeserializationContext,
         val classProto: ProtoBuf.Class,
         nameResolver: NameResolver,
-        private val sourceElement: SourceElement
+        private val sourceElement: SourceElement,
+        serializedMembers: SerializedClassMembers? = null
 ) : ClassDescriptor, AbstractClassDescriptor(
         outerContext.storageManager,
         nameResolver.getClassId(classProto.getFqName()).getShortClassName()
@@ -64,7 +66,7 @@ public class DeserializedClassDescriptor(
 
     private val staticScope = StaticScopeForKotlinClass(this)
     private val typeConstructor = DeserializedClassTypeConstructor()
-    private val memberScope = DeserializedClassMemberScope()
+    private val memberScope = DeserializedClassMemberScope(serializedMembers)
     private val nestedClasses = NestedClassDescriptors()
     private val enumEntries = EnumEntryClassDescriptors()
 
@@ -185,12 +187,24 @@ public class DeserializedClassDescriptor(
         override fun toString() = getName().toString()
     }
 
-    private inner class DeserializedClassMemberScope : DeserializedMemberScope(c, classProto.functionList, classProto.propertyList) {
+    private inner class DeserializedClassMemberScope(
+            serializedMembers: SerializedClassMembers?
+    ) : DeserializedMemberScope(c, classProto.functionList, classProto.propertyList, serializedMembers) {
         private val classDescriptor: DeserializedClassDescriptor get() = this@DeserializedClassDescriptor
         private val allDescriptors = c.storageManager.createLazyValue {
             computeDescriptors(DescriptorKindFilter.ALL, JetScope.ALL_NAME_FILTER, NoLookupLocation.WHEN_GET_ALL_DESCRIPTORS)
         }
 
+        override fun getFunctions(name: Name, location: LookupLocation): Collection<FunctionDescriptor> {
+            recordLookup(name, location)
+            return super.getFunctions(name, location)
+        }
+
+        override fun getProperties(name: Name, location: LookupLocation): Collection<VariableDescriptor> {
+            recordLookup(name, location)
+            return super.getProperties(name, location)
+        }
+
         override fun getDescriptors(kindFilter: DescriptorKindFilter,
                                     nameFilter: (Name) -> Boolean): Collection<DeclarationDescriptor> = allDescriptors()
 
@@ -321,9 +335,8 @@ public class DeserializedClassDescriptor(
                 }
             }
 
-            val nameResolver = c.nameResolver
-            return classProto.functionList.mapTo(result) { nameResolver.getName(it.name) } +
-                   classProto.propertyList.mapTo(result) { nameResolver.getName(it.name) }
+            memberScope.addDeclaredCallableNames(result)
+            return result
         }
 
         fun all(): Collection<ClassDescriptor> {
@@ -19,10 +19,13 @@ package org.jetbrains.kotlin.serialization.deserialization.descriptors
 import com.google.protobuf.MessageLite
 import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.incremental.components.LookupLocation
+import org.jetbrains.kotlin.incremental.components.record
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.JetScopeImpl
 import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.SerializedClassMembers
+import org.jetbrains.kotlin.serialization.SerializedMemberProtos
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationContext
 import org.jetbrains.kotlin.utils.Printer
 import org.jetbrains.kotlin.utils.toReadOnlyList
@@ -31,19 +34,20 @@ import java.util.*
 public abstract class DeserializedMemberScope protected constructor(
         protected val c: DeserializationContext,
         functionList: Collection<ProtoBuf.Function>,
-        propertyList: Collection<ProtoBuf.Property>
+        propertyList: Collection<ProtoBuf.Property>,
+        // If not null, members are taken from here, and the lists above are ignored.
+        // filteredFunctionProtos and filteredPropertyProtos are not applied to these members, only class scopes pass them
+        serializedMembers: SerializedClassMembers? = null
 ) : JetScopeImpl() {
 
     private data class ProtoKey(val name: Name, val isExtension: Boolean)
 
-    private val functionProtos =
-            c.storageManager.createLazyValue {
-                groupByKey(filteredFunctionProtos(functionList), { it.name }) { it.hasReceiverType() }
-            }
-    private val propertyProtos =
-            c.storageManager.createLazyValue {
-                groupByKey(filteredPropertyProtos(propertyList), { it.name }) { it.hasReceiverType() }
-            }
+    private val functionProtos: MemberProtos<ProtoBuf.Function> =
+            if (serializedMembers != null) CompactMemberProtos(serializedMembers.functions)
+            else ParsedMemberProtos(functionList, { it.name }, { it.hasReceiverType() }) { filteredFunctionProtos(it) }
+    private val propertyProtos: MemberProtos<ProtoBuf.Property> =
+            if (serializedMembers != null) CompactMemberProtos(serializedMembers.properties)
+            else ParsedMemberProtos(propertyList, { it.name }, { it.hasReceiverType() }) { filteredPropertyProtos(it) }
 
     private val functions =
             c.storageManager.createMemoizedFunction<Name, Collection<FunctionDescriptor>> { computeFunctions(it) }
@@ -54,20 +58,65 @@ public abstract class DeserializedMemberScope protected constructor(
 
     protected open fun filteredPropertyProtos(protos: Collection<ProtoBuf.Property>): Collection<ProtoBuf.Property> = protos
 
-    private fun <M : MessageLite> groupByKey(
-            protos: Collection<M>, getNameIndex: (M) -> Int, isExtension: (M) -> Boolean
-    ): Map<ProtoKey, List<M>> {
-        val map = LinkedHashMap<ProtoKey, MutableList<M>>()
-        for (proto in protos) {
-            val key = ProtoKey(c.nameResolver.getName(getNameIndex(proto)), isExtension(proto))
-            map.getOrPut(key) { ArrayList(1) }.add(proto)
+    private abstract inner class MemberProtos<M : MessageLite> {
+        // In the order of serialization
+        abstract val keys: Collection<ProtoKey>
+
+        abstract fun get(key: ProtoKey): List<M>
+
+        fun get(name: Name): List<M> = get(ProtoKey(name, isExtension = false)) + get(ProtoKey(name, isExtension = true))
+    }
+
+    private inner class ParsedMemberProtos<M : MessageLite>(
+            protos: Collection<M>,
+            getNameIndex: (M) -> Int,
+            isExtension: (M) -> Boolean,
+            filter: (Collection<M>) -> Collection<M>
+    ) : MemberProtos<M>() {
+        private val protosByKey = c.storageManager.createLazyValue {
+            val map = LinkedHashMap<ProtoKey, MutableList<M>>()
+            for (proto in filter(protos)) {
+                val key = ProtoKey(c.nameResolver.getName(getNameIndex(proto)), isExtension(proto))
+                map.getOrPut(key) { ArrayList(1) }.add(proto)
+            }
+            map
+        }
+
+        override val keys: Collection<ProtoKey>
+            get() = protosByKey().keySet()
+
+        override fun get(key: ProtoKey): List<M> = protosByKey()[key].orEmpty()
+    }
+
+    /**
+     * Members which were never parsed, see [SerializedClassMembers]. Their names are known without parsing them, so enumerating
+     * the names doesn't parse anything. Protos of a member are parsed each time its descriptors are computed, i.e. once per name.
+     */
+    private inner class CompactMemberProtos<M : MessageLite>(private val protos: SerializedMemberProtos<M>) : MemberProtos<M>() {
+        private val indicesByKey = c.storageManager.createLazyValue {
+            val map = LinkedHashMap<ProtoKey, MutableList<Int>>()
+            for (i in 0..protos.size - 1) {
+                map.getOrPut(ProtoKey(c.nameResolver.getName(protos.getNameIndex(i)), protos.isExtension(i))) { ArrayList(1) }.add(i)
+            }
+            map
+        }
+
+        override val keys: Collection<ProtoKey>
+            get() = indicesByKey().keySet()
+
+        override fun get(key: ProtoKey): List<M> {
+            val indices = indicesByKey()[key] ?: return emptyList()
+            return indices.map { protos.parse(it) }
         }
-        return map
+    }
+
+    internal fun addDeclaredCallableNames(result: MutableSet<Name>) {
+        functionProtos.keys.mapTo(result) { it.name }
+        propertyProtos.keys.mapTo(result) { it.name }
     }
 
     private fun computeFunctions(name: Name): Collection<FunctionDescriptor> {
-        val protos = functionProtos()[ProtoKey(name, isExtension = false)].orEmpty() +
-                     functionProtos()[ProtoKey(name, isExtension = true)].orEmpty()
+        val protos = functionProtos.get(name)
 
         val descriptors = protos.mapTo(linkedSetOf()) {
             c.memberDeserializer.loadFunction(it)
@@ -83,8 +132,7 @@ public abstract class DeserializedMemberScope protected constructor(
     override fun getFunctions(name: Name, location: LookupLocation): Collection<FunctionDescriptor> = functions(name)
 
     private fun computeProperties(name: Name): Collection<VariableDescriptor> {
-        val protos = propertyProtos()[ProtoKey(name, isExtension = false)].orEmpty() +
-                     propertyProtos()[ProtoKey(name, isExtension = true)].orEmpty()
+        val protos = propertyProtos.get(name)
 
         val descriptors = protos.mapTo(linkedSetOf()) {
             c.memberDeserializer.loadProperty(it)
@@ -138,12 +186,12 @@ public abstract class DeserializedMemberScope protected constructor(
             location: LookupLocation
     ) {
         if (kindFilter.acceptsKinds(DescriptorKindFilter.VARIABLES_MASK)) {
-            val keys = propertyProtos().keySet().filter { nameFilter(it.name) }
+            val keys = propertyProtos.keys.filter { nameFilter(it.name) }
             addMembers(result, keys) { getProperties(it, location) }
         }
 
         if (kindFilter.acceptsKinds(DescriptorKindFilter.FUNCTIONS_MASK)) {
-            val keys = functionProtos().keySet().filter { nameFilter(it.name) }
+            val keys = functionProtos.keys.filter { nameFilter(it.name) }
             addMembers(result, keys) { getFunctions(it, location) }
         }
     }
@@ -182,4 +230,11 @@ public abstract class DeserializedMemberScope protected constructor(
         p.popIndent()
         p.println("}")
     }
+
+    // Called by the scopes of all deserialized classes, including library ones, because a class doesn't know whether it was
+    // compiled from the module sources on a previous round. Package scopes only record lookups into package parts of the
+    // compiled module, see IncrementalPackageFragmentProvider. Nothing is recorded with LookupTracker.DO_NOTHING.
+    protected fun recordLookup(name: Name, from: LookupLocation) {
+        c.components.lookupTracker.record(from, getContainingDeclaration(), name)
+    }
 }
@@ -62,7 +62,7 @@ public val KClass<*>.defaultType: KType
  */
 public val KClass<*>.staticFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(staticScope, declaredOnly = false, nonExtensions = true, extensions = true)
+            .getMembers(static = true, declaredOnly = false, nonExtensions = true, extensions = true)
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -71,7 +71,7 @@ public val KClass<*>.staticFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.memberFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(memberScope, declaredOnly = false, nonExtensions = true, extensions = false)
+            .getMembers(static = false, declaredOnly = false, nonExtensions = true, extensions = false)
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -80,7 +80,7 @@ public val KClass<*>.memberFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.memberExtensionFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(memberScope, declaredOnly = false, nonExtensions = false, extensions = true)
+            .getMembers(static = false, declaredOnly = false, nonExtensions = false, extensions = true)
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -91,8 +91,8 @@ public val KClass<*>.memberExtensionFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.declaredFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(memberScope, declaredOnly = true, nonExtensions = true, extensions = true)
-            .plus(getMembers(staticScope, declaredOnly = true, nonExtensions = true, extensions = true))
+            .getMembers(static = false, declaredOnly = true, nonExtensions = true, extensions = true)
+            .plus(getMembers(static = true, declaredOnly = true, nonExtensions = true, extensions = true))
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -101,7 +101,7 @@ public val KClass<*>.declaredFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.declaredMemberFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(memberScope, declaredOnly = true, nonExtensions = true, extensions = false)
+            .getMembers(static = false, declaredOnly = true, nonExtensions = true, extensions = false)
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -110,7 +110,7 @@ public val KClass<*>.declaredMemberFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.declaredMemberExtensionFunctions: Collection<KFunction<*>>
     get() = (this as KClassImpl)
-            .getMembers(memberScope, declaredOnly = true, nonExtensions = false, extensions = true)
+            .getMembers(static = false, declaredOnly = true, nonExtensions = false, extensions = true)
             .filterIsInstance<KFunction<*>>()
             .toList()
 
@@ -120,7 +120,7 @@ public val KClass<*>.declaredMemberExtensionFunctions: Collection<KFunction<*>>
  */
 public val KClass<*>.staticProperties: Collection<KProperty0<*>>
     get() = (this as KClassImpl)
-            .getMembers(staticScope, declaredOnly = false, nonExtensions = true, extensions = false)
+            .getMembers(static = true, declaredOnly = false, nonExtensions = true, extensions = false)
             .filterIsInstance<KProperty0<*>>()
             .toList()
 
@@ -129,7 +129,7 @@ public val KClass<*>.staticProperties: Collection<KProperty0<*>>
  */
 public val <T : Any> KClass<T>.memberProperties: Collection<KProperty1<T, *>>
     get() = (this as KClassImpl<T>)
-            .getMembers(memberScope, declaredOnly = false, nonExtensions = true, extensions = false)
+            .getMembers(static = false, declaredOnly = false, nonExtensions = true, extensions = false)
             .filterIsInstance<KProperty1<T, *>>()
             .toList()
 
@@ -138,7 +138,7 @@ public val <T : Any> KClass<T>.memberProperties: Collection<KProperty1<T, *>>
  */
 public val <T : Any> KClass<T>.memberExtensionProperties: Collection<KProperty2<T, *, *>>
     get() = (this as KClassImpl<T>)
-            .getMembers(memberScope, declaredOnly = false, nonExtensions = false, extensions = true)
+            .getMembers(static = false, declaredOnly = false, nonExtensions = false, extensions = true)
             .filterIsInstance<KProperty2<T, *, *>>()
             .toList()
 
@@ -147,7 +147,7 @@ public val <T : Any> KClass<T>.memberExtensionProperties: Collection<KProperty2<
  */
 public val <T : Any> KClass<T>.declaredMemberProperties: Collection<KProperty1<T, *>>
     get() = (this as KClassImpl<T>)
-            .getMembers(memberScope, declaredOnly = true, nonExtensions = true, extensions = false)
+            .getMembers(static = false, declaredOnly = true, nonExtensions = true, extensions = false)
             .filterIsInstance<KProperty1<T, *>>()
             .toList()
 
@@ -156,6 +156,6 @@ public val <T : Any> KClass<T>.declaredMemberProperties: Collection<KProperty1<T
  */
 public val <T : Any> KClass<T>.declaredMemberExtensionProperties: Collection<KProperty2<T, *, *>>
     get() = (this as KClassImpl<T>)
-            .getMembers(memberScope, declaredOnly = true, nonExtensions = false, extensions = true)
+            .getMembers(static = false, declaredOnly = true, nonExtensions = false, extensions = true)
             .filterIsInstance<KProperty2<T, *, *>>()
             .toList()
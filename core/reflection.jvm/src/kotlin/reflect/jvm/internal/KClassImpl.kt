@@ -56,9 +56,17 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
 
     internal val staticScope: JetScope get() = descriptor.staticScope
 
+    // Descriptors of the member and the static scopes, shared by members and the extensions which filter them (see KClassExtensions.kt)
+    private val nonStaticMemberDescriptors by ReflectProperties.lazySoft { getMemberDescriptors(memberScope) }
+
+    private val staticMemberDescriptors by ReflectProperties.lazySoft { getMemberDescriptors(staticScope) }
+
+    internal fun getMembers(static: Boolean, declaredOnly: Boolean, nonExtensions: Boolean, extensions: Boolean): Sequence<KCallable<*>> =
+            getMembers(if (static) staticMemberDescriptors else nonStaticMemberDescriptors, declaredOnly, nonExtensions, extensions)
+
     override val members: Collection<KCallable<*>>
-        get() = getMembers(memberScope, declaredOnly = false, nonExtensions = true, extensions = true)
-                .plus(getMembers(staticScope, declaredOnly = false, nonExtensions = true, extensions = true))
+        get() = getMembers(static = false, declaredOnly = false, nonExtensions = true, extensions = true)
+                .plus(getMembers(static = true, declaredOnly = false, nonExtensions = true, extensions = true))
                 .toList()
 
     override val constructorDescriptors: Collection<ConstructorDescriptor>
@@ -31,6 +31,7 @@ import org.jetbrains.kotlin.serialization.jvm.JvmProtoBuf
 import java.lang.reflect.Constructor
 import java.lang.reflect.Field
 import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.jvm.internal.ClassBasedDeclarationContainer
 import kotlin.reflect.KCallable
 import kotlin.reflect.KotlinReflectionInternalError
@@ -41,30 +42,46 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
         jClass.getOrCreateModule()
     }
 
+    // Results of the lookups by JVM signature below. Every callable reference and every new KCallable instance resolves its descriptor
+    // and its JVM member by signature, which involves walking the scopes and loading classes, so the results are reused. Only immutable
+    // results are cached: java.lang.reflect objects can be modified by the caller (see AccessibleObject.setAccessible), so they are
+    // obtained from the class anew for every caller. The same entry may be computed more than once by concurrent threads, which is harmless
+    private val lookupCache by ReflectProperties.lazySoft { LookupCache() }
+
+    private class LookupCache {
+        val properties = ConcurrentHashMap<MemberSignature, PropertyDescriptor>()
+        val functions = ConcurrentHashMap<MemberSignature, FunctionDescriptor>()
+        val parameterTypes = ConcurrentHashMap<String, List<Class<*>>>()
+    }
+
+    private data class MemberSignature(val name: String, val signature: String)
+
     abstract val constructorDescriptors: Collection<ConstructorDescriptor>
 
     abstract fun getProperties(name: Name): Collection<PropertyDescriptor>
 
     abstract fun getFunctions(name: Name): Collection<FunctionDescriptor>
 
-    fun getMembers(scope: JetScope, declaredOnly: Boolean, nonExtensions: Boolean, extensions: Boolean): Sequence<KCallable<*>> {
-        val visitor = object : DeclarationDescriptorVisitorEmptyBodies<KCallable<*>?, Unit>() {
-            private fun skipCallable(descriptor: CallableMemberDescriptor): Boolean {
-                if (declaredOnly && !descriptor.getKind().isReal()) return true
-
-                val isExtension = descriptor.getExtensionReceiverParameter() != null
-                if (isExtension && !extensions) return true
-                if (!isExtension && !nonExtensions) return true
-
-                return false
-            }
+    // Descriptors are immutable, so the result of this (expensive) scope traversal can be cached by subclasses. New KCallable instances
+    // are created for them on every call of getMembers, because each KCallable holds its own java.lang.reflect objects
+    protected fun getMemberDescriptors(scope: JetScope): List<CallableMemberDescriptor> {
+        return scope.getAllDescriptors()
+                .filterIsInstance<CallableMemberDescriptor>()
+                .filter { descriptor ->
+                    descriptor.getVisibility() != Visibilities.INVISIBLE_FAKE
+                }
+    }
 
+    fun getMembers(
+            descriptors: Collection<CallableMemberDescriptor>, declaredOnly: Boolean, nonExtensions: Boolean, extensions: Boolean
+    ): Sequence<KCallable<*>> {
+        val visitor = object : DeclarationDescriptorVisitorEmptyBodies<KCallable<*>?, Unit>() {
             override fun visitPropertyDescriptor(descriptor: PropertyDescriptor, data: Unit): KCallable<*>? {
-                return if (skipCallable(descriptor)) null else createProperty(descriptor)
+                return createProperty(descriptor)
             }
 
             override fun visitFunctionDescriptor(descriptor: FunctionDescriptor, data: Unit): KCallable<*>? {
-                return if (skipCallable(descriptor)) null else KFunctionImpl(this@KDeclarationContainerImpl, descriptor)
+                return KFunctionImpl(this@KDeclarationContainerImpl, descriptor)
             }
 
             override fun visitConstructorDescriptor(descriptor: ConstructorDescriptor, data: Unit): KCallable<*>? {
@@ -72,9 +89,9 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
             }
         }
 
-        return scope.getAllDescriptors().asSequence()
+        return descriptors.asSequence()
                 .filter { descriptor ->
-                    descriptor !is MemberDescriptor || descriptor.getVisibility() != Visibilities.INVISIBLE_FAKE
+                    isMemberIncluded(descriptor, declaredOnly, nonExtensions, extensions)
                 }
                 .map { descriptor ->
                     descriptor.accept(visitor, Unit)
@@ -82,6 +99,18 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
                 .filterNotNull()
     }
 
+    private fun isMemberIncluded(
+            descriptor: CallableMemberDescriptor, declaredOnly: Boolean, nonExtensions: Boolean, extensions: Boolean
+    ): Boolean {
+        if (declaredOnly && !descriptor.getKind().isReal()) return false
+
+        val isExtension = descriptor.getExtensionReceiverParameter() != null
+        if (isExtension && !extensions) return false
+        if (!isExtension && !nonExtensions) return false
+
+        return true
+    }
+
     private fun createProperty(descriptor: PropertyDescriptor): KPropertyImpl<*> {
         val receiverCount = (descriptor.dispatchReceiverParameter?.let { 1 } ?: 0) +
                             (descriptor.extensionReceiverParameter?.let { 1 } ?: 0)
@@ -102,7 +131,10 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
         throw KotlinReflectionInternalError("Unsupported property: $descriptor")
     }
 
-    fun findPropertyDescriptor(name: String, signature: String): PropertyDescriptor {
+    fun findPropertyDescriptor(name: String, signature: String): PropertyDescriptor =
+            lookupCache.properties.getOrPut(MemberSignature(name, signature)) { resolvePropertyDescriptor(name, signature) }
+
+    private fun resolvePropertyDescriptor(name: String, signature: String): PropertyDescriptor {
         val properties = getProperties(Name.guess(name))
                 .filter { descriptor ->
                     descriptor is PropertyDescriptor &&
@@ -120,7 +152,10 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
         return properties.single()
     }
 
-    fun findFunctionDescriptor(name: String, signature: String): FunctionDescriptor {
+    fun findFunctionDescriptor(name: String, signature: String): FunctionDescriptor =
+            lookupCache.functions.getOrPut(MemberSignature(name, signature)) { resolveFunctionDescriptor(name, signature) }
+
+    private fun resolveFunctionDescriptor(name: String, signature: String): FunctionDescriptor {
         val functions = (if (name == "<init>") constructorDescriptors.toList() else getFunctions(Name.guess(name)))
                 .filter { descriptor ->
                     RuntimeTypeMapper.mapSignature(descriptor).asString() == signature
@@ -196,7 +231,10 @@ internal abstract class KDeclarationContainerImpl : ClassBasedDeclarationContain
         }
     }
 
-    private fun loadParameterTypes(desc: String): List<Class<*>> {
+    private fun loadParameterTypes(desc: String): List<Class<*>> =
+            lookupCache.parameterTypes.getOrPut(desc) { parseParameterTypes(desc) }
+
+    private fun parseParameterTypes(desc: String): List<Class<*>> {
         val classLoader = jClass.safeClassLoader
         val result = arrayListOf<Class<*>>()
 
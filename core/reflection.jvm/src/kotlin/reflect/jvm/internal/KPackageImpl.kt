@@ -36,8 +36,10 @@ internal class KPackageImpl(override val jClass: Class<*>, val moduleName: Strin
 
     internal val scope: JetScope get() = descriptor.memberScope
 
+    private val memberDescriptors by ReflectProperties.lazySoft { getMemberDescriptors(scope) }
+
     override val members: Collection<KCallable<*>>
-        get() = getMembers(scope, declaredOnly = false, nonExtensions = true, extensions = true).toList()
+        get() = getMembers(memberDescriptors, declaredOnly = false, nonExtensions = true, extensions = true).toList()
 
     override val constructorDescriptors: Collection<ConstructorDescriptor>
         get() = emptyList()
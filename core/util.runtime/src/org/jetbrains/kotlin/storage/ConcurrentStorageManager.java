@@ -0,0 +1,497 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.storage.LockBasedStorageManager.ExceptionHandlingStrategy;
+import org.jetbrains.kotlin.storage.LockBasedStorageManager.RecursionDetectedResult;
+import org.jetbrains.kotlin.utils.WrappedValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A storage manager which doesn't serialize all computations behind one lock.
+ *
+ * Every lazy value and every key of a memoized function is computed by the first thread which requested it, other threads
+ * requesting the same value wait for that computation only. Already computed values are read without any locking.
+ *
+ * Recursion is detected the same way as in {@link LockBasedStorageManager}: a thread requesting a value it is currently computing
+ * gets the recursion result. If threads wait for each other's computations in a cycle, exactly one of them (the one with the
+ * greatest id) is treated as if it had re-entered the computation, which is what would happen if all of them ran under one lock.
+ */
+public class ConcurrentStorageManager implements StorageManager {
+    private static final long CYCLE_CHECK_INTERVAL_MS = 50;
+
+    // Thread -> computation it is currently waiting for, used to detect waiting cycles between threads
+    private static final ConcurrentMap<Thread, Computation> WAITING_FOR = new ConcurrentHashMap<Thread, Computation>();
+
+    @NotNull
+    public static ConcurrentStorageManager createWithExceptionHandling(@NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
+        return new ConcurrentStorageManager(LockBasedStorageManager.getPointOfConstruction(), exceptionHandlingStrategy);
+    }
+
+    // Only used to implement compute(), lazy values and memoized functions don't take it
+    private final Lock lock = new ReentrantLock();
+    private final ExceptionHandlingStrategy exceptionHandlingStrategy;
+    private final String debugText;
+
+    private ConcurrentStorageManager(@NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
+        this.exceptionHandlingStrategy = exceptionHandlingStrategy;
+        this.debugText = debugText;
+    }
+
+    public ConcurrentStorageManager() {
+        this(LockBasedStorageManager.getPointOfConstruction(), ExceptionHandlingStrategy.THROW);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " (" + debugText + ")";
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunction(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunctionToNotNull<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunctionWithNullableValues(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunction<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ConcurrentNotNullLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<? extends T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable,
+            final Function1<? super Boolean, ? extends T> onRecursiveCall,
+            @NotNull final Function1<? super T, ? extends Unit> postCompute
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return RecursionDetectedResult.value(onRecursiveCall.invoke(firstTime));
+            }
+
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ConcurrentLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<? extends T> computable, final T onRecursiveCall) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable, @NotNull final Function1<? super T, ? extends Unit> postCompute
+    ) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @Override
+    public <T> T compute(@NotNull Function0<? extends T> computable) {
+        lock.lock();
+        try {
+            return computable.invoke();
+        }
+        catch (Throwable throwable) {
+            throw exceptionHandlingStrategy.handleException(throwable);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A computation of one value in progress. Threads which need the value while it's being computed wait on this object.
+     */
+    private static final class Computation {
+        private final Thread owner = Thread.currentThread();
+
+        // Accessed by the owner thread only
+        private boolean recursionDetected = false;
+        // The computed value of a lazy value, visible to the owner thread only until postCompute() is finished
+        private Object result = NOT_COMPUTED;
+
+        private boolean done = false;
+
+        private synchronized void finish() {
+            done = true;
+            notifyAll();
+        }
+
+        @Override
+        public String toString() {
+            return "COMPUTING in " + owner.getName();
+        }
+    }
+
+    /**
+     * Waits until the given computation (owned by another thread) finishes.
+     *
+     * @return {@code false} if the current thread should give up waiting, because the owner of the computation is itself (possibly
+     * transitively) waiting for the current thread
+     */
+    private static boolean awaitComputation(@NotNull Computation computation) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        WAITING_FOR.put(current, computation);
+        try {
+            synchronized (computation) {
+                while (!computation.done) {
+                    if (shouldBreakWaitingCycle(current, computation)) return false;
+                    try {
+                        computation.wait(CYCLE_CHECK_INTERVAL_MS);
+                    }
+                    catch (InterruptedException e) {
+                        // Like the lock in LockBasedStorageManager, waiting for a value is not interruptible
+                        interrupted = true;
+                    }
+                }
+                return true;
+            }
+        }
+        finally {
+            WAITING_FOR.remove(current);
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private static boolean shouldBreakWaitingCycle(@NotNull Thread current, @NotNull Computation computation) {
+        List<Thread> cycle = new ArrayList<Thread>();
+        Computation next = computation;
+        while (next != null) {
+            Thread owner = next.owner;
+            if (owner == current) break;
+            // A cycle which doesn't go through the current thread will be broken by one of its participants
+            if (cycle.contains(owner)) return false;
+            cycle.add(owner);
+            next = WAITING_FOR.get(owner);
+        }
+        if (next == null) return false;
+
+        for (Thread thread : cycle) {
+            if (thread.getId() > current.getId()) return false;
+        }
+        return true;
+    }
+
+    private static final Object NOT_COMPUTED = new Object() {
+        @Override
+        public String toString() {
+            return "NOT_COMPUTED";
+        }
+    };
+
+    private static final Object RECURSION_WAS_DETECTED = new Object() {
+        @Override
+        public String toString() {
+            return "RECURSION_WAS_DETECTED";
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static final AtomicReferenceFieldUpdater<ConcurrentLazyValue, Object> VALUE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentLazyValue.class, Object.class, "value");
+
+    private class ConcurrentLazyValue<T> implements NullableLazyValue<T> {
+        private final Function0<? extends T> computable;
+
+        // NOT_COMPUTED, Computation, RECURSION_WAS_DETECTED, the computed value or an exception escaped with WrappedValues
+        @Nullable
+        private volatile Object value = NOT_COMPUTED;
+
+        public ConcurrentLazyValue(@NotNull Function0<? extends T> computable) {
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            Object _value = value;
+            return _value != NOT_COMPUTED && !(_value instanceof Computation);
+        }
+
+        @Override
+        public T invoke() {
+            while (true) {
+                Object _value = value;
+                if (_value != NOT_COMPUTED && _value != RECURSION_WAS_DETECTED && !(_value instanceof Computation)) {
+                    return WrappedValues.unescapeThrowable(_value);
+                }
+
+                if (_value instanceof Computation) {
+                    Computation computation = (Computation) _value;
+                    if (computation.owner == Thread.currentThread()) {
+                        if (computation.result != NOT_COMPUTED) {
+                            //noinspection unchecked
+                            return (T) computation.result;
+                        }
+
+                        boolean firstTime = !computation.recursionDetected;
+                        computation.recursionDetected = true;
+                        RecursionDetectedResult<T> result = recursionDetected(firstTime);
+                        if (!result.isFallThrough()) {
+                            return result.getValue();
+                        }
+                        return computable.invoke();
+                    }
+
+                    if (!awaitComputation(computation)) {
+                        RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
+                        if (!result.isFallThrough()) {
+                            return result.getValue();
+                        }
+                        return computable.invoke();
+                    }
+                    continue;
+                }
+
+                if (_value == RECURSION_WAS_DETECTED) {
+                    RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ false);
+                    if (!result.isFallThrough()) {
+                        return result.getValue();
+                    }
+                }
+
+                Computation computation = new Computation();
+                if (!VALUE_UPDATER.compareAndSet(this, _value, computation)) continue;
+
+                try {
+                    T typedValue = computable.invoke();
+                    computation.result = typedValue;
+                    postCompute(typedValue);
+                    value = typedValue;
+                    return typedValue;
+                }
+                catch (Throwable throwable) {
+                    if (computation.result != NOT_COMPUTED) {
+                        // postCompute() has failed, the value itself is computed
+                        value = computation.result;
+                    }
+                    else if (value == computation) {
+                        // Store only if it's a genuine result, not something thrown through recursionDetected()
+                        value = computation.recursionDetected ? RECURSION_WAS_DETECTED : WrappedValues.escapeThrowable(throwable);
+                    }
+                    throw exceptionHandlingStrategy.handleException(throwable);
+                }
+                finally {
+                    computation.finish();
+                }
+            }
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        @NotNull
+        protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+            throw LockBasedStorageManager.sanitizeStackTrace(
+                    new IllegalStateException("Recursive call in a lazy value under " + ConcurrentStorageManager.this)
+            );
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+    }
+
+    private class ConcurrentNotNullLazyValue<T> extends ConcurrentLazyValue<T> implements NotNullLazyValue<T> {
+        public ConcurrentNotNullLazyValue(@NotNull Function0<? extends T> computable) {
+            super(computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private class MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<? super K, ? extends V> compute;
+
+        public MapBasedMemoizedFunction(@NotNull ConcurrentMap<K, Object> map, @NotNull Function1<? super K, ? extends V> compute) {
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(K input) {
+            while (true) {
+                Object value = cache.get(input);
+                if (value instanceof Computation) {
+                    Computation computation = (Computation) value;
+                    if (computation.owner == Thread.currentThread() || !awaitComputation(computation)) {
+                        throw recursionDetected(input);
+                    }
+                    continue;
+                }
+                if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
+
+                Computation computation = new Computation();
+                if (cache.putIfAbsent(input, computation) != null) continue;
+
+                try {
+                    V typedValue;
+                    try {
+                        typedValue = compute.invoke(input);
+                    }
+                    catch (Throwable throwable) {
+                        store(input, computation, WrappedValues.escapeThrowable(throwable));
+                        throw exceptionHandlingStrategy.handleException(throwable);
+                    }
+                    store(input, computation, WrappedValues.escapeNull(typedValue));
+                    return typedValue;
+                }
+                finally {
+                    computation.finish();
+                }
+            }
+        }
+
+        private void store(K input, @NotNull Computation computation, @NotNull Object value) {
+            if (cache.replace(input, computation, value)) return;
+
+            // The placeholder may have been collected if the map doesn't retain its values strongly
+            Object oldValue = cache.putIfAbsent(input, value);
+            if (oldValue != null) {
+                throw raceCondition(input, oldValue);
+            }
+        }
+
+        @NotNull
+        private AssertionError recursionDetected(K input) {
+            return LockBasedStorageManager.sanitizeStackTrace(
+                    new AssertionError("Recursion detected on input: " + input + " under " + ConcurrentStorageManager.this)
+            );
+        }
+
+        @NotNull
+        private AssertionError raceCondition(K input, Object oldValue) {
+            return LockBasedStorageManager.sanitizeStackTrace(
+                    new AssertionError("Race condition detected on input " + input + ". Old value is " + oldValue +
+                                       " under " + ConcurrentStorageManager.this)
+            );
+        }
+
+        @Override
+        public boolean isComputed(K key) {
+            Object value = cache.get(key);
+            return value != null && !(value instanceof Computation);
+        }
+    }
+
+    private class MapBasedMemoizedFunctionToNotNull<K, V> extends MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+        public MapBasedMemoizedFunctionToNotNull(
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            super(map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null under " + ConcurrentStorageManager.this;
+            return result;
+        }
+    }
+}
@@ -87,7 +87,7 @@ public class LockBasedStorageManager implements StorageManager {
         this(getPointOfConstruction(), exceptionHandlingStrategy, new ReentrantLock());
     }
 
-    private static String getPointOfConstruction() {
+    static String getPointOfConstruction() {
         StackTraceElement[] trace = Thread.currentThread().getStackTrace();
         // we need to skip frames for getStackTrace(), this method and the constructor that's calling it
         if (trace.length <= 3) return "<unknown creating class>";
@@ -229,7 +229,7 @@ public class LockBasedStorageManager implements StorageManager {
         throw sanitizeStackTrace(new IllegalStateException("Recursive call in a lazy value under " + this));
     }
 
-    private static class RecursionDetectedResult<T> {
+    static class RecursionDetectedResult<T> {
 
         @NotNull
         public static <T> RecursionDetectedResult<T> value(T value) {
@@ -465,7 +465,7 @@ public class LockBasedStorageManager implements StorageManager {
     }
 
     @NotNull
-    private static <T extends Throwable> T sanitizeStackTrace(@NotNull T throwable) {
+    static <T extends Throwable> T sanitizeStackTrace(@NotNull T throwable) {
         String storagePackageName = LockBasedStorageManager.class.getPackage().getName();
         StackTraceElement[] stackTrace = throwable.getStackTrace();
         int size = stackTrace.length;
@@ -478,7 +478,7 @@ public class LockBasedStorageManager implements StorageManager {
                 break;
             }
         }
-        assert firstNonStorage >= 0 : "This method should only be called on exceptions created in LockBasedStorageManager";
+        assert firstNonStorage >= 0 : "This method should only be called on exceptions created in storage managers";
 
         List<StackTraceElement> list = Arrays.asList(stackTrace).subList(firstNonStorage, size);
         throwable.setStackTrace(list.toArray(new StackTraceElement[list.size()]));
@@ -100,6 +100,7 @@ import org.jetbrains.kotlin.j2k.AbstractJavaToKotlinConverterForWebDemoTest
 import org.jetbrains.kotlin.j2k.AbstractJavaToKotlinConverterMultiFileTest
 import org.jetbrains.kotlin.j2k.AbstractJavaToKotlinConverterSingleFileTest
 import org.jetbrains.kotlin.jps.build.AbstractIncrementalJpsTest
+import org.jetbrains.kotlin.jps.build.AbstractIncrementalJpsWithLookupsTest
 import org.jetbrains.kotlin.jps.build.AbstractIncrementalLazyCachesTest
 import org.jetbrains.kotlin.jps.build.AbstractLookupTrackerTest
 import org.jetbrains.kotlin.jps.build.android.AbstractAndroidJpsTestCase
@@ -843,6 +844,12 @@ fun main(args: Array<String>) {
             model("incremental/withJava", extension = null, excludeParentDirs = true)
             model("incremental/inlineFunCallSite", extension = null, excludeParentDirs = true)
         }
+        testClass<AbstractIncrementalJpsWithLookupsTest>() {
+            model("incremental/multiModule", extension = null, excludeParentDirs = true)
+            model("incremental/pureKotlin", extension = null, excludeParentDirs = true)
+            model("incremental/withJava", extension = null, excludeParentDirs = true)
+            model("incremental/inlineFunCallSite", extension = null, excludeParentDirs = true)
+        }
         testClass<AbstractLookupTrackerTest>() {
             model("incremental/lookupTracker", extension = null, excludeParentDirs = true)
         }
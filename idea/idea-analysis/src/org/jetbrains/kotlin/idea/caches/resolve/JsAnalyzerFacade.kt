@@ -61,7 +61,7 @@ public object JsAnalyzerFacade : AnalyzerFacade<PlatformAnalysisParameters>() {
             val providers = moduleInfo.library.getFiles(OrderRootType.CLASSES)
                     .flatMap { KotlinJavascriptMetadataUtils.loadMetadata(PathUtil.getLocalPath(it)!!) }
                     .filter { it.isAbiVersionCompatible }
-                    .map { KotlinJavascriptSerializationUtil.createPackageFragmentProvider(moduleDescriptor, it.body, moduleContext.storageManager) }
+                    .map { KotlinJavascriptSerializationUtil.createPackageFragmentProvider(moduleDescriptor, it, moduleContext.storageManager) }
                     .filterNotNull()
 
             if (providers.isNotEmpty()) {
@@ -57,7 +57,7 @@ public class KotlinJavaScriptDecompiledTextConsistencyTest : TextConsistencyBase
         val metadata = KotlinJavascriptMetadataUtils.loadMetadata(stdlibJar)
         assert(metadata.size() == 1)
 
-        val provider = KotlinJavascriptSerializationUtil.createPackageFragmentProvider(module, metadata[0].body, LockBasedStorageManager())
+        val provider = KotlinJavascriptSerializationUtil.createPackageFragmentProvider(module, metadata[0], LockBasedStorageManager())
                 .sure { "No package fragment provider was created" }
 
         module.initialize(provider)
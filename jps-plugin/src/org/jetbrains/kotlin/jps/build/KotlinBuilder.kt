@@ -156,12 +156,17 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
 
         val project = projectDescriptor.project
 
-        val lookupTracker =
+        val testLookupTracker =
                 project.container.getChild(LOOKUP_TRACKER)?.let {
                     assert("true".equals(System.getProperty("kotlin.jps.tests"), ignoreCase = true)) { "LOOKUP_TRACKER allowed only for jps tests" }
                     it.data
                 } ?: LookupTracker.DO_NOTHING
 
+        val isJsModule = JpsUtils.isJsKotlinModule(chunk.representativeTarget())
+        val lookupTracker =
+                if (IncrementalCacheImpl.isLookupTrackingEnabled() && IncrementalCompilation.isEnabled() && !isJsModule) LookupTrackerImpl(testLookupTracker)
+                else testLookupTracker
+
         val incrementalCaches = getIncrementalCaches(chunk, context)
         val environment = createCompileEnvironment(incrementalCaches, lookupTracker, context)
         if (!environment.success()) {
@@ -200,12 +205,14 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
 
         context.checkCanceled()
 
-        val isJsModule = JpsUtils.isJsKotlinModule(chunk.representativeTarget())
         val changesInfo: ChangesInfo = when {
             isJsModule -> ChangesInfo.NO_CHANGES
             else -> {
                 val generatedClasses = generatedFiles.filterIsInstance<GeneratedJvmClass>()
                 val info = updateKotlinIncrementalCache(compilationErrors, incrementalCaches, generatedFiles, chunk)
+                if (lookupTracker is LookupTrackerImpl && !compilationErrors) {
+                    updateLookups(chunk, dirtyFilesHolder, incrementalCaches, filesToCompile, lookupTracker)
+                }
                 updateJavaMappings(chunk, compilationErrors, context, dirtyFilesHolder, filesToCompile, generatedClasses)
                 info
             }
@@ -222,7 +229,8 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
         if (!IncrementalCompilation.isEnabled()) return OK
 
         val caches = filesToCompile.keySet().map { incrementalCaches[it]!! }
-        val marker = ChangesProcessor(context, chunk, allCompiledFiles, caches)
+        val chunkCaches = chunk.targets.map { incrementalCaches[it]!! }
+        val marker = ChangesProcessor(context, chunk, allCompiledFiles, caches, chunkCaches)
         marker.processChanges(changesInfo)
         return ADDITIONAL_PASS_REQUIRED
     }
@@ -231,7 +239,8 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
             val context: CompileContext,
             val chunk: ModuleChunk,
             val allCompiledFiles: MutableSet<File>,
-            val caches: List<IncrementalCacheImpl>
+            val caches: List<IncrementalCacheImpl>,
+            val chunkCaches: List<IncrementalCacheImpl>
     ) {
         fun processChanges(changesInfo: ChangesInfo) {
             changesInfo.doProcessChanges()
@@ -245,6 +254,7 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
                 }
                 constantsChanged -> recompileOtherAndDependents()
                 protoChanged -> recompileOtherKotlinInChunk()
+                changedMembers.isNotEmpty() -> recompileAffectedByLookups(changedMembers)
             }
 
             if (inlineChanged) {
@@ -278,6 +288,19 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
             }
         }
 
+        private fun recompileAffectedByLookups(changedMembers: Collection<LookupSymbol>) {
+            val affectedFiles = THashSet(FileUtil.FILE_HASHING_STRATEGY)
+            chunkCaches.forEach { affectedFiles.addAll(it.getFilesAffectedByLookups(changedMembers)) }
+
+            LOG.debug("Files affected by changed members $changedMembers: $affectedFiles")
+
+            for (file in affectedFiles) {
+                if (file !in allCompiledFiles) {
+                    FSOperations.markDirty(context, CompilationRound.NEXT, file)
+                }
+            }
+        }
+
         private fun recompileOtherKotlinInChunk() {
             FSOperations.markDirty(context, chunk, { file ->
                 KotlinSourceFileCollector.isKotlinSourceFile(file) && file !in allCompiledFiles
@@ -440,6 +463,19 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
         JavaBuilderUtil.updateMappings(context, delta, dirtyFilesHolder, chunk, allCompiled, compiledInThisRound)
     }
 
+    private fun updateLookups(
+            chunk: ModuleChunk,
+            dirtyFilesHolder: DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget>,
+            incrementalCaches: Map<ModuleBuildTarget, IncrementalCacheImpl>,
+            filesToCompile: MultiMap<ModuleBuildTarget, File>,
+            lookupTracker: LookupTrackerImpl
+    ) {
+        for (target in chunk.targets) {
+            val removedFiles = dirtyFilesHolder.getRemovedFiles(target).map { File(it) }
+            incrementalCaches[target]!!.saveLookups(filesToCompile[target], removedFiles, lookupTracker)
+        }
+    }
+
     private fun registerOutputItems(outputConsumer: ModuleLevelBuilder.OutputConsumer, generatedFiles: List<GeneratedFile>) {
         for (generatedFile in generatedFiles) {
             outputConsumer.registerOutputFile(generatedFile.target, generatedFile.outputFile, generatedFile.sourceFiles.map { it.getPath() })
@@ -27,16 +27,23 @@ class CacheFormatVersion(targetDataRoot: File) {
         // Change this when incremental cache format changes
         private val INCREMENTAL_CACHE_OWN_VERSION = 6
 
-        private val CACHE_FORMAT_VERSION =
-                INCREMENTAL_CACHE_OWN_VERSION * 1000000 +
-                JvmAbi.VERSION.major * 1000 +
-                JvmAbi.VERSION.minor
+        // the maps of the single file storage can't be read as separate files and vice versa
+        private val STORAGE_KIND = if (IncrementalCacheImpl.USE_SINGLE_FILE_STORAGE) 1 else 0
 
         private val FORMAT_VERSION_FILE_PATH: String = "$CACHE_DIRECTORY_NAME/format-version.txt"
     }
 
     private val file = File(targetDataRoot, FORMAT_VERSION_FILE_PATH)
 
+    // the lookup maps are only created when lookups are tracked
+    private val lookupsKind = if (IncrementalCacheImpl.isLookupTrackingEnabled()) 2 else 0
+
+    private val cacheFormatVersion =
+            (STORAGE_KIND + lookupsKind) * 100000000 +
+            INCREMENTAL_CACHE_OWN_VERSION * 1000000 +
+            JvmAbi.VERSION.major * 1000 +
+            JvmAbi.VERSION.minor
+
     fun isIncompatible(): Boolean {
         if (!file.exists()) return false
 
@@ -44,8 +51,8 @@ class CacheFormatVersion(targetDataRoot: File) {
 
         val versionNumber = file.readText().toInt()
 
-        if (versionNumber != CACHE_FORMAT_VERSION) {
-            KotlinBuilder.LOG.info("Incompatible incremental cache version, expected $CACHE_FORMAT_VERSION, actual $versionNumber")
+        if (versionNumber != cacheFormatVersion) {
+            KotlinBuilder.LOG.info("Incompatible incremental cache version, expected $cacheFormatVersion, actual $versionNumber")
             return true
         }
 
@@ -57,7 +64,7 @@ class CacheFormatVersion(targetDataRoot: File) {
             file.parentFile.mkdirs()
         }
 
-        file.writeText("$CACHE_FORMAT_VERSION")
+        file.writeText("$cacheFormatVersion")
     }
 
     fun clean() {
@@ -31,12 +31,14 @@ import org.jetbrains.kotlin.jps.build.GeneratedJvmClass
 import org.jetbrains.kotlin.jps.build.KotlinBuilder
 import org.jetbrains.kotlin.jps.incremental.storage.BasicMap
 import org.jetbrains.kotlin.jps.incremental.storage.BasicStringMap
+import org.jetbrains.kotlin.jps.incremental.storage.SingleFileStorage
 import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass
 import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils
 import org.jetbrains.kotlin.load.kotlin.header.*
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCache
 import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartProto
+import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName.byInternalName
@@ -75,12 +77,24 @@ public class IncrementalCacheImpl(
         val DIRTY_OUTPUT_CLASSES = "dirty-output-classes"
         val DIRTY_INLINE_FUNCTIONS = "dirty-inline-functions"
         val INLINED_TO = "inlined-to"
+        val LOOKUPS = "lookups"
+        val FILE_LOOKUPS = "file-lookups"
 
         private val MODULE_MAPPING_FILE_NAME = "." + ModuleMapping.MAPPING_FILE_EXT
+
+        private val SINGLE_FILE_STORAGE_NAME = "storage.log"
+
+        // all maps are kept in one file instead of a PersistentHashMap per map
+        val USE_SINGLE_FILE_STORAGE = "true".equals(System.getProperty("kotlin.incremental.single.file.storage"), ignoreCase = true)
+
+        // lookups made by the compiled files are saved, and when members change only the files which looked them up are recompiled
+        fun isLookupTrackingEnabled(): Boolean =
+                "true".equals(System.getProperty("kotlin.incremental.lookups"), ignoreCase = true)
     }
 
     private val baseDir = File(targetDataRoot, CACHE_DIRECTORY_NAME)
     private val maps = arrayListOf<BasicMap<*, *>>()
+    private val singleFileStorage = if (USE_SINGLE_FILE_STORAGE) SingleFileStorage(File(baseDir, SINGLE_FILE_STORAGE_NAME)) else null
 
     private val String.storageFile: File
         get() = File(baseDir, this + "." + CACHE_EXTENSION)
@@ -101,6 +115,8 @@ public class IncrementalCacheImpl(
     // TODO: can be removed?
     private val dirtyInlineFunctionsMap = registerMap(DirtyInlineFunctionsMap(DIRTY_INLINE_FUNCTIONS.storageFile))
     private val inlinedTo = registerMap(InlineFunctionsFilesMap(INLINED_TO.storageFile))
+    private val lookupMap = if (isLookupTrackingEnabled()) registerMap(LookupMap(LOOKUPS.storageFile)) else null
+    private val fileLookupsMap = if (isLookupTrackingEnabled()) registerMap(FileLookupsMap(FILE_LOOKUPS.storageFile)) else null
 
     private val cacheFormatVersion = CacheFormatVersion(targetDataRoot)
     private val dependents = arrayListOf<IncrementalCacheImpl>()
@@ -116,7 +132,9 @@ public class IncrementalCacheImpl(
 
     @TestOnly
     public fun dump(): String {
-        return maps.map { it.dump() }.join("\n\n")
+        // lookups of classifiers and Java declarations are recorded only when they are compiled from sources,
+        // so the lookup maps after an incremental build differ from the ones after a rebuild
+        return maps.filter { it != lookupMap && it != fileLookupsMap }.map { it.dump() }.join("\n\n")
     }
 
     public fun markOutputClassesDirty(removedAndCompiledSources: List<File>) {
@@ -159,6 +177,48 @@ public class IncrementalCacheImpl(
         return result.map { File(it) }
     }
 
+    /**
+     * Replaces the lookups saved for the compiled and removed files with the lookups made by the files compiled in this round.
+     */
+    public fun saveLookups(compiledFiles: Collection<File>, removedFiles: Collection<File>, lookupTracker: LookupTrackerImpl) {
+        if (lookupMap == null || fileLookupsMap == null) return
+
+        val removedLookups = HashMap<LookupSymbol, MutableSet<String>>()
+        val addedLookups = HashMap<LookupSymbol, MutableSet<String>>()
+
+        for (file in compiledFiles + removedFiles) {
+            val path = FileUtil.toSystemIndependentName(file.absolutePath)
+            fileLookupsMap[path].forEach { removedLookups.getOrPut(it) { HashSet() }.add(path) }
+        }
+
+        for (file in compiledFiles) {
+            val path = FileUtil.toSystemIndependentName(file.absolutePath)
+            val lookups = lookupTracker.getLookups(path)
+            lookups.forEach { addedLookups.getOrPut(it) { HashSet() }.add(path) }
+            fileLookupsMap.put(path, lookups)
+        }
+
+        for (file in removedFiles) {
+            fileLookupsMap.remove(FileUtil.toSystemIndependentName(file.absolutePath))
+        }
+
+        for (symbol in removedLookups.keySet() + addedLookups.keySet()) {
+            lookupMap.update(symbol, removedLookups[symbol].orEmpty(), addedLookups[symbol].orEmpty())
+        }
+    }
+
+    /**
+     * @return files which looked up the given symbols
+     */
+    public fun getFilesAffectedByLookups(symbols: Collection<LookupSymbol>): Collection<File> {
+        if (lookupMap == null) return emptyList()
+
+        val result = THashSet(FileUtil.PATH_HASHING_STRATEGY)
+        symbols.forEach { result.addAll(lookupMap[it]) }
+
+        return result.map { File(it) }.filter { it.exists() }
+    }
+
     override fun getClassFilePath(internalClassName: String): String {
         return File(outputDir, "$internalClassName.class").canonicalPath
     }
@@ -295,32 +355,48 @@ public class IncrementalCacheImpl(
     }
 
     override fun flush(memoryCachesOnly: Boolean) {
+        if (singleFileStorage != null) {
+            if (!memoryCachesOnly) {
+                singleFileStorage.flush()
+            }
+            return
+        }
         maps.forEach { it.flush(memoryCachesOnly) }
     }
 
     public override fun clean() {
-        maps.forEach { it.clean() }
+        if (singleFileStorage != null) {
+            singleFileStorage.clean()
+        }
+        else {
+            maps.forEach { it.clean() }
+        }
         cacheFormatVersion.clean()
     }
 
     public override fun close() {
+        if (singleFileStorage != null) {
+            singleFileStorage.close()
+            return
+        }
         maps.forEach { it.close () }
     }
 
-    private inner class ProtoMap(storageFile: File) : BasicStringMap<ProtoMapValue>(storageFile, ProtoMapValueExternalizer) {
+    private inner class ProtoMap(storageFile: File) : BasicStringMap<ProtoMapValue>(storageFile, ProtoMapValueExternalizer, singleFileStorage) {
 
         public fun process(kotlinClass: LocalFileKotlinClass, isPackage: Boolean, checkChangesIsOpenPart: Boolean = true): ChangesInfo {
             val header = kotlinClass.classHeader
             val bytes = BitEncoding.decodeBytes(header.annotationData!!)
-            return put(kotlinClass.className, bytes, header.strings!!, isPackage, checkChangesIsOpenPart)
+            return put(kotlinClass.className, bytes, header.strings!!, isPackage, checkChangesIsOpenPart, kotlinClass.classId)
         }
 
         public fun process(className: JvmClassName, data: ByteArray, strings: Array<String>, isPackage: Boolean, checkChangesIsOpenPart: Boolean): ChangesInfo {
-            return put(className, data, strings, isPackage, checkChangesIsOpenPart)
+            return put(className, data, strings, isPackage, checkChangesIsOpenPart, classId = null)
         }
 
         private fun put(
-                className: JvmClassName, bytes: ByteArray, strings: Array<String>, isPackage: Boolean, checkChangesIsOpenPart: Boolean
+                className: JvmClassName, bytes: ByteArray, strings: Array<String>, isPackage: Boolean, checkChangesIsOpenPart: Boolean,
+                classId: ClassId?
         ): ChangesInfo {
             val key = className.internalName
             val oldData = storage[key]
@@ -333,11 +409,26 @@ public class IncrementalCacheImpl(
                 storage[key] = data
             }
 
-            return ChangesInfo(protoChanged = oldData == null ||
-                                              !checkChangesIsOpenPart ||
-                                              difference(oldData, data) != DifferenceKind.NONE)
+            if (oldData == null || !checkChangesIsOpenPart) return ChangesInfo(protoChanged = true)
+
+            val difference = difference(oldData, data)
+            return when {
+                difference == DifferenceKind.NONE -> ChangesInfo.NO_CHANGES
+                difference is DifferenceKind.MEMBERS && lookupMap != null && classId != null ->
+                    ChangesInfo(changedMembers = difference.names.mapTo(HashSet()) { lookupSymbol(classId, isPackage, it) })
+                else -> ChangesInfo(protoChanged = true)
+            }
         }
 
+        private fun lookupSymbol(classId: ClassId, isPackage: Boolean, memberName: String): LookupSymbol =
+                when {
+                    isPackage -> LookupSymbol(memberName, classId.packageFqName.asString())
+                    // constructors are resolved by the name of the class
+                    memberName == "<init>" && classId.isNestedClass -> LookupSymbol(classId.shortClassName.asString(), LookupSymbol.CLASS_MEMBER_SCOPE)
+                    memberName == "<init>" -> LookupSymbol(classId.shortClassName.asString(), classId.packageFqName.asString())
+                    else -> LookupSymbol(memberName, LookupSymbol.CLASS_MEMBER_SCOPE)
+                }
+
         public fun contains(className: JvmClassName): Boolean =
                 className.internalName in storage
 
@@ -353,7 +444,7 @@ public class IncrementalCacheImpl(
         }
     }
 
-    private inner class ConstantsMap(storageFile: File) : BasicStringMap<Map<String, Any>>(storageFile, ConstantsMapExternalizer) {
+    private inner class ConstantsMap(storageFile: File) : BasicStringMap<Map<String, Any>>(storageFile, ConstantsMapExternalizer, singleFileStorage) {
         private fun getConstantsMap(bytes: ByteArray): Map<String, Any>? {
             val result = HashMap<String, Any>()
 
@@ -459,7 +550,7 @@ public class IncrementalCacheImpl(
         }
     }
 
-    private inner class InlineFunctionsMap(storageFile: File) : BasicStringMap<Map<String, Long>>(storageFile, StringToLongMapExternalizer) {
+    private inner class InlineFunctionsMap(storageFile: File) : BasicStringMap<Map<String, Long>>(storageFile, StringToLongMapExternalizer, singleFileStorage) {
         private fun getInlineFunctionsMap(bytes: ByteArray): Map<String, Long> {
             val result = HashMap<String, Long>()
 
@@ -535,7 +626,7 @@ public class IncrementalCacheImpl(
                 value.dumpMap { java.lang.Long.toHexString(it) }
     }
 
-    private inner class PackagePartMap(storageFile: File) : BasicStringMap<Boolean>(storageFile, BooleanDataDescriptor.INSTANCE) {
+    private inner class PackagePartMap(storageFile: File) : BasicStringMap<Boolean>(storageFile, BooleanDataDescriptor.INSTANCE, singleFileStorage) {
         public fun addPackagePart(className: JvmClassName) {
             storage[className.internalName] = true
         }
@@ -550,7 +641,7 @@ public class IncrementalCacheImpl(
         override fun dumpValue(value: Boolean) = ""
     }
 
-    private inner class MultifileClassFacadeMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, StringListExternalizer) {
+    private inner class MultifileClassFacadeMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, StringListExternalizer, singleFileStorage) {
         public fun add(facadeName: JvmClassName, partNames: List<String>) {
             storage[facadeName.internalName] = partNames
         }
@@ -564,7 +655,7 @@ public class IncrementalCacheImpl(
         override fun dumpValue(value: List<String>): String = value.toString()
     }
 
-    private inner class MultifileClassPartMap(storageFile: File) : BasicStringMap<String>(storageFile, EnumeratorStringDescriptor.INSTANCE) {
+    private inner class MultifileClassPartMap(storageFile: File) : BasicStringMap<String>(storageFile, EnumeratorStringDescriptor.INSTANCE, singleFileStorage) {
         public fun add(partName: String, facadeName: String) {
             storage[partName] = facadeName
         }
@@ -580,7 +671,7 @@ public class IncrementalCacheImpl(
         override fun dumpValue(value: String): String = value
     }
 
-    private inner class SourceToClassesMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, PathStringDescriptor.INSTANCE, StringListExternalizer) {
+    private inner class SourceToClassesMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, PathStringDescriptor.INSTANCE, StringListExternalizer, singleFileStorage) {
         public fun clearOutputsForSource(sourceFile: File) {
             storage.remove(sourceFile.absolutePath)
         }
@@ -595,7 +686,7 @@ public class IncrementalCacheImpl(
         override fun dumpValue(value: List<String>) = value.toString()
     }
 
-    private inner class DirtyOutputClassesMap(storageFile: File) : BasicStringMap<Boolean>(storageFile, BooleanDataDescriptor.INSTANCE) {
+    private inner class DirtyOutputClassesMap(storageFile: File) : BasicStringMap<Boolean>(storageFile, BooleanDataDescriptor.INSTANCE, singleFileStorage) {
         public fun markDirty(className: String) {
             storage[className] = true
         }
@@ -613,7 +704,7 @@ public class IncrementalCacheImpl(
         override fun dumpValue(value: Boolean) = ""
     }
 
-    private inner class DirtyInlineFunctionsMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, StringListExternalizer) {
+    private inner class DirtyInlineFunctionsMap(storageFile: File) : BasicStringMap<List<String>>(storageFile, StringListExternalizer, singleFileStorage) {
         public fun getEntries(): Map<JvmClassName, List<String>> =
             storage.keys.toMap(JvmClassName::byInternalName) { storage[it]!! }
 
@@ -626,6 +717,57 @@ public class IncrementalCacheImpl(
     }
 
 
+    /**
+     * Mapping: lookupSymbol->(sourceFiles)
+     *
+     * Where source files are paths to kotlin sources which looked up the symbol
+     */
+    private inner class LookupMap(storageFile: File) : BasicMap<LookupSymbol, Collection<String>>(storageFile, LookupSymbolKeyDescriptor, PathCollectionExternalizer, singleFileStorage) {
+        public fun update(symbol: LookupSymbol, removedPaths: Collection<String>, addedPaths: Collection<String>) {
+            val paths = THashSet(FileUtil.PATH_HASHING_STRATEGY)
+            storage[symbol]?.let { paths.addAll(it) }
+            paths.removeAll(removedPaths)
+            paths.addAll(addedPaths)
+
+            if (paths.isEmpty()) {
+                storage.remove(symbol)
+            }
+            else {
+                storage[symbol] = paths
+            }
+        }
+
+        public fun get(symbol: LookupSymbol): Collection<String> =
+                storage[symbol] ?: emptySet()
+
+        override fun dumpKey(key: LookupSymbol): String =
+                "(${key.scope}, ${key.name})"
+
+        override fun dumpValue(value: Collection<String>) =
+                value.dumpCollection()
+    }
+
+    /**
+     * Mapping: sourceFile->(lookupSymbols)
+     *
+     * Keeps the lookups of each source file to remove them from [LookupMap] when the file is recompiled or removed
+     */
+    private inner class FileLookupsMap(storageFile: File) : BasicStringMap<Collection<LookupSymbol>>(storageFile, PathStringDescriptor.INSTANCE, LookupSymbolCollectionExternalizer, singleFileStorage) {
+        public fun get(sourcePath: String): Collection<LookupSymbol> =
+                storage[sourcePath] ?: emptySet()
+
+        public fun put(sourcePath: String, symbols: Collection<LookupSymbol>) {
+            storage[sourcePath] = symbols
+        }
+
+        public fun remove(sourcePath: String) {
+            storage.remove(sourcePath)
+        }
+
+        override fun dumpValue(value: Collection<LookupSymbol>) =
+                value.dumpCollection()
+    }
+
     /**
      * Mapping: (sourceFile+inlineFunction)->(targetFiles)
      *
@@ -634,7 +776,7 @@ public class IncrementalCacheImpl(
      *  * inlineFunction - jvmSignature of some inline function in source file
      *  * target files - collection of files inlineFunction has been inlined to
      */
-    private inner class InlineFunctionsFilesMap(storageFile: File) : BasicMap<PathFunctionPair, Collection<String>>(storageFile, PathFunctionPairKeyDescriptor, PathCollectionExternalizer) {
+    private inner class InlineFunctionsFilesMap(storageFile: File) : BasicMap<PathFunctionPair, Collection<String>>(storageFile, PathFunctionPairKeyDescriptor, PathCollectionExternalizer, singleFileStorage) {
         public fun add(sourcePath: String, jvmSignature: String, targetPath: String) {
             val key = PathFunctionPair(sourcePath, jvmSignature)
             storage.append(key) { out ->
@@ -659,7 +801,9 @@ data class ChangesInfo(
         public val protoChanged: Boolean = false,
         public val constantsChanged: Boolean = false,
         public val inlineChanged: Boolean = false,
-        public val inlineAdded: Boolean = false
+        public val inlineAdded: Boolean = false,
+        // members changed without changing signatures of the classes, only reported when lookups are tracked
+        public val changedMembers: Set<LookupSymbol> = emptySet()
 ) {
     companion object {
         public val NO_CHANGES: ChangesInfo = ChangesInfo()
@@ -669,7 +813,8 @@ data class ChangesInfo(
             ChangesInfo(protoChanged || other.protoChanged,
                         constantsChanged || other.constantsChanged,
                         inlineChanged || other.inlineChanged,
-                        inlineAdded || other.inlineAdded)
+                        inlineAdded || other.inlineAdded,
+                        if (other.changedMembers.isEmpty()) changedMembers else changedMembers + other.changedMembers)
 }
 
 
@@ -830,6 +975,42 @@ private object PathFunctionPairKeyDescriptor : KeyDescriptor<PathFunctionPair> {
 
 }
 
+private object LookupSymbolKeyDescriptor : KeyDescriptor<LookupSymbol> {
+    override fun getHashCode(value: LookupSymbol): Int =
+            value.hashCode()
+
+    override fun isEqual(val1: LookupSymbol, val2: LookupSymbol): Boolean =
+            val1 == val2
+
+    override fun read(`in`: DataInput): LookupSymbol {
+        val name = IOUtil.readUTF(`in`)
+        val scope = IOUtil.readUTF(`in`)
+        return LookupSymbol(name, scope)
+    }
+
+    override fun save(out: DataOutput, value: LookupSymbol) {
+        IOUtil.writeUTF(out, value.name)
+        IOUtil.writeUTF(out, value.scope)
+    }
+}
+
+private object LookupSymbolCollectionExternalizer : DataExternalizer<Collection<LookupSymbol>> {
+    override fun save(out: DataOutput, value: Collection<LookupSymbol>) {
+        for (symbol in value) {
+            LookupSymbolKeyDescriptor.save(out, symbol)
+        }
+    }
+
+    override fun read(`in`: DataInput): Collection<LookupSymbol> {
+        val result = HashSet<LookupSymbol>()
+        val stream = `in` as DataInputStream
+        while (stream.available() > 0) {
+            result.add(LookupSymbolKeyDescriptor.read(stream))
+        }
+        return result
+    }
+}
+
 private object ProtoMapValueExternalizer : DataExternalizer<ProtoMapValue> {
     override fun save(out: DataOutput, value: ProtoMapValue) {
         out.writeBoolean(value.isPackageFacade)
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental
+
+import org.jetbrains.kotlin.incremental.components.LookupTracker
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.util.*
+
+/**
+ * A name looked up in a scope, the unit of dependency between source files used to find the files affected by a change.
+ *
+ * Package members are identified by the package fq name. A member of a class is usually looked up in the scope of the
+ * receiver class, which may be any subclass of the class declaring it, so all class members share [CLASS_MEMBER_SCOPE]
+ * and are matched by name only.
+ */
+data class LookupSymbol(val name: String, val scope: String) : Comparable<LookupSymbol> {
+    companion object {
+        val CLASS_MEMBER_SCOPE = "<class member>"
+    }
+
+    override fun compareTo(other: LookupSymbol): Int {
+        val scopeComp = scope.compareTo(other.scope)
+
+        if (scopeComp != 0) return scopeComp
+
+        return name.compareTo(other.name)
+    }
+}
+
+/**
+ * Collects the lookups made by the compiled files, so that they can be saved to the incremental caches after the compilation.
+ */
+class LookupTrackerImpl(private val delegate: LookupTracker) : LookupTracker {
+    private val lookups = HashMap<String, MutableSet<LookupSymbol>>()
+
+    override val requiresLookupLineAndColumn: Boolean
+        get() = delegate.requiresLookupLineAndColumn
+
+    // the daemon delivers lookups on RMI threads
+    @Synchronized
+    override fun record(
+            lookupContainingFile: String,
+            lookupLine: Int?,
+            lookupColumn: Int?,
+            scopeFqName: String,
+            scopeKind: ScopeKind,
+            name: String
+    ) {
+        val scope = if (scopeKind == ScopeKind.PACKAGE) scopeFqName else LookupSymbol.CLASS_MEMBER_SCOPE
+        lookups.getOrPut(lookupContainingFile) { HashSet() }.add(LookupSymbol(name, scope))
+
+        delegate.record(lookupContainingFile, lookupLine, lookupColumn, scopeFqName, scopeKind, name)
+    }
+
+    /**
+     * @return lookups made by the given file, the path is system independent
+     */
+    @Synchronized
+    fun getLookups(path: String): Collection<LookupSymbol> = lookups[path].orEmpty()
+}
@@ -26,9 +26,12 @@ import java.io.File
 abstract class BasicMap<K : Comparable<K>, V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<K>,
-        valueExternalizer: DataExternalizer<V>
+        valueExternalizer: DataExternalizer<V>,
+        singleFileStorage: SingleFileStorage? = null
 ) {
-    protected val storage = LazyStorage(storageFile, keyDescriptor, valueExternalizer)
+    protected val storage: LazyStorage<K, V> =
+            singleFileStorage?.createMap(storageFile.name, keyDescriptor, valueExternalizer)
+            ?: PersistentHashMapStorage(storageFile, keyDescriptor, valueExternalizer)
 
     fun clean() {
         storage.clean()
@@ -67,12 +70,14 @@ abstract class BasicMap<K : Comparable<K>, V>(
 public abstract class BasicStringMap<V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<String>,
-        valueExternalizer: DataExternalizer<V>
-) : BasicMap<String, V>(storageFile, keyDescriptor, valueExternalizer) {
+        valueExternalizer: DataExternalizer<V>,
+        singleFileStorage: SingleFileStorage? = null
+) : BasicMap<String, V>(storageFile, keyDescriptor, valueExternalizer, singleFileStorage) {
     public constructor(
             storageFile: File,
-            valueExternalizer: DataExternalizer<V>
-    ) : this(storageFile, EnumeratorStringDescriptor.INSTANCE, valueExternalizer)
+            valueExternalizer: DataExternalizer<V>,
+            singleFileStorage: SingleFileStorage? = null
+    ) : this(storageFile, EnumeratorStringDescriptor.INSTANCE, valueExternalizer, singleFileStorage)
 
     override fun dumpKey(key: String): String = key
 }
\ No newline at end of file
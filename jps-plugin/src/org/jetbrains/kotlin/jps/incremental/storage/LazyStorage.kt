@@ -16,98 +16,27 @@
 
 package org.jetbrains.kotlin.jps.incremental.storage
 
-import com.intellij.util.io.DataExternalizer
-import com.intellij.util.io.KeyDescriptor
-import com.intellij.util.io.PersistentHashMap
 import java.io.DataOutput
-import java.io.File
-import java.io.IOException
-
 
 /**
- * It's lazy in a sense that PersistentHashMap is created only on write
+ * Storage behind [BasicMap], which doesn't touch the disk until it's needed
  */
-internal class LazyStorage<K, V>(
-        private val storageFile: File,
-        private val keyDescriptor: KeyDescriptor<K>,
-        private val valueExternalizer: DataExternalizer<V>
-) {
-    @Volatile
-    private var storage: PersistentHashMap<K, V>? = null
-
-    @Synchronized
-    private fun getStorageIfExists(): PersistentHashMap<K, V>? {
-        if (storage != null) return storage
-
-        if (storageFile.exists()) {
-            storage = createMap()
-            return storage
-        }
-
-        return null
-    }
-
-    @Synchronized
-    private fun getStorageOrCreateNew(): PersistentHashMap<K, V> {
-        if (storage == null) {
-            storage = createMap()
-        }
-
-        return storage!!
-    }
-
+internal interface LazyStorage<K, V> {
     val keys: Collection<K>
-        get() = getStorageIfExists()?.allKeysWithExistingMapping ?: listOf()
-
-    fun contains(key: K): Boolean =
-            getStorageIfExists()?.containsMapping(key) ?: false
-
-    fun get(key: K): V? =
-            getStorageIfExists()?.get(key)
-
-    fun set(key: K, value: V) {
-        getStorageOrCreateNew().put(key, value)
-    }
 
-    fun remove(key: K) {
-        getStorageIfExists()?.remove(key)
-    }
+    fun contains(key: K): Boolean
 
-    fun append(key: K, append: (DataOutput)->Unit) {
-        getStorageOrCreateNew().appendData(key, append)
-    }
+    operator fun get(key: K): V?
 
-    @Synchronized
-    fun clean() {
-        try {
-            storage?.close()
-        }
-        catch (ignored: IOException) {
-        }
+    operator fun set(key: K, value: V)
 
-        PersistentHashMap.deleteFilesStartingWith(storageFile)
-        storage = null
-    }
+    fun remove(key: K)
 
-    @Synchronized
-    fun flush(memoryCachesOnly: Boolean) {
-        val existingStorage = storage ?: return
+    fun append(key: K, append: (DataOutput)->Unit)
 
-        if (memoryCachesOnly) {
-            if (existingStorage.isDirty) {
-                existingStorage.dropMemoryCaches()
-            }
-        }
-        else {
-            existingStorage.force()
-        }
-    }
+    fun clean()
 
-    @Synchronized
-    fun close() {
-        storage?.close()
-    }
+    fun flush(memoryCachesOnly: Boolean)
 
-    private fun createMap(): PersistentHashMap<K, V> =
-            PersistentHashMap(storageFile, keyDescriptor, valueExternalizer)
+    fun close()
 }
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental.storage
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import gnu.trove.THashMap
+import gnu.trove.TObjectHashingStrategy
+import org.jetbrains.jps.builders.storage.BuildDataCorruptedException
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.*
+import java.util.zip.CRC32
+
+/**
+ * Keeps the data of several maps in a single file.
+ *
+ * The file is a log of batches of changes. Every flush appends the changes made since the previous flush as one batch, which is
+ * protected by a checksum. A batch which was not written completely (e.g. when the build process was killed) makes the whole
+ * file invalid: the storage is shared by all the maps, so the data can't be trusted anymore and the caches are rebuilt. The file is read with one memory-mapped read on the first access to any of the maps, and the data is
+ * kept in memory afterwards, so opening and flushing the storage doesn't depend on the number of maps in it.
+ * When the log becomes much larger than the data, it is compacted into a new file which atomically replaces the old one.
+ */
+internal class SingleFileStorage(private val file: File) {
+    companion object {
+        private val MAGIC = 0x4B545354 // "KTST"
+        private val VERSION = 1
+        private val HEADER_SIZE = 8
+        // length and checksum
+        private val BATCH_HEADER_SIZE = 12
+
+        private val COMPACTION_MIN_SIZE = 1L shl 20
+
+        private val PUT: Byte = 0
+        private val APPEND: Byte = 1
+        private val REMOVE: Byte = 2
+        private val CLEAR: Byte = 3
+    }
+
+    private class Record(val mapName: String, val operation: Byte, val key: ByteArray?, val value: ByteArray?)
+
+    private val maps = LinkedHashMap<String, MapStorage<*, *>>()
+
+    // records from the file for the maps which haven't been accessed yet
+    private var loadedRecords: MutableMap<String, MutableList<Record>>? = null
+    private val pendingRecords = ArrayList<Record>()
+
+    // the size of the valid part of the file
+    private var fileSize = 0L
+
+    fun <K, V> createMap(name: String, keyDescriptor: KeyDescriptor<K>, valueExternalizer: DataExternalizer<V>): LazyStorage<K, V> {
+        synchronized(this) {
+            assert(!maps.containsKey(name)) { "Map $name is already registered in $file" }
+            val map = MapStorage(name, keyDescriptor, valueExternalizer)
+            maps.put(name, map)
+            return map
+        }
+    }
+
+    @Synchronized
+    fun flush() {
+        if (pendingRecords.isEmpty()) return
+
+        FileUtil.createParentDirs(file)
+        RandomAccessFile(file, "rw").use { output ->
+            if (fileSize == 0L) {
+                output.setLength(0)
+                output.writeInt(MAGIC)
+                output.writeInt(VERSION)
+                fileSize = HEADER_SIZE.toLong()
+            }
+            else {
+                // drops the tail of a batch which failed to be written, if any
+                output.setLength(fileSize)
+            }
+            output.seek(fileSize)
+            val batch = encodeBatch(pendingRecords)
+            output.write(batch)
+            output.channel.force(false)
+            fileSize += batch.size()
+        }
+        pendingRecords.clear()
+
+        compactIfNeeded()
+    }
+
+    @Synchronized
+    fun clean() {
+        FileUtil.delete(file)
+        pendingRecords.clear()
+        loadedRecords = hashMapOf()
+        fileSize = 0L
+        maps.values().forEach { it.clearInMemory() }
+    }
+
+    @Synchronized
+    fun close() {
+        flush()
+    }
+
+    private fun ensureLoaded(): MutableMap<String, MutableList<Record>> {
+        loadedRecords?.let { return it }
+
+        val records = hashMapOf<String, MutableList<Record>>()
+        if (!file.exists()) {
+            fileSize = 0L
+            loadedRecords = records
+            return records
+        }
+
+        try {
+            RandomAccessFile(file, "r").use { input ->
+                val buffer = input.channel.map(FileChannel.MapMode.READ_ONLY, 0, input.length())
+                if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw corrupted("unknown format")
+                }
+
+                while (buffer.hasRemaining()) {
+                    if (buffer.remaining() < BATCH_HEADER_SIZE) throw corrupted("incomplete batch at ${buffer.position()}")
+                    val length = buffer.getInt()
+                    val checksum = buffer.getLong()
+                    if (length < 0 || length > buffer.remaining()) throw corrupted("incomplete batch at ${buffer.position()}")
+
+                    val bytes = ByteArray(length)
+                    buffer.get(bytes)
+                    if (checksum(bytes) != checksum) throw corrupted("checksum mismatch at ${buffer.position()}")
+
+                    for (record in decodeBatch(bytes)) {
+                        records.getOrPut(record.mapName) { arrayListOf() }.add(record)
+                    }
+                }
+                fileSize = buffer.position().toLong()
+            }
+        }
+        catch (e: IOException) {
+            throw BuildDataCorruptedException(e)
+        }
+        loadedRecords = records
+        return records
+    }
+
+    private fun corrupted(reason: String) = BuildDataCorruptedException("$file is corrupted: $reason")
+
+    private fun compactIfNeeded() {
+        if (fileSize < COMPACTION_MIN_SIZE) return
+
+        val snapshot = ArrayList<Record>()
+        for (map in maps.values()) {
+            map.snapshotTo(snapshot)
+        }
+        // the maps which haven't been accessed are stored as they are
+        loadedRecords?.values()?.forEach { snapshot.addAll(it) }
+
+        val batch = encodeBatch(snapshot)
+        if (batch.size() * 2L > fileSize) return
+
+        val tempFile = File(file.path + ".tmp")
+        FileOutputStream(tempFile).use { output ->
+            output.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array())
+            output.write(batch)
+            // otherwise the rename may reach the disk before the data, and a crash would leave a truncated file
+            output.fd.sync()
+        }
+        FileUtil.rename(tempFile, file)
+        fileSize = HEADER_SIZE.toLong() + batch.size()
+    }
+
+    private fun encodeBatch(records: List<Record>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { output ->
+            output.writeInt(records.size())
+            for (record in records) {
+                output.writeUTF(record.mapName)
+                output.writeByte(record.operation.toInt())
+                if (record.key != null) output.writeByteArray(record.key)
+                if (record.value != null) output.writeByteArray(record.value)
+            }
+        }
+        val payload = bytes.toByteArray()
+
+        val buffer = ByteBuffer.allocate(BATCH_HEADER_SIZE + payload.size())
+        buffer.putInt(payload.size())
+        buffer.putLong(checksum(payload))
+        buffer.put(payload)
+        return buffer.array()
+    }
+
+    private fun decodeBatch(payload: ByteArray): List<Record> {
+        val input = DataInputStream(ByteArrayInputStream(payload))
+        val count = input.readInt()
+        val result = ArrayList<Record>(count)
+        for (i in 1..count) {
+            val mapName = input.readUTF()
+            val operation = input.readByte()
+            val key = if (operation != CLEAR) input.readByteArray() else null
+            val value = if (operation == PUT || operation == APPEND) input.readByteArray() else null
+            result.add(Record(mapName, operation, key, value))
+        }
+        return result
+    }
+
+    private fun checksum(bytes: ByteArray): Long {
+        val crc = CRC32()
+        crc.update(bytes)
+        return crc.value
+    }
+
+    private inner class MapStorage<K, V>(
+            private val name: String,
+            private val keyDescriptor: KeyDescriptor<K>,
+            private val valueExternalizer: DataExternalizer<V>
+    ) : LazyStorage<K, V> {
+        // values are kept serialized, the same way PersistentHashMap stores them, which also makes appending trivial
+        private var data: THashMap<K, ValueBuffer>? = null
+
+        private fun getData(): THashMap<K, ValueBuffer> {
+            data?.let { return it }
+
+            val result = THashMap<K, ValueBuffer>(object : TObjectHashingStrategy<K> {
+                override fun computeHashCode(key: K): Int = keyDescriptor.getHashCode(key)
+                override fun equals(key1: K, key2: K): Boolean = keyDescriptor.isEqual(key1, key2)
+            })
+            for (record in ensureLoaded().remove(name) ?: listOf<Record>()) {
+                when (record.operation) {
+                    CLEAR -> result.clear()
+                    REMOVE -> result.remove(readKey(record.key!!))
+                    PUT -> result.put(readKey(record.key!!), ValueBuffer(record.value!!))
+                    APPEND -> result.append(readKey(record.key!!), record.value!!)
+                }
+            }
+            data = result
+            return result
+        }
+
+        override val keys: Collection<K>
+            get() = synchronized(this@SingleFileStorage) { ArrayList(getData().keys) }
+
+        override fun contains(key: K): Boolean =
+                synchronized(this@SingleFileStorage) { getData().containsKey(key) }
+
+        override fun get(key: K): V? {
+            // appending never changes the bytes which are already in the buffer, so they can be read without the lock
+            val input = synchronized(this@SingleFileStorage) { getData()[key]?.openStream() } ?: return null
+            return valueExternalizer.read(input)
+        }
+
+        override fun set(key: K, value: V) {
+            val bytes = serialize { valueExternalizer.save(it, value) }
+            synchronized(this@SingleFileStorage) {
+                getData().put(key, ValueBuffer(bytes))
+                pendingRecords.add(Record(name, PUT, writeKey(key), bytes))
+            }
+        }
+
+        override fun remove(key: K) {
+            synchronized(this@SingleFileStorage) {
+                if (getData().remove(key) != null) {
+                    pendingRecords.add(Record(name, REMOVE, writeKey(key), null))
+                }
+            }
+        }
+
+        override fun append(key: K, append: (DataOutput) -> Unit) {
+            val bytes = serialize(append)
+            synchronized(this@SingleFileStorage) {
+                getData().append(key, bytes)
+                pendingRecords.add(Record(name, APPEND, writeKey(key), bytes))
+            }
+        }
+
+        override fun clean() {
+            synchronized(this@SingleFileStorage) {
+                if (getData().isEmpty()) return
+                getData().clear()
+                pendingRecords.add(Record(name, CLEAR, null, null))
+            }
+        }
+
+        override fun flush(memoryCachesOnly: Boolean) {
+            // all data is in memory, only the whole storage can be written
+            if (!memoryCachesOnly) {
+                this@SingleFileStorage.flush()
+            }
+        }
+
+        override fun close() {
+            this@SingleFileStorage.close()
+        }
+
+        fun clearInMemory() {
+            data = null
+        }
+
+        fun snapshotTo(records: MutableList<Record>) {
+            val data = data ?: return
+            for ((key, value) in data) {
+                records.add(Record(name, PUT, writeKey(key), value.toByteArray()))
+            }
+        }
+
+        private fun THashMap<K, ValueBuffer>.append(key: K, bytes: ByteArray) {
+            val value = get(key)
+            if (value != null) {
+                value.append(bytes)
+            }
+            else {
+                put(key, ValueBuffer(bytes))
+            }
+        }
+
+        private fun writeKey(key: K): ByteArray = serialize { keyDescriptor.save(it, key) }
+
+        private fun readKey(bytes: ByteArray): K = keyDescriptor.read(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+}
+
+/**
+ * A serialized value which grows geometrically, so that appending to it n times takes O(n) time in total.
+ */
+private class ValueBuffer(private var bytes: ByteArray) {
+    private var size = bytes.size()
+
+    fun append(more: ByteArray) {
+        if (size + more.size() > bytes.size()) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.size() * 2, size + more.size()))
+        }
+        System.arraycopy(more, 0, bytes, size, more.size())
+        size += more.size()
+    }
+
+    fun openStream(): DataInputStream = DataInputStream(ByteArrayInputStream(bytes, 0, size))
+
+    fun toByteArray(): ByteArray = if (size == bytes.size()) bytes else Arrays.copyOf(bytes, size)
+}
+
+private fun serialize(write: (DataOutput) -> Unit): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { write(it) }
+    return bytes.toByteArray()
+}
+
+private fun DataOutputStream.writeByteArray(bytes: ByteArray) {
+    writeInt(bytes.size())
+    write(bytes)
+}
+
+private fun DataInputStream.readByteArray(): ByteArray {
+    val bytes = ByteArray(readInt())
+    readFully(bytes)
+    return bytes
+}
@@ -60,7 +60,8 @@ import kotlin.test.fail
 public abstract class AbstractIncrementalJpsTest(
         private val allowNoFilesWithSuffixInTestData: Boolean = false,
         private val checkDumpsCaseInsensitively: Boolean = false,
-        private val allowNoBuildLogFileInTestData: Boolean = false
+        private val allowNoBuildLogFileInTestData: Boolean = false,
+        private val checkBuildLog: Boolean = true
 ) : JpsBuildTestCase() {
     companion object {
         val COMPILATION_FAILED = "COMPILATION FAILED"
@@ -276,7 +277,7 @@ public abstract class AbstractIncrementalJpsTest(
         val otherMakeResults = performModificationsAndMake(moduleNames)
 
         val buildLogFile = File(testDataDir, "build.log")
-        if (buildLogFile.exists() || !allowNoBuildLogFileInTestData) {
+        if (checkBuildLog && (buildLogFile.exists() || !allowNoBuildLogFileInTestData)) {
             val logs = otherMakeResults.joinToString("\n\n") { it.log }
             UsefulTestCase.assertSameLinesWithFile(buildLogFile.absolutePath, logs)
         }
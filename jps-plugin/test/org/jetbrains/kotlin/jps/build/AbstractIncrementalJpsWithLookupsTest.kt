@@ -0,0 +1,33 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.build
+
+/**
+ * Runs the incremental test data with lookup tracking enabled. Less files are recompiled than the build logs describe,
+ * so only the output and caches after the last make are compared with the ones after a rebuild.
+ */
+public abstract class AbstractIncrementalJpsWithLookupsTest : AbstractIncrementalJpsTest(checkBuildLog = false) {
+    override fun setUp() {
+        super.setUp()
+        System.setProperty("kotlin.incremental.lookups", "true")
+    }
+
+    override fun tearDown() {
+        System.clearProperty("kotlin.incremental.lookups")
+        super.tearDown()
+    }
+}
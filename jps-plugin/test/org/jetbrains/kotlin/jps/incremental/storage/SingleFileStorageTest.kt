@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental.storage
+
+import com.intellij.testFramework.UsefulTestCase
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.jps.builders.storage.BuildDataCorruptedException
+import org.jetbrains.kotlin.test.JetTestUtils
+import java.io.*
+import kotlin.properties.Delegates
+
+public class SingleFileStorageTest : UsefulTestCase() {
+    private var file: File by Delegates.notNull()
+
+    override fun setUp() {
+        super.setUp()
+        file = File(JetTestUtils.tmpDir("singleFileStorage"), "storage.log")
+    }
+
+    public fun testDataIsPersisted() {
+        with(SingleFileStorage(file)) {
+            val first = createStringMap("first")
+            val second = createStringMap("second")
+            first["a"] = "1"
+            first["b"] = "2"
+            second["a"] = "3"
+            first.remove("b")
+            second.append("a") { it.writeUTF("4") }
+            close()
+        }
+
+        with(SingleFileStorage(file)) {
+            val first = createStringMap("first")
+            val second = createStringMap("second")
+            assertEquals("1", first["a"])
+            assertNull(first["b"])
+            assertEquals(listOf("a"), first.keys.toList())
+            assertEquals("3", second["a"])
+        }
+    }
+
+    public fun testAppend() {
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            for (i in 1..100) {
+                map.append("a") { it.writeUTF("$i") }
+            }
+            close()
+        }
+
+        with(SingleFileStorage(file)) {
+            val map = createMap("map", EnumeratorStringDescriptor.INSTANCE, object : DataExternalizer<List<String>> {
+                override fun save(output: DataOutput, value: List<String>) = value.forEach { output.writeUTF(it) }
+                override fun read(input: DataInput): List<String> {
+                    val result = arrayListOf<String>()
+                    while ((input as DataInputStream).available() > 0) {
+                        result.add(input.readUTF())
+                    }
+                    return result
+                }
+            })
+            assertEquals((1..100).map { "$it" }, map["a"])
+        }
+    }
+
+    public fun testIncompleteBatchIsReported() {
+        with(SingleFileStorage(file)) {
+            createStringMap("map")["a"] = "1"
+            flush()
+        }
+        with(SingleFileStorage(file)) {
+            createStringMap("map")["b"] = "2"
+            flush()
+        }
+        // simulates a crash in the middle of writing the second batch
+        RandomAccessFile(file, "rw").use { it.setLength(file.length() - 1) }
+
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            try {
+                map["a"]
+                fail("Corrupted storage was read")
+            }
+            catch (e: BuildDataCorruptedException) {
+                // expected
+            }
+
+            // the caches are rebuilt from scratch after that
+            clean()
+            map["c"] = "3"
+            close()
+        }
+
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            assertEquals(setOf("c"), map.keys.toSet())
+        }
+    }
+
+    public fun testChecksumMismatchIsReported() {
+        with(SingleFileStorage(file)) {
+            createStringMap("map")["a"] = "1"
+            close()
+        }
+        RandomAccessFile(file, "rw").use {
+            it.seek(it.length() - 1)
+            val last = it.read()
+            it.seek(it.length() - 1)
+            it.write(last xor 1)
+        }
+
+        with(SingleFileStorage(file)) {
+            try {
+                createStringMap("map").keys
+                fail("Corrupted storage was read")
+            }
+            catch (e: BuildDataCorruptedException) {
+                // expected
+            }
+        }
+    }
+
+    public fun testClean() {
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            map["a"] = "1"
+            flush()
+            clean()
+            assertNull(map["a"])
+            assertFalse(file.exists())
+        }
+    }
+
+    public fun testCompaction() {
+        val value = "x".repeat(1000)
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            for (i in 1..3000) {
+                map["key${i % 10}"] = value + i
+                if (i % 100 == 0) flush()
+            }
+            close()
+        }
+        // 3 MB were written, compaction keeps the file close to its threshold
+        assertTrue(file.length() < 1500000)
+
+        with(SingleFileStorage(file)) {
+            val map = createStringMap("map")
+            assertEquals(10, map.keys.size())
+            assertEquals(value + 3000, map["key0"])
+        }
+    }
+
+    private fun SingleFileStorage.createStringMap(name: String): LazyStorage<String, String> =
+            createMap(name, EnumeratorStringDescriptor.INSTANCE, EnumeratorStringDescriptor.INSTANCE)
+}
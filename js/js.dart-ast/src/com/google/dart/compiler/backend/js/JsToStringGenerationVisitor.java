@@ -898,6 +898,20 @@ public class JsToStringGenerationVisitor extends JsVisitor {
         }
     }
 
+    @Override
+    public void visitVerbatim(@NotNull JsVerbatimExpression x) {
+        // lines after the first one are indented relative to it, blank lines are left without indentation
+        String[] lines = x.getCode().split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                p.newline();
+            }
+            if (!lines[i].isEmpty()) {
+                p.print(lines[i]);
+            }
+        }
+    }
+
     protected final void newlineOpt() {
         if (!p.isCompact()) {
             p.newline();
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.dart.compiler.backend.js.ast;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An expression which was printed before, e.g. in a previous compilation, and is put into the output as is.
+ * The code is printed with the indentation of the place it's inserted to.
+ */
+public class JsVerbatimExpression extends JsExpressionImpl {
+    @NotNull
+    private final String code;
+
+    public JsVerbatimExpression(@NotNull String code) {
+        this.code = code;
+    }
+
+    @NotNull
+    public String getCode() {
+        return code;
+    }
+
+    @Override
+    public void accept(JsVisitor v) {
+        v.visitVerbatim(this);
+    }
+
+    @Override
+    public void traverse(JsVisitorWithContext v, JsContext ctx) {
+    }
+
+    @NotNull
+    @Override
+    public JsVerbatimExpression deepCopy() {
+        return new JsVerbatimExpression(code).withMetadataFrom(this);
+    }
+}
@@ -159,6 +159,9 @@ public abstract class JsVisitor {
     public open fun visitDocComment(comment: JsDocComment): Unit =
             visitElement(comment)
 
+    public open fun visitVerbatim(x: JsVerbatimExpression): Unit =
+            visitElement(x)
+
     protected open fun visitElement(node: JsNode) {
     }
 }
\ No newline at end of file
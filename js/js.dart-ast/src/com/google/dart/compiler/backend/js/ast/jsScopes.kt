@@ -23,6 +23,7 @@ public fun JsObjectScope(parent: JsScope, description: String): JsObjectScope =
 public class JsObjectScope(parent: JsScope, description: String, scopeId: String?) : JsScope(parent, description, scopeId)
 
 public object JsDynamicScope : JsScope(null, "Scope for dynamic declarations", null) {
+    // Shared by all programs, which may be translated on different threads, so the names aren't stored
     override fun doCreateName(name: String) = JsName(this, name)
 }
 
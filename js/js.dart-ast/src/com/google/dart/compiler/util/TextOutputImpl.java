@@ -4,15 +4,22 @@
 
 package com.google.dart.compiler.util;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
 
 public class TextOutputImpl implements TextOutput {
+    // Buffered text is written out at the first newline after the buffer has grown beyond this size
+    private static final int FLUSH_THRESHOLD = 16 * 1024;
+
     private final boolean compact;
     private int identLevel = 0;
     private final static int indentGranularity = 2;
     private char[][] indents = new char[][] {new char[0]};
     private boolean justNewlined;
     private final StringBuilder out;
+    private final Writer writer;
+    private char[] flushBuffer;
     private int position = 0;
     private int line = 0;
     private int column = 0;
@@ -28,15 +35,48 @@ public class TextOutputImpl implements TextOutput {
     }
 
     public TextOutputImpl(boolean compact) {
+        this(null, compact);
+    }
+
+    /**
+     * Creates an output which passes the text to the given writer as it's printed, keeping only the current part of it in memory.
+     * {@link #flush()} should be called after everything is printed.
+     */
+    public TextOutputImpl(Writer writer) {
+        this(writer, false);
+    }
+
+    private TextOutputImpl(Writer writer, boolean compact) {
         this.compact = compact;
+        this.writer = writer;
         out = new StringBuilder();
     }
 
+    /**
+     * @return the printed text, or the part of it which hasn't been passed to the writer yet, if there's one
+     */
     @Override
     public String toString() {
         return out.toString();
     }
 
+    public void flush() {
+        if (writer == null || out.length() == 0) return;
+
+        int length = out.length();
+        if (flushBuffer == null || flushBuffer.length < length) {
+            flushBuffer = new char[Math.max(length, FLUSH_THRESHOLD * 2)];
+        }
+        out.getChars(0, length, flushBuffer, 0);
+        out.setLength(0);
+        try {
+            writer.write(flushBuffer, 0, length);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Cannot write generated code", e);
+        }
+    }
+
     @Override
     public int getPosition() {
         return position;
@@ -81,6 +121,9 @@ public class TextOutputImpl implements TextOutput {
         if (outListener != null) {
             outListener.newLined();
         }
+        if (writer != null && out.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
     }
 
     @Override
@@ -57,6 +57,8 @@ public abstract class Config {
 
     private final boolean sourcemap;
     private final boolean metaInfo;
+    private final boolean binaryMetaInfo;
+    private final boolean parallelTranslation;
 
     @NotNull
     protected final List<KotlinJavascriptMetadata> metadata = new SmartList<KotlinJavascriptMetadata>();
@@ -72,7 +74,9 @@ public abstract class Config {
             @NotNull EcmaVersion ecmaVersion,
             boolean sourcemap,
             boolean inlineEnabled,
-            boolean metaInfo
+            boolean metaInfo,
+            boolean binaryMetaInfo,
+            boolean parallelTranslation
     ) {
         this.project = project;
         this.target = ecmaVersion;
@@ -80,6 +84,8 @@ public abstract class Config {
         this.sourcemap = sourcemap;
         this.inlineEnabled = inlineEnabled;
         this.metaInfo = metaInfo;
+        this.binaryMetaInfo = binaryMetaInfo;
+        this.parallelTranslation = parallelTranslation;
     }
 
     public boolean isSourcemap() {
@@ -90,10 +96,18 @@ public abstract class Config {
         return metaInfo;
     }
 
+    public boolean isBinaryMetaInfo() {
+        return binaryMetaInfo;
+    }
+
     public boolean isInlineEnabled() {
         return inlineEnabled;
     }
 
+    public boolean isParallelTranslation() {
+        return parallelTranslation;
+    }
+
     @NotNull
     public Project getProject() {
         return project;
@@ -157,7 +171,7 @@ public abstract class Config {
         );
 
         PackageFragmentProvider provider =
-                KotlinJavascriptSerializationUtil.createPackageFragmentProvider(moduleDescriptor, metadata.getBody(), storageManager);
+                KotlinJavascriptSerializationUtil.createPackageFragmentProvider(moduleDescriptor, metadata, storageManager);
 
         moduleDescriptor.initialize(provider != null ? provider : PackageFragmentProvider.Empty.INSTANCE$);
 
@@ -26,10 +26,12 @@ import org.jetbrains.kotlin.serialization.DescriptorSerializer
 import org.jetbrains.kotlin.serialization.ProtoBuf
 import org.jetbrains.kotlin.serialization.StringTableImpl
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.utils.KotlinJavascriptBinaryMetadata
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadata
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadataUtils
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.InputStream
 import java.util.zip.GZIPInputStream
 import java.util.zip.GZIPOutputStream
 
@@ -58,25 +60,43 @@ public object KotlinJavascriptSerializationUtil {
     @JvmStatic
     public fun createPackageFragmentProvider(moduleDescriptor: ModuleDescriptor, metadata: ByteArray, storageManager: StorageManager): PackageFragmentProvider? {
         val contentMap = metadata.toContentMap()
+        return createPackageFragmentProvider(moduleDescriptor, contentMap.keySet(), storageManager) {
+            path -> contentMap[path]?.let { ByteArrayInputStream(it) }
+        }
+    }
+
+    @JvmStatic
+    public fun createPackageFragmentProvider(
+            moduleDescriptor: ModuleDescriptor,
+            metadata: KotlinJavascriptMetadata,
+            storageManager: StorageManager
+    ): PackageFragmentProvider? {
+        // files from a binary index are read only when the corresponding package fragment is queried
+        val files = metadata.files ?: return createPackageFragmentProvider(moduleDescriptor, metadata.body, storageManager)
+        return createPackageFragmentProvider(moduleDescriptor, files.paths, storageManager) { path -> files.openStream(path) }
+    }
 
-        val packageFqNames = getPackages(contentMap).map { FqName(it) }.toSet()
+    private fun createPackageFragmentProvider(
+            moduleDescriptor: ModuleDescriptor,
+            paths: Collection<String>,
+            storageManager: StorageManager,
+            loadFile: (String) -> InputStream?
+    ): PackageFragmentProvider? {
+        val packageFqNames = getPackages(paths).map { FqName(it) }.toSet()
         if (packageFqNames.isEmpty()) return null
 
         return createKotlinJavascriptPackageFragmentProvider(storageManager, moduleDescriptor, packageFqNames) {
             path ->
-            if (!contentMap.containsKey(path)) {
-                when {
-                    isPackageMetadataFile(path) ->
-                        ByteArrayInputStream(PACKAGE_DEFAULT_BYTES)
-                    isStringTableFile(path) ->
-                        ByteArrayInputStream(STRING_TABLE_DEFAULT_BYTES)
-                    isClassesInPackageFile(path) ->
-                        ByteArrayInputStream(CLASSES_IN_PACKAGE_DEFAULT_BYTES)
-                    else ->
-                        null
-                }
+            loadFile(path) ?: when {
+                isPackageMetadataFile(path) ->
+                    ByteArrayInputStream(PACKAGE_DEFAULT_BYTES)
+                isStringTableFile(path) ->
+                    ByteArrayInputStream(STRING_TABLE_DEFAULT_BYTES)
+                isClassesInPackageFile(path) ->
+                    ByteArrayInputStream(CLASSES_IN_PACKAGE_DEFAULT_BYTES)
+                else ->
+                    null
             }
-            else ByteArrayInputStream(contentMap.get(path))
         }
     }
 
@@ -96,7 +116,33 @@ public object KotlinJavascriptSerializationUtil {
     }
 
     public fun metadataAsString(moduleName: String, moduleDescriptor: ModuleDescriptor): String =
-        KotlinJavascriptMetadataUtils.formatMetadataAsString(moduleName, moduleDescriptor.toBinaryMetadata())
+        metadataAsString(moduleName, serializeModule(moduleDescriptor))
+
+    public fun metadataAsString(moduleName: String, contentMap: Map<String, ByteArray>): String =
+        KotlinJavascriptMetadataUtils.formatMetadataAsString(moduleName, contentMapToByteArray(contentMap))
+
+    public fun metadataAsBinaryIndex(moduleName: String, moduleDescriptor: ModuleDescriptor): ByteArray =
+        metadataAsBinaryIndex(moduleName, serializeModule(moduleDescriptor))
+
+    public fun metadataAsBinaryIndex(moduleName: String, contentMap: Map<String, ByteArray>): ByteArray =
+        KotlinJavascriptBinaryMetadata.write(listOf(
+                KotlinJavascriptBinaryMetadata.Module(KotlinJavascriptMetadataUtils.ABI_VERSION, moduleName, contentMap)
+        ))
+
+    /**
+     * @return serialized files of all packages of the module by their paths
+     */
+    public fun serializeModule(moduleDescriptor: ModuleDescriptor): Map<String, ByteArray> {
+        val contentMap = hashMapOf<String, ByteArray>()
+
+        DescriptorUtils.getPackagesFqNames(moduleDescriptor).forEach {
+            serializePackage(moduleDescriptor, it) {
+                fileName, bytes -> contentMap[fileName] = bytes
+            }
+        }
+
+        return contentMap
+    }
 
     fun serializePackage(module: ModuleDescriptor, fqName: FqName, writeFun: (String, ByteArray) -> Unit) {
         val packageView = module.getPackage(fqName)
@@ -166,20 +212,8 @@ public object KotlinJavascriptSerializationUtil {
         return KotlinJavascriptSerializedResourcePaths.getClassMetadataPath(classDescriptor.classId)
     }
 
-    private fun ModuleDescriptor.toContentMap(): Map<String, ByteArray> {
-        val contentMap = hashMapOf<String, ByteArray>()
-
-        DescriptorUtils.getPackagesFqNames(this).forEach {
-            serializePackage(this, it) {
-                fileName, bytes -> contentMap[fileName] = bytes
-            }
-        }
-
-        return contentMap
-    }
-
-    private fun getPackages(contentMap: Map<String, ByteArray>): Set<String> {
-        val keys = contentMap.keySet().map { (if (it.startsWith('/')) it else "/" + it).substringBeforeLast('/') }.toSet()
+    private fun getPackages(paths: Collection<String>): Set<String> {
+        val keys = paths.map { (if (it.startsWith('/')) it else "/" + it).substringBeforeLast('/') }.toSet()
 
         val result = hashSetOf<String>()
 
@@ -194,13 +228,22 @@ public object KotlinJavascriptSerializationUtil {
 
         return result.map { it.substringAfter('/').replace('/', '.') }.toSet()
     }
-
-    private fun ModuleDescriptor.toBinaryMetadata(): ByteArray =
-            KotlinJavascriptSerializationUtil.contentMapToByteArray(this.toContentMap())
 }
 
-public fun KotlinJavascriptMetadata.forEachFile(operation: (filePath: String, fileContent: ByteArray) -> Unit): Unit =
+public fun KotlinJavascriptMetadata.forEachFile(operation: (filePath: String, fileContent: ByteArray) -> Unit) {
+    val files = this.files
+    if (files != null) {
+        files.paths.forEach { path ->
+            val buffer = files.get(path)!!
+            val content = ByteArray(buffer.remaining())
+            buffer.get(content)
+            operation(path, content)
+        }
+    }
+    else {
         this.body.toContentMap().forEach { operation(it.getKey(), it.getValue()) }
+    }
+}
 
 private fun ByteArray.toContentMap(): Map<String, ByteArray> {
     val gzipInputStream = GZIPInputStream(ByteArrayInputStream(this))
@@ -27,11 +27,16 @@ import org.jetbrains.kotlin.js.config.Config;
 import org.jetbrains.kotlin.js.facade.exceptions.TranslationException;
 import org.jetbrains.kotlin.js.inline.JsInliner;
 import org.jetbrains.kotlin.js.translate.context.TranslationContext;
+import org.jetbrains.kotlin.js.translate.general.IncrementalTranslation;
+import org.jetbrains.kotlin.js.translate.general.ParallelTranslation;
 import org.jetbrains.kotlin.js.translate.general.Translation;
 import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.resolve.BindingTrace;
 import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics;
+import org.jetbrains.kotlin.storage.LockBasedLazyResolveStorageManager;
+import org.jetbrains.kotlin.storage.LockBasedStorageManager;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.jetbrains.kotlin.diagnostics.DiagnosticUtils.hasError;
@@ -65,6 +70,19 @@ public final class K2JSTranslator {
             @NotNull List<JetFile> files,
             @NotNull MainCallParameters mainCallParameters,
             @Nullable JsAnalysisResult analysisResult
+    ) throws TranslationException {
+        return translate(files, mainCallParameters, analysisResult, null);
+    }
+
+    /**
+     * @param fileCache translations of single files to reuse and to update, if the module is translated incrementally
+     */
+    @NotNull
+    public TranslationResult translate(
+            @NotNull List<JetFile> files,
+            @NotNull MainCallParameters mainCallParameters,
+            @Nullable JsAnalysisResult analysisResult,
+            @Nullable TranslatedFileCache fileCache
     ) throws TranslationException {
         if (analysisResult == null) {
             analysisResult = TopDownAnalyzerFacadeForJS.analyzeFiles(files, config);
@@ -76,7 +94,25 @@ public final class K2JSTranslator {
         ModuleDescriptor moduleDescriptor = analysisResult.getModuleDescriptor();
         Diagnostics diagnostics = bindingTrace.getBindingContext().getDiagnostics();
 
-        TranslationContext context = Translation.generateAst(bindingTrace, files, mainCallParameters, moduleDescriptor, config);
+        // The source map can't be built for code which is not translated in the program of the module
+        ParallelTranslation parallelTranslation = null;
+        if (config.isParallelTranslation() && !config.isSourcemap()) {
+            bindingTrace = new LockBasedLazyResolveStorageManager(new LockBasedStorageManager()).createSafeTrace(bindingTrace);
+            parallelTranslation = new ParallelTranslation(files, bindingTrace, config, moduleDescriptor);
+        }
+        IncrementalTranslation incrementalTranslation = null;
+        if ((fileCache != null && !config.isSourcemap()) || parallelTranslation != null) {
+            incrementalTranslation = new IncrementalTranslation(fileCache, files, true, parallelTranslation);
+        }
+
+        TranslationContext context =
+                Translation.generateAst(bindingTrace, files, mainCallParameters, moduleDescriptor, config, incrementalTranslation);
+        // The translation errors have been reported already, and the module isn't translated again not to report them twice
+        if (incrementalTranslation != null && incrementalTranslation.hasNameClashes() && !hasError(diagnostics)) {
+            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+            incrementalTranslation = new IncrementalTranslation(fileCache, files, false);
+            context = Translation.generateAst(bindingTrace, files, mainCallParameters, moduleDescriptor, config, incrementalTranslation);
+        }
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
         if (hasError(diagnostics)) return new TranslationResult.Fail(diagnostics);
 
@@ -86,6 +122,15 @@ public final class K2JSTranslator {
 
         expandIsCalls(program, context);
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
-        return new TranslationResult.Success(config, files, program, diagnostics, moduleDescriptor);
+
+        List<JetFile> translatedFiles = files;
+        List<JetFile> filesTranslatedInParallel = Collections.emptyList();
+        if (incrementalTranslation != null) {
+            incrementalTranslation.saveTranslatedFiles();
+            translatedFiles = incrementalTranslation.getTranslatedFiles();
+            filesTranslatedInParallel = incrementalTranslation.getFilesTranslatedInParallel();
+        }
+        return new TranslationResult.Success(config, files, translatedFiles, filesTranslatedInParallel, program, diagnostics,
+                                             moduleDescriptor);
     }
 }
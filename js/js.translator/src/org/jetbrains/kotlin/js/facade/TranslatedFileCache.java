@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.js.facade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.psi.JetFile;
+
+import java.util.List;
+
+/**
+ * Translations of single source files kept between compilations of a module.
+ *
+ * A file is translated to the members it adds to the object of its package. The key of a translation is computed by the translator
+ * from everything the translation depends on: the text of the file, the signatures and the JavaScript names of the declarations of
+ * the module, and the text of the files declaring inline functions which are called from the file. So a cached translation which has
+ * the same key can be linked into the program instead of translating the file again.
+ */
+public interface TranslatedFileCache {
+    /**
+     * @return the translation of the file stored with the given key, or null if there is none
+     */
+    @Nullable
+    List<TranslatedMember> get(@NotNull JetFile file, @NotNull String key);
+
+    void put(@NotNull JetFile file, @NotNull String key, @NotNull List<TranslatedMember> members);
+
+    final class TranslatedMember {
+        @NotNull
+        private final String name;
+        @NotNull
+        private final String code;
+
+        public TranslatedMember(@NotNull String name, @NotNull String code) {
+            this.name = name;
+            this.code = code;
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the printed value of the member, indented as if it started at the beginning of a line
+         */
+        @NotNull
+        public String getCode() {
+            return code;
+        }
+    }
+}
@@ -21,9 +21,10 @@ import com.google.dart.compiler.util.TextOutput
 import com.google.dart.compiler.util.TextOutputImpl
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.openapi.vfs.VfsUtilCore
+import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
-import org.jetbrains.kotlin.backend.common.output.SimpleOutputFile
 import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
+import org.jetbrains.kotlin.backend.common.output.StreamingOutputFile
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.js.config.Config
 import org.jetbrains.kotlin.js.sourceMap.JsSourceGenerationVisitor
@@ -34,7 +35,11 @@ import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics
 import org.jetbrains.kotlin.serialization.js.KotlinJavascriptSerializationUtil
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadataUtils
 import org.jetbrains.kotlin.utils.fileUtils.readTextOrEmpty
+import java.io.BufferedWriter
 import java.io.File
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.Writer
 import java.util.ArrayList
 
 public abstract class TranslationResult protected constructor(public val diagnostics: Diagnostics) {
@@ -44,20 +49,22 @@ public abstract class TranslationResult protected constructor(public val diagnos
     public class Success(
             private val config: Config,
             private val files: List<JetFile>,
+            /** The files which were translated, rather than reused from the cache of an incremental translation */
+            public val translatedFiles: List<JetFile>,
+            /** The files which were translated on other threads, see [Config.isParallelTranslation] */
+            public val filesTranslatedInParallel: List<JetFile>,
             public val program: JsProgram,
             diagnostics: Diagnostics,
             private val moduleDescriptor: ModuleDescriptor
     ) : TranslationResult(diagnostics) {
+        // Shared by the .meta.js and the .meta.bin files, so that the module is serialized once. It's computed when the first of them
+        // is written, i.e. after the translation is finished and on the same thread: serialization may resolve lazy descriptors, which
+        // writes to the binding trace, and the trace is not thread-safe
+        private val serializedMetadata by lazy { KotlinJavascriptSerializationUtil.serializeModule(moduleDescriptor) }
+
         public fun getCode(): String = getCode(TextOutputImpl(), sourceMapBuilder = null)
 
         public fun getOutputFiles(outputFile: File, outputPrefixFile: File?, outputPostfixFile: File?): OutputFileCollection {
-            val output = TextOutputImpl()
-            val sourceMapBuilder = when {
-                config.isSourcemap() -> SourceMap3Builder(outputFile, output, SourceMapBuilderConsumer())
-                else -> null
-            }
-
-            val code = getCode(output, sourceMapBuilder)
             val prefix = outputPrefixFile?.readTextOrEmpty() ?: ""
             val postfix = outputPostfixFile?.readTextOrEmpty() ?: ""
             val sourceFiles = files.map {
@@ -69,20 +76,35 @@ public abstract class TranslationResult protected constructor(public val diagnos
                 }
             }
 
-            val jsFile = SimpleOutputFile(sourceFiles, outputFile.getName(), prefix + code + postfix)
-            val outputFiles = arrayListOf(jsFile)
+            val code = GeneratedCode(outputFile, prefix, postfix)
+            val jsFile = object : StreamingOutputFile(sourceFiles, outputFile.getName()) {
+                override fun writeTo(stream: OutputStream) = write(stream) { code.write(it) }
+            }
+            val outputFiles = arrayListOf<OutputFile>(jsFile)
 
             if (config.isMetaInfo()) {
                 val metaFileName = KotlinJavascriptMetadataUtils.replaceSuffix(outputFile.getName())
-                val metaFileContent = KotlinJavascriptSerializationUtil.metadataAsString(config.getModuleId(), moduleDescriptor)
-                val sourceFilesForMetaFile = ArrayList(sourceFiles)
-                val jsMetaFile = SimpleOutputFile(sourceFilesForMetaFile, metaFileName, metaFileContent)
+                val jsMetaFile = object : StreamingOutputFile(ArrayList(sourceFiles), metaFileName) {
+                    override fun writeTo(stream: OutputStream) = write(stream) {
+                        it.write(KotlinJavascriptSerializationUtil.metadataAsString(config.getModuleId(), serializedMetadata))
+                    }
+                }
                 outputFiles.add(jsMetaFile)
+
+                if (config.isBinaryMetaInfo()) {
+                    val indexFileName = KotlinJavascriptMetadataUtils.getBinaryMetadataPath(outputFile.getName())
+                    val indexFile = object : StreamingOutputFile(ArrayList(sourceFiles), indexFileName) {
+                        override fun writeTo(stream: OutputStream) =
+                                stream.write(KotlinJavascriptSerializationUtil.metadataAsBinaryIndex(config.getModuleId(), serializedMetadata))
+                    }
+                    outputFiles.add(indexFile)
+                }
             }
 
-            if (sourceMapBuilder != null) {
-                sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
-                val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.getOutFile().getName(), sourceMapBuilder.build())
+            if (config.isSourcemap()) {
+                val sourceMapFile = object : StreamingOutputFile(sourceFiles, outputFile.getName() + ".map") {
+                    override fun writeTo(stream: OutputStream) = write(stream) { code.writeSourceMap(it) }
+                }
                 outputFiles.add(sourceMapFile)
             }
 
@@ -93,5 +115,54 @@ public abstract class TranslationResult protected constructor(public val diagnos
             program.accept(JsSourceGenerationVisitor(output, sourceMapBuilder))
             return output.toString()
         }
+
+        private fun write(stream: OutputStream, print: (Writer) -> Unit) {
+            val writer = BufferedWriter(OutputStreamWriter(stream, Charsets.UTF_8))
+            print(writer)
+            writer.flush()
+        }
+
+        /**
+         * Prints the program directly to the output file, and collects the source map along the way.
+         * The source map is written after the code, so if it's requested first, the code is printed only to build the map.
+         */
+        private inner class GeneratedCode(private val outputFile: File, private val prefix: String, private val postfix: String) {
+            private var sourceMapBuilder: SourceMapBuilder? = null
+
+            fun write(writer: Writer) {
+                writer.write(prefix)
+
+                val output = TextOutputImpl(writer)
+                val sourceMapBuilder = when {
+                    config.isSourcemap() -> SourceMap3Builder(outputFile, output, SourceMapBuilderConsumer())
+                    else -> null
+                }
+                sourceMapBuilder?.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
+
+                program.accept(JsSourceGenerationVisitor(output, sourceMapBuilder))
+                output.flush()
+
+                writer.write(postfix)
+                this.sourceMapBuilder = sourceMapBuilder
+            }
+
+            fun writeSourceMap(writer: Writer) {
+                if (sourceMapBuilder == null) {
+                    write(NullWriter())
+                }
+                sourceMapBuilder!!.build(writer)
+            }
+        }
+
+        private class NullWriter : Writer() {
+            override fun write(cbuf: CharArray, off: Int, len: Int) {
+            }
+
+            override fun flush() {
+            }
+
+            override fun close() {
+            }
+        }
     }
 }
@@ -23,6 +23,7 @@ import com.intellij.util.PairConsumer;
 import gnu.trove.TObjectIntHashMap;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -64,28 +65,38 @@ public class SourceMap3Builder implements SourceMapBuilder {
     @Override
     public String build() {
         StringBuilder sb = new StringBuilder(out.length() + (128 * orderedSources.size()));
-        sb.append("{\"version\":3,\"file\":\"").append(generatedFile.getName()).append('"').append(',');
-        appendSources(sb);
-        sb.append(",\"names\":[");
-        sb.append("],\"mappings\":\"");
-        sb.append(out);
-        sb.append("\"}");
+        try {
+            build(sb);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
         return sb.toString();
     }
 
-    private void appendSources(StringBuilder sb) {
+    @Override
+    public void build(Appendable output) throws IOException {
+        output.append("{\"version\":3,\"file\":\"").append(generatedFile.getName()).append('"').append(',');
+        appendSources(output);
+        output.append(",\"names\":[");
+        output.append("],\"mappings\":\"");
+        output.append(out);
+        output.append("\"}");
+    }
+
+    private void appendSources(Appendable output) throws IOException {
         boolean isNotFirst = false;
-        sb.append('"').append("sources").append("\":[");
+        output.append('"').append("sources").append("\":[");
         for (String source : orderedSources) {
             if (isNotFirst) {
-                sb.append(',');
+                output.append(',');
             }
             else {
                 isNotFirst = true;
             }
-            sb.append('"').append("file://").append(source).append('"');
+            output.append('"').append("file://").append(source).append('"');
         }
-        sb.append(']');
+        output.append(']');
     }
 
     @Override
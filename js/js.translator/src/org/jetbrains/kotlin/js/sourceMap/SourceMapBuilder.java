@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.js.sourceMap;
 
 import java.io.File;
+import java.io.IOException;
 
 public interface SourceMapBuilder {
     void newLine();
@@ -32,4 +33,6 @@ public interface SourceMapBuilder {
     File getOutFile();
 
     String build();
+
+    void build(Appendable output) throws IOException;
 }
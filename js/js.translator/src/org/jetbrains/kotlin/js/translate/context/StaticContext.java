@@ -47,6 +47,9 @@ import static org.jetbrains.kotlin.resolve.calls.tasks.DynamicCallsKt.isDynamic;
 
 /**
  * Aggregates all the static parts of the context.
+ *
+ * A static context is confined to one thread. The names it gives to declarations depend on the order in which they are requested, so
+ * contexts which translate different parts of a module give names to all declarations of the module in the same order first.
  */
 public final class StaticContext {
 
@@ -42,6 +42,9 @@ class FileDeclarationVisitor(
     private val initializerStatements = initializer.getBody().getStatements()
     private val initializerVisitor = InitializerVisitor(initializerStatements)
 
+    val initializerStatementCount: Int
+        get() = initializerStatements.size()
+
     fun computeInitializer(): JsFunction? {
         if (initializerStatements.isEmpty()) {
             return null
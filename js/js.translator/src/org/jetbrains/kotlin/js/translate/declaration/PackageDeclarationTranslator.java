@@ -19,10 +19,13 @@ package org.jetbrains.kotlin.js.translate.declaration;
 import com.google.dart.compiler.backend.js.ast.*;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache.TranslatedMember;
 import org.jetbrains.kotlin.js.translate.context.Namer;
 import org.jetbrains.kotlin.js.translate.context.TranslationContext;
 import org.jetbrains.kotlin.js.translate.general.AbstractTranslator;
+import org.jetbrains.kotlin.js.translate.general.IncrementalTranslation;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
@@ -34,17 +37,28 @@ import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
 
 public final class PackageDeclarationTranslator extends AbstractTranslator {
     private final Iterable<JetFile> files;
+    @Nullable
+    private final IncrementalTranslation incrementalTranslation;
     private final Map<PackageFragmentDescriptor, PackageTranslator> packageFragmentToTranslator =
             new LinkedHashMap<PackageFragmentDescriptor, PackageTranslator>();
 
-    public static List<JsStatement> translateFiles(@NotNull Collection<JetFile> files, @NotNull TranslationContext context) {
-        return new PackageDeclarationTranslator(files, context).translate();
+    public static List<JsStatement> translateFiles(
+            @NotNull Collection<JetFile> files,
+            @NotNull TranslationContext context,
+            @Nullable IncrementalTranslation incrementalTranslation
+    ) {
+        return new PackageDeclarationTranslator(files, context, incrementalTranslation).translate();
     }
 
-    private PackageDeclarationTranslator(@NotNull Iterable<JetFile> files, @NotNull TranslationContext context) {
+    private PackageDeclarationTranslator(
+            @NotNull Iterable<JetFile> files,
+            @NotNull TranslationContext context,
+            @Nullable IncrementalTranslation incrementalTranslation
+    ) {
         super(context);
 
         this.files = files;
+        this.incrementalTranslation = incrementalTranslation;
     }
 
     @NotNull
@@ -63,13 +77,30 @@ public final class PackageDeclarationTranslator extends AbstractTranslator {
                 packageFragmentToTranslator.put(packageFragment, translator);
             }
 
-            translator.translate(file);
+            List<TranslatedMember> reusedMembers = incrementalTranslation != null ? incrementalTranslation.getReusedMembers(file) : null;
+            if (reusedMembers != null) {
+                translator.addTranslated(reusedMembers);
+            }
+            else {
+                List<JsPropertyInitializer> members = translator.translate(file);
+                if (incrementalTranslation != null) {
+                    incrementalTranslation.translated(file, packageFragment.getFqName(), members);
+                }
+            }
         }
 
         for (PackageTranslator translator : packageFragmentToTranslator.values()) {
             translator.add(packageFqNameToDefineInvocation);
         }
 
+        if (incrementalTranslation != null) {
+            Map<FqName, List<JsPropertyInitializer>> packageMembers = new HashMap<FqName, List<JsPropertyInitializer>>();
+            for (Map.Entry<FqName, DefineInvocation> entry : packageFqNameToDefineInvocation.entrySet()) {
+                packageMembers.put(entry.getKey(), entry.getValue().getMembers());
+            }
+            incrementalTranslation.link(packageMembers);
+        }
+
         JsVars vars = new JsVars(true);
         vars.addIfHasInitializer(getRootPackageDeclaration(packageFqNameToDefineInvocation.get(FqName.ROOT)));
 
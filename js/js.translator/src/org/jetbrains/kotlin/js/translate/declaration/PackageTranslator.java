@@ -21,6 +21,7 @@ import com.intellij.util.SmartList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache.TranslatedMember;
 import org.jetbrains.kotlin.js.translate.context.DefinitionPlace;
 import org.jetbrains.kotlin.js.translate.context.TranslationContext;
 import org.jetbrains.kotlin.js.translate.general.AbstractTranslator;
@@ -30,6 +31,7 @@ import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.JetDeclaration;
 import org.jetbrains.kotlin.psi.JetFile;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -64,12 +66,30 @@ final class PackageTranslator extends AbstractTranslator {
         this.visitor = visitor;
     }
     
-    public void translate(JetFile file) {
+    /**
+     * @return the members of the package object which the file was translated to, or null if the file also added statements to the
+     * initializer of the package
+     */
+    @Nullable
+    public List<JsPropertyInitializer> translate(JetFile file) {
+        List<JsPropertyInitializer> members = visitor.getResult();
+        int memberCount = members.size();
+        int initializerStatementCount = visitor.getInitializerStatementCount();
+
         for (JetDeclaration declaration : file.getDeclarations()) {
             if (!AnnotationsUtils.isPredefinedObject(BindingUtils.getDescriptorForElement(bindingContext(), declaration))) {
                 declaration.accept(visitor, context());
             }
         }
+
+        if (visitor.getInitializerStatementCount() != initializerStatementCount) return null;
+        return new ArrayList<JsPropertyInitializer>(members.subList(memberCount, members.size()));
+    }
+
+    public void addTranslated(@NotNull List<TranslatedMember> members) {
+        for (TranslatedMember member : members) {
+            visitor.getResult().add(new JsPropertyInitializer(new JsNameRef(member.getName()), new JsVerbatimExpression(member.getCode())));
+        }
     }
 
     private void createDefinitionPlace(
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.js.translate.general;
+
+import com.google.dart.compiler.backend.js.ast.*;
+import com.google.dart.compiler.util.TextOutputImpl;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.descriptors.*;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache.TranslatedMember;
+import org.jetbrains.kotlin.js.sourceMap.JsSourceGenerationVisitor;
+import org.jetbrains.kotlin.js.translate.context.TranslationContext;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.renderer.DescriptorRenderer;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.BindingContextUtils;
+import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils;
+import org.jetbrains.kotlin.resolve.DescriptorUtils;
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall;
+import org.jetbrains.kotlin.resolve.constants.ConstantValue;
+import org.jetbrains.kotlin.resolve.inline.InlineUtil;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Translation of a module which reuses the cached translations of the files that haven't changed.
+ *
+ * A file is translated to members of the object of its package. Its translation depends on the file itself, on the signatures and the
+ * names of the declarations it refers to, and on the bodies of the inline functions it calls. So the key of a file's translation
+ * consists of the text of the file, the signatures and names of all non-private declarations of the module (a change of a signature
+ * may change the resolution of calls in any file), the names of the declarations of the file, and the text of the files declaring
+ * the inline functions which are called from the file, directly or from other inline functions.
+ *
+ * Files which don't have a cached translation for their key are translated. So are the files declaring the inline functions called
+ * from the translated files (the inliner needs their bodies), and the files calling inline functions declared in the translated files
+ * (the inliner removes the local functions which are no longer referenced from the translated code, and it doesn't see the cached code).
+ * Files which add statements to the initializer of their package aren't cached: temporary variables of the initializer are shared by
+ * all files of the package.
+ *
+ * Names are given to all declarations in the same order before anything is translated, and the names of the members of the cached
+ * translations are reserved, so the names given to the declarations of the translated files don't depend on which files are cached.
+ *
+ * The files which are translated may also be translated on several threads, see {@link ParallelTranslation}. Each group of files
+ * which call the inline functions of each other is translated separately, unless one of them adds statements to the initializer of
+ * its package, and the translations of the groups are linked like cached translations. The names of their members aren't reserved:
+ * a fresh name of a member of a group differs from the name it has when all files are translated in one program only if an earlier
+ * file took the name, and then the name clashes with a member of that file.
+ */
+public final class IncrementalTranslation {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Nullable
+    private final TranslatedFileCache cache;
+    @NotNull
+    private final List<JetFile> files;
+    private final boolean reuseCachedFiles;
+    @Nullable
+    private final ParallelTranslation parallelTranslation;
+
+    private final Map<JetFile, String> keys = new HashMap<JetFile, String>();
+    private final Map<JetFile, List<TranslatedMember>> reusedFiles = new HashMap<JetFile, List<TranslatedMember>>();
+    private final Map<JetFile, List<TranslatedMember>> filesTranslatedInParallel = new HashMap<JetFile, List<TranslatedMember>>();
+    private final Map<JetFile, TranslatedFile> translatedFiles = new LinkedHashMap<JetFile, TranslatedFile>();
+    @Nullable
+    private Map<FqName, List<JsPropertyInitializer>> packageMembers = null;
+    private boolean nameClashFound = false;
+
+    /**
+     * @param cache the cache to reuse translations from and to store them in, or null if they aren't cached
+     * @param reuseCachedFiles if false, all files are translated, and their translations are stored in the cache
+     */
+    public IncrementalTranslation(@Nullable TranslatedFileCache cache, @NotNull List<JetFile> files, boolean reuseCachedFiles) {
+        this(cache, files, reuseCachedFiles, null);
+    }
+
+    /**
+     * @param parallelTranslation translates the files which aren't reused from the cache on several threads, if not null
+     */
+    public IncrementalTranslation(
+            @Nullable TranslatedFileCache cache,
+            @NotNull List<JetFile> files,
+            boolean reuseCachedFiles,
+            @Nullable ParallelTranslation parallelTranslation
+    ) {
+        this.cache = cache;
+        this.files = files;
+        this.reuseCachedFiles = reuseCachedFiles;
+        this.parallelTranslation = parallelTranslation;
+    }
+
+    /**
+     * Should be called before the files are translated.
+     */
+    public void prepare(@NotNull TranslationContext context) {
+        Map<JetFile, Set<JetFile>> inlinedFiles = collectInlinedFiles(context.bindingContext());
+
+        Set<JetFile> filesToTranslate = new HashSet<JetFile>(files);
+        if (cache != null) {
+            computeKeys(context, inlinedFiles);
+            if (reuseCachedFiles) {
+                filesToTranslate = selectFilesToTranslate(cache, context, inlinedFiles);
+            }
+        }
+
+        if (parallelTranslation != null) {
+            filesTranslatedInParallel.putAll(parallelTranslation.translate(groupFiles(filesToTranslate, inlinedFiles)));
+        }
+    }
+
+    private void computeKeys(@NotNull TranslationContext context, @NotNull Map<JetFile, Set<JetFile>> inlinedFiles) {
+        BindingContext bindingContext = context.bindingContext();
+
+        Map<JetFile, String> declarationNames = new HashMap<JetFile, String>();
+        StringBuilder abi = new StringBuilder();
+        for (JetFile file : files) {
+            StringBuilder names = new StringBuilder();
+            for (DeclarationDescriptor descriptor : collectDeclarations(file, bindingContext)) {
+                JsName jsName = getDeclaredName(context, descriptor);
+                String name = jsName != null ? jsName.getIdent() : "";
+                names.append(name).append('\n');
+                if (!isPrivate(descriptor)) {
+                    abi.append(renderSignature(descriptor)).append(' ').append(name).append('\n');
+                }
+            }
+            declarationNames.put(file, names.toString());
+        }
+        String abiHash = hash(abi.toString());
+
+        for (JetFile file : files) {
+            StringBuilder key = new StringBuilder();
+            key.append(abiHash).append('\n');
+            key.append(hash(file.getText())).append('\n');
+            key.append(declarationNames.get(file));
+            for (JetFile inlinedFile : getInlinedFilesClosure(file, inlinedFiles)) {
+                key.append(hash(inlinedFile.getText())).append('\n');
+            }
+            keys.put(file, hash(key.toString()));
+        }
+    }
+
+    /**
+     * @return the files which should be translated
+     */
+    @NotNull
+    private Set<JetFile> selectFilesToTranslate(
+            @NotNull TranslatedFileCache cache,
+            @NotNull TranslationContext context,
+            @NotNull Map<JetFile, Set<JetFile>> inlinedFiles
+    ) {
+        Set<JetFile> filesToTranslate = new HashSet<JetFile>();
+        Map<JetFile, List<TranslatedMember>> cachedFiles = new HashMap<JetFile, List<TranslatedMember>>();
+        for (JetFile file : files) {
+            List<TranslatedMember> members = cache.get(file, keys.get(file));
+            if (members != null) {
+                cachedFiles.put(file, members);
+            }
+            else {
+                filesToTranslate.add(file);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (JetFile file : files) {
+                if (filesToTranslate.contains(file)) continue;
+
+                boolean inlinedToTranslatedFile = false;
+                for (JetFile translatedFile : filesToTranslate) {
+                    if (inlinedFiles.get(translatedFile).contains(file)) {
+                        inlinedToTranslatedFile = true;
+                        break;
+                    }
+                }
+
+                if (inlinedToTranslatedFile || !Collections.disjoint(inlinedFiles.get(file), filesToTranslate)) {
+                    filesToTranslate.add(file);
+                    changed = true;
+                }
+            }
+        }
+
+        for (JetFile file : files) {
+            if (filesToTranslate.contains(file)) continue;
+
+            List<TranslatedMember> members = cachedFiles.get(file);
+            reusedFiles.put(file, members);
+
+            PackageFragmentDescriptor packageFragment =
+                    BindingContextUtils.getNotNull(context.bindingContext(), BindingContext.FILE_TO_PACKAGE_FRAGMENT, file);
+            JsScope scope = context.getScopeForDescriptor(packageFragment);
+            for (TranslatedMember member : members) {
+                scope.declareName(member.getName());
+            }
+        }
+        return filesToTranslate;
+    }
+
+    /**
+     * @return the groups of the files to translate which call the inline functions of each other and can be translated separately,
+     * in the order of their first files
+     */
+    @NotNull
+    private List<List<JetFile>> groupFiles(@NotNull Set<JetFile> filesToTranslate, @NotNull Map<JetFile, Set<JetFile>> inlinedFiles) {
+        Map<JetFile, Set<JetFile>> connectedFiles = new HashMap<JetFile, Set<JetFile>>();
+        for (JetFile file : files) {
+            connectedFiles.put(file, new HashSet<JetFile>(inlinedFiles.get(file)));
+        }
+        for (JetFile file : files) {
+            for (JetFile inlinedFile : inlinedFiles.get(file)) {
+                connectedFiles.get(inlinedFile).add(file);
+            }
+        }
+
+        List<List<JetFile>> groups = new ArrayList<List<JetFile>>();
+        Set<JetFile> visited = new HashSet<JetFile>();
+        for (JetFile file : files) {
+            if (!filesToTranslate.contains(file) || !visited.add(file)) continue;
+
+            List<JetFile> group = new ArrayList<JetFile>();
+            boolean addsToPackageInitializer = false;
+            Deque<JetFile> queue = new ArrayDeque<JetFile>();
+            queue.add(file);
+            while (!queue.isEmpty()) {
+                JetFile groupFile = queue.poll();
+                group.add(groupFile);
+                addsToPackageInitializer |= addsToPackageInitializer(groupFile);
+                for (JetFile connectedFile : connectedFiles.get(groupFile)) {
+                    if (filesToTranslate.contains(connectedFile) && visited.add(connectedFile)) {
+                        queue.add(connectedFile);
+                    }
+                }
+            }
+
+            if (!addsToPackageInitializer) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    // see FileDeclarationVisitor
+    private static boolean addsToPackageInitializer(@NotNull JetFile file) {
+        for (JetDeclaration declaration : file.getDeclarations()) {
+            if (declaration instanceof JetObjectDeclaration || declaration instanceof JetClassInitializer) return true;
+            if (declaration instanceof JetProperty) {
+                JetProperty property = (JetProperty) declaration;
+                if (property.hasInitializer() || property.hasDelegate()) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the cached translation of the file, or its translation on another thread, which should be linked into the program
+     * instead of translating the file
+     */
+    @Nullable
+    public List<TranslatedMember> getReusedMembers(@NotNull JetFile file) {
+        List<TranslatedMember> members = reusedFiles.get(file);
+        return members != null ? members : filesTranslatedInParallel.get(file);
+    }
+
+    /**
+     * @param members the members of the package object the file was translated to, or null if the translation can't be cached
+     */
+    public void translated(@NotNull JetFile file, @NotNull FqName packageFqName, @Nullable List<JsPropertyInitializer> members) {
+        translatedFiles.put(file, new TranslatedFile(packageFqName, members));
+    }
+
+    /**
+     * Should be called when the members of all files are added to the objects of their packages.
+     */
+    public void link(@NotNull Map<FqName, List<JsPropertyInitializer>> packageMembers) {
+        this.packageMembers = packageMembers;
+        if (reusedFiles.isEmpty() && filesTranslatedInParallel.isEmpty()) return;
+
+        for (List<JsPropertyInitializer> members : packageMembers.values()) {
+            Set<String> names = new HashSet<String>();
+            for (JsPropertyInitializer member : members) {
+                String name = getName(member);
+                if (name != null && !names.add(name)) {
+                    nameClashFound = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a member of a cached translation, or of a translation on another thread, has the same name as another member
+     * of its package, in which case the module should be translated again in one program without reusing cached translations
+     */
+    public boolean hasNameClashes() {
+        return nameClashFound;
+    }
+
+    /**
+     * Stores the translations of the translated files in the cache. Should be called when the program is ready to be printed.
+     */
+    public void saveTranslatedFiles() {
+        assert packageMembers != null : "Files should be linked first";
+        if (cache == null) return;
+
+        for (Map.Entry<JetFile, TranslatedFile> entry : translatedFiles.entrySet()) {
+            List<TranslatedMember> members = entry.getValue().print(packageMembers);
+            if (members != null) {
+                cache.put(entry.getKey(), keys.get(entry.getKey()), members);
+            }
+        }
+        for (Map.Entry<JetFile, List<TranslatedMember>> entry : filesTranslatedInParallel.entrySet()) {
+            cache.put(entry.getKey(), keys.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Prints the translations of the translated files to be linked into another program. Should be called when the program is ready
+     * to be printed.
+     *
+     * @return the translations of the files, or null if one of them can't be linked into another program
+     */
+    @Nullable
+    Map<JetFile, List<TranslatedMember>> printTranslatedFiles() {
+        assert packageMembers != null : "Files should be linked first";
+
+        Map<JetFile, List<TranslatedMember>> result = new HashMap<JetFile, List<TranslatedMember>>();
+        for (Map.Entry<JetFile, TranslatedFile> entry : translatedFiles.entrySet()) {
+            List<TranslatedMember> members = entry.getValue().print(packageMembers);
+            if (members == null) return null;
+            result.put(entry.getKey(), members);
+        }
+        return result;
+    }
+
+    /**
+     * @return the files which were translated rather than reused from the cache, in the order of the module
+     */
+    @NotNull
+    public List<JetFile> getTranslatedFiles() {
+        List<JetFile> result = new ArrayList<JetFile>();
+        for (JetFile file : files) {
+            if (translatedFiles.containsKey(file) || filesTranslatedInParallel.containsKey(file)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the files which were translated on other threads, in the order of the module
+     */
+    @NotNull
+    public List<JetFile> getFilesTranslatedInParallel() {
+        List<JetFile> result = new ArrayList<JetFile>();
+        for (JetFile file : files) {
+            if (filesTranslatedInParallel.containsKey(file)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the declarations of the file, including the members of its classes, in the order of the file
+     */
+    @NotNull
+    static List<DeclarationDescriptor> collectDeclarations(@NotNull JetFile file, @NotNull BindingContext bindingContext) {
+        List<DeclarationDescriptor> result = new ArrayList<DeclarationDescriptor>();
+        collectDeclarations(file.getDeclarations(), bindingContext, result);
+        return result;
+    }
+
+    /**
+     * @return the name of the declaration, or null if it has no name of its own
+     */
+    @Nullable
+    static JsName getDeclaredName(@NotNull TranslationContext context, @NotNull DeclarationDescriptor descriptor) {
+        // an extension property is translated to its accessors, which are named after it
+        if (descriptor instanceof PropertyDescriptor && DescriptorUtils.isExtension((PropertyDescriptor) descriptor)) return null;
+        return context.getNameForDescriptor(descriptor);
+    }
+
+    private static void collectDeclarations(
+            @NotNull List<JetDeclaration> declarations,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<DeclarationDescriptor> result
+    ) {
+        for (JetDeclaration declaration : declarations) {
+            DeclarationDescriptor descriptor = bindingContext.get(BindingContext.DECLARATION_TO_DESCRIPTOR, declaration);
+            if (descriptor == null) continue;
+
+            result.add(descriptor);
+            if (declaration instanceof JetClassOrObject) {
+                JetClassOrObject classOrObject = (JetClassOrObject) declaration;
+                for (JetParameter parameter : classOrObject.getPrimaryConstructorParameters()) {
+                    PropertyDescriptor property = bindingContext.get(BindingContext.PRIMARY_CONSTRUCTOR_PARAMETER, parameter);
+                    if (property != null) {
+                        result.add(property);
+                    }
+                }
+                collectDeclarations(classOrObject.getDeclarations(), bindingContext, result);
+            }
+        }
+    }
+
+    private static boolean isPrivate(@NotNull DeclarationDescriptor descriptor) {
+        return descriptor instanceof DeclarationDescriptorWithVisibility &&
+               Visibilities.isPrivate(((DeclarationDescriptorWithVisibility) descriptor).getVisibility());
+    }
+
+    @NotNull
+    private static String renderSignature(@NotNull DeclarationDescriptor descriptor) {
+        StringBuilder result = new StringBuilder(DescriptorRenderer.FQ_NAMES_IN_TYPES.render(descriptor));
+        if (descriptor instanceof ClassDescriptor) {
+            for (ConstructorDescriptor constructor : ((ClassDescriptor) descriptor).getConstructors()) {
+                result.append(' ').append(DescriptorRenderer.FQ_NAMES_IN_TYPES.render(constructor));
+            }
+        }
+        else if (descriptor instanceof VariableDescriptor) {
+            // values of constants are put into the code which uses them
+            ConstantValue<?> initializer = ((VariableDescriptor) descriptor).getCompileTimeInitializer();
+            if (initializer != null) {
+                result.append(" = ").append(initializer);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return for each file, the other files of the module declaring inline functions which are called from it
+     */
+    @NotNull
+    private Map<JetFile, Set<JetFile>> collectInlinedFiles(@NotNull BindingContext bindingContext) {
+        Map<JetFile, Set<JetFile>> result = new HashMap<JetFile, Set<JetFile>>();
+        for (JetFile file : files) {
+            result.put(file, new LinkedHashSet<JetFile>());
+        }
+
+        for (ResolvedCall<?> resolvedCall : bindingContext.getSliceContents(BindingContext.RESOLVED_CALL).values()) {
+            CallableDescriptor descriptor = resolvedCall.getResultingDescriptor().getOriginal();
+            if (!InlineUtil.isInline(descriptor)) continue;
+
+            PsiElement declaration = DescriptorToSourceUtils.descriptorToDeclaration(descriptor);
+            if (declaration == null) continue;
+
+            PsiFile declaringFile = declaration.getContainingFile();
+            PsiFile callingFile = resolvedCall.getCall().getCallElement().getContainingFile();
+            Set<JetFile> inlinedFiles = result.get(callingFile);
+            if (inlinedFiles != null && declaringFile != callingFile && result.containsKey(declaringFile)) {
+                inlinedFiles.add((JetFile) declaringFile);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private List<JetFile> getInlinedFilesClosure(@NotNull JetFile file, @NotNull Map<JetFile, Set<JetFile>> inlinedFiles) {
+        Set<JetFile> closure = new HashSet<JetFile>();
+        Deque<JetFile> queue = new ArrayDeque<JetFile>(inlinedFiles.get(file));
+        while (!queue.isEmpty()) {
+            JetFile inlinedFile = queue.poll();
+            if (inlinedFile != file && closure.add(inlinedFile)) {
+                queue.addAll(inlinedFiles.get(inlinedFile));
+            }
+        }
+
+        // in the order of the module, so that the key doesn't depend on the order of the calls
+        List<JetFile> result = new ArrayList<JetFile>();
+        for (JetFile moduleFile : files) {
+            if (closure.contains(moduleFile)) {
+                result.add(moduleFile);
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static String getName(@NotNull JsPropertyInitializer member) {
+        JsExpression label = member.getLabelExpr();
+        if (label instanceof JsNameRef) return ((JsNameRef) label).getIdent();
+        if (label instanceof JsStringLiteral) return ((JsStringLiteral) label).getValue();
+        return null;
+    }
+
+    @NotNull
+    private static String hash(@NotNull String text) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF8))).toString(16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class TranslatedFile {
+        @NotNull
+        private final FqName packageFqName;
+        @Nullable
+        private final List<JsPropertyInitializer> members;
+
+        TranslatedFile(@NotNull FqName packageFqName, @Nullable List<JsPropertyInitializer> members) {
+            this.packageFqName = packageFqName;
+            this.members = members;
+        }
+
+        @Nullable
+        List<TranslatedMember> print(@NotNull Map<FqName, List<JsPropertyInitializer>> packageMembers) {
+            if (members == null) return null;
+
+            // the inliner removes local functions which are no longer used
+            Set<JsPropertyInitializer> linkedMembers = Collections.newSetFromMap(new IdentityHashMap<JsPropertyInitializer, Boolean>());
+            List<JsPropertyInitializer> membersOfPackage = packageMembers.get(packageFqName);
+            if (membersOfPackage != null) {
+                linkedMembers.addAll(membersOfPackage);
+            }
+
+            List<TranslatedMember> result = new ArrayList<TranslatedMember>(members.size());
+            for (JsPropertyInitializer member : members) {
+                if (!linkedMembers.contains(member)) continue;
+
+                String name = getName(member);
+                if (name == null || isCommaExpression(member.getValueExpr())) return null;
+
+                TextOutputImpl output = new TextOutputImpl();
+                new JsSourceGenerationVisitor(output, null).accept(member.getValueExpr());
+                result.add(new TranslatedMember(name, output.toString()));
+            }
+            return result;
+        }
+
+        // it's put into parentheses when it's the value of a property, but not when it's printed alone
+        private static boolean isCommaExpression(@NotNull JsExpression expression) {
+            return expression instanceof JsBinaryOperation && ((JsBinaryOperation) expression).getOperator() == JsBinaryOperator.COMMA;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.js.translate.general;
+
+import com.google.dart.compiler.backend.js.ast.JsFunction;
+import com.google.dart.compiler.backend.js.ast.JsProgram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
+import org.jetbrains.kotlin.js.config.Config;
+import org.jetbrains.kotlin.js.facade.TranslatedFileCache.TranslatedMember;
+import org.jetbrains.kotlin.js.inline.JsInliner;
+import org.jetbrains.kotlin.js.translate.context.StaticContext;
+import org.jetbrains.kotlin.js.translate.context.TranslationContext;
+import org.jetbrains.kotlin.js.translate.declaration.PackageDeclarationTranslator;
+import org.jetbrains.kotlin.js.translate.utils.JsAstUtils;
+import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
+import org.jetbrains.kotlin.psi.JetDeclaration;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.BindingTrace;
+import org.jetbrains.kotlin.resolve.DelegatingBindingTrace;
+import org.jetbrains.kotlin.resolve.lazy.ForceResolveUtil;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.jetbrains.kotlin.js.translate.utils.ExpandIsCallsKt.expandIsCalls;
+
+/**
+ * Translates groups of files of a module on several threads.
+ *
+ * Each group is translated to a program of its own, in a static context of its own, so nothing the translator mutates is shared
+ * between threads, except the binding trace, which should be lock protected. The inliner runs on the program of the group, so a group
+ * should contain the files declaring the inline functions its files call. Names are given to all declarations of the module in the
+ * same order in every context (see {@link Translation#declareNames}), so a declaration has the same name in all programs, and the
+ * translations of the files are printed to be linked into the program of the module on the calling thread.
+ */
+public final class ParallelTranslation {
+    // Every group gives names to the declarations of the whole module, so there shouldn't be too many of them,
+    // but a few per thread keep the threads busy when the groups are of different size
+    private static final int GROUPS_PER_THREAD = 4;
+
+    @NotNull
+    private final List<JetFile> files;
+    @NotNull
+    private final BindingTrace bindingTrace;
+    @NotNull
+    private final Config config;
+    @NotNull
+    private final ModuleDescriptor moduleDescriptor;
+
+    /**
+     * @param files all files of the module
+     * @param bindingTrace the trace of the module, protected by a lock
+     */
+    public ParallelTranslation(
+            @NotNull List<JetFile> files,
+            @NotNull BindingTrace bindingTrace,
+            @NotNull Config config,
+            @NotNull ModuleDescriptor moduleDescriptor
+    ) {
+        this.files = files;
+        this.bindingTrace = bindingTrace;
+        this.config = config;
+        this.moduleDescriptor = moduleDescriptor;
+    }
+
+    /**
+     * Translates the given groups of files, each of which contains the files declaring the inline functions it calls.
+     * The diagnostics of the groups which are translated are reported to the binding trace in the order of the groups.
+     *
+     * @return the translations of the files, except those of the groups which can't be translated separately
+     * (see {@link IncrementalTranslation#printTranslatedFiles()}) and should be translated in the program of the module
+     */
+    @NotNull
+    Map<JetFile, List<TranslatedMember>> translate(@NotNull List<List<JetFile>> groups) {
+        Map<JetFile, List<TranslatedMember>> result = new HashMap<JetFile, List<TranslatedMember>>();
+        if (groups.isEmpty()) return result;
+
+        // Lazy descriptors record to the trace under the lock of their own storage manager, so they are resolved beforehand
+        forceResolveDeclarations();
+
+        int threads = Math.max(1, Math.min(groups.size(), Runtime.getRuntime().availableProcessors()));
+        List<Set<JetFile>> units = mergeGroups(groups, threads * GROUPS_PER_THREAD);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<TranslatedUnit>> futures = new ArrayList<Future<TranslatedUnit>>(units.size());
+            for (final Set<JetFile> unit : units) {
+                futures.add(executor.submit(new Callable<TranslatedUnit>() {
+                    @Override
+                    public TranslatedUnit call() {
+                        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+                        return translateUnit(unit);
+                    }
+                }));
+            }
+
+            for (Future<TranslatedUnit> future : futures) {
+                TranslatedUnit unit = getResult(future);
+                if (unit.files != null) {
+                    unit.trace.addOwnDataTo(bindingTrace);
+                    result.putAll(unit.files);
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    @NotNull
+    private TranslatedUnit translateUnit(@NotNull Collection<JetFile> unitFiles) {
+        // in the order of the module, so that the fresh names are the same as in the program of the module
+        List<JetFile> unit = new ArrayList<JetFile>(unitFiles.size());
+        for (JetFile file : files) {
+            if (unitFiles.contains(file)) {
+                unit.add(file);
+            }
+        }
+
+        // Diagnostics are kept apart until it's known that the files won't be translated again
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(bindingTrace.getBindingContext(), "trace for parallel translation");
+        StaticContext staticContext = StaticContext.generateStaticContext(trace, config, moduleDescriptor);
+        JsProgram program = staticContext.getProgram();
+        JsFunction rootFunction = JsAstUtils.createPackage(program.getGlobalBlock().getStatements(), program.getScope());
+        TranslationContext context = TranslationContext.rootContext(staticContext, rootFunction);
+        Translation.declareNames(context, files);
+
+        IncrementalTranslation translation = new IncrementalTranslation(null, unit, false);
+        PackageDeclarationTranslator.translateFiles(unit, context, translation);
+        JsInliner.process(context);
+        expandIsCalls(program, context);
+        return new TranslatedUnit(translation.printTranslatedFiles(), trace);
+    }
+
+    private void forceResolveDeclarations() {
+        BindingContext bindingContext = bindingTrace.getBindingContext();
+        List<DeclarationDescriptor> descriptors = new ArrayList<DeclarationDescriptor>();
+        for (JetFile file : files) {
+            for (JetDeclaration declaration : file.getDeclarations()) {
+                DeclarationDescriptor descriptor = bindingContext.get(BindingContext.DECLARATION_TO_DESCRIPTOR, declaration);
+                if (descriptor != null) {
+                    descriptors.add(descriptor);
+                }
+            }
+        }
+        ForceResolveUtil.forceResolveAllContents(descriptors);
+    }
+
+    // Consecutive groups of about the same total size of files are merged,
+    // so that which files are translated together depends only on the number of threads
+    @NotNull
+    private static List<Set<JetFile>> mergeGroups(@NotNull List<List<JetFile>> groups, int maxUnits) {
+        long totalSize = 0;
+        for (List<JetFile> group : groups) {
+            totalSize += getSize(group);
+        }
+
+        long unitSize = totalSize / maxUnits + 1;
+        List<Set<JetFile>> result = new ArrayList<Set<JetFile>>();
+        Set<JetFile> unit = new HashSet<JetFile>();
+        long size = 0;
+        for (List<JetFile> group : groups) {
+            unit.addAll(group);
+            size += getSize(group);
+            if (size >= unitSize) {
+                result.add(unit);
+                unit = new HashSet<JetFile>();
+                size = 0;
+            }
+        }
+        if (!unit.isEmpty()) {
+            result.add(unit);
+        }
+        return result;
+    }
+
+    private static long getSize(@NotNull List<JetFile> files) {
+        long size = 0;
+        for (JetFile file : files) {
+            size += file.getTextLength();
+        }
+        return size;
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static class TranslatedUnit {
+        @Nullable
+        final Map<JetFile, List<TranslatedMember>> files;
+        @NotNull
+        final DelegatingBindingTrace trace;
+
+        TranslatedUnit(@Nullable Map<JetFile, List<TranslatedMember>> files, @NotNull DelegatingBindingTrace trace) {
+            this.files = files;
+            this.trace = trace;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.js.translate.general;
 import com.google.dart.compiler.backend.js.ast.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
 import org.jetbrains.kotlin.descriptors.FunctionDescriptor;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.idea.MainFunctionDetector;
@@ -165,10 +166,11 @@ public final class Translation {
     public static TranslationContext generateAst(@NotNull BindingTrace bindingTrace,
             @NotNull Collection<JetFile> files, @NotNull MainCallParameters mainCallParameters,
             @NotNull ModuleDescriptor moduleDescriptor,
-            @NotNull Config config)
+            @NotNull Config config,
+            @Nullable IncrementalTranslation incrementalTranslation)
             throws TranslationException {
         try {
-            return doGenerateAst(bindingTrace, files, mainCallParameters, moduleDescriptor, config);
+            return doGenerateAst(bindingTrace, files, mainCallParameters, moduleDescriptor, config, incrementalTranslation);
         }
         catch (UnsupportedOperationException e) {
             throw new UnsupportedFeatureException("Unsupported feature used.", e);
@@ -182,7 +184,8 @@ public final class Translation {
     private static TranslationContext doGenerateAst(@NotNull BindingTrace bindingTrace, @NotNull Collection<JetFile> files,
             @NotNull MainCallParameters mainCallParameters,
             @NotNull ModuleDescriptor moduleDescriptor,
-            @NotNull Config config) throws MainFunctionNotFoundException {
+            @NotNull Config config,
+            @Nullable IncrementalTranslation incrementalTranslation) throws MainFunctionNotFoundException {
         StaticContext staticContext = StaticContext.generateStaticContext(bindingTrace, config, moduleDescriptor);
         JsProgram program = staticContext.getProgram();
         JsBlock block = program.getGlobalBlock();
@@ -193,7 +196,11 @@ public final class Translation {
         statements.add(program.getStringLiteral("use strict").makeStmt());
 
         TranslationContext context = TranslationContext.rootContext(staticContext, rootFunction);
-        statements.addAll(PackageDeclarationTranslator.translateFiles(files, context));
+        declareNames(context, files);
+        if (incrementalTranslation != null) {
+            incrementalTranslation.prepare(context);
+        }
+        statements.addAll(PackageDeclarationTranslator.translateFiles(files, context, incrementalTranslation));
         defineModule(context, statements, config.getModuleId());
 
         if (mainCallParameters.shouldBeGenerated()) {
@@ -206,6 +213,20 @@ public final class Translation {
         return context;
     }
 
+    /**
+     * Gives names to the declarations of the files in the order of the files before anything is translated. The names given to
+     * the declarations don't depend on the order in which they are referenced then, so a declaration has the same name in every
+     * context which gives names to the same files, whichever of them it translates.
+     */
+    static void declareNames(@NotNull TranslationContext context, @NotNull Collection<JetFile> files) {
+        BindingContext bindingContext = context.bindingContext();
+        for (JetFile file : files) {
+            for (DeclarationDescriptor descriptor : IncrementalTranslation.collectDeclarations(file, bindingContext)) {
+                IncrementalTranslation.getDeclaredName(context, descriptor);
+            }
+        }
+    }
+
     private static void defineModule(@NotNull TranslationContext context, @NotNull List<JsStatement> statements, @NotNull String moduleId) {
         JsName rootPackageName = context.scope().findName(Namer.getRootPackageName());
         if (rootPackageName != null) {